@@ -0,0 +1,888 @@
+package com.recsync.session;
+
+import com.recsync.camera.GapPolicy;
+import com.recsync.camera.JavaCVCameraController;
+import com.recsync.camera.MultiCameraManager;
+import com.recsync.camera.PhaseAligner;
+import com.recsync.core.sync.ClientTelemetry;
+import com.recsync.core.sync.EncoderProfile;
+import com.recsync.core.sync.SoftwareSyncClient;
+import com.recsync.core.sync.SyncConstants;
+import com.recsync.core.transfer.FileTransferProtocol;
+import com.recsync.core.transfer.FileUploadClient;
+import com.recsync.core.transfer.SegmentManifest;
+import com.recsync.core.transfer.SegmentUploadQueue;
+import com.recsync.core.transfer.TransferProgressAggregator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 客户端会话：图形客户端和无界面客户端共用的、与界面无关的客户端逻辑
+ *
+ * 负责连接Leader（时钟同步、状态/遥测上报）、RPC命令分发、录制控制（START/STOP/采集参数/相位对齐）、
+ * 录制文件命名和上传。界面层只负责发现Leader、展示状态和提供录制选项
+ * （边录边传、本地分段、MJPEG直通、缺帧策略、停止后自动上传）。
+ *
+ * START、STOP和采集参数都在同一个录制控制线程中按到达顺序处理。
+ * {@link Listener} 的回调在会话的后台线程中调用，界面层自行切换到UI线程。
+ */
+public class ClientSession {
+    private static final Logger logger = LoggerFactory.getLogger(ClientSession.class);
+
+    private static final long FINALIZATION_TIMEOUT_MS = 10_000;  // 停止后等待录制文件收尾的上限
+    private static final long CAMERA_START_TIMEOUT_MS = 5_000;   // START时等待摄像头启动完成的上限
+
+    /**
+     * 会话事件（默认空实现，界面层按需覆盖）
+     */
+    public interface Listener {
+        default void onSyncProgress(int current, int total) {}
+
+        default void onSyncComplete(double offsetMs, double minRttMs, double maxRttMs) {}
+
+        /**
+         * 设备名称冲突，连接已断开
+         */
+        default void onNameConflict(String message) {}
+
+        /**
+         * Leader已达到最大客户端数，连接已断开
+         */
+        default void onServerFull(String message) {}
+
+        /**
+         * 非关键的进度信息（等待触发、正在切换参数等）
+         */
+        default void onStatus(String message) {}
+
+        default void onError(String title, String message) {}
+
+        default void onRecordingStarted(RecordingRequest request, String fileName) {}
+
+        default void onRecordingStopped(long droppedFrames, int gapCount) {}
+
+        default void onCaptureFormatChanged(int width, int height, int fps) {}
+
+        default void onPhaseAligned(PhaseAligner.Result result) {}
+    }
+
+    /**
+     * 一次START命令的参数
+     *
+     * @param triggerTimeNs 本地时域的触发时间，≤0 表示立即开始（旧版Leader不带触发时间）
+     */
+    public record RecordingRequest(String batchId, int width, int height, int fps,
+                                   String subjectId, String movementId, String episodeId, long triggerTimeNs) {
+
+        /**
+         * 是否带有受试者/动作/回合信息（决定文件命名格式）
+         */
+        public boolean hasEpisode() {
+            return !subjectId.isEmpty() && !movementId.isEmpty() && !episodeId.isEmpty();
+        }
+    }
+
+    private final Listener listener;
+    private final List<MultiCameraManager.ViewConfig> viewConfigs;
+    private final MultiCameraManager secondaryCameras = new MultiCameraManager(this::syncClockNs);
+
+    // 录制控制线程：START/STOP/采集参数按到达顺序处理，不为每次录制新建线程
+    private final ExecutorService recordingControlExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Recording-Control");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledExecutorService statusReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Status-Reporter");
+        t.setDaemon(true);
+        return t;
+    });
+    private ScheduledFuture<?> statusTask;
+
+    private volatile String deviceName;
+    private volatile JavaCVCameraController cameraController;
+    private volatile int cameraIndex = 0;
+    private volatile SoftwareSyncClient syncClient;
+    private volatile FileUploadClient uploadClient;
+    private volatile SegmentUploadQueue segmentUploadQueue;  // 边录边传上传队列
+    private volatile boolean connected = false;
+    private volatile FileUploadClient.UploadProgressListener uploadProgressListener = loggingUploadListener();
+
+    // 界面层提供的选项
+    private volatile boolean streamingUpload = false;
+    private volatile boolean localSegments = false;
+    private volatile boolean mjpegPassthrough = false;
+    private volatile boolean uploadAfterStop = false;
+    private volatile GapPolicy gapPolicy = GapPolicy.LEAVE_GAP;
+
+    // 录制状态
+    private volatile String requestedEncoderProfile = EncoderProfile.AUTO;  // Leader下发的编码配置
+    private volatile String currentRecordingPath;
+    private volatile List<Path> currentRecordingFiles = List.of();  // 本次录制的完整文件（含附加视角）
+
+    // 当前视频参数（由Leader设置）
+    private volatile int currentVideoWidth = SyncConstants.DEFAULT_VIDEO_WIDTH;
+    private volatile int currentVideoHeight = SyncConstants.DEFAULT_VIDEO_HEIGHT;
+    private volatile int currentVideoFps = SyncConstants.DEFAULT_VIDEO_FPS;
+
+    /**
+     * @param deviceName 设备名称
+     * @param viewConfigs 多路相机配置（见 {@link MultiCameraManager#loadConfig}）
+     * @param listener 会话事件
+     */
+    public ClientSession(String deviceName, List<MultiCameraManager.ViewConfig> viewConfigs, Listener listener) {
+        this.deviceName = deviceName;
+        this.viewConfigs = viewConfigs;
+        this.listener = listener;
+    }
+
+    // ==================== 选项 ====================
+
+    /**
+     * 边录边传：按固定时长分段，每个分段关闭后立即后台上传（下次录制生效）
+     */
+    public void setStreamingUpload(boolean enabled) {
+        this.streamingUpload = enabled;
+    }
+
+    /**
+     * 本地分段录制：停止时只需收尾最后一个短分段，崩溃时最多丢失一个分段（下次录制生效）
+     */
+    public void setLocalSegments(boolean enabled) {
+        this.localSegments = enabled;
+    }
+
+    /**
+     * MJPEG直通（下次启动摄像头时生效）
+     */
+    public void setMjpegPassthrough(boolean enabled) {
+        this.mjpegPassthrough = enabled;
+    }
+
+    /**
+     * 未开启边录边传时，停止录制后自动上传本次录制
+     */
+    public void setUploadAfterStop(boolean enabled) {
+        this.uploadAfterStop = enabled;
+    }
+
+    /**
+     * 缺帧处理策略（下次录制生效）
+     */
+    public void setGapPolicy(GapPolicy policy) {
+        this.gapPolicy = policy;
+    }
+
+    public void setUploadProgressListener(FileUploadClient.UploadProgressListener listener) {
+        this.uploadProgressListener = listener;
+        FileUploadClient client = uploadClient;
+        if (client != null) {
+            client.setProgressListener(listener);
+        }
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    /**
+     * 修改设备名称；已连接时通知Leader（无需重新连接）
+     *
+     * @return 是否已通知Leader
+     * @throws IOException 通知Leader失败（本地名称已修改）
+     */
+    public boolean renameDevice(String newName) throws IOException {
+        String oldName = deviceName;
+        deviceName = newName;
+        SoftwareSyncClient client = syncClient;
+        if (!connected || client == null) {
+            return false;
+        }
+        // payload格式: oldName|newName
+        client.sendRpcToLeader(SyncConstants.METHOD_UPDATE_CLIENT_NAME, oldName + "|" + newName);
+        logger.info("已通知Leader更新设备名称: {} -> {}", oldName, newName);
+        return true;
+    }
+
+    // ==================== 相机 ====================
+
+    /**
+     * 同步时钟：已同步时为Leader时域时间，否则为本地时钟（所有摄像头共用）
+     */
+    private long syncClockNs() {
+        SoftwareSyncClient client = syncClient;
+        if (client != null && client.isSynced()) {
+            return client.getLeaderTimeNs();
+        }
+        return System.nanoTime();
+    }
+
+    public JavaCVCameraController getCameraController() {
+        return cameraController;
+    }
+
+    public int getVideoWidth() {
+        return currentVideoWidth;
+    }
+
+    public int getVideoHeight() {
+        return currentVideoHeight;
+    }
+
+    public int getVideoFps() {
+        return currentVideoFps;
+    }
+
+    /**
+     * 以当前视频参数启动主摄像头（阻塞到摄像头打开）
+     * 控制器在打开设备之前即可通过 {@link #getCameraController()} 取得，启动期间收到的START会等待摄像头就绪
+     */
+    public void startCamera(int cameraIndex) throws Exception {
+        JavaCVCameraController controller = new JavaCVCameraController(
+                currentVideoWidth, currentVideoHeight, currentVideoFps);
+        controller.setMjpegPassthrough(mjpegPassthrough);
+        controller.setGapPolicy(gapPolicy);
+        controller.setEncoderProfile(requestedEncoderProfile);
+        enableWarmRecorders(controller);
+        viewConfigs.stream()
+                .filter(c -> MultiCameraManager.MAIN_VIEW_ID.equals(c.viewId()))
+                .findFirst()
+                .ifPresent(c -> controller.setThreadAffinity(c.captureCpus(), c.encoderCpus()));
+        controller.setSyncClockSupplier(this::syncClockNs);
+
+        this.cameraIndex = cameraIndex;
+        cameraController = controller;
+        logger.info("开始启动摄像头: {} (参数: {}x{} @ {}fps)",
+                cameraIndex, currentVideoWidth, currentVideoHeight, currentVideoFps);
+        controller.startCamera(cameraIndex);
+        logger.info("✅ 摄像头 {} 已启动", cameraIndex);
+    }
+
+    /**
+     * 停止主摄像头
+     */
+    public void stopCamera() throws Exception {
+        JavaCVCameraController controller = cameraController;
+        cameraController = null;
+        if (controller != null) {
+            controller.stopCamera();
+        }
+    }
+
+    /**
+     * 后台启动配置的附加视角（与主摄像头并行打开）
+     */
+    public void startSecondaryCameras(int primaryCameraIndex) {
+        if (viewConfigs.stream().allMatch(c -> MultiCameraManager.MAIN_VIEW_ID.equals(c.viewId()))) {
+            return;
+        }
+        Thread starter = new Thread(() -> secondaryCameras.start(viewConfigs, primaryCameraIndex,
+                currentVideoWidth, currentVideoHeight, currentVideoFps, controller -> {
+                    controller.setMjpegPassthrough(mjpegPassthrough);
+                    controller.setGapPolicy(gapPolicy);
+                    controller.setEncoderProfile(requestedEncoderProfile);
+                    enableWarmRecorders(controller);
+                }), "Secondary-Cameras-Start");
+        starter.setDaemon(true);
+        starter.start();
+    }
+
+    /**
+     * 启用预热录制器（临时文件写在录制目录中，收尾后同目录改名）
+     */
+    private static void enableWarmRecorders(JavaCVCameraController controller) {
+        try {
+            Path dir = recordingDirectory();
+            Files.createDirectories(dir);
+            controller.enableWarmRecorders(dir);
+        } catch (IOException e) {
+            logger.warn("无法启用预热录制器: {}", e.getMessage());
+        }
+    }
+
+    // ==================== 连接 ====================
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * 连接Leader：开始时钟同步、创建上传客户端并每秒上报状态（已有连接时先断开）
+     */
+    public synchronized void connect(String leaderIp) throws IOException {
+        disconnect();
+        InetAddress leaderAddr = InetAddress.getByName(leaderIp);
+        // Client使用独立端口，避免与Leader冲突
+        SoftwareSyncClient client = new SoftwareSyncClient(
+                leaderAddr,
+                deviceName,
+                SyncConstants.CLIENT_RPC_PORT,
+                this::handleRpcCallback
+        );
+        client.setSyncProgressListener(new SoftwareSyncClient.SyncProgressListener() {
+            @Override
+            public void onSyncProgress(int current, int total, double offsetMs) {
+                logger.debug("时钟同步: {}/{}", current, total);
+                listener.onSyncProgress(current, total);
+            }
+
+            @Override
+            public void onSyncComplete(double offsetMs, double minRttMs, double maxRttMs) {
+                logger.info("✅ 时钟已同步 (偏移: {}ms, RTT: {}-{}ms)", String.format("%.2f", offsetMs),
+                        String.format("%.1f", minRttMs), String.format("%.1f", maxRttMs));
+                listener.onSyncComplete(offsetMs, minRttMs, maxRttMs);
+            }
+        });
+        syncClient = client;
+
+        FileUploadClient upload = new FileUploadClient(leaderIp, deviceName);
+        upload.setProgressListener(uploadProgressListener);
+        uploadClient = upload;
+        segmentUploadQueue = new SegmentUploadQueue(upload);
+
+        connected = true;
+        statusTask = statusReporter.scheduleAtFixedRate(this::reportStatus, 0, 1, TimeUnit.SECONDS);
+        logger.info("✅ 已连接到Leader: {}", leaderIp);
+    }
+
+    /**
+     * 断开与Leader的连接（停止同步和状态上报，可重复调用）
+     */
+    public synchronized void disconnect() {
+        connected = false;
+        if (statusTask != null) {
+            statusTask.cancel(false);
+            statusTask = null;
+        }
+        SoftwareSyncClient client = syncClient;
+        syncClient = null;
+        if (client != null) {
+            client.stop();
+        }
+        SegmentUploadQueue queue = segmentUploadQueue;
+        segmentUploadQueue = null;
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    /**
+     * 每秒上报状态与采集遥测
+     */
+    private void reportStatus() {
+        SoftwareSyncClient client = syncClient;
+        if (client == null || !connected) {
+            return;
+        }
+        try {
+            // payload格式: deviceName|cameraStatus|synced|syncProgress
+            String payload = deviceName + "|" + getCurrentCameraStatus() + "|" + client.isSynced()
+                    + "|" + client.getSyncProgress();
+            client.sendRpcToLeader(SyncConstants.METHOD_CLIENT_STATUS, payload);
+
+            // 采集遥测: deviceName|fps=..,jitter_ms=..,...
+            JavaCVCameraController controller = cameraController;
+            if (controller != null && controller.isRunning()) {
+                ClientTelemetry telemetry = new ClientTelemetry(deviceName, controller.getTelemetryValues());
+                client.sendRpcToLeader(SyncConstants.METHOD_CLIENT_TELEMETRY, telemetry.toPayload());
+            }
+            // 附加视角各自上报（名称 {设备名}-{视角ID}）
+            for (ClientTelemetry viewTelemetry : secondaryCameras.getTelemetry(deviceName)) {
+                client.sendRpcToLeader(SyncConstants.METHOD_CLIENT_TELEMETRY, viewTelemetry.toPayload());
+            }
+        } catch (Exception e) {
+            logger.debug("状态上报失败: {}", e.getMessage());
+        }
+    }
+
+    private int getCurrentCameraStatus() {
+        JavaCVCameraController controller = cameraController;
+        if (controller == null || !controller.isRunning()) {
+            return SyncConstants.CLIENT_STATUS_CAMERA_NOT_READY;
+        }
+        // 软录制模式：等待触发或正在录制都视为录制状态
+        if (controller.isRecordingActive()) {
+            return SyncConstants.CLIENT_STATUS_RECORDING;
+        }
+        return SyncConstants.CLIENT_STATUS_CAMERA_READY;
+    }
+
+    // ==================== RPC ====================
+
+    private void handleRpcCallback(int method, String payload, InetAddress fromAddress) {
+        logger.debug("收到RPC: method={}, payload={}, from={}", method, payload, fromAddress.getHostAddress());
+
+        switch (method) {
+            case SyncConstants.METHOD_START_RECORDING -> {
+                long receivedNs = System.nanoTime();
+                try {
+                    RecordingRequest request = parseStartPayload(payload);
+                    startRecording(request, receivedNs);
+                } catch (RuntimeException e) {
+                    logger.error("解析录制参数失败: {}", payload, e);
+                    listener.onError("参数错误", "无法解析录制参数: " + e.getMessage());
+                }
+            }
+            case SyncConstants.METHOD_STOP_RECORDING -> stopRecording();
+            case SyncConstants.METHOD_CONFIGURE_CAPTURE -> {
+                try {
+                    configureCapture(payload);
+                } catch (NumberFormatException e) {
+                    logger.error("解析采集参数失败: {}", payload, e);
+                }
+            }
+            case SyncConstants.METHOD_DO_PHASE_ALIGN -> {
+                logger.info("收到相位对齐命令");
+                alignPhase(payload);
+            }
+            case SyncConstants.METHOD_MSG_NAME_CONFLICT -> {
+                logger.error("设备名称冲突: {}", payload);
+                disconnect();
+                listener.onNameConflict(payload);
+            }
+            case SyncConstants.METHOD_MSG_MAX_CLIENTS_REACHED -> {
+                logger.error("服务器已达到最大客户端数: {}", payload);
+                disconnect();
+                listener.onServerFull(payload);
+            }
+            default -> { }
+        }
+    }
+
+    /**
+     * 解析START参数
+     * payload 格式: triggerTimeNs|batchId|width|height|fps|subjectId|movementId|episodeId|encoderProfile
+     * 兼容旧版Leader：batchId|width|height|fps|subjectId|movementId|episodeId、batchId|width|height|fps、batchId
+     */
+    private RecordingRequest parseStartPayload(String payload) {
+        String[] parts = payload.split("\\|");
+        if (parts.length >= 8) {
+            long triggerTimeNs = Long.parseLong(parts[0]);
+            // 第9个字段：编码配置名（旧版Leader不带，按auto处理）
+            requestedEncoderProfile = parts.length >= 9 ? parts[8] : EncoderProfile.AUTO;
+            // 将 Leader 时域的触发时间转换为本地时域
+            SoftwareSyncClient client = syncClient;
+            long localTriggerTimeNs = client != null ? client.localTimeForLeaderTimeNs(triggerTimeNs) : 0;
+            return new RecordingRequest(parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]),
+                    Integer.parseInt(parts[4]), parts[5], parts[6], parts[7], localTriggerTimeNs);
+        } else if (parts.length >= 7) {
+            // 旧格式：包含受试者、动作、回合信息（无触发时间）
+            return new RecordingRequest(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3]), parts[4], parts[5], parts[6], 0);
+        } else if (parts.length == 4) {
+            // 旧格式：仅视频参数
+            return new RecordingRequest(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3]), "", "", "", 0);
+        }
+        // 兼容最旧格式（只有batchId）
+        return new RecordingRequest(payload, SyncConstants.DEFAULT_VIDEO_WIDTH, SyncConstants.DEFAULT_VIDEO_HEIGHT,
+                SyncConstants.DEFAULT_VIDEO_FPS, "", "", "", 0);
+    }
+
+    // ==================== 录制控制 ====================
+
+    /**
+     * 相位对齐：各摄像头把帧相位调整到Leader时钟上的公共网格，结果随遥测上报Leader
+     * payload 为目标误差（毫秒），为空时使用默认值
+     */
+    private void alignPhase(String payload) {
+        double toleranceMs = SyncConstants.PHASE_ALIGN_TOLERANCE_MS;
+        try {
+            if (payload != null && !payload.isBlank()) {
+                toleranceMs = Double.parseDouble(payload.trim());
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("相位对齐参数无效，使用默认值: {}", payload);
+        }
+        SoftwareSyncClient client = syncClient;
+        JavaCVCameraController controller = cameraController;
+        if (client == null || !client.isSynced()) {
+            logger.warn("时钟未同步，无法相位对齐");
+            listener.onStatus("⚠️ 时钟未同步，无法相位对齐");
+            return;
+        }
+        if (controller == null || !controller.isRunning()) {
+            logger.warn("摄像头未运行，无法相位对齐");
+            return;
+        }
+        listener.onStatus(String.format("正在相位对齐（目标 ±%.1fms）...", toleranceMs));
+        secondaryCameras.alignPhase(toleranceMs);
+        controller.alignPhase(toleranceMs).thenAccept(listener::onPhaseAligned);
+    }
+
+    /**
+     * 处理Leader预先下发的采集参数（在录制控制线程中执行，不在触发路径上）
+     * payload 格式: width|height|fps|encoderProfile
+     * 摄像头未运行时只记录参数，下次启动摄像头时使用
+     */
+    private void configureCapture(String payload) {
+        String[] parts = payload.split("\\|");
+        if (parts.length < 3) {
+            logger.warn("采集参数格式错误: {}", payload);
+            return;
+        }
+        int width = Integer.parseInt(parts[0]);
+        int height = Integer.parseInt(parts[1]);
+        int fps = Integer.parseInt(parts[2]);
+        recordingControlExecutor.execute(() -> {
+            JavaCVCameraController controller = cameraController;
+            if (controller != null && controller.isRecordingActive()) {
+                logger.info("录制中收到采集参数，下一次START时再切换");
+                return;
+            }
+            if (parts.length >= 4) {
+                requestedEncoderProfile = parts[3];
+                if (controller != null) {
+                    controller.setEncoderProfile(parts[3]);
+                }
+                secondaryCameras.setEncoderProfile(parts[3]);
+            }
+            if (controller == null || !controller.isRunning()) {
+                currentVideoWidth = width;
+                currentVideoHeight = height;
+                currentVideoFps = fps;
+                return;
+            }
+            try {
+                applyCaptureFormat(width, height, fps);
+            } catch (Exception e) {
+                logger.error("切换采集参数失败", e);
+                listener.onError("切换失败", "无法应用采集参数: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 切换采集参数：优先原地切换（只重启采集器），失败时以新参数重新启动主摄像头（录制控制线程中调用）
+     */
+    private void applyCaptureFormat(int width, int height, int fps) throws Exception {
+        if (width == currentVideoWidth && height == currentVideoHeight && fps == currentVideoFps) {
+            return;
+        }
+        listener.onStatus(String.format("正在应用新视频参数: %dx%d @ %dfps...", width, height, fps));
+        JavaCVCameraController controller = cameraController;
+        try {
+            controller.reconfigure(width, height, fps);
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.warn("原地切换采集参数失败，重启摄像头: {}", e.getMessage());
+            controller.stopCamera();
+            currentVideoWidth = width;
+            currentVideoHeight = height;
+            currentVideoFps = fps;
+            startCamera(cameraIndex);
+        }
+        secondaryCameras.reconfigure(width, height, fps);
+        currentVideoWidth = width;
+        currentVideoHeight = height;
+        currentVideoFps = fps;
+        logger.info("视频参数已更新: {}x{} @ {}fps", width, height, fps);
+        listener.onCaptureFormatChanged(width, height, fps);
+    }
+
+    /**
+     * 开始录制（提交到录制控制线程）
+     */
+    private void startRecording(RecordingRequest request, long receivedNs) {
+        recordingControlExecutor.execute(() -> {
+            try {
+                doStartRecording(request, receivedNs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("开始录制失败", e);
+                listener.onError("录制失败", e.getMessage());
+            }
+        });
+    }
+
+    private void doStartRecording(RecordingRequest request, long receivedNs) throws Exception {
+        JavaCVCameraController controller = cameraController;
+        if (controller == null) {
+            logger.error("摄像头未初始化，无法开始录制");
+            listener.onError("录制失败", "摄像头未初始化，请先选择摄像头");
+            return;
+        }
+        if (controller.isRecordingActive()) {
+            logger.warn("已经在录制中或等待触发");
+            return;
+        }
+
+        // 等待摄像头启动完成
+        long deadline = System.nanoTime() + CAMERA_START_TIMEOUT_MS * 1_000_000L;
+        while (!controller.isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        if (!controller.isRunning()) {
+            logger.error("摄像头启动超时，无法开始录制");
+            listener.onError("录制失败", "摄像头启动超时，请检查摄像头状态");
+            return;
+        }
+
+        // 检查视频参数是否改变（正常情况下Leader已通过 METHOD_CONFIGURE_CAPTURE 提前切换好）
+        int width = request.width();
+        int height = request.height();
+        int fps = request.fps();
+        if (width != currentVideoWidth || height != currentVideoHeight || fps != currentVideoFps) {
+            logger.warn("⚠️ 视频参数在START时才变化，切换发生在触发路径上: {}x{} @ {}fps -> {}x{} @ {}fps",
+                    currentVideoWidth, currentVideoHeight, currentVideoFps, width, height, fps);
+            applyCaptureFormat(width, height, fps);
+            controller = cameraController;
+        }
+
+        // 文件命名格式: {subjectId}_{movementId}_{episodeId}_{deviceName}.mp4
+        // 例如: s01_m01_e1_front.mp4
+        // FileReceiveServer会解析并存放到: {archive}/{subject}/{action}_{episode}/{device}.mp4
+        // 附加视角的设备名为 {deviceName}-{视角ID}
+        String device = deviceName;
+        String timestamp = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        Function<String, String> filenameFor = name -> {
+            if (request.hasEpisode()) {
+                return String.format("%s_%s_%s_%s.mp4",
+                        request.subjectId(), request.movementId(), request.episodeId(), name);
+            }
+            // 回退到旧格式（包含时间戳）
+            return String.format("%s_%s_batch%s.mp4",
+                    name, timestamp, request.batchId().replace(":", "").replace("-", ""));
+        };
+        Path recSyncDir = recordingDirectory();
+        Files.createDirectories(recSyncDir);
+        Path primaryPath = recSyncDir.resolve(filenameFor.apply(device));
+        Function<String, String> viewPath = viewId -> recSyncDir.resolve(
+                filenameFor.apply(MultiCameraManager.viewName(device, viewId))).toString();
+
+        // 覆盖模式：删除同名的旧文件和旧分段
+        List<Path> files = new ArrayList<>();
+        files.add(primaryPath);
+        for (MultiCameraManager.CameraView view : secondaryCameras.getViews()) {
+            files.add(Paths.get(viewPath.apply(view.viewId())));
+        }
+        for (Path file : files) {
+            if (Files.deleteIfExists(file)) {
+                logger.info("覆盖模式：已删除旧文件 {}", file);
+            }
+            deleteOldSegments(recSyncDir, file.getFileName().toString());
+        }
+
+        controller.setEncoderProfile(requestedEncoderProfile);
+        secondaryCameras.setEncoderProfile(requestedEncoderProfile);
+        controller.setGapPolicy(gapPolicy);
+        secondaryCameras.setGapPolicy(gapPolicy);
+
+        SegmentUploadQueue queue = segmentUploadQueue;
+        if (streamingUpload && connected && queue != null) {
+            // 边录边传：按固定时长分段，每个分段关闭后立即后台上传
+            JavaCVCameraController.SegmentListener uploader =
+                    (segmentPath, baseName, index, last) -> queue.submit(segmentPath, baseName, index, last);
+            controller.setSegmentation(SyncConstants.STREAMING_SEGMENT_SECONDS, uploader);
+            secondaryCameras.setSegmentation(SyncConstants.STREAMING_SEGMENT_SECONDS, view -> uploader);
+        } else {
+            // 默认录制为单个可直接播放/上传的 {设备名}.mp4；本地分段可选
+            int segmentSeconds = localSegments ? SyncConstants.RECORDING_SEGMENT_SECONDS : 0;
+            controller.setSegmentation(segmentSeconds, null);
+            secondaryCameras.setSegmentation(segmentSeconds, view -> null);
+        }
+
+        currentRecordingPath = primaryPath.toString();
+        currentRecordingFiles = List.copyOf(files);
+        long triggerTimeNs = request.triggerTimeNs();
+        if (triggerTimeNs > 0) {
+            // 软录制模式：设置触发时间，采集线程检测到触发时刻后开始写入
+            long waitTimeMs = (triggerTimeNs - controller.getSyncTimeNs()) / 1_000_000;
+            logger.info("🎬 软录制模式: 设置触发时间, 预计{}ms后开始", waitTimeMs);
+            listener.onStatus(String.format("等待同步触发... (约%dms)", waitTimeMs));
+            controller.prepareRecording(currentRecordingPath, triggerTimeNs);
+            secondaryCameras.prepareRecording(viewPath, triggerTimeNs);
+        } else {
+            // 无触发时间，使用硬录制模式（立即开始）
+            logger.info("🎬 硬录制模式: 立即开始");
+            controller.startRecording(currentRecordingPath);
+            secondaryCameras.startRecording(viewPath);
+        }
+        logger.info("⏱️ 从收到START到录制就绪: {}ms (其中准备录制 {}ms)",
+                String.format("%.2f", (System.nanoTime() - receivedNs) / 1e6),
+                String.format("%.2f", controller.getLastArmLatencyMs()));
+        logger.info("🎬 开始录制: {} (参数: {}x{} @ {}fps, 受试者:{}, 动作:{}, 回合:{})",
+                currentRecordingPath, width, height, fps,
+                request.subjectId(), request.movementId(), request.episodeId());
+        listener.onRecordingStarted(request, primaryPath.getFileName().toString());
+    }
+
+    /**
+     * 停止录制（提交到录制控制线程）；未开启边录边传且开启了停止后上传时，收尾完成后自动上传
+     */
+    private void stopRecording() {
+        recordingControlExecutor.execute(() -> {
+            JavaCVCameraController controller = cameraController;
+            if (controller == null || !controller.isRecordingActive()) {
+                logger.warn("当前未在录制或等待录制");
+                return;
+            }
+            try {
+                controller.stopRecording();
+                secondaryCameras.stopRecording();
+                // 停止后即可接受下一次START；等最后一个分段收尾完成再通知界面
+                controller.awaitFinalization(FINALIZATION_TIMEOUT_MS);
+                secondaryCameras.awaitFinalization(FINALIZATION_TIMEOUT_MS);
+
+                long droppedFrames = controller.getRecordingDroppedFrames();
+                int gapCount = controller.getRecordingGapCount();
+                if (droppedFrames > 0) {
+                    logger.warn("⚠️ 录制完成，检测到缺帧: {}处共{}帧", gapCount, droppedFrames);
+                }
+                logger.info("⏹️ 录制已停止: {}", currentRecordingPath);
+
+                if (!streamingUpload && uploadAfterStop && connected) {
+                    uploadRecording(currentRecordingFiles);
+                }
+                currentRecordingPath = null;
+                currentRecordingFiles = List.of();
+                listener.onRecordingStopped(droppedFrames, gapCount);
+            } catch (Exception e) {
+                logger.error("停止录制失败", e);
+                listener.onError("停止录制失败", e.getMessage());
+            }
+        });
+    }
+
+    // ==================== 文件与上传 ====================
+
+    /**
+     * 录制目录（~/RecSync）
+     */
+    public static Path recordingDirectory() {
+        return Paths.get(System.getProperty("user.home"), SyncConstants.DEFAULT_RECORDING_DIR);
+    }
+
+    /**
+     * 上传一个本地文件（阻塞），未连接时返回false
+     */
+    public boolean uploadFile(Path file) {
+        FileUploadClient client = uploadClient;
+        return connected && client != null && client.uploadFile(file);
+    }
+
+    /**
+     * 后台上传一次录制的所有文件（分段按序号上传，旁路文件随视频上传）
+     */
+    private void uploadRecording(List<Path> recordingFiles) {
+        FileUploadClient client = uploadClient;
+        if (client == null || recordingFiles.isEmpty()) {
+            return;
+        }
+        Thread uploader = new Thread(() -> {
+            for (Path file : recordingFiles) {
+                List<Path> parts = segmentsOf(file);
+                for (Path part : parts.isEmpty() ? List.of(file) : parts) {
+                    if (Files.exists(part) && !client.uploadFile(part)) {
+                        logger.warn("上传失败，保留本地文件: {}", part);
+                    }
+                }
+            }
+        }, "Recording-Upload");
+        uploader.setDaemon(true);
+        uploader.start();
+    }
+
+    /**
+     * 一次录制的本地分段文件（按序号排序），未分段时为空
+     */
+    private static List<Path> segmentsOf(Path recordingFile) {
+        String baseName = recordingFile.getFileName().toString();
+        try (Stream<Path> files = Files.list(recordingFile.getParent())) {
+            return files.filter(p -> baseName.equals(FileTransferProtocol.segmentBaseName(p.getFileName().toString())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            logger.warn("列出分段失败: {}", recordingFile, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * 覆盖模式：删除同名录制之前留下的分段和清单，避免与新分段混在一起
+     */
+    private static void deleteOldSegments(Path dir, String baseName) {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> baseName.equals(FileTransferProtocol.segmentBaseName(p.getFileName().toString())))
+                    .forEach(p -> {
+                        try {
+                            Files.deleteIfExists(p);
+                        } catch (IOException e) {
+                            logger.warn("删除旧分段失败: {}", p, e);
+                        }
+                    });
+            Files.deleteIfExists(SegmentManifest.pathFor(dir.resolve(baseName)));
+        } catch (IOException e) {
+            logger.warn("清理旧分段失败", e);
+        }
+    }
+
+    /**
+     * 默认的上传进度监听（只写日志），界面层可用 {@link #setUploadProgressListener} 替换
+     */
+    private static FileUploadClient.UploadProgressListener loggingUploadListener() {
+        return new FileUploadClient.UploadProgressListener() {
+            @Override
+            public void onUploadStarted(String fileName) {
+                logger.info("📤 开始上传: {}", fileName);
+            }
+
+            @Override
+            public void onUploadProgress(List<TransferProgressAggregator.Snapshot> transfers) {
+            }
+
+            @Override
+            public void onUploadCompleted(String fileName) {
+                logger.info("✅ 上传完成: {}", fileName);
+            }
+
+            @Override
+            public void onUploadFailed(String fileName, String error) {
+                logger.error("❌ 上传失败: {} - {}", fileName, error);
+            }
+        };
+    }
+
+    // ==================== 关闭 ====================
+
+    /**
+     * 停止录制、相机和网络服务
+     */
+    public void shutdown() {
+        try {
+            JavaCVCameraController controller = cameraController;
+            if (controller != null) {
+                if (controller.isRecordingActive()) {
+                    controller.stopRecording();
+                }
+                controller.stopCamera();
+            }
+            secondaryCameras.stopRecording();
+            secondaryCameras.stopAll();
+        } catch (Exception e) {
+            logger.error("关闭相机失败", e);
+        }
+        disconnect();
+        statusReporter.shutdownNow();
+        recordingControlExecutor.shutdown();
+    }
+}
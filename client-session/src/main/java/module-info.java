@@ -0,0 +1,6 @@
+module com.recsync.session {
+    requires transitive com.recsync.camera;
+    requires org.slf4j;
+
+    exports com.recsync.session;
+}
@@ -1,13 +1,17 @@
 package com.recsync.client;
 
-import com.recsync.client.camera.JavaCVCameraController;
+import com.recsync.camera.CameraDiscovery;
+import com.recsync.camera.GapPolicy;
+import com.recsync.camera.JavaCVCameraController;
+import com.recsync.camera.MultiCameraManager;
+import com.recsync.camera.PhaseAligner;
 import com.recsync.core.sync.ClientDiscoveryService;
-import com.recsync.core.sync.SoftwareSyncClient;
 import com.recsync.core.sync.SyncConstants;
 import com.recsync.core.transfer.FileUploadClient;
+import com.recsync.core.transfer.TransferProgressAggregator;
+import com.recsync.session.ClientSession;
 import javafx.application.Application;
 import javafx.application.Platform;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -15,33 +19,26 @@ import javafx.scene.control.*;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
-import org.bytedeco.javacv.Frame;
-import org.bytedeco.javacv.Java2DFrameConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 public class ClientApplication extends Application {
     private static final Logger logger = LoggerFactory.getLogger(ClientApplication.class);
+    private static final long PREVIEW_IDLE_CHECK_NS = TimeUnit.MILLISECONDS.toNanos(200);  // 预览暂停时的检查间隔
 
     // 服务
     private ClientDiscoveryService discoveryService;
-    private SoftwareSyncClient syncClient;
-    private JavaCVCameraController cameraController;
-    private FileUploadClient uploadClient;
-    private ScheduledExecutorService statusReporter;  // 状态上报定时器
+    private ClientSession session;  // 同步、RPC、录制控制和上传（与无界面客户端共用）
 
     // UI组件
     private TextField deviceNameField;
@@ -56,21 +53,19 @@ public class ClientApplication extends Application {
     private ListView<String> localFilesListView;
     private ProgressBar uploadProgressBar;
     private Label uploadStatusLabel;
+    private CheckBox streamingUploadCheckBox;  // 边录边传开关
+    private CheckBox localSegmentsCheckBox;    // 本地分段录制开关（默认录制为单个文件）
+    private CheckBox mjpegPassthroughCheckBox;  // MJPEG直通录制开关
+    private PreviewRenderer previewRenderer;  // 预览渲染（缩小后写入复用的WritableImage）
     private Label statusBarLabel; // 底部状态栏
 
     // 状态
     private volatile boolean running = false;
-    private volatile boolean isConnected = false;
-    private String currentRecordingPath = null;
     private String deviceName;
     private int selectedCameraIndex = 0;    // 当前选中的摄像头索引
     private List<Integer> availableCameras; // 可用摄像头列表
-    private String leaderIP = "";            // Leader IP地址
-
-    // 当前视频参数（由Leader设置）
-    private int currentVideoWidth = SyncConstants.DEFAULT_VIDEO_WIDTH;
-    private int currentVideoHeight = SyncConstants.DEFAULT_VIDEO_HEIGHT;
-    private int currentVideoFps = SyncConstants.DEFAULT_VIDEO_FPS;
+    private final CameraDiscovery cameraDiscovery = new CameraDiscovery(
+            Paths.get(System.getProperty("user.home"), "client_camera_cache.txt"));  // 摄像头发现（带缓存）
 
     @Override
     public void start(Stage primaryStage) {
@@ -90,6 +85,11 @@ public class ClientApplication extends Application {
         deviceName = loadOrGenerateDeviceName();
         primaryStage.setTitle("RecSync Client - " + deviceName);
 
+        // 多路相机：主摄像头之外的视角（~/client_cameras.txt，文件不存在时只有主摄像头）
+        session = new ClientSession(deviceName,
+                MultiCameraManager.loadConfig(Paths.get(System.getProperty("user.home"), "client_cameras.txt")),
+                createSessionListener());
+
         // 使用HBox作为根布局（左右分栏）
         HBox root = new HBox(15);
         root.setPadding(new Insets(15));
@@ -113,8 +113,10 @@ public class ClientApplication extends Application {
         primaryStage.setOnCloseRequest(e -> shutdown());
         primaryStage.show();
 
-        // 启动相机
+        // 清理上次异常退出遗留的预热录制器临时文件，然后启动相机
+        JavaCVCameraController.deleteStaleWarmRecorderFiles(ClientSession.recordingDirectory());
         initCamera();
+        session.startSecondaryCameras(selectedCameraIndex);
 
         // 自动发现并连接Leader
         Platform.runLater(this::autoDiscoverAndConnect);
@@ -259,7 +261,34 @@ public class ClientApplication extends Application {
         switchCameraBtn.setStyle("-fx-font-size: 11px; -fx-background-color: #95a5a6; " +
                                 "-fx-text-fill: white; -fx-background-radius: 4;");
 
-        cameraSelectBox.getChildren().addAll(cameraLabel, cameraComboBox, switchCameraBtn);
+        mjpegPassthroughCheckBox = new CheckBox("MJPEG直通");
+        mjpegPassthroughCheckBox.setStyle("-fx-font-size: 11px;");
+        mjpegPassthroughCheckBox.setTooltip(new Tooltip(
+                "相机原生输出MJPEG时直接封装压缩帧，不解码也不重新编码（仅Linux，预览降为低帧率）"));
+        mjpegPassthroughCheckBox.setOnAction(e -> toggleMjpegPassthrough());
+
+        Label previewFpsLabel = new Label("预览:");
+        previewFpsLabel.setStyle("-fx-font-size: 11px; -fx-text-fill: #7f8c8d;");
+        ComboBox<Integer> previewFpsComboBox = new ComboBox<>();
+        previewFpsComboBox.getItems().addAll(30, 15, 10, 5);
+        previewFpsComboBox.setValue((int) PreviewRenderer.DEFAULT_PREVIEW_FPS);
+        previewFpsComboBox.setStyle("-fx-font-size: 11px;");
+        previewFpsComboBox.setTooltip(new Tooltip(String.format(
+                "预览帧率（fps），录制期间自动降到 %.0f fps", PreviewRenderer.DEFAULT_RECORDING_PREVIEW_FPS)));
+        previewFpsComboBox.setOnAction(e -> previewRenderer.setPreviewFps(previewFpsComboBox.getValue()));
+
+        Label gapPolicyLabel = new Label("缺帧:");
+        gapPolicyLabel.setStyle("-fx-font-size: 11px; -fx-text-fill: #7f8c8d;");
+        ComboBox<GapPolicy> gapPolicyComboBox = new ComboBox<>();
+        gapPolicyComboBox.getItems().addAll(GapPolicy.values());
+        gapPolicyComboBox.setValue(GapPolicy.LEAVE_GAP);
+        gapPolicyComboBox.setStyle("-fx-font-size: 11px;");
+        gapPolicyComboBox.setTooltip(new Tooltip(
+                "录制中检测到缺帧时的处理方式（下次录制生效）；缺帧数与位置均会上报Leader并写入 .gaps 报告"));
+        gapPolicyComboBox.setOnAction(e -> session.setGapPolicy(gapPolicyComboBox.getValue()));
+
+        cameraSelectBox.getChildren().addAll(cameraLabel, cameraComboBox, switchCameraBtn, mjpegPassthroughCheckBox,
+                previewFpsLabel, previewFpsComboBox, gapPolicyLabel, gapPolicyComboBox);
 
         // 预览图像容器（使用StackPane支持自适应）
         StackPane previewPane = new StackPane();
@@ -270,6 +299,7 @@ public class ClientApplication extends Application {
         previewView = new ImageView();
         previewView.setPreserveRatio(true);
         previewView.setSmooth(true);
+        previewRenderer = new PreviewRenderer(previewView);
 
         // 双向绑定预览图像大小到容器大小（修复缩小bug）
         previewPane.widthProperty().addListener((obs, oldVal, newVal) -> {
@@ -289,38 +319,15 @@ public class ClientApplication extends Application {
                 logger.info("开始检测可用摄像头...");
                 Platform.runLater(() -> updateStatusBar("正在检测摄像头..."));
 
-                availableCameras = JavaCVCameraController.getAvailableCameras();
-                logger.info("检测到 {} 个摄像头", availableCameras.size());
+                // 元数据枚举 + 缓存 + 并行验证；启动时已打开的摄像头不重复打开
+                Set<Integer> inUse = Set.of(selectedCameraIndex);
+                List<CameraDiscovery.CameraInfo> cameras = cameraDiscovery.discover(inUse);
+                logger.info("检测到 {} 个摄像头", cameras.size());
+                Platform.runLater(() -> populateCameraList(cameras));
 
-                Platform.runLater(() -> {
-                    // 填充摄像头下拉框
-                    cameraComboBox.getItems().clear();
-                    for (int index : availableCameras) {
-                        cameraComboBox.getItems().add("摄像头 " + index);
-                    }
-
-                    // 智能单/多摄像头模式
-                    if (availableCameras.size() == 1) {
-                        // 单摄像头模式：禁用切换功能
-                        cameraComboBox.getSelectionModel().selectFirst();
-                        cameraComboBox.setDisable(true);
-                        switchCameraBtn.setDisable(true);
-                        updateStatusBar("检测完成：单摄像头模式");
-                    } else if (availableCameras.size() > 1) {
-                        // 多摄像头模式：启用切换功能
-                        cameraComboBox.getSelectionModel().selectFirst();
-                        cameraComboBox.setDisable(false);
-                        switchCameraBtn.setDisable(false);
-                        updateStatusBar(String.format("检测完成：找到 %d 个摄像头", availableCameras.size()));
-                    } else {
-                        // 检测失败
-                        cameraComboBox.setPromptText("摄像头 0（自动）");
-                        cameraComboBox.setDisable(true);
-                        switchCameraBtn.setDisable(true);
-                        updateStatusBar("摄像头检测失败，将使用默认摄像头");
-                        logger.warn("未检测到任何摄像头，将尝试使用默认摄像头0");
-                    }
-                });
+                // 后台重新验证（缓存可能已过时），列表变化时刷新下拉框
+                cameraDiscovery.refreshInBackground(inUse, cameras,
+                        updated -> Platform.runLater(() -> populateCameraList(updated)));
 
             } catch (Exception e) {
                 logger.error("检测摄像头时发生异常", e);
@@ -344,6 +351,39 @@ public class ClientApplication extends Application {
         return panel;
     }
 
+    /**
+     * 用检测结果填充摄像头下拉框（FX线程）
+     */
+    private void populateCameraList(List<CameraDiscovery.CameraInfo> cameras) {
+        availableCameras = cameras.stream().map(CameraDiscovery.CameraInfo::index).toList();
+        cameraComboBox.getItems().clear();
+        for (CameraDiscovery.CameraInfo camera : cameras) {
+            cameraComboBox.getItems().add(camera.displayName());
+        }
+
+        // 智能单/多摄像头模式
+        if (availableCameras.size() == 1) {
+            // 单摄像头模式：禁用切换功能
+            cameraComboBox.getSelectionModel().select(Math.max(0, availableCameras.indexOf(selectedCameraIndex)));
+            cameraComboBox.setDisable(true);
+            switchCameraBtn.setDisable(true);
+            updateStatusBar("检测完成：单摄像头模式");
+        } else if (availableCameras.size() > 1) {
+            // 多摄像头模式：启用切换功能
+            cameraComboBox.getSelectionModel().select(Math.max(0, availableCameras.indexOf(selectedCameraIndex)));
+            cameraComboBox.setDisable(false);
+            switchCameraBtn.setDisable(false);
+            updateStatusBar(String.format("检测完成：找到 %d 个摄像头", availableCameras.size()));
+        } else {
+            // 检测失败
+            cameraComboBox.setPromptText("摄像头 0（自动）");
+            cameraComboBox.setDisable(true);
+            switchCameraBtn.setDisable(true);
+            updateStatusBar("摄像头检测失败，将使用默认摄像头");
+            logger.warn("未检测到任何摄像头，将尝试使用默认摄像头0");
+        }
+    }
+
     private VBox createUploadPanel() {
         VBox panel = new VBox(10);
         panel.setPadding(new Insets(15));
@@ -391,7 +431,17 @@ public class ClientApplication extends Application {
         uploadStatusLabel = new Label("上传状态: 无");
         uploadStatusLabel.setStyle("-fx-font-size: 11px; -fx-text-fill: #7f8c8d;");
 
-        panel.getChildren().addAll(title, buttonBox, localFilesListView,
+        streamingUploadCheckBox = new CheckBox(String.format("边录边传（每%d秒上传一个分段）",
+                SyncConstants.STREAMING_SEGMENT_SECONDS));
+        streamingUploadCheckBox.setStyle("-fx-font-size: 11px;");
+        streamingUploadCheckBox.setOnAction(e -> session.setStreamingUpload(streamingUploadCheckBox.isSelected()));
+
+        localSegmentsCheckBox = new CheckBox(String.format("本地分段录制（每%d秒一个分段，崩溃时最多丢失一个分段）",
+                SyncConstants.RECORDING_SEGMENT_SECONDS));
+        localSegmentsCheckBox.setStyle("-fx-font-size: 11px;");
+        localSegmentsCheckBox.setOnAction(e -> session.setLocalSegments(localSegmentsCheckBox.isSelected()));
+
+        panel.getChildren().addAll(title, buttonBox, streamingUploadCheckBox, localSegmentsCheckBox, localFilesListView,
                 uploadProgressBar, uploadStatusLabel);
         return panel;
     }
@@ -414,30 +464,31 @@ public class ClientApplication extends Application {
     }
 
     private void startPreviewLoop() {
-        Java2DFrameConverter converter = new Java2DFrameConverter();
-
         while (running) {
             try {
-                // 使用带时间戳的帧（软录制模式）
-                JavaCVCameraController.TimestampedFrame tsFrame = cameraController.grabTimestampedFrame();
-                if (tsFrame != null && tsFrame.frame != null && tsFrame.frame.image != null) {
-                    // 软录制：根据触发时间自动决定是否写入
-                    cameraController.processFrame(tsFrame);
-
-                    // 更新预览
-                    BufferedImage bufferedImage = converter.convert(tsFrame.frame);
-                    if (bufferedImage != null) {
-                        Platform.runLater(() ->
-                                previewView.setImage(
-                                        SwingFXUtils.toFXImage(bufferedImage, null)
-                                )
-                        );
-                    }
+                // 切换采集参数失败时会话会以新参数重建控制器，每次都取当前的控制器
+                JavaCVCameraController controller = session.getCameraController();
+                if (controller == null || !controller.isRunning()) {
+                    LockSupport.parkNanos(PREVIEW_IDLE_CHECK_NS);
+                    continue;
+                }
+
+                // 按预览帧率节流：未到时间不取帧（录制期间自动降帧或暂停）
+                long waitNs = previewRenderer.nanosUntilNextFrame(controller.isRecordingActive());
+                if (waitNs > 0) {
+                    LockSupport.parkNanos(Math.min(waitNs, PREVIEW_IDLE_CHECK_NS));
+                    continue;
                 }
 
-                // 根据当前帧率计算休眠时间
-                int sleepMs = 1000 / currentVideoFps;
-                Thread.sleep(sleepMs);
+                // 采集和录制由相机控制器的独立线程完成，这里只取最新一帧做预览
+                JavaCVCameraController.TimestampedFrame tsFrame = controller.awaitPreviewFrame(1000);
+                if (tsFrame != null) {
+                    try {
+                        previewRenderer.render(tsFrame.frame);
+                    } finally {
+                        tsFrame.release();  // 归还帧池
+                    }
+                }
             } catch (Exception e) {
                 if (running) {
                     logger.error("帧处理失败", e);
@@ -479,26 +530,20 @@ public class ClientApplication extends Application {
             return;
         }
 
-        String oldName = deviceName;
-
         // 保存到文件
         if (saveDeviceNameToFile(newName)) {
             deviceName = newName;
 
             // 如果已连接，通知Leader更新设备名称（无需重新连接）
-            if (isConnected && syncClient != null) {
-                try {
-                    // 发送名称更新RPC: oldName|newName
-                    String payload = oldName + "|" + newName;
-                    syncClient.sendRpcToLeader(SyncConstants.METHOD_UPDATE_CLIENT_NAME, payload);
+            try {
+                if (session.renameDevice(newName)) {
                     updateStatusBarSuccess("设备名称已更新: " + deviceName);
-                    logger.info("已通知Leader更新设备名称: {} -> {}", oldName, deviceName);
-                } catch (Exception e) {
-                    logger.error("通知Leader更新名称失败", e);
-                    showWarning("设备名称已保存，但通知Leader失败，建议重新连接");
+                } else {
+                    updateStatusBarSuccess("设备名称已保存: " + deviceName);
                 }
-            } else {
-                updateStatusBarSuccess("设备名称已保存: " + deviceName);
+            } catch (Exception e) {
+                logger.error("通知Leader更新名称失败", e);
+                showWarning("设备名称已保存，但通知Leader失败，建议重新连接");
             }
         }
     }
@@ -518,15 +563,11 @@ public class ClientApplication extends Application {
 
     private void reconnectWithNewName() {
         // 断开当前连接
-        if (syncClient != null) {
-            syncClient.stop();
-        }
+        session.disconnect();
         if (discoveryService != null) {
             discoveryService.stop();
         }
 
-        isConnected = false;
-
         // 重新自动发现并连接
         Platform.runLater(this::autoDiscoverAndConnect);
     }
@@ -552,14 +593,10 @@ public class ClientApplication extends Application {
         connectionStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #3498db;");
 
         // 断开之前的连接
-        if (syncClient != null) {
-            syncClient.stop();
-            syncClient = null;
-        }
+        session.disconnect();
         if (discoveryService != null) {
             discoveryService.stop();
         }
-        isConnected = false;
 
         // 连接到指定IP
         connectToLeader(ip);
@@ -603,67 +640,23 @@ public class ClientApplication extends Application {
     }
 
     private void connectToLeader(String leaderIP) {
+        // 更新UI显示同步开始
+        syncProgressLabel.setText("🕐 时钟同步: 开始同步...");
+        syncProgressLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #3498db;");
+        syncProgressBar.setProgress(0);
+        syncProgressBar.setStyle("-fx-accent: #3498db;");
+
         new Thread(() -> {
             try {
-                InetAddress leaderAddr = InetAddress.getByName(leaderIP);
-                this.leaderIP = leaderIP;  // 保存Leader IP
-
-                // Client使用独立端口，避免与Leader冲突
-                syncClient = new SoftwareSyncClient(
-                        leaderAddr,
-                        deviceName,
-                        SyncConstants.CLIENT_RPC_PORT,  // Client使用8247端口
-                        this::handleRpcCallback
-                );
-
-                // 设置同步进度监听器
-                syncClient.setSyncProgressListener(new SoftwareSyncClient.SyncProgressListener() {
-                    @Override
-                    public void onSyncProgress(int current, int total, double offsetMs) {
-                        Platform.runLater(() -> {
-                            double progress = (double) current / total;
-                            syncProgressBar.setProgress(progress);
-                            syncProgressLabel.setText(String.format("🕐 时钟同步: %d/%d (%.0f%%)",
-                                    current, total, progress * 100));
-                            syncProgressLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #3498db;");
-                        });
-                    }
-
-                    @Override
-                    public void onSyncComplete(double offsetMs, double minRttMs, double maxRttMs) {
-                        Platform.runLater(() -> {
-                            syncProgressBar.setProgress(1.0);
-                            syncProgressBar.setStyle("-fx-accent: #27ae60;");  // 绿色
-                            syncProgressLabel.setText(String.format("✅ 时钟已同步 (偏移: %.2fms, RTT: %.1f-%.1fms)",
-                                    offsetMs, minRttMs, maxRttMs));
-                            syncProgressLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #27ae60; -fx-font-weight: bold;");
-                        });
-                    }
-                });
-
-                // 更新UI显示同步开始
-                Platform.runLater(() -> {
-                    syncProgressLabel.setText("🕐 时钟同步: 开始同步...");
-                    syncProgressLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #3498db;");
-                    syncProgressBar.setProgress(0);
-                    syncProgressBar.setStyle("-fx-accent: #3498db;");
-                });
-
-                // 初始化上传客户端
-                uploadClient = new FileUploadClient(leaderIP, deviceName);
-                uploadClient.setProgressListener(createUploadProgressListener());
+                // 同步、状态上报和上传客户端由会话创建
+                session.setUploadProgressListener(createUploadProgressListener());
+                session.connect(leaderIP);
 
-                isConnected = true;
                 Platform.runLater(() -> {
                     connectionStatusLabel.setText(String.format("✅ 已连接到 Leader (%s)", leaderIP));
                     connectionStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #27ae60; -fx-font-weight: bold;");
                 });
 
-                // 启动状态上报定时器（每秒上报一次）
-                startStatusReporter();
-
-                logger.info("✅ 已连接到Leader: {}", leaderIP);
-
             } catch (Exception e) {
                 logger.error("连接Leader失败", e);
                 Platform.runLater(() -> {
@@ -677,301 +670,118 @@ public class ClientApplication extends Application {
         }).start();
     }
 
-    private void handleRpcCallback(int method, String payload, InetAddress fromAddress) {
-        logger.debug("收到RPC: method={}, payload={}, from={}", method, payload, fromAddress.getHostAddress());
-
-        switch (method) {
-            case SyncConstants.METHOD_START_RECORDING:
-                // payload 格式: triggerTimeNs|batchId|width|height|fps|subjectId|movementId|episodeId
-                try {
-                    String[] parts = payload.split("\\|");
-                    if (parts.length >= 8) {
-                        // 新格式：包含触发时间、受试者、动作、回合信息
-                        long triggerTimeNs = Long.parseLong(parts[0]);
-                        String batchId = parts[1];
-                        int width = Integer.parseInt(parts[2]);
-                        int height = Integer.parseInt(parts[3]);
-                        int fps = Integer.parseInt(parts[4]);
-                        String subjectId = parts[5];
-                        String movementId = parts[6];
-                        String episodeId = parts[7];
-
-                        // 将 Leader 时域的触发时间转换为本地时域
-                        long localTriggerTimeNs = syncClient.localTimeForLeaderTimeNs(triggerTimeNs);
-
-                        Platform.runLater(() -> startRecording(batchId, width, height, fps,
-                                                               subjectId, movementId, episodeId, localTriggerTimeNs));
-                    } else if (parts.length >= 7) {
-                        // 旧格式：包含受试者、动作、回合信息（无触发时间）
-                        String batchId = parts[0];
-                        int width = Integer.parseInt(parts[1]);
-                        int height = Integer.parseInt(parts[2]);
-                        int fps = Integer.parseInt(parts[3]);
-                        String subjectId = parts[4];
-                        String movementId = parts[5];
-                        String episodeId = parts[6];
-                        Platform.runLater(() -> startRecording(batchId, width, height, fps,
-                                                               subjectId, movementId, episodeId, 0));
-                    } else if (parts.length == 4) {
-                        // 旧格式：仅视频参数
-                        String batchId = parts[0];
-                        int width = Integer.parseInt(parts[1]);
-                        int height = Integer.parseInt(parts[2]);
-                        int fps = Integer.parseInt(parts[3]);
-                        Platform.runLater(() -> startRecording(batchId, width, height, fps,
-                                                               "", "", "", 0));
-                    } else {
-                        // 兼容最旧格式（只有batchId）
-                        Platform.runLater(() -> startRecording(payload,
-                            SyncConstants.DEFAULT_VIDEO_WIDTH,
-                            SyncConstants.DEFAULT_VIDEO_HEIGHT,
-                            SyncConstants.DEFAULT_VIDEO_FPS,
-                            "", "", "", 0));
-                    }
-                } catch (Exception e) {
-                    logger.error("解析录制参数失败: {}", payload, e);
-                    Platform.runLater(() ->
-                        showError("参数错误", "无法解析录制参数: " + e.getMessage())
-                    );
-                }
-                break;
-            case SyncConstants.METHOD_STOP_RECORDING:
-                Platform.runLater(this::stopRecording);
-                break;
-            case SyncConstants.METHOD_DO_PHASE_ALIGN:
-                logger.info("收到相位对齐命令");
-                updateStatusBar("收到相位对齐命令");
-                break;
-            case SyncConstants.METHOD_MSG_NAME_CONFLICT:
-                logger.error("设备名称冲突: {}", payload);
+    /**
+     * 会话事件 → 界面（回调在会话的后台线程中，统一切换到FX线程）
+     */
+    private ClientSession.Listener createSessionListener() {
+        return new ClientSession.Listener() {
+            @Override
+            public void onSyncProgress(int current, int total) {
+                Platform.runLater(() -> {
+                    double progress = (double) current / total;
+                    syncProgressBar.setProgress(progress);
+                    syncProgressLabel.setText(String.format("🕐 时钟同步: %d/%d (%.0f%%)",
+                            current, total, progress * 100));
+                    syncProgressLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #3498db;");
+                });
+            }
+
+            @Override
+            public void onSyncComplete(double offsetMs, double minRttMs, double maxRttMs) {
+                Platform.runLater(() -> {
+                    syncProgressBar.setProgress(1.0);
+                    syncProgressBar.setStyle("-fx-accent: #27ae60;");  // 绿色
+                    syncProgressLabel.setText(String.format("✅ 时钟已同步 (偏移: %.2fms, RTT: %.1f-%.1fms)",
+                            offsetMs, minRttMs, maxRttMs));
+                    syncProgressLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #27ae60; -fx-font-weight: bold;");
+                });
+            }
+
+            @Override
+            public void onNameConflict(String message) {
                 Platform.runLater(() -> {
                     connectionStatusLabel.setText("状态: 连接被拒绝 - 设备名称冲突 ❌");
                     connectionStatusLabel.setStyle("-fx-text-fill: red;");
-                    showError("设备名称冲突", payload + "\n\n请修改设备名称后重试。");
-
-                    // 断开连接
-                    if (syncClient != null) {
-                        syncClient.stop();
-                        syncClient = null;
-                    }
-                    isConnected = false;
+                    showError("设备名称冲突", message + "\n\n请修改设备名称后重试。");
                 });
-                break;
-            case SyncConstants.METHOD_MSG_MAX_CLIENTS_REACHED:
-                logger.error("服务器已达到最大客户端数: {}", payload);
+            }
+
+            @Override
+            public void onServerFull(String message) {
                 Platform.runLater(() -> {
                     connectionStatusLabel.setText("状态: 连接被拒绝 - 服务器已满 ❌");
                     connectionStatusLabel.setStyle("-fx-text-fill: red;");
-                    showError("无法连接", payload);
-
-                    // 断开连接
-                    if (syncClient != null) {
-                        syncClient.stop();
-                        syncClient = null;
-                    }
-                    isConnected = false;
+                    showError("无法连接", message);
                 });
-                break;
-        }
-    }
-
-    private void startRecording(String batchId, int width, int height, int fps,
-                               String subjectId, String movementId, String episodeId, long triggerTimeNs) {
-        // 检查摄像头是否已初始化
-        if (cameraController == null) {
-            logger.error("摄像头未初始化，无法开始录制");
-            showError("录制失败", "摄像头未初始化，请先选择摄像头");
-            return;
-        }
-
-        if (cameraController.isRecordingActive()) {
-            logger.warn("已经在录制中或等待触发");
-            return;
-        }
-
-        new Thread(() -> {
-            try {
-                // 等待摄像头启动完成（最多等待5秒）
-                int waitCount = 0;
-                while (!cameraController.isRunning() && waitCount < 50) {
-                    logger.info("等待摄像头启动... ({}/50)", waitCount + 1);
-                    Thread.sleep(100);
-                    waitCount++;
-                }
-
-                if (!cameraController.isRunning()) {
-                    logger.error("摄像头启动超时，无法开始录制");
-                    Platform.runLater(() -> showError("录制失败", "摄像头启动超时，请检查摄像头状态"));
-                    return;
-                }
-
-                // 检查视频参数是否改变
-                boolean paramsChanged = (width != currentVideoWidth ||
-                                        height != currentVideoHeight ||
-                                        fps != currentVideoFps);
-
-                if (paramsChanged) {
-                    logger.info("视频参数已改变: {}x{} @ {}fps -> {}x{} @ {}fps",
-                        currentVideoWidth, currentVideoHeight, currentVideoFps,
-                        width, height, fps);
-
-                    // 更新当前参数
-                    currentVideoWidth = width;
-                    currentVideoHeight = height;
-                    currentVideoFps = fps;
-
-                    // 重新初始化摄像头
-                    Platform.runLater(() ->
-                        updateStatusBar(String.format("正在应用新视频参数: %dx%d @ %dfps...",
-                            width, height, fps))
-                    );
-
-                    // 停止预览循环
-                    running = false;
-                    Thread.sleep(500);
-
-                    // 停止当前摄像头
-                    if (cameraController != null) {
-                        cameraController.stopCamera();
-                    }
-                    Thread.sleep(300);
-
-                    // 使用新参数重新初始化摄像头
-                    cameraController = new JavaCVCameraController(width, height, fps);
-
-                    // 设置同步时钟提供者
-                    cameraController.setSyncClockSupplier(() -> {
-                        if (syncClient != null && syncClient.isSynced()) {
-                            return syncClient.getLeaderTimeNs();
-                        } else {
-                            return System.nanoTime();
-                        }
-                    });
-
-                    cameraController.startCamera(selectedCameraIndex);
-                    running = true;
-
-                    // 重启预览循环
-                    new Thread(this::startPreviewLoop, "Camera-Preview-Thread").start();
-
-                    Platform.runLater(() ->
-                        updateStatusBarSuccess(String.format("视频参数已更新: %dx%d @ %dfps",
-                            width, height, fps))
-                    );
-                }
-
-                // 生成时间戳
-                String timestamp = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
-
-                // 文件命名格式: {subjectId}_{movementId}_{episodeId}_{deviceName}.mp4
-                // 例如: s01_m01_e1_front.mp4
-                // FileReceiveServer会解析并存放到: {archive}/{subject}/{action}_{episode}/{device}.mp4
-                String filename;
-                if (!subjectId.isEmpty() && !movementId.isEmpty() && !episodeId.isEmpty()) {
-                    filename = String.format("%s_%s_%s_%s.mp4",
-                        subjectId, movementId, episodeId, deviceName);
-                } else {
-                    // 回退到旧格式（包含时间戳）
-                    filename = String.format("%s_%s_batch%s.mp4",
-                        deviceName, timestamp, batchId.replace(":", "").replace("-", ""));
-                }
-
-                Path recSyncDir = Paths.get(System.getProperty("user.home"),
-                        SyncConstants.DEFAULT_RECORDING_DIR);
-                Files.createDirectories(recSyncDir);
-
-                currentRecordingPath = recSyncDir.resolve(filename).toString();
-
-                // 如果文件存在，先删除（覆盖模式）
-                Path targetPath = Paths.get(currentRecordingPath);
-                if (Files.exists(targetPath)) {
-                    Files.delete(targetPath);
-                    logger.info("覆盖模式：已删除旧文件 {}", currentRecordingPath);
-                }
+            }
 
-                // 软录制模式：设置触发时间，由预览循环自动检测帧时间戳
-                if (triggerTimeNs > 0) {
-                    long waitTimeMs = (triggerTimeNs - cameraController.getSyncTimeNs()) / 1_000_000;
-                    logger.info("🎬 软录制模式: 设置触发时间, 预计{}ms后开始", waitTimeMs);
-                    Platform.runLater(() -> updateStatusBar(String.format("等待同步触发... (约%dms)", waitTimeMs)));
+            @Override
+            public void onStatus(String message) {
+                updateStatusBar(message);
+            }
 
-                    // 使用软录制：设置触发时间，预览循环会自动检测并开始写入
-                    cameraController.prepareRecording(currentRecordingPath, triggerTimeNs);
-                } else {
-                    // 无触发时间，使用硬录制模式（立即开始）
-                    logger.info("🎬 硬录制模式: 立即开始");
-                    cameraController.startRecording(currentRecordingPath);
-                }
+            @Override
+            public void onError(String title, String message) {
+                Platform.runLater(() -> showError(title, message));
+            }
 
-                String finalFilename = filename;
+            @Override
+            public void onRecordingStarted(ClientSession.RecordingRequest request, String fileName) {
                 Platform.runLater(() -> {
-                    String displayInfo = !episodeId.isEmpty() ?
+                    String displayInfo = !request.episodeId().isEmpty() ?
                         String.format("🔴 录制中 - %s (受试者:%s 动作:%s 回合:%s)",
-                            finalFilename, subjectId, movementId, episodeId) :
+                            fileName, request.subjectId(), request.movementId(), request.episodeId()) :
                         String.format("🔴 录制中 - %s (%dx%d @ %dfps)",
-                            finalFilename, width, height, fps);
+                            fileName, request.width(), request.height(), request.fps());
 
                     recordingStatusLabel.setText(displayInfo);
                     recordingStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #e74c3c; -fx-font-weight: bold;");
 
-                    String statusMsg = !episodeId.isEmpty() ?
+                    String statusMsg = !request.episodeId().isEmpty() ?
                         String.format("开始录制 - 受试者:%s 动作:%s 回合:%s",
-                            subjectId, movementId, episodeId) :
-                        String.format("开始录制 - 批次: %s | %dx%d @ %dfps", batchId, width, height, fps);
+                            request.subjectId(), request.movementId(), request.episodeId()) :
+                        String.format("开始录制 - 批次: %s | %dx%d @ %dfps",
+                            request.batchId(), request.width(), request.height(), request.fps());
                     updateStatusBar(statusMsg);
                 });
-
-                logger.info("🎬 开始录制: {} (参数: {}x{} @ {}fps, 受试者:{}, 动作:{}, 回合:{})",
-                    currentRecordingPath, width, height, fps, subjectId, movementId, episodeId);
-
-            } catch (Exception e) {
-                logger.error("开始录制失败", e);
-                Platform.runLater(() ->
-                        showError("录制失败", e.getMessage())
-                );
             }
-        }).start();
-    }
-
-    private void stopRecording() {
-        if (cameraController == null) {
-            logger.warn("摄像头未初始化");
-            return;
-        }
-
-        if (!cameraController.isRecordingActive()) {
-            logger.warn("当前未在录制或等待录制");
-            return;
-        }
-
-        new Thread(() -> {
-            try {
-                cameraController.stopRecording();
 
+            @Override
+            public void onRecordingStopped(long droppedFrames, int gapCount) {
                 Platform.runLater(() -> {
                     recordingStatusLabel.setText("⚫ 未录制");
                     recordingStatusLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #7f8c8d; -fx-font-weight: normal;");
                     refreshLocalFiles();
-                    updateStatusBarSuccess("录制完成 - 视频已保存");
+                    if (droppedFrames > 0) {
+                        updateStatusBar(String.format("⚠️ 录制完成 - 检测到缺帧: %d处共%d帧", gapCount, droppedFrames));
+                    } else {
+                        updateStatusBarSuccess("录制完成 - 视频已保存");
+                    }
                 });
+            }
 
-                logger.info("⏹️ 录制已停止: {}", currentRecordingPath);
-                currentRecordingPath = null;
+            @Override
+            public void onCaptureFormatChanged(int width, int height, int fps) {
+                updateStatusBarSuccess(String.format("视频参数已更新: %dx%d @ %dfps", width, height, fps));
+            }
 
-            } catch (Exception e) {
-                logger.error("停止录制失败", e);
-                Platform.runLater(() ->
-                        showError("停止录制失败", e.getMessage())
-                );
+            @Override
+            public void onPhaseAligned(PhaseAligner.Result result) {
+                if (result.state() == PhaseAligner.State.ALIGNED) {
+                    updateStatusBarSuccess(
+                            String.format("相位已对齐: 误差 %.2fms (%s)", result.errorMs(), result.method()));
+                } else {
+                    updateStatusBar(String.format("⚠️ 相位对齐未完成: %s, 误差 %.2fms",
+                            result.state(), result.errorMs()));
+                }
             }
-        }).start();
+        };
     }
 
     private void refreshLocalFiles() {
         localFilesListView.getItems().clear();
 
-        Path recSyncDir = Paths.get(System.getProperty("user.home"),
-                SyncConstants.DEFAULT_RECORDING_DIR);
+        Path recSyncDir = ClientSession.recordingDirectory();
         if (!Files.exists(recSyncDir)) {
             return;
         }
@@ -1004,7 +814,7 @@ public class ClientApplication extends Application {
     }
 
     private void uploadSelectedFile() {
-        if (!isConnected) {
+        if (!session.isConnected()) {
             showWarning("请先连接到Leader");
             return;
         }
@@ -1016,15 +826,13 @@ public class ClientApplication extends Application {
         }
 
         String fileName = selected.split(" \\(")[0];
-        Path filePath = Paths.get(System.getProperty("user.home"),
-                SyncConstants.DEFAULT_RECORDING_DIR,
-                fileName);
+        Path filePath = ClientSession.recordingDirectory().resolve(fileName);
 
-        new Thread(() -> uploadClient.uploadFile(filePath)).start();
+        new Thread(() -> session.uploadFile(filePath)).start();
     }
 
     private void uploadAllFiles() {
-        if (!isConnected) {
+        if (!session.isConnected()) {
             showWarning("请先连接到Leader");
             return;
         }
@@ -1051,13 +859,14 @@ public class ClientApplication extends Application {
 
     private void uploadAllFilesSequentially() {
         new Thread(() -> {
-            Path recSyncDir = Paths.get(System.getProperty("user.home"),
-                    SyncConstants.DEFAULT_RECORDING_DIR);
+            Path recSyncDir = ClientSession.recordingDirectory();
             try {
+                // 按文件名排序，保证同一录制的分段按序号上传（序号0会清空服务器上的旧分段）
                 Files.list(recSyncDir)
                         .filter(p -> p.toString().endsWith(".mp4"))
+                        .sorted()
                         .forEach(path -> {
-                            uploadClient.uploadFile(path);
+                            session.uploadFile(path);
                             try {
                                 Thread.sleep(500);
                             } catch (InterruptedException e) {
@@ -1077,8 +886,7 @@ public class ClientApplication extends Application {
 
     private void openRecordingDirectory() {
         try {
-            Path recSyncDir = Paths.get(System.getProperty("user.home"),
-                    SyncConstants.DEFAULT_RECORDING_DIR);
+            Path recSyncDir = ClientSession.recordingDirectory();
             Files.createDirectories(recSyncDir);
 
             if (java.awt.Desktop.isDesktopSupported()) {
@@ -1099,15 +907,26 @@ public class ClientApplication extends Application {
                 });
             }
 
-            public void onUploadProgress(long bytesUploaded, long totalBytes, double percentage) {
+            public void onUploadProgress(List<TransferProgressAggregator.Snapshot> transfers) {
+                // 每个采样周期只提交一次UI更新
+                long uploaded = 0;
+                long total = 0;
+                double speed = 0;
+                for (TransferProgressAggregator.Snapshot s : transfers) {
+                    uploaded += s.bytesTransferred();
+                    total += s.totalBytes();
+                    speed += s.bytesPerSecond();
+                }
+                double progress = total > 0 ? (double) uploaded / total : 0;
+                String text = String.format("正在上传: %.1f%% (%.2f/%.2f MB, %.1f MB/s)",
+                        progress * 100,
+                        uploaded / 1024.0 / 1024.0,
+                        total / 1024.0 / 1024.0,
+                        speed / 1024.0 / 1024.0);
+
                 Platform.runLater(() -> {
-                    uploadProgressBar.setProgress(percentage / 100.0);
-                    uploadStatusLabel.setText(
-                            String.format("正在上传: %.1f%% (%.2f/%.2f MB)",
-                                    percentage,
-                                    bytesUploaded / 1024.0 / 1024.0,
-                                    totalBytes / 1024.0 / 1024.0)
-                    );
+                    uploadProgressBar.setProgress(progress);
+                    uploadStatusLabel.setText(text);
                 });
             }
 
@@ -1134,75 +953,49 @@ public class ClientApplication extends Application {
         logger.info("正在关闭Client应用...");
         running = false;
 
-        try {
-            if (cameraController != null) {
-                if (cameraController.isRecordingActive()) {
-                    cameraController.stopRecording();
-                }
-                cameraController.stopCamera();
-            }
-        } catch (Exception e) {
-            logger.error("关闭相机失败", e);
-        }
-
-        if (syncClient != null) {
-            syncClient.stop();
-        }
+        session.shutdown();
         if (discoveryService != null) {
             discoveryService.stop();
         }
-        stopStatusReporter();
 
         Platform.exit();
         System.exit(0);
     }
 
     /**
-     * 启动状态上报定时器
+     * 主摄像头是否正在录制或等待触发
      */
-    private void startStatusReporter() {
-        stopStatusReporter();  // 确保没有重复的定时器
-        statusReporter = Executors.newSingleThreadScheduledExecutor();
-        statusReporter.scheduleAtFixedRate(() -> {
-            try {
-                if (syncClient != null && isConnected) {
-                    int cameraStatus = getCurrentCameraStatus();
-                    boolean synced = syncClient.isSynced();
-                    int syncProgress = syncClient.getSyncProgress();
-                    // payload格式: deviceName|cameraStatus|synced|syncProgress
-                    String payload = deviceName + "|" + cameraStatus + "|" + synced + "|" + syncProgress;
-                    syncClient.sendRpcToLeader(SyncConstants.METHOD_CLIENT_STATUS, payload);
-                }
-            } catch (Exception e) {
-                logger.debug("状态上报失败: {}", e.getMessage());
-            }
-        }, 0, 1, TimeUnit.SECONDS);
-        logger.info("状态上报已启动");
+    private boolean isRecordingActive() {
+        JavaCVCameraController controller = session.getCameraController();
+        return controller != null && controller.isRecordingActive();
     }
 
     /**
-     * 停止状态上报定时器
+     * 切换MJPEG直通模式（需要重启摄像头）
      */
-    private void stopStatusReporter() {
-        if (statusReporter != null) {
-            statusReporter.shutdownNow();
-            statusReporter = null;
-            logger.info("状态上报已停止");
+    private void toggleMjpegPassthrough() {
+        if (isRecordingActive()) {
+            mjpegPassthroughCheckBox.setSelected(!mjpegPassthroughCheckBox.isSelected());
+            showWarning("请先停止录制，然后再切换采集模式");
+            return;
         }
-    }
 
-    /**
-     * 获取当前摄像头状态
-     */
-    private int getCurrentCameraStatus() {
-        if (cameraController == null || !cameraController.isRunning()) {
-            return SyncConstants.CLIENT_STATUS_CAMERA_NOT_READY;
-        }
-        // 软录制模式：等待触发或正在录制都视为录制状态
-        if (cameraController.isRecordingActive()) {
-            return SyncConstants.CLIENT_STATUS_RECORDING;
-        }
-        return SyncConstants.CLIENT_STATUS_CAMERA_READY;
+        boolean enabled = mjpegPassthroughCheckBox.isSelected();
+        session.setMjpegPassthrough(enabled);
+        new Thread(() -> {
+            try {
+                Platform.runLater(() -> updateStatusBar("正在重启摄像头以切换采集模式..."));
+                running = false;
+                Thread.sleep(500);
+                session.stopCamera();
+                Thread.sleep(300);
+                initCamera(selectedCameraIndex);
+                logger.info("MJPEG直通已{}", enabled ? "开启" : "关闭");
+            } catch (Exception e) {
+                logger.error("切换采集模式失败", e);
+                Platform.runLater(() -> showError("切换失败", "无法重启摄像头: " + e.getMessage()));
+            }
+        }).start();
     }
 
     /**
@@ -1210,7 +1003,7 @@ public class ClientApplication extends Application {
      */
     private void switchCamera() {
         // 检查是否正在录制或等待触发
-        if (cameraController != null && cameraController.isRecordingActive()) {
+        if (isRecordingActive()) {
             showWarning("请先停止录制，然后再切换摄像头");
             return;
         }
@@ -1242,17 +1035,12 @@ public class ClientApplication extends Application {
                 Thread.sleep(500);
 
                 // 3. 停止当前摄像头
-                if (cameraController != null) {
-                    cameraController.stopCamera();
-                }
+                session.stopCamera();
 
                 // 4. 等待资源完全释放 (增加到300ms)
                 Thread.sleep(300);
 
-                // 5. 清空引用
-                cameraController = null;
-
-                // 6. 启动新摄像头
+                // 5. 启动新摄像头
                 selectedCameraIndex = newCameraIndex;
                 initCamera(newCameraIndex);
 
@@ -1283,33 +1071,15 @@ public class ClientApplication extends Application {
         // 立即给用户反馈
         Platform.runLater(() -> updateStatusBar("正在启动摄像头 " + cameraIndex + "..."));
 
-        cameraController = new JavaCVCameraController(
-            currentVideoWidth,
-            currentVideoHeight,
-            currentVideoFps
-        );
-
-        // 设置同步时钟提供者（使用与Leader对齐的时钟）
-        cameraController.setSyncClockSupplier(() -> {
-            if (syncClient != null && syncClient.isSynced()) {
-                // 使用SNTP同步后的Leader时域时间
-                return syncClient.getLeaderTimeNs();
-            } else {
-                // 未连接或未同步时使用本地时钟
-                return System.nanoTime();
-            }
-        });
-
         new Thread(() -> {
             try {
-                logger.info("开始启动摄像头: {} (参数: {}x{} @ {}fps)",
-                    cameraIndex, currentVideoWidth, currentVideoHeight, currentVideoFps);
-                cameraController.startCamera(cameraIndex);
+                // 控制器由会话创建（同步时钟、预热录制器、CPU亲和性、编码配置与无界面客户端一致）
+                session.startCamera(cameraIndex);
                 running = true;
 
                 Platform.runLater(() -> updateStatusBarSuccess(
                     String.format("摄像头已启动 (%dx%d @ %dfps)",
-                        currentVideoWidth, currentVideoHeight, currentVideoFps)
+                        session.getVideoWidth(), session.getVideoHeight(), session.getVideoFps())
                 ));
                 logger.info("摄像头启动成功");
 
@@ -0,0 +1,218 @@
+package com.recsync.client;
+
+import javafx.application.Platform;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.bytedeco.javacv.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 相机预览渲染器
+ *
+ * 把采集帧按视图大小缩小（最近邻）后直接写入 PixelBuffer 背后的直接缓冲区，
+ * 不再经过 BufferedImage / SwingFXUtils，也不为每帧创建新 Image：
+ * - 两个 WritableImage 交替使用：预览线程写后台那个，FX线程切换显示
+ * - FX线程还没显示上一帧时丢弃新帧，不会堆积 Platform.runLater
+ * - 预览帧率可配置，录制期间自动降到 recordingFps（0 表示录制时暂停预览）
+ */
+public class PreviewRenderer {
+
+    public static final double DEFAULT_PREVIEW_FPS = 15;
+    public static final double DEFAULT_RECORDING_PREVIEW_FPS = 5;
+
+    private static final int BYTES_PER_PIXEL = 4;  // BGRA（预乘，alpha固定255）
+
+    private final ImageView view;
+    private final AtomicBoolean updatePending = new AtomicBoolean(false);
+
+    private volatile double previewFps = DEFAULT_PREVIEW_FPS;
+    private volatile double recordingFps = DEFAULT_RECORDING_PREVIEW_FPS;
+    private volatile double viewWidth = 0;
+    private volatile double viewHeight = 0;
+
+    // 以下仅预览线程访问
+    private final Surface[] surfaces = new Surface[2];
+    private int backIndex = 0;
+    private long lastRenderNs = 0;
+    private int[] sourceOffsets = new int[0];
+    private byte[] sourceRow = new byte[0];
+    private byte[] targetRow = new byte[0];
+    private long renderedFrames = 0;
+    private long skippedFrames = 0;
+
+    /**
+     * 一块可显示的图像及其直接缓冲区
+     */
+    private static final class Surface {
+        final int width;
+        final int height;
+        final ByteBuffer buffer;
+        final PixelBuffer<ByteBuffer> pixelBuffer;
+        final WritableImage image;
+
+        Surface(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.buffer = ByteBuffer.allocateDirect(width * height * BYTES_PER_PIXEL);
+            this.pixelBuffer = new PixelBuffer<>(width, height, buffer, PixelFormat.getByteBgraPreInstance());
+            this.image = new WritableImage(pixelBuffer);
+        }
+    }
+
+    public PreviewRenderer(ImageView view) {
+        this.view = view;
+        view.fitWidthProperty().addListener((obs, oldVal, newVal) -> viewWidth = newVal.doubleValue());
+        view.fitHeightProperty().addListener((obs, oldVal, newVal) -> viewHeight = newVal.doubleValue());
+        viewWidth = view.getFitWidth();
+        viewHeight = view.getFitHeight();
+    }
+
+    /**
+     * 设置空闲时的预览帧率
+     */
+    public void setPreviewFps(double fps) {
+        this.previewFps = Math.max(0, fps);
+    }
+
+    public double getPreviewFps() {
+        return previewFps;
+    }
+
+    /**
+     * 设置录制期间的预览帧率，0 表示录制时暂停预览（把CPU留给采集和编码）
+     */
+    public void setRecordingFps(double fps) {
+        this.recordingFps = Math.max(0, fps);
+    }
+
+    /**
+     * 距离下一次允许渲染还有多久
+     *
+     * @param recording 当前是否处于录制（或等待触发）状态
+     * @return 纳秒，≤0 表示现在就可以渲染；预览被禁用时返回 Long.MAX_VALUE
+     */
+    public long nanosUntilNextFrame(boolean recording) {
+        double fps = recording ? Math.min(previewFps, recordingFps) : previewFps;
+        if (fps <= 0) {
+            return Long.MAX_VALUE;
+        }
+        long intervalNs = (long) (1_000_000_000L / fps);
+        return lastRenderNs + intervalNs - System.nanoTime();
+    }
+
+    /**
+     * 渲染一帧（预览线程调用，帧只在调用期间被读取）
+     *
+     * @return false 表示FX线程尚未显示上一帧，本帧被跳过
+     */
+    public boolean render(Frame frame) {
+        if (frame == null || frame.image == null || frame.imageDepth != Frame.DEPTH_UBYTE) {
+            return false;
+        }
+        if (updatePending.get()) {
+            skippedFrames++;
+            return false;
+        }
+        lastRenderNs = System.nanoTime();
+
+        int[] size = targetSize(frame.imageWidth, frame.imageHeight);
+        Surface surface = surfaces[backIndex];
+        if (surface == null || surface.width != size[0] || surface.height != size[1]) {
+            surface = new Surface(size[0], size[1]);
+            surfaces[backIndex] = surface;
+        }
+        downsample(frame, surface);
+
+        Surface ready = surface;
+        backIndex ^= 1;
+        updatePending.set(true);
+        Platform.runLater(() -> {
+            try {
+                ready.pixelBuffer.updateBuffer(pb -> null);
+                if (view.getImage() != ready.image) {
+                    view.setImage(ready.image);
+                }
+            } finally {
+                updatePending.set(false);
+            }
+        });
+        renderedFrames++;
+        return true;
+    }
+
+    public long getRenderedFrames() {
+        return renderedFrames;
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * 按视图大小等比缩小，不放大（视图尚未布局时使用原始尺寸）
+     */
+    private int[] targetSize(int sourceWidth, int sourceHeight) {
+        double scale = 1.0;
+        if (viewWidth > 0 && viewHeight > 0) {
+            scale = Math.min(1.0, Math.min(viewWidth / sourceWidth, viewHeight / sourceHeight));
+        }
+        int width = Math.max(1, (int) Math.round(sourceWidth * scale));
+        int height = Math.max(1, (int) Math.round(sourceHeight * scale));
+        return new int[]{width, height};
+    }
+
+    /**
+     * 最近邻缩小并转换为BGRA，逐行批量读写缓冲区
+     */
+    private void downsample(Frame frame, Surface surface) {
+        ByteBuffer source = (ByteBuffer) frame.image[0];
+        int channels = frame.imageChannels;
+        int stride = frame.imageStride;
+        int sourceWidth = frame.imageWidth;
+        int sourceHeight = frame.imageHeight;
+        int width = surface.width;
+        int height = surface.height;
+
+        if (sourceOffsets.length != width) {
+            sourceOffsets = new int[width];
+        }
+        for (int x = 0; x < width; x++) {
+            sourceOffsets[x] = (int) ((long) x * sourceWidth / width) * channels;
+        }
+        if (sourceRow.length < sourceWidth * channels) {
+            sourceRow = new byte[sourceWidth * channels];
+        }
+        if (targetRow.length != width * BYTES_PER_PIXEL) {
+            targetRow = new byte[width * BYTES_PER_PIXEL];
+        }
+
+        ByteBuffer target = surface.buffer;
+        target.clear();
+        for (int y = 0; y < height; y++) {
+            int sy = (int) ((long) y * sourceHeight / height);
+            source.get(sy * stride, sourceRow, 0, sourceWidth * channels);
+            int t = 0;
+            for (int x = 0; x < width; x++) {
+                int s = sourceOffsets[x];
+                if (channels >= 3) {
+                    targetRow[t] = sourceRow[s];          // B
+                    targetRow[t + 1] = sourceRow[s + 1];  // G
+                    targetRow[t + 2] = sourceRow[s + 2];  // R
+                } else {
+                    byte gray = sourceRow[s];
+                    targetRow[t] = gray;
+                    targetRow[t + 1] = gray;
+                    targetRow[t + 2] = gray;
+                }
+                targetRow[t + 3] = (byte) 0xFF;
+                t += BYTES_PER_PIXEL;
+            }
+            target.put(targetRow);
+        }
+        target.rewind();
+    }
+}
@@ -3,6 +3,8 @@ module com.recsync.client {
     requires javafx.fxml;
     requires javafx.swing;
     requires com.recsync.core;
+    requires com.recsync.camera;
+    requires com.recsync.session;
     requires org.slf4j;
     requires java.desktop;
     requires org.bytedeco.javacv;
@@ -13,7 +15,5 @@ module com.recsync.client {
 
     exports com.recsync.client;
 
-    // 允许JavaCPP访问必要的包以加载原生库
     opens com.recsync.client to javafx.fxml;
-    opens com.recsync.client.camera;
 }
\ No newline at end of file
@@ -1,9 +1,12 @@
 package com.recsync.leader;
 
+import com.recsync.core.sync.ClientTelemetry;
+import com.recsync.core.sync.EncoderProfile;
 import com.recsync.core.sync.LeaderDiscoveryService;
 import com.recsync.core.sync.SoftwareSyncLeader;
 import com.recsync.core.sync.SyncConstants;
 import com.recsync.core.transfer.FileReceiveServer;
+import com.recsync.core.transfer.TransferProgressAggregator;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -20,7 +23,10 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -39,6 +45,7 @@ public class LeaderApplication extends Application {
     private ListView<String> receivedFilesListView;
     private Label uploadStatusLabel;
     private ProgressBar uploadProgressBar;
+    private Label receiveMetricsLabel;  // 文件接收服务指标
     private Label clientCountLabel;
     private AtomicInteger clientCount = new AtomicInteger(0);
     private Button recordToggleBtn;
@@ -52,8 +59,10 @@ public class LeaderApplication extends Application {
     // 视频参数配置
     private ComboBox<String> fpsComboBox;
     private ComboBox<String> resolutionComboBox;
+    private ComboBox<String> encoderProfileComboBox;
     private int currentFps = SyncConstants.DEFAULT_VIDEO_FPS;
     private int currentWidth = SyncConstants.DEFAULT_VIDEO_WIDTH;
+    private String currentEncoderProfile = EncoderProfile.AUTO;
     private int currentHeight = SyncConstants.DEFAULT_VIDEO_HEIGHT;
 
     // 实验数据管理
@@ -82,6 +91,7 @@ public class LeaderApplication extends Application {
     private ConcurrentHashMap<String, Integer> clientCameraStatus = new ConcurrentHashMap<>();  // 设备名 -> 摄像头状态
     private ConcurrentHashMap<String, Boolean> clientSyncStatus = new ConcurrentHashMap<>();    // 设备名 -> SNTP同步状态
     private ConcurrentHashMap<String, Integer> clientSyncProgress = new ConcurrentHashMap<>();  // 设备名 -> 同步进度(0-100)
+    private ConcurrentHashMap<String, ClientTelemetry> clientTelemetry = new ConcurrentHashMap<>();  // 设备名 -> 采集遥测
 
     @Override
     public void start(Stage primaryStage) {
@@ -733,7 +743,20 @@ public class LeaderApplication extends Application {
         fpsComboBox.setOnAction(e -> updateFps());
         fpsBox.getChildren().addAll(fpsLabel, fpsComboBox);
 
-        paramsRow.getChildren().addAll(resolutionBox, fpsBox);
+        VBox encoderBox = new VBox(5);
+        Label encoderLabel = new Label("编码配置:");
+        encoderLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #7f8c8d;");
+        encoderProfileComboBox = new ComboBox<>();
+        encoderProfileComboBox.getItems().add(EncoderProfile.AUTO);
+        EncoderProfile.all().forEach(p -> encoderProfileComboBox.getItems().add(p.name()));
+        encoderProfileComboBox.setValue(EncoderProfile.AUTO);
+        encoderProfileComboBox.setPrefWidth(120);
+        encoderProfileComboBox.setStyle("-fx-font-size: 12px;");
+        encoderProfileComboBox.setTooltip(new Tooltip("auto：各客户端按本机编码自测选择能跑满帧率的最高质量配置"));
+        encoderProfileComboBox.setOnAction(e -> updateEncoderProfile());
+        encoderBox.getChildren().addAll(encoderLabel, encoderProfileComboBox);
+
+        paramsRow.getChildren().addAll(resolutionBox, fpsBox, encoderBox);
 
         panel.getChildren().addAll(title, paramsRow);
         return panel;
@@ -753,6 +776,7 @@ public class LeaderApplication extends Application {
         }
         updateStatusBar(String.format("分辨率已设置为: %dx%d", currentWidth, currentHeight));
         logger.info("分辨率已设置为: {}x{}", currentWidth, currentHeight);
+        broadcastCaptureConfig();
     }
 
     private void updateFps() {
@@ -760,6 +784,29 @@ public class LeaderApplication extends Application {
         currentFps = Integer.parseInt(selected.split(" ")[0]);
         updateStatusBar(String.format("帧率已设置为: %d fps", currentFps));
         logger.info("帧率已设置为: {} fps", currentFps);
+        broadcastCaptureConfig();
+    }
+
+    private void updateEncoderProfile() {
+        currentEncoderProfile = encoderProfileComboBox.getValue();
+        EncoderProfile profile = EncoderProfile.byName(currentEncoderProfile);
+        String description = profile != null ? profile.description() : "按客户端自测自动选择";
+        updateStatusBar(String.format("编码配置已设置为: %s (%s)", currentEncoderProfile, description));
+        logger.info("编码配置已设置为: {}", currentEncoderProfile);
+        broadcastCaptureConfig();
+    }
+
+    /**
+     * 参数变化后立即下发给客户端，让各端在录制之间切换采集模式、预热编码器，
+     * START 时参数已经一致，不再在触发路径上重启相机
+     * payload 格式: width|height|fps|encoderProfile
+     */
+    private void broadcastCaptureConfig() {
+        if (syncLeader == null || isRecording) {
+            return;
+        }
+        syncLeader.broadcastRpc(SyncConstants.METHOD_CONFIGURE_CAPTURE,
+                String.format("%d|%d|%d|%s", currentWidth, currentHeight, currentFps, currentEncoderProfile));
     }
 
     private void toggleRecording() {
@@ -842,7 +889,11 @@ public class LeaderApplication extends Application {
         uploadStatusLabel = new Label("文件接收: 空闲");
         uploadStatusLabel.setStyle("-fx-font-size: 11px;");
 
-        panel.getChildren().addAll(header, archiveDirBox, filesLabel, receivedFilesListView, uploadProgressBar, uploadStatusLabel);
+        receiveMetricsLabel = new Label("接收队列: --");
+        receiveMetricsLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: #7f8c8d;");
+
+        panel.getChildren().addAll(header, archiveDirBox, filesLabel, receivedFilesListView, uploadProgressBar,
+                uploadStatusLabel, receiveMetricsLabel);
         return panel;
     }
 
@@ -877,6 +928,7 @@ public class LeaderApplication extends Application {
                 fileServer.stop();
                 try {
                     fileServer = new FileReceiveServer(currentArchiveDir);
+                    configureBandwidthScheduler();
                     fileServer.start(createFileReceiveListener());
                     updateStatusBarSuccess("归档目录已更新: " + currentArchiveDir);
                     logger.info("归档目录已更新: {}", currentArchiveDir);
@@ -927,6 +979,7 @@ public class LeaderApplication extends Application {
 
                 // 3. 启动文件接收服务
                 fileServer = new FileReceiveServer(currentArchiveDir);
+                configureBandwidthScheduler();
                 fileServer.start(createFileReceiveListener());
 
                 Platform.runLater(() -> {
@@ -951,6 +1004,15 @@ public class LeaderApplication extends Application {
         }).start();
     }
 
+    /**
+     * 上传带宽调度：录制中降速，有客户端同步采样时暂停，保护同步流量
+     */
+    private void configureBandwidthScheduler() {
+        var scheduler = fileServer.getBandwidthScheduler();
+        scheduler.setRecording(isRecording);
+        scheduler.setSyncSamplingSupplier(() -> syncLeader != null && syncLeader.hasUnsyncedClients());
+    }
+
     private void handleRpcCallback(int method, String payload, InetAddress fromAddress) {
         logger.debug("收到RPC回调: method={}, payload={}, from={}", method, payload, fromAddress.getHostAddress());
 
@@ -988,6 +1050,32 @@ public class LeaderApplication extends Application {
             } catch (Exception e) {
                 logger.error("解析客户端状态失败: {}", payload, e);
             }
+        } else if (method == SyncConstants.METHOD_CLIENT_TELEMETRY) {
+            // 处理客户端采集遥测: deviceName|fps=..,jitter_ms=..,...
+            ClientTelemetry telemetry = ClientTelemetry.parse(payload);
+            if (telemetry != null) {
+                ClientTelemetry previous = clientTelemetry.put(telemetry.deviceName(), telemetry);
+                logger.trace("客户端遥测更新: {} -> {}", telemetry.deviceName(), telemetry.values());
+                // 录制中出现新的缺帧立即提示（不必等到标注时才发现）
+                double dropped = telemetry.getDouble(ClientTelemetry.KEY_RECORDING_DROPPED, 0);
+                double previousDropped = previous != null
+                        ? previous.getDouble(ClientTelemetry.KEY_RECORDING_DROPPED, 0) : 0;
+                if (dropped > previousDropped) {
+                    logger.warn("⚠️ {} 录制缺帧: 累计{}处/{}帧, 最近位置(秒): {}", telemetry.deviceName(),
+                            (long) telemetry.getDouble(ClientTelemetry.KEY_RECORDING_GAPS, 0), (long) dropped,
+                            telemetry.get(ClientTelemetry.KEY_GAP_POSITIONS));
+                    updateStatusBar(String.format("⚠️ %s 录制缺帧 %d 帧", telemetry.deviceName(), (long) dropped));
+                }
+                String phaseState = telemetry.get(ClientTelemetry.KEY_PHASE_STATE);
+                String previousPhaseState = previous != null ? previous.get(ClientTelemetry.KEY_PHASE_STATE) : null;
+                if (phaseState != null && !phaseState.equals(previousPhaseState) && !"ALIGNING".equals(phaseState)) {
+                    logger.info("🔄 {} 相位对齐结果: {}, 误差 {}ms", telemetry.deviceName(), phaseState,
+                            telemetry.get(ClientTelemetry.KEY_PHASE_ERROR_MS));
+                    summarizePhaseAlignment();
+                }
+            } else {
+                logger.warn("无效的客户端遥测: {}", payload);
+            }
         }
     }
 
@@ -1002,18 +1090,30 @@ public class LeaderApplication extends Application {
                 });
             }
 
-            public void onFileReceiveProgress(String fileName, long bytesReceived, long totalBytes) {
+            public void onFileReceiveProgress(List<TransferProgressAggregator.Snapshot> transfers) {
+                // 每个采样周期只提交一次UI更新，多个并发接收合并显示
+                long received = 0;
+                long total = 0;
+                double speed = 0;
+                for (TransferProgressAggregator.Snapshot s : transfers) {
+                    received += s.bytesTransferred();
+                    total += s.totalBytes();
+                    speed += s.bytesPerSecond();
+                }
+                double progress = total > 0 ? (double) received / total : 0;
+                String text = transfers.size() == 1
+                        ? String.format("正在接收: %s - %.1f%% (%.2f/%.2f MB, %.1f MB/s)",
+                                transfers.get(0).fileName(), progress * 100,
+                                received / 1024.0 / 1024.0, total / 1024.0 / 1024.0,
+                                speed / 1024.0 / 1024.0)
+                        : String.format("正在接收 %d 个文件 - %.1f%% (%.2f/%.2f MB, %.1f MB/s)",
+                                transfers.size(), progress * 100,
+                                received / 1024.0 / 1024.0, total / 1024.0 / 1024.0,
+                                speed / 1024.0 / 1024.0);
+
                 Platform.runLater(() -> {
-                    double progress = (double) bytesReceived / totalBytes;
                     uploadProgressBar.setProgress(progress);
-
-                    uploadStatusLabel.setText(
-                            String.format("正在接收: %s - %.1f%% (%.2f/%.2f MB)",
-                                    fileName,
-                                    progress * 100,
-                                    bytesReceived / 1024.0 / 1024.0,
-                                    totalBytes / 1024.0 / 1024.0)
-                    );
+                    uploadStatusLabel.setText(text);
                 });
             }
 
@@ -1049,7 +1149,10 @@ public class LeaderApplication extends Application {
         javafx.animation.Timeline timeline = new javafx.animation.Timeline(
                 new javafx.animation.KeyFrame(
                         javafx.util.Duration.seconds(1),
-                        e -> updateClientList()
+                        e -> {
+                            updateClientList();
+                            updateReceiveMetrics();
+                        }
                 )
         );
         timeline.setCycleCount(javafx.animation.Timeline.INDEFINITE);
@@ -1087,14 +1190,24 @@ public class LeaderApplication extends Application {
                         camStatusText = "⚫未就绪";
                     }
 
-                    // 格式: [同步状态] [摄像头状态] 设备名 (IP)
+                    // 采集遥测：实测帧率 ± 抖动
+                    String telemetryText = formatTelemetry(clientTelemetry.get(info.name()));
+
+                    // 格式: [同步状态] [摄像头状态] 设备名 (IP) 帧率±抖动
                     clientListView.getItems().add(
-                            String.format("[%s] [%s] %s (%s)",
+                            String.format("[%s] [%s] %s (%s)%s",
                                     syncStatus,
                                     camStatusText,
                                     info.name(),
-                                    addr.getHostAddress())
+                                    addr.getHostAddress(),
+                                    telemetryText)
                     );
+
+                    // 同一客户端进程的附加视角（多路相机）
+                    for (ClientTelemetry view : viewsOf(info.name())) {
+                        clientListView.getItems().add(
+                                String.format("    └ 📷 %s%s", view.deviceName(), formatTelemetry(view)));
+                    }
                 });
 
                 int count = clients.size();
@@ -1104,6 +1217,119 @@ public class LeaderApplication extends Application {
         }
     }
 
+    /**
+     * 客户端遥测的简要文本：实测帧率 ± 抖动、编码器、丢帧、准备耗时
+     */
+    private static String formatTelemetry(ClientTelemetry telemetry) {
+        if (telemetry == null || telemetry.get(ClientTelemetry.KEY_FPS) == null) {
+            return "";
+        }
+        String text = String.format(" %.1ffps ±%.1fms",
+                telemetry.getDouble(ClientTelemetry.KEY_FPS, 0),
+                telemetry.getDouble(ClientTelemetry.KEY_JITTER_MS, 0));
+        String encoder = telemetry.get(ClientTelemetry.KEY_ENCODER);
+        if (encoder != null) {
+            text += " " + encoder;
+        }
+        double dropped = telemetry.getDouble(ClientTelemetry.KEY_ENCODE_DROPPED, 0);
+        if (dropped > 0) {
+            text += String.format(" 丢帧%d", (long) dropped);
+        }
+        double armMs = telemetry.getDouble(ClientTelemetry.KEY_ARM_MS, -1);
+        if (armMs >= 0) {
+            text += String.format(" 准备%.1fms", armMs);
+        }
+        double recordingDropped = telemetry.getDouble(ClientTelemetry.KEY_RECORDING_DROPPED, 0);
+        if (recordingDropped > 0) {
+            text += String.format(" ⚠️缺帧%d", (long) recordingDropped);
+        }
+        String phaseState = telemetry.get(ClientTelemetry.KEY_PHASE_STATE);
+        if (phaseState != null && telemetry.get(ClientTelemetry.KEY_PHASE_ERROR_MS) != null) {
+            text += String.format(" 相位%+.1fms%s", telemetry.getDouble(ClientTelemetry.KEY_PHASE_ERROR_MS, 0),
+                    switch (phaseState) {
+                        case "ALIGNED" -> "✓";
+                        case "ALIGNING" -> "…";
+                        default -> "✗";
+                    });
+        }
+        return text;
+    }
+
+    /**
+     * 所有设备（含附加视角）都结束相位对齐后，在状态栏汇总结果
+     */
+    private void summarizePhaseAlignment() {
+        List<ClientTelemetry> reported = clientTelemetry.values().stream()
+                .filter(t -> t.get(ClientTelemetry.KEY_PHASE_STATE) != null)
+                .toList();
+        if (reported.stream().anyMatch(t -> "ALIGNING".equals(t.get(ClientTelemetry.KEY_PHASE_STATE)))) {
+            return;
+        }
+        long aligned = reported.stream()
+                .filter(t -> "ALIGNED".equals(t.get(ClientTelemetry.KEY_PHASE_STATE)))
+                .count();
+        double worstMs = reported.stream()
+                .mapToDouble(t -> Math.abs(t.getDouble(ClientTelemetry.KEY_PHASE_ERROR_MS, 0)))
+                .max().orElse(0);
+        String text = String.format("相位对齐完成: %d/%d 台在 ±%.1fms 内, 最大误差 %.2fms",
+                aligned, reported.size(), SyncConstants.PHASE_ALIGN_TOLERANCE_MS, worstMs);
+        if (aligned == reported.size()) {
+            updateStatusBarSuccess(text);
+        } else {
+            updateStatusBar("⚠️ " + text);
+        }
+    }
+
+    /**
+     * 某个客户端进程上报的附加视角遥测（view_of 指向该设备），按名称排序
+     */
+    private List<ClientTelemetry> viewsOf(String deviceName) {
+        return clientTelemetry.values().stream()
+                .filter(t -> deviceName.equals(t.get(ClientTelemetry.KEY_VIEW_OF)))
+                .sorted(Comparator.comparing(ClientTelemetry::deviceName))
+                .toList();
+    }
+
+    /**
+     * 检查所有客户端是否都上报了足够的预录覆盖，且采集格式与本次录制参数一致
+     * （参数变化时客户端会重启摄像头，预录缓冲会被清空）
+     */
+    private boolean allClientsHavePreRoll(java.util.List<String> clientNames) {
+        if (clientNames.isEmpty()) {
+            return false;
+        }
+        String expectedFormat = ClientTelemetry.formatKey(currentWidth, currentHeight, currentFps);
+        List<ClientTelemetry> all = new ArrayList<>();
+        for (String name : clientNames) {
+            all.add(clientTelemetry.get(name));
+            all.addAll(viewsOf(name));  // 附加视角同样需要预录覆盖
+        }
+        for (ClientTelemetry telemetry : all) {
+            if (telemetry == null
+                    || !expectedFormat.equals(telemetry.get(ClientTelemetry.KEY_FORMAT))
+                    || telemetry.getDouble(ClientTelemetry.KEY_PREROLL_MS, 0) < SyncConstants.PRE_ROLL_REQUIRED_MS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 刷新文件接收服务指标（活跃/排队/拒绝的上传数）
+     */
+    private void updateReceiveMetrics() {
+        if (fileServer == null) {
+            return;
+        }
+        FileReceiveServer.Metrics m = fileServer.getMetrics();
+        receiveMetricsLabel.setText(String.format(
+                "接收队列: 活跃 %d/%d | 排队 %d | 已拒绝 %d | 完成 %d (去重 %d) | 失败 %d | 累计 %.1f MB | 带宽: %s",
+                m.activeUploads(), m.maxConcurrentUploads(), m.queuedUploads(),
+                m.rejectedConnections(), m.completedUploads(), m.dedupedUploads(), m.failedUploads(),
+                m.bytesReceived() / 1024.0 / 1024.0,
+                fileServer.getBandwidthScheduler().getMode()));
+    }
+
     private void generateBatchId() {
         currentBatchId = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
         logger.info("生成新批次ID: ", currentBatchId);
@@ -1245,18 +1471,26 @@ public class LeaderApplication extends Application {
         // 获取当前实验数据
         String episodeId = "e" + currentEpisodeNumber;
 
-        // 计算触发时间：当前时间 + 200ms（给所有客户端足够的准备时间）
-        long triggerTimeNs = System.nanoTime() + 200_000_000L;  // 200ms in nanoseconds
+        // 计算触发时间：所有客户端都有足够预录时直接以当前时刻触发（各端从预录缓冲中的同一同步时间戳开始写入），
+        // 否则沿用 当前时间 + 200ms（给所有客户端足够的准备时间）
+        boolean preRollReady = allClientsHavePreRoll(clients.values().stream().map(c -> c.name()).toList());
+        long triggerTimeNs = preRollReady
+                ? System.nanoTime()
+                : System.nanoTime() + SyncConstants.TRIGGER_LEAD_TIME_NS;
+        logger.info("⏱️ 触发方式: {}", preRollReady ? "立即触发（预录缓冲）" : "延迟200ms触发");
 
         // 构造包含触发时间、视频参数和实验数据的payload
-        // 格式: triggerTimeNs|batchId|width|height|fps|subjectId|movementId|episodeId
-        String payload = String.format("%d|%s|%d|%d|%d|%s|%s|%s",
+        // 格式: triggerTimeNs|batchId|width|height|fps|subjectId|movementId|episodeId|encoderProfile
+        String payload = String.format("%d|%s|%d|%d|%d|%s|%s|%s|%s",
             triggerTimeNs, currentBatchId, currentWidth, currentHeight, currentFps,
-            currentSubjectId, currentMovementId, episodeId);
+            currentSubjectId, currentMovementId, episodeId, currentEncoderProfile);
 
         // 广播批次ID、视频参数和实验数据给所有客户端
         syncLeader.broadcastRpc(SyncConstants.METHOD_START_RECORDING, payload);
         isRecording = true;
+        if (fileServer != null) {
+            fileServer.getBandwidthScheduler().setRecording(true);
+        }
 
         // 更新按钮状态
         recordToggleBtn.setText("⏹️ 停止录制");
@@ -1278,6 +1512,9 @@ public class LeaderApplication extends Application {
         if (syncLeader != null) {
             syncLeader.broadcastRpc(SyncConstants.METHOD_STOP_RECORDING, "0");
             isRecording = false;
+            if (fileServer != null) {
+                fileServer.getBandwidthScheduler().setRecording(false);
+            }
 
             // 更新按钮状态
             recordToggleBtn.setText("🎬 开始录制");
@@ -1583,15 +1820,53 @@ public class LeaderApplication extends Application {
                 showWarning("没有连接的客户端");
                 return;
             }
+            if (isRecording) {
+                showWarning("录制中无法相位对齐（对齐可能需要重启客户端视频流）");
+                return;
+            }
 
-            syncLeader.broadcastRpc(SyncConstants.METHOD_DO_PHASE_ALIGN, "");
+            // payload: 目标相位误差（毫秒）；结果随客户端遥测上报（phase / phase_ms）
+            syncLeader.broadcastRpc(SyncConstants.METHOD_DO_PHASE_ALIGN,
+                    String.valueOf(SyncConstants.PHASE_ALIGN_TOLERANCE_MS));
             updateStatusBarSuccess("已启动相位对齐过程");
-            logger.info("🔄 广播相位对齐命令");
+            logger.info("🔄 广播相位对齐命令 (目标 ±{}ms)", SyncConstants.PHASE_ALIGN_TOLERANCE_MS);
         }
     }
 
+    /**
+     * 显示各设备（含附加视角）实际帧率及相对标称帧率的漂移
+     * 客户端对最近的帧时间戳做稳健回归估计实际帧周期，随遥测上报（est_fps / period_jitter_ms）
+     */
     private void calculatePeriod() {
-        showInfo("周期计算", "周期计算功能需要在客户端实现");
+        List<ClientTelemetry> reported = clientTelemetry.values().stream()
+                .filter(t -> t.get(ClientTelemetry.KEY_ESTIMATED_FPS) != null)
+                .sorted(Comparator.comparing(ClientTelemetry::deviceName))
+                .toList();
+        if (reported.isEmpty()) {
+            showInfo("周期计算", "尚未收到客户端的帧周期估计（客户端相机启动约1秒后开始上报）");
+            return;
+        }
+
+        String expectedFormat = ClientTelemetry.formatKey(currentWidth, currentHeight, currentFps);
+        StringBuilder text = new StringBuilder(String.format("标称帧率: %d fps (周期 %.3fms)%n%n",
+                currentFps, 1000.0 / currentFps));
+        for (ClientTelemetry telemetry : reported) {
+            double fps = telemetry.getDouble(ClientTelemetry.KEY_ESTIMATED_FPS, 0);
+            double driftPpm = (fps / currentFps - 1) * 1e6;
+            // 相位漂移（与相位误差同向）：实际周期与标称周期之差每秒累积 fps 次
+            double phaseDriftMsPerMinute = (1000.0 / fps - 1000.0 / currentFps) * fps * 60;
+            text.append(String.format("%s: %.3f fps (周期 %.3fms), 漂移 %+.0f ppm, 相位 %+.1fms/分钟, 抖动 %.2fms",
+                    telemetry.deviceName(), fps, 1000.0 / fps, driftPpm, phaseDriftMsPerMinute,
+                    telemetry.getDouble(ClientTelemetry.KEY_PERIOD_JITTER_MS, 0)));
+            String format = telemetry.get(ClientTelemetry.KEY_FORMAT);
+            if (format != null && !format.equals(expectedFormat)) {
+                text.append(" (采集格式 ").append(format).append(")");
+            }
+            text.append(System.lineSeparator());
+            logger.info("⏱️ 帧周期 {}: {} fps, 漂移 {} ppm", telemetry.deviceName(),
+                    String.format("%.3f", fps), String.format("%+.0f", driftPpm));
+        }
+        showInfo("周期计算", text.toString());
     }
 
     private void openArchiveDirectory() {
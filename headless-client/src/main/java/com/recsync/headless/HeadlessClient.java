@@ -0,0 +1,219 @@
+package com.recsync.headless;
+
+import com.recsync.camera.JavaCVCameraController;
+import com.recsync.camera.MultiCameraManager;
+import com.recsync.core.sync.ClientDiscoveryService;
+import com.recsync.session.ClientSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 无界面客户端：无人值守的 Linux 采集节点
+ *
+ * 与图形客户端共用同一个客户端会话（{@link ClientSession}：同步、RPC协议、录制控制和上传），
+ * 但不启动 JavaFX：没有预览转换，录制路径上也没有UI线程切换。
+ * 由命令行参数/配置文件驱动（见 {@link HeadlessConfig}），状态只通过RPC（状态、遥测）上报Leader。
+ *
+ * 默认边录边传；未开启时停止录制后自动上传本次录制。
+ * 退出码：0 正常退出，1 参数错误，2 被Leader拒绝（设备名冲突或已满），3 相机启动失败。
+ */
+public class HeadlessClient {
+    private static final Logger logger = LoggerFactory.getLogger(HeadlessClient.class);
+
+    private static final long DISCOVERY_RETRY_SECONDS = 5;
+    private static final int EXIT_USAGE = 1;
+    private static final int EXIT_REJECTED = 2;
+    private static final int EXIT_CAMERA_FAILED = 3;
+
+    private final HeadlessConfig config;
+    private final ClientSession session;
+    private final CountDownLatch exitLatch = new CountDownLatch(1);
+    private volatile int exitCode = 0;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Headless-Scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile ClientDiscoveryService discoveryService;
+    private volatile boolean shuttingDown = false;
+
+    public static void main(String[] args) {
+        HeadlessConfig config;
+        try {
+            config = HeadlessConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(HeadlessConfig.usage());
+            System.exit(EXIT_USAGE);
+            return;
+        }
+        if (config.help()) {
+            System.out.println(HeadlessConfig.usage());
+            return;
+        }
+
+        HeadlessClient client = new HeadlessClient(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(client::shutdown, "Shutdown-Hook"));
+        System.exit(client.run());
+    }
+
+    public HeadlessClient(HeadlessConfig config) {
+        this.config = config;
+        String deviceName = config.deviceName() != null ? config.deviceName() : loadDeviceName();
+        this.session = new ClientSession(deviceName, MultiCameraManager.loadConfig(config.viewsFile()),
+                new ClientSession.Listener() {
+                    @Override
+                    public void onNameConflict(String message) {
+                        logger.error("❌ 设备名称冲突，连接被拒绝: {}（请用 --name 指定其他名称）", message);
+                        exit(EXIT_REJECTED);
+                    }
+
+                    @Override
+                    public void onServerFull(String message) {
+                        logger.error("❌ 服务器已达到最大客户端数: {}", message);
+                        exit(EXIT_REJECTED);
+                    }
+                });
+        session.setMjpegPassthrough(config.passthrough());
+        session.setGapPolicy(config.gapPolicy());
+        session.setStreamingUpload(config.streaming());
+        session.setLocalSegments(config.localSegments());
+        session.setUploadAfterStop(config.uploadAfterStop());
+    }
+
+    /**
+     * 启动相机并连接Leader，阻塞到退出
+     * @return 退出码
+     */
+    public int run() {
+        logger.info("🚀 无界面客户端启动: 设备名={}, 摄像头={}, 直通={}, 缺帧策略={}, 边录边传={}",
+                session.getDeviceName(), config.cameraIndex(), config.passthrough(), config.gapPolicy().name(),
+                config.streaming());
+
+        // 清理上次异常退出遗留的预热录制器临时文件，然后启动相机
+        JavaCVCameraController.deleteStaleWarmRecorderFiles(ClientSession.recordingDirectory());
+        try {
+            session.startCamera(config.cameraIndex());
+        } catch (Exception e) {
+            logger.error("相机启动失败", e);
+            shutdown();
+            return EXIT_CAMERA_FAILED;
+        }
+        session.startSecondaryCameras(config.cameraIndex());
+
+        if (config.leaderIp() != null) {
+            connectToLeader(config.leaderIp());
+        } else {
+            discoverAndConnect();
+        }
+
+        try {
+            exitLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        shutdown();
+        return exitCode;
+    }
+
+    private void exit(int code) {
+        exitCode = code;
+        exitLatch.countDown();
+    }
+
+    // ==================== 连接 ====================
+
+    /**
+     * 自动发现Leader，未发现时每隔 DISCOVERY_RETRY_SECONDS 秒重试
+     */
+    private void discoverAndConnect() {
+        if (shuttingDown) {
+            return;
+        }
+        if (discoveryService != null) {
+            discoveryService.stop();
+        }
+        logger.info("🔍 正在自动发现Leader...");
+        discoveryService = new ClientDiscoveryService();
+        discoveryService.discoverLeader()
+                .whenComplete((leaderInfo, ex) -> {
+                    if (leaderInfo != null) {
+                        logger.info("发现Leader: {} ({})", leaderInfo.ip, leaderInfo.discoveryMethod);
+                        connectToLeader(leaderInfo.ip);
+                    } else {
+                        logger.warn("未发现Leader{}，{}秒后重试", ex != null ? "（" + ex.getMessage() + "）" : "",
+                                DISCOVERY_RETRY_SECONDS);
+                        scheduler.schedule(this::discoverAndConnect, DISCOVERY_RETRY_SECONDS, TimeUnit.SECONDS);
+                    }
+                });
+    }
+
+    private void connectToLeader(String leaderIp) {
+        try {
+            session.connect(leaderIp);
+        } catch (Exception e) {
+            logger.error("连接Leader失败: {}，{}秒后重试", e.getMessage(), DISCOVERY_RETRY_SECONDS);
+            scheduler.schedule(() -> {
+                if (config.leaderIp() != null) {
+                    connectToLeader(config.leaderIp());
+                } else {
+                    discoverAndConnect();
+                }
+            }, DISCOVERY_RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // ==================== 工具 ====================
+
+    /**
+     * 沿用图形客户端保存的设备名（~/client_config.txt），没有时为 Client-{主机名}
+     */
+    private static String loadDeviceName() {
+        try {
+            Path configFile = Paths.get(System.getProperty("user.home"), "client_config.txt");
+            if (Files.exists(configFile)) {
+                String savedName = Files.readString(configFile).trim();
+                if (!savedName.isEmpty()) {
+                    return savedName;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("无法加载配置文件", e);
+        }
+        try {
+            return "Client-" + InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "Client-Unknown";
+        }
+    }
+
+    /**
+     * 停止录制、相机和网络服务（可重复调用）
+     */
+    public synchronized void shutdown() {
+        if (shuttingDown) {
+            return;
+        }
+        shuttingDown = true;
+        logger.info("正在关闭无界面客户端...");
+        scheduler.shutdownNow();
+
+        session.shutdown();
+        if (discoveryService != null) {
+            discoveryService.stop();
+        }
+        exitLatch.countDown();
+    }
+}
@@ -0,0 +1,162 @@
+package com.recsync.headless;
+
+import com.recsync.camera.GapPolicy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * 无界面客户端配置
+ *
+ * 先读配置文件（默认 ~/headless_client.properties，可用 --config 指定），再由命令行参数覆盖。
+ * 配置文件的键与命令行参数同名（去掉 "--"），例如：
+ * <pre>
+ * leader=192.168.1.10
+ * name=front
+ * camera=0
+ * passthrough=true
+ * gap-policy=DUPLICATE
+ * </pre>
+ *
+ * @param leaderIp Leader地址，null表示自动发现
+ * @param deviceName 设备名，null表示沿用图形客户端保存的名称或 Client-{主机名}
+ * @param cameraIndex 主摄像头序号
+ * @param passthrough 是否请求MJPEG直通
+ * @param gapPolicy 缺帧处理策略
+ * @param streaming 是否边录边传（每个分段关闭后立即上传）
+ * @param uploadAfterStop 非边录边传时，停止录制后是否自动上传
+ * @param localSegments 非边录边传时，本地录制是否也按固定时长分段（默认录制为单个文件）
+ * @param viewsFile 多路相机配置文件
+ * @param help 只打印用法
+ */
+public record HeadlessConfig(String leaderIp, String deviceName, int cameraIndex, boolean passthrough,
+                             GapPolicy gapPolicy, boolean streaming, boolean uploadAfterStop,
+                             boolean localSegments, Path viewsFile, boolean help) {
+
+    static final Path DEFAULT_CONFIG_FILE = Paths.get(System.getProperty("user.home"), "headless_client.properties");
+    static final Path DEFAULT_VIEWS_FILE = Paths.get(System.getProperty("user.home"), "client_cameras.txt");
+
+    private static final Set<String> KEYS = Set.of("leader", "name", "camera", "passthrough", "gap-policy",
+            "streaming", "upload-after-stop", "local-segments", "views", "config", "help");
+    private static final Set<String> FLAGS = Set.of("passthrough", "streaming", "upload-after-stop",
+            "local-segments", "help");
+
+    /**
+     * 解析命令行参数（--key value、--key=value；布尔参数可只写 --key）
+     *
+     * @throws IllegalArgumentException 参数无效
+     */
+    public static HeadlessConfig parse(String[] args) {
+        Properties cli = new Properties();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("无法识别的参数: " + arg);
+            }
+            String key = arg.substring(2);
+            String value;
+            int eq = key.indexOf('=');
+            if (eq >= 0) {
+                value = key.substring(eq + 1);
+                key = key.substring(0, eq);
+            } else if (FLAGS.contains(key)) {
+                value = "true";
+            } else if (i + 1 < args.length) {
+                value = args[++i];
+            } else {
+                throw new IllegalArgumentException("参数缺少取值: " + arg);
+            }
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("未知参数: --" + key);
+            }
+            cli.setProperty(key, value);
+        }
+
+        Properties merged = new Properties();
+        Path configFile = cli.containsKey("config") ? Paths.get(cli.getProperty("config")) : DEFAULT_CONFIG_FILE;
+        if (Files.exists(configFile)) {
+            try (Reader reader = Files.newBufferedReader(configFile, StandardCharsets.UTF_8)) {
+                merged.load(reader);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("无法读取配置文件: " + configFile, e);
+            }
+            for (String key : merged.stringPropertyNames()) {
+                if (!KEYS.contains(key)) {
+                    throw new IllegalArgumentException("配置文件中有未知的键: " + key);
+                }
+            }
+        } else if (cli.containsKey("config")) {
+            throw new IllegalArgumentException("配置文件不存在: " + configFile);
+        }
+        merged.putAll(cli);
+        return fromProperties(merged);
+    }
+
+    private static HeadlessConfig fromProperties(Properties p) {
+        int cameraIndex;
+        try {
+            cameraIndex = Integer.parseInt(p.getProperty("camera", "0").trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("摄像头序号无效: " + p.getProperty("camera"));
+        }
+        GapPolicy gapPolicy;
+        try {
+            gapPolicy = GapPolicy.valueOf(p.getProperty("gap-policy", GapPolicy.LEAVE_GAP.name())
+                    .trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("缺帧策略无效: " + p.getProperty("gap-policy")
+                    + "（可选 LEAVE_GAP / DUPLICATE / MARKER）");
+        }
+        String views = p.getProperty("views");
+        return new HeadlessConfig(
+                blankToNull(p.getProperty("leader")),
+                blankToNull(p.getProperty("name")),
+                cameraIndex,
+                parseBoolean(p, "passthrough", false),
+                gapPolicy,
+                parseBoolean(p, "streaming", true),
+                parseBoolean(p, "upload-after-stop", true),
+                parseBoolean(p, "local-segments", false),
+                views != null ? Paths.get(views.trim()) : DEFAULT_VIEWS_FILE,
+                parseBoolean(p, "help", false));
+    }
+
+    private static boolean parseBoolean(Properties p, String key, boolean defaultValue) {
+        String value = p.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "true", "yes", "1" -> true;
+            case "false", "no", "0" -> false;
+            default -> throw new IllegalArgumentException("布尔参数无效: " + key + "=" + value);
+        };
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    static String usage() {
+        return String.join("\n",
+                "用法: headless-client [选项]",
+                "  --leader IP              Leader地址（默认自动发现）",
+                "  --name NAME              设备名（默认沿用 ~/client_config.txt 或 Client-{主机名}）",
+                "  --camera N               主摄像头序号（默认0）",
+                "  --passthrough            MJPEG直通录制（仅Linux v4l2）",
+                "  --gap-policy POLICY      缺帧处理: LEAVE_GAP / DUPLICATE / MARKER（默认LEAVE_GAP）",
+                "  --streaming=false        关闭边录边传（默认开启）",
+                "  --upload-after-stop=false 关闭停止后自动上传（仅在未开启边录边传时有效）",
+                "  --local-segments         本地录制也按固定时长分段（仅在未开启边录边传时有效，默认单个文件）",
+                "  --views FILE             多路相机配置（默认 ~/client_cameras.txt）",
+                "  --config FILE            配置文件（默认 ~/headless_client.properties）",
+                "  --help                   打印本说明");
+    }
+}
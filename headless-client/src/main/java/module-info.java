@@ -0,0 +1,9 @@
+module com.recsync.headless {
+    requires com.recsync.core;
+    requires com.recsync.camera;
+    requires com.recsync.session;
+    requires org.slf4j;
+    requires org.bytedeco.javacv;
+
+    exports com.recsync.headless;
+}
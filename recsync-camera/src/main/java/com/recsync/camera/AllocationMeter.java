@@ -0,0 +1,64 @@
+package com.recsync.camera;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 线程堆分配计量：统计某个线程平均每帧分配的堆内存字节数
+ *
+ * 依赖 HotSpot 的 com.sun.management.ThreadMXBean，不支持时读数为 -1。
+ * 每 SAMPLE_FRAMES 帧读取一次计数器，开销可以忽略。
+ */
+final class AllocationMeter {
+    private static final int SAMPLE_FRAMES = 60;
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private long lastBytes = -1;
+    private long framesSinceSample = 0;
+    private volatile double bytesPerFrame = -1;
+
+    AllocationMeter() {
+        com.sun.management.ThreadMXBean bean = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean hotspot
+                && hotspot.isThreadAllocatedMemorySupported()) {
+            hotspot.setThreadAllocatedMemoryEnabled(true);
+            bean = hotspot;
+        }
+        this.threadBean = bean;
+    }
+
+    /**
+     * 每处理完一帧调用一次（只能在被计量的线程中调用）
+     */
+    void onFrame() {
+        if (threadBean == null) {
+            return;
+        }
+        if (lastBytes < 0) {
+            lastBytes = threadBean.getCurrentThreadAllocatedBytes();
+            return;
+        }
+        if (++framesSinceSample < SAMPLE_FRAMES) {
+            return;
+        }
+        long bytes = threadBean.getCurrentThreadAllocatedBytes();
+        bytesPerFrame = (double) (bytes - lastBytes) / framesSinceSample;
+        lastBytes = bytes;
+        framesSinceSample = 0;
+    }
+
+    /**
+     * 丢弃当前基线（被计量的线程被新线程替换时，在新线程开始处调用）
+     * 分配计数器按线程统计，沿用旧线程的基线会得到无意义甚至为负的读数；上一次读数保留到新窗口结束
+     */
+    void reset() {
+        lastBytes = -1;
+        framesSinceSample = 0;
+    }
+
+    /**
+     * 最近一个采样窗口内平均每帧分配的字节数，尚无数据或不支持时为 -1
+     */
+    double getBytesPerFrame() {
+        return bytesPerFrame;
+    }
+}
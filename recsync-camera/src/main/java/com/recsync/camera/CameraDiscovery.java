@@ -0,0 +1,307 @@
+package com.recsync.camera;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameGrabber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 摄像头发现服务
+ *
+ * 逐个打开设备 0..9（每个最多5秒 + 200ms 间隔）会让客户端启动耗时数秒。这里分三步：
+ * 1. 元数据枚举：Linux 读 /sys/class/video4linux（设备名、节点序号、所属USB/PCI设备路径），
+ *    只保留每个设备的主采集节点（index=0，UVC的元数据节点为1），不打开设备；其他平台按序号 0..MAX_INDEX-1 枚举；
+ * 2. 缓存：以设备身份（设备名 + 设备路径）为键记录上次验证通过的设备，身份未变的设备直接采用；
+ * 3. 并行验证：缓存中没有的候选设备并行打开并抓一帧，每个最多 PROBE_TIMEOUT_MS。
+ * 返回后可在后台重新验证全部设备并更新缓存，结果变化时回调。
+ *
+ * 正在被本进程使用的设备（startCamera 已打开）不再重复打开，视为可用。
+ */
+public final class CameraDiscovery {
+    private static final Logger logger = LoggerFactory.getLogger(CameraDiscovery.class);
+
+    private static final Path SYSFS_VIDEO = Paths.get("/sys/class/video4linux");
+    private static final int MAX_INDEX = 10;                 // 非Linux平台枚举的最大序号
+    private static final int PROBE_TIMEOUT_MS = 1500;        // 单个设备验证超时
+    private static final int PROBE_THREADS = 4;
+    private static final String CACHE_HEADER = "# recsync camera cache v1";
+
+    /**
+     * 一个摄像头
+     *
+     * @param index OpenCV/v4l2 设备序号
+     * @param name 设备名（未知时为 "摄像头 N"）
+     * @param identity 设备身份（跨重启稳定：设备名 + 设备路径；非Linux平台为序号）
+     */
+    public record CameraInfo(int index, String name, String identity) {
+        public String displayName() {
+            return name.equals(defaultName(index)) ? name : String.format("摄像头 %d - %s", index, name);
+        }
+    }
+
+    private static final ExecutorService PROBES = Executors.newFixedThreadPool(PROBE_THREADS, r -> {
+        Thread t = new Thread(r, "Camera-Probe");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Path cacheFile;
+    private final Map<String, CameraInfo> cache = new ConcurrentHashMap<>();  // 身份 → 上次验证通过的设备
+
+    /**
+     * @param cacheFile 缓存文件，为null时只在内存中缓存
+     */
+    public CameraDiscovery(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        loadCache();
+    }
+
+    /**
+     * 发现可用摄像头：元数据枚举 + 缓存 + 并行验证未知设备
+     *
+     * @param inUse 本进程已打开的设备序号（不重复打开，视为可用）
+     * @return 按序号排序；一个都没有时返回默认的摄像头0
+     */
+    public List<CameraInfo> discover(Set<Integer> inUse) {
+        long beginNs = System.nanoTime();
+        List<CameraInfo> candidates = enumerate();
+        List<CameraInfo> found = new ArrayList<>();
+        List<CameraInfo> unknown = new ArrayList<>();
+        for (CameraInfo candidate : candidates) {
+            if (inUse.contains(candidate.index()) || cache.containsKey(candidate.identity())) {
+                found.add(candidate);
+            } else {
+                unknown.add(candidate);
+            }
+        }
+        found.addAll(validate(unknown));
+        found.sort(Comparator.comparingInt(CameraInfo::index));
+
+        if (!unknown.isEmpty()) {
+            saveCache();
+        }
+        logger.info("摄像头检测完成: {} 个候选, {} 个来自缓存/使用中, {} 个并行验证, 可用 {} 个 (耗时{}ms)",
+                candidates.size(), candidates.size() - unknown.size(), unknown.size(), found.size(),
+                (System.nanoTime() - beginNs) / 1_000_000);
+        return withDefault(found);
+    }
+
+    /**
+     * 后台重新验证所有候选设备（包括缓存中的）并更新缓存，结果与 previous 不同时回调
+     */
+    public void refreshInBackground(Set<Integer> inUse, List<CameraInfo> previous, Consumer<List<CameraInfo>> onChange) {
+        Thread refresher = new Thread(() -> {
+            List<CameraInfo> candidates = enumerate();
+            List<CameraInfo> toProbe = new ArrayList<>();
+            List<CameraInfo> found = new ArrayList<>();
+            for (CameraInfo candidate : candidates) {
+                if (inUse.contains(candidate.index())) {
+                    found.add(candidate);
+                } else {
+                    toProbe.add(candidate);
+                }
+            }
+            // 缓存以本轮验证结果为准（拔掉或失效的设备被移除）
+            toProbe.forEach(c -> cache.remove(c.identity()));
+            found.addAll(validate(toProbe));
+            found.sort(Comparator.comparingInt(CameraInfo::index));
+            saveCache();
+
+            List<CameraInfo> result = withDefault(found);
+            if (!result.equals(previous)) {
+                logger.info("摄像头列表已变化: {} → {} 个", previous.size(), result.size());
+                onChange.accept(result);
+            }
+        }, "Camera-Discovery-Refresh");
+        refresher.setDaemon(true);
+        refresher.setPriority(Thread.MIN_PRIORITY);
+        refresher.start();
+    }
+
+    /**
+     * 枚举候选设备（只读元数据，不打开设备）
+     */
+    List<CameraInfo> enumerate() {
+        if (Files.isDirectory(SYSFS_VIDEO)) {
+            List<CameraInfo> candidates = enumerateSysfs();
+            if (candidates != null) {
+                return candidates;
+            }
+        }
+        List<CameraInfo> candidates = new ArrayList<>();
+        for (int i = 0; i < MAX_INDEX; i++) {
+            candidates.add(new CameraInfo(i, defaultName(i), "index:" + i));
+        }
+        return candidates;
+    }
+
+    /**
+     * Linux：/sys/class/video4linux/videoN/{name,index,device}
+     * @return 读取失败时返回null（回退到按序号枚举）
+     */
+    private List<CameraInfo> enumerateSysfs() {
+        List<CameraInfo> candidates = new ArrayList<>();
+        try (DirectoryStream<Path> nodes = Files.newDirectoryStream(SYSFS_VIDEO, "video*")) {
+            for (Path node : nodes) {
+                int index;
+                try {
+                    index = Integer.parseInt(node.getFileName().toString().substring("video".length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                // 同一设备的第二个节点（UVC元数据流等）不能采集画面
+                String nodeIndex = readAttribute(node.resolve("index"));
+                if (nodeIndex != null && !"0".equals(nodeIndex)) {
+                    continue;
+                }
+                String name = readAttribute(node.resolve("name"));
+                if (name == null || name.isEmpty()) {
+                    name = defaultName(index);
+                }
+                String devicePath;
+                try {
+                    devicePath = node.resolve("device").toRealPath().toString();
+                } catch (IOException e) {
+                    devicePath = node.toString();
+                }
+                candidates.add(new CameraInfo(index, name, name + "@" + devicePath));
+            }
+        } catch (IOException e) {
+            logger.debug("读取 {} 失败: {}", SYSFS_VIDEO, e.getMessage());
+            return null;
+        }
+        candidates.sort(Comparator.comparingInt(CameraInfo::index));
+        return candidates;
+    }
+
+    /**
+     * 并行打开候选设备并抓一帧，超时的视为不可用；验证通过的写入缓存
+     */
+    private List<CameraInfo> validate(List<CameraInfo> candidates) {
+        List<CameraInfo> valid = new ArrayList<>();
+        if (candidates.isEmpty()) {
+            return valid;
+        }
+        List<Callable<Boolean>> probes = new ArrayList<>();
+        for (CameraInfo candidate : candidates) {
+            probes.add(() -> probe(candidate.index()));
+        }
+        try {
+            // 所有探测共享一个总时限：线程数不足时分批执行
+            long batches = (candidates.size() + PROBE_THREADS - 1) / PROBE_THREADS;
+            List<Future<Boolean>> results = PROBES.invokeAll(probes, PROBE_TIMEOUT_MS * batches + 500,
+                    TimeUnit.MILLISECONDS);
+            for (int i = 0; i < candidates.size(); i++) {
+                Future<Boolean> result = results.get(i);
+                if (!result.isCancelled() && Boolean.TRUE.equals(result.get())) {
+                    CameraInfo camera = candidates.get(i);
+                    valid.add(camera);
+                    cache.put(camera.identity(), camera);
+                    logger.info("✓ 检测到摄像头 {}: {}", camera.index(), camera.name());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.debug("摄像头验证失败: {}", e.getMessage());
+        }
+        return valid;
+    }
+
+    private static boolean probe(int index) {
+        OpenCVFrameGrabber grabber = new OpenCVFrameGrabber(index);
+        try {
+            grabber.setTimeout(PROBE_TIMEOUT_MS);
+            grabber.start();
+            Frame frame = grabber.grab();
+            return frame != null && frame.image != null;
+        } catch (Exception e) {
+            logger.debug("摄像头 {} 不可用: {}", index, e.getMessage());
+            return false;
+        } finally {
+            try { grabber.stop(); } catch (Exception ignored) {}
+            try { grabber.release(); } catch (Exception ignored) {}
+        }
+    }
+
+    private static List<CameraInfo> withDefault(List<CameraInfo> found) {
+        if (found.isEmpty()) {
+            logger.warn("未检测到可用摄像头，添加默认选项 0");
+            return List.of(new CameraInfo(0, defaultName(0), "index:0"));
+        }
+        return List.copyOf(found);
+    }
+
+    private static String defaultName(int index) {
+        return "摄像头 " + index;
+    }
+
+    private static String readAttribute(Path path) {
+        try {
+            return Files.readString(path, StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // 缓存文件格式（制表符分隔）：identity  index  name
+    private void loadCache() {
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(cacheFile, StandardCharsets.UTF_8)) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if (parts.length >= 3) {
+                    cache.put(parts[0], new CameraInfo(Integer.parseInt(parts[1]), parts[2], parts[0]));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("读取摄像头缓存失败: {}", e.getMessage());
+            cache.clear();
+        }
+    }
+
+    private synchronized void saveCache() {
+        if (cacheFile == null) {
+            return;
+        }
+        Map<String, CameraInfo> snapshot = new LinkedHashMap<>(cache);
+        StringBuilder sb = new StringBuilder(CACHE_HEADER).append('\n');
+        for (CameraInfo camera : snapshot.values()) {
+            sb.append(camera.identity()).append('\t').append(camera.index()).append('\t')
+                    .append(camera.name()).append('\n');
+        }
+        try {
+            Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            Files.writeString(temp, sb.toString(), StandardCharsets.UTF_8);
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.debug("保存摄像头缓存失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.recsync.camera;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 采集节拍器
+ *
+ * 默认由设备自身节拍：grab() 会阻塞到下一帧就绪，采集循环不做任何休眠。
+ * 若连续多次 grab() 远快于帧周期返回（非阻塞源，例如文件/测试源或返回重复帧的驱动），
+ * 自动切换为基于截止时间的调度：按 目标周期 推进截止时间并在其前等待，
+ * 落后超过一个周期时重置截止时间而不是连续追帧。
+ *
+ * 基准测试以最大速度回放时可关闭节拍（FREE_RUN），采集循环尽快取帧。
+ *
+ * 同时统计实测帧间隔，给出实际帧率和抖动（帧间隔标准差）。
+ * 仅由采集线程调用 beforeGrab/afterGrab；统计读取方法可在任意线程调用。
+ */
+public class CapturePacer {
+    private static final Logger logger = LoggerFactory.getLogger(CapturePacer.class);
+
+    private static final int WINDOW = 120;                  // 统计窗口（帧间隔数）
+    private static final int NON_BLOCKING_DETECT_COUNT = 10; // 连续快速返回多少次后判定为非阻塞源
+    private static final double NON_BLOCKING_RATIO = 0.25;   // grab耗时 < 周期*该比例 视为未阻塞
+
+    /**
+     * 节拍模式
+     */
+    public enum Mode {
+        DEVICE,     // 设备节拍（grab阻塞）
+        DEADLINE,   // 截止时间调度（非阻塞源）
+        FREE_RUN    // 不节拍，尽快取帧（最大速度回放）
+    }
+
+    private final long targetPeriodNs;
+    private volatile Mode mode;
+
+    private long grabStartNs;
+    private long nextDeadlineNs = 0;
+    private final AtomicLong pendingShiftNs = new AtomicLong(0);  // 相位对齐请求的截止时间推迟量
+    private int fastGrabCount = 0;
+
+    // 帧间隔环形窗口（采集线程写，统计时加锁读）
+    private final long[] intervals = new long[WINDOW];
+    private int intervalCount = 0;
+    private int intervalPos = 0;
+    private long lastFrameNs = 0;
+
+    public CapturePacer(double targetFps) {
+        this(targetFps, true);
+    }
+
+    /**
+     * @param paced false 表示不节拍（FREE_RUN），只统计帧间隔
+     */
+    public CapturePacer(double targetFps, boolean paced) {
+        this.targetPeriodNs = targetFps > 0 ? (long) (1_000_000_000L / targetFps) : 0;
+        this.mode = paced ? Mode.DEVICE : Mode.FREE_RUN;
+    }
+
+    /**
+     * grab() 之前调用：截止时间模式下等待到下一个截止时间
+     */
+    public void beforeGrab() {
+        if (mode == Mode.DEADLINE && targetPeriodNs > 0) {
+            long now = System.nanoTime();
+            if (nextDeadlineNs == 0 || now - nextDeadlineNs > targetPeriodNs) {
+                // 首次或落后超过一个周期：重新对齐，不追帧
+                nextDeadlineNs = now;
+            }
+            long shift = pendingShiftNs.getAndSet(0);
+            if (shift > 0) {
+                nextDeadlineNs += shift;
+            }
+            long waitNs = nextDeadlineNs - now;
+            while (waitNs > 0) {
+                LockSupport.parkNanos(waitNs);
+                waitNs = nextDeadlineNs - System.nanoTime();
+            }
+            nextDeadlineNs += targetPeriodNs;
+        }
+        grabStartNs = System.nanoTime();
+    }
+
+    /**
+     * grab() 返回一帧之后调用
+     *
+     * @param frameTimeNs 该帧的本地时间戳（System.nanoTime 时域）
+     */
+    public void afterGrab(long frameTimeNs) {
+        long grabDurationNs = System.nanoTime() - grabStartNs;
+
+        if (mode == Mode.DEVICE && targetPeriodNs > 0) {
+            if (grabDurationNs < targetPeriodNs * NON_BLOCKING_RATIO) {
+                if (++fastGrabCount >= NON_BLOCKING_DETECT_COUNT) {
+                    mode = Mode.DEADLINE;
+                    logger.info("⏱️ 采集源未按帧阻塞，切换为截止时间调度 (目标周期 {}ms)",
+                            targetPeriodNs / 1_000_000.0);
+                }
+            } else {
+                fastGrabCount = 0;
+            }
+        }
+
+        if (lastFrameNs != 0) {
+            synchronized (intervals) {
+                intervals[intervalPos] = frameTimeNs - lastFrameNs;
+                intervalPos = (intervalPos + 1) % WINDOW;
+                if (intervalCount < WINDOW) {
+                    intervalCount++;
+                }
+            }
+        }
+        lastFrameNs = frameTimeNs;
+    }
+
+    /**
+     * 推迟之后所有截止时间（相位对齐，仅截止时间调度模式有效），在下一次 beforeGrab 时生效
+     * @param delayNs 推迟量（0 ~ 一个周期）
+     */
+    public void shiftPhase(long delayNs) {
+        if (delayNs > 0) {
+            pendingShiftNs.addAndGet(delayNs);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 实测帧率（窗口内平均帧间隔的倒数）
+     */
+    public double getAchievedFps() {
+        double mean = meanIntervalNs();
+        return mean > 0 ? 1e9 / mean : 0;
+    }
+
+    /**
+     * 抖动：窗口内帧间隔的标准差（毫秒）
+     */
+    public double getJitterMs() {
+        synchronized (intervals) {
+            if (intervalCount < 2) {
+                return 0;
+            }
+            double mean = meanIntervalNs();
+            double sumSq = 0;
+            for (int i = 0; i < intervalCount; i++) {
+                double d = intervals[i] - mean;
+                sumSq += d * d;
+            }
+            return Math.sqrt(sumSq / (intervalCount - 1)) / 1_000_000.0;
+        }
+    }
+
+    private double meanIntervalNs() {
+        synchronized (intervals) {
+            if (intervalCount == 0) {
+                return 0;
+            }
+            long sum = 0;
+            for (int i = 0; i < intervalCount; i++) {
+                sum += intervals[i];
+            }
+            return (double) sum / intervalCount;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.recsync.camera;
+
+import java.util.Arrays;
+
+/**
+ * 采集时间估计：把 grab() 返回时读到的同步时钟修正为更接近曝光时刻的时间戳
+ *
+ * grab() 返回时读取的时钟包含驱动缓冲和JNI返回延迟，每帧延迟不同（抖动）。
+ * 修正方式按可用信息二选一：
+ * 1. DEVICE：设备提供单调递增的帧时间戳（v4l2缓冲区时间戳等）时，
+ *    用滑动窗口内 min(观测时间 - 设备时间) 把设备时钟映射到同步时钟；
+ * 2. FITTED：否则把观测时间拟合为等间隔帧序列（Theil–Sen 稳健回归，{@link FramePeriodEstimator#theilSenSlope}），
+ *    丢帧按周期推算帧序号；拟合建立后按拟合线推算，单个迟到超过半个周期的帧只影响它自己，不会让之后的帧序号整体错位。
+ * 两种方式的估计值都取观测时间的下包络（延迟最小的那些帧），即对曝光时刻的最佳估计加上固定的最小延迟；
+ * 残差 = 观测时间 - 估计值（≥0，表示该帧额外的返回延迟）。
+ *
+ * 只在采集线程中调用，窗口数组预先分配，不产生新的分配。
+ */
+final class CaptureTimestampRefiner {
+
+    /**
+     * 时间戳来源
+     */
+    enum Source {
+        RAW,      // 样本不足，直接使用观测时间
+        DEVICE,   // 设备时间戳映射
+        FITTED    // 等间隔拟合
+    }
+
+    private static final int WINDOW = 120;                 // 滑动窗口帧数
+    private static final int MIN_FIT_FRAMES = 10;          // 开始拟合所需的最少帧数
+    private static final double OUTLIER_SIGMA = 3.0;       // 离群点阈值（稳健标准差倍数）
+    private static final int MAX_INVALID_DEVICE_FRAMES = 5; // 设备时间戳连续异常多少帧后改用拟合
+    private static final long RESET_GAP_NS = 1_000_000_000L; // 超过该间隔（如相机卡住）时重置
+
+    private final double nominalPeriodNs;
+
+    // 设备时间戳映射
+    private final long[] deviceOffsets = new long[WINDOW];
+    private int deviceCount = 0;
+    private int devicePos = 0;
+    private long lastDeviceNs = -1;
+    private int invalidDeviceFrames = 0;
+    private boolean deviceUsable = true;
+
+    // 等间隔拟合（时间相对 baseNs，避免double精度损失）
+    private final double[] fitIndex = new double[WINDOW];
+    private final double[] fitTime = new double[WINDOW];
+    private final double[] sortScratch = new double[WINDOW];
+    private int fitCount = 0;
+    private int fitPos = 0;
+    private long baseNs = 0;
+    private long lastFrameIndex = 0;
+    private long lastObservedNs = -1;
+    private double periodNs;
+    private double lineA;                                  // 拟合线截距（相对 baseNs）
+    private double lineB;                                  // 拟合线斜率（帧周期）
+
+    // 输出
+    private final long[] residualHistory = new long[WINDOW];
+    private int residualCount = 0;
+    private int residualPos = 0;
+    private long lastEstimateNs = Long.MIN_VALUE;
+    private long lastResidualNs = 0;
+    private volatile Source source = Source.RAW;
+    private volatile double residualStdMs = 0;
+    private volatile double estimatedPeriodMs;
+    private volatile boolean resetRequested = false;
+
+    CaptureTimestampRefiner(double nominalFps) {
+        this.nominalPeriodNs = 1_000_000_000.0 / Math.max(1, nominalFps);
+        this.periodNs = nominalPeriodNs;
+        this.estimatedPeriodMs = nominalPeriodNs / 1e6;
+    }
+
+    /**
+     * 修正一帧的时间戳
+     *
+     * @param observedNs grab() 返回后读取的同步时钟时间
+     * @param deviceTimestampUs 设备提供的帧时间戳（微秒），没有时传 ≤0
+     * @return 修正后的同步时钟时间戳（严格递增）
+     */
+    long refine(long observedNs, long deviceTimestampUs) {
+        if (resetRequested || (lastObservedNs >= 0 && observedNs - lastObservedNs > RESET_GAP_NS)) {
+            resetRequested = false;
+            reset();
+        }
+
+        long estimate = -1;
+        if (deviceUsable && deviceTimestampUs > 0) {
+            estimate = refineWithDevice(observedNs, deviceTimestampUs * 1_000L);
+        } else if (deviceUsable && deviceTimestampUs <= 0) {
+            markDeviceInvalid();
+        }
+        if (estimate < 0) {
+            estimate = refineWithFit(observedNs);
+        } else {
+            // 设备模式下也维护拟合状态，设备时间戳失效时可以无缝切换
+            addFitSample(observedNs);
+        }
+        lastObservedNs = observedNs;
+
+        if (estimate <= lastEstimateNs) {
+            estimate = lastEstimateNs + 1;
+        }
+        lastEstimateNs = estimate;
+        lastResidualNs = observedNs - estimate;
+        recordResidual(lastResidualNs);
+        return estimate;
+    }
+
+    private long refineWithDevice(long observedNs, long deviceNs) {
+        if (lastDeviceNs >= 0) {
+            long delta = deviceNs - lastDeviceNs;
+            if (delta <= 0 || delta > nominalPeriodNs * 10) {
+                lastDeviceNs = deviceNs;
+                markDeviceInvalid();
+                return -1;
+            }
+        }
+        lastDeviceNs = deviceNs;
+        invalidDeviceFrames = 0;
+
+        deviceOffsets[devicePos] = observedNs - deviceNs;
+        devicePos = (devicePos + 1) % WINDOW;
+        if (deviceCount < WINDOW) {
+            deviceCount++;
+        }
+        if (deviceCount < MIN_FIT_FRAMES) {
+            source = Source.RAW;
+            return observedNs;
+        }
+
+        long minOffset = Long.MAX_VALUE;
+        for (int i = 0; i < deviceCount; i++) {
+            minOffset = Math.min(minOffset, deviceOffsets[i]);
+        }
+        source = Source.DEVICE;
+        return deviceNs + minOffset;
+    }
+
+    private void markDeviceInvalid() {
+        if (++invalidDeviceFrames >= MAX_INVALID_DEVICE_FRAMES) {
+            deviceUsable = false;
+        }
+    }
+
+    private long refineWithFit(long observedNs) {
+        addFitSample(observedNs);
+        if (fitCount < MIN_FIT_FRAMES) {
+            source = Source.RAW;
+            return observedNs;
+        }
+
+        // Theil–Sen 稳健回归：迟到帧（大残差）不会把拟合线拉偏
+        double slope = FramePeriodEstimator.theilSenSlope(fitIndex, fitTime, fitCount, sortScratch);
+        if (!Double.isNaN(slope)) {
+            lineB = slope;
+            lineA = FramePeriodEstimator.theilSenIntercept(fitIndex, fitTime, fitCount, lineB, sortScratch);
+        }
+        double threshold = OUTLIER_SIGMA * robustSigma();
+
+        // 下包络：按内点中最小残差平移
+        double minResidual = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < fitCount; i++) {
+            double r = fitTime[i] - (lineA + lineB * fitIndex[i]);
+            if (Math.abs(r) <= threshold && r < minResidual) {
+                minResidual = r;
+            }
+        }
+        if (minResidual == Double.POSITIVE_INFINITY) {
+            minResidual = 0;
+        }
+
+        if (lineB > nominalPeriodNs * 0.5 && lineB < nominalPeriodNs * 2) {
+            periodNs = lineB;
+            estimatedPeriodMs = periodNs / 1e6;
+        }
+        source = Source.FITTED;
+        return baseNs + Math.round(lineA + lineB * lastFrameIndex + minResidual);
+    }
+
+    /**
+     * 记录一个拟合样本；帧序号按当前周期推算（丢帧时跳号）
+     * 拟合线有效时按拟合线推算帧序号（可与上一帧相同，不会倒退），否则按与上一帧的间隔推算
+     */
+    private void addFitSample(long observedNs) {
+        if (fitCount == 0) {
+            baseNs = observedNs;
+            lastFrameIndex = 0;
+        } else if (fitCount >= MIN_FIT_FRAMES && lineB > nominalPeriodNs * 0.5 && lineB < nominalPeriodNs * 2) {
+            long index = Math.round((observedNs - baseNs - lineA) / lineB);
+            lastFrameIndex = Math.max(lastFrameIndex, index);
+        } else {
+            long steps = Math.max(1, Math.round((observedNs - lastObservedNs) / periodNs));
+            lastFrameIndex += steps;
+        }
+        fitIndex[fitPos] = lastFrameIndex;
+        fitTime[fitPos] = observedNs - baseNs;
+        fitPos = (fitPos + 1) % WINDOW;
+        if (fitCount < WINDOW) {
+            fitCount++;
+        }
+    }
+
+    /**
+     * 稳健标准差：1.4826 × 残差绝对值的中位数
+     */
+    private double robustSigma() {
+        for (int i = 0; i < fitCount; i++) {
+            sortScratch[i] = Math.abs(fitTime[i] - (lineA + lineB * fitIndex[i]));
+        }
+        Arrays.sort(sortScratch, 0, fitCount);
+        double median = sortScratch[fitCount / 2];
+        // 残差全为0（理想输入）时给一个下限，避免把所有点都判为离群
+        return Math.max(1.4826 * median, 1_000);
+    }
+
+    private void recordResidual(long residualNs) {
+        residualHistory[residualPos] = residualNs;
+        residualPos = (residualPos + 1) % WINDOW;
+        if (residualCount < WINDOW) {
+            residualCount++;
+        }
+        double sum = 0;
+        double sumSq = 0;
+        for (int i = 0; i < residualCount; i++) {
+            double r = residualHistory[i] / 1e6;
+            sum += r;
+            sumSq += r * r;
+        }
+        double mean = sum / residualCount;
+        residualStdMs = Math.sqrt(Math.max(0, sumSq / residualCount - mean * mean));
+    }
+
+    private void reset() {
+        deviceCount = 0;
+        devicePos = 0;
+        lastDeviceNs = -1;
+        fitCount = 0;
+        lineA = 0;
+        lineB = 0;
+        fitPos = 0;
+        residualCount = 0;
+        residualPos = 0;
+        periodNs = nominalPeriodNs;
+    }
+
+    /**
+     * 请求在下一帧丢弃窗口重新拟合（采集节拍被有意改变后调用，例如相位对齐推迟了截止时间），可在任意线程调用
+     */
+    void requestReset() {
+        resetRequested = true;
+    }
+
+    /**
+     * 最近一帧的残差（观测时间 - 估计值，纳秒）
+     */
+    long getLastResidualNs() {
+        return lastResidualNs;
+    }
+
+    Source getSource() {
+        return source;
+    }
+
+    /**
+     * 窗口内残差的标准差（毫秒），即修正前时间戳的抖动
+     */
+    double getResidualStdMs() {
+        return residualStdMs;
+    }
+
+    /**
+     * 拟合得到的帧周期（毫秒），拟合前为标称周期
+     */
+    double getEstimatedPeriodMs() {
+        return estimatedPeriodMs;
+    }
+}
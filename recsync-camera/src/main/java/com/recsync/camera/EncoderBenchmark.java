@@ -0,0 +1,150 @@
+package com.recsync.camera;
+
+import com.recsync.core.sync.ClientTelemetry;
+import com.recsync.core.sync.EncoderProfile;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 编码器自测：为 "auto" 编码配置选择本机能稳定跑满目标帧率的最高质量配置
+ *
+ * 按质量从高到低依次用合成画面编码约1秒视频，实测编码帧率 ≥ 目标帧率 × HEADROOM 即选中。
+ * 自测在后台线程进行（与采集同时运行，结果更接近真实负载），按分辨率/帧率缓存结果。
+ */
+public final class EncoderBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(EncoderBenchmark.class);
+
+    private static final double HEADROOM = 1.3;          // 需要超出目标帧率的余量（采集、预览也占CPU）
+    private static final double MAX_SECONDS_PER_PROFILE = 3.0;
+
+    private static final Map<String, EncoderProfile> results = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<EncoderProfile>> running = new ConcurrentHashMap<>();
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Encoder-Benchmark");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private EncoderBenchmark() {}
+
+    /**
+     * 获取已缓存的自测结果
+     * @return 尚未自测完成时返回null
+     */
+    public static EncoderProfile getResult(int width, int height, double fps) {
+        return results.get(ClientTelemetry.formatKey(width, height, fps));
+    }
+
+    /**
+     * 若该格式尚未自测，则在后台开始自测
+     * @return 自测完成（或已有缓存结果）时结束，结果为选中的配置
+     */
+    public static CompletableFuture<EncoderProfile> ensureBenchmarked(int width, int height, double fps) {
+        String key = ClientTelemetry.formatKey(width, height, fps);
+        EncoderProfile cached = results.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return running.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> {
+            try {
+                EncoderProfile selected = run(width, height, fps);
+                results.put(key, selected);
+                return selected;
+            } finally {
+                running.remove(key);
+            }
+        }, executor));
+    }
+
+    private static EncoderProfile run(int width, int height, double fps) {
+        logger.info("⚙️ 开始编码器自测: {}", ClientTelemetry.formatKey(width, height, fps));
+        Frame[] frames = createTestFrames(width, height);
+        try {
+            for (EncoderProfile profile : EncoderProfile.AUTO_CANDIDATES) {
+                double encodeFps = measure(profile, width, height, fps, frames);
+                boolean sustained = encodeFps >= fps * HEADROOM;
+                logger.info("   {}: {} fps {}", profile.name(), String.format("%.1f", encodeFps),
+                        sustained ? "✓" : "✗");
+                if (sustained) {
+                    logger.info("⚙️ 编码器自测完成，选择配置: {}", profile.name());
+                    return profile;
+                }
+            }
+        } finally {
+            for (Frame frame : frames) {
+                frame.close();
+            }
+        }
+        logger.warn("⚙️ 所有配置均未达到目标帧率，使用 {}", EncoderProfile.FALLBACK.name());
+        return EncoderProfile.FALLBACK;
+    }
+
+    private static double measure(EncoderProfile profile, int width, int height, double fps, Frame[] frames) {
+        int frameCount = (int) Math.max(10, Math.round(fps));
+        Path tempFile = null;
+        FFmpegFrameRecorder recorder = null;
+        try {
+            tempFile = Files.createTempFile("recsync-bench-", ".mp4");
+            recorder = RecorderFactory.create(tempFile.toString(), width, height, fps, profile);
+
+            long start = System.nanoTime();
+            int encoded = 0;
+            for (int i = 0; i < frameCount; i++) {
+                recorder.record(frames[i % frames.length]);
+                encoded++;
+                if ((System.nanoTime() - start) / 1e9 > MAX_SECONDS_PER_PROFILE) {
+                    break;  // 明显跑不满，不必编完
+                }
+            }
+            recorder.stop();
+            double elapsedSec = (System.nanoTime() - start) / 1e9;
+            return elapsedSec > 0 ? encoded / elapsedSec : 0;
+        } catch (Exception e) {
+            logger.warn("编码器自测失败 ({}): {}", profile.name(), e.getMessage());
+            return 0;
+        } finally {
+            if (recorder != null) {
+                try { recorder.release(); } catch (Exception ignored) {}
+            }
+            if (tempFile != null) {
+                try { Files.deleteIfExists(tempFile); } catch (Exception ignored) {}
+            }
+        }
+    }
+
+    /**
+     * 生成几帧带噪声的测试画面（纯色画面对编码器过于简单，测不出真实开销）
+     */
+    private static Frame[] createTestFrames(int width, int height) {
+        Random random = new Random(42);
+        Frame[] frames = new Frame[4];
+        for (int i = 0; i < frames.length; i++) {
+            Frame frame = new Frame(width, height, Frame.DEPTH_UBYTE, 3);
+            ByteBuffer buffer = (ByteBuffer) frame.image[0];
+            byte[] row = new byte[frame.imageStride];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < row.length; x++) {
+                    // 平滑渐变 + 噪声，帧间平移模拟运动
+                    row[x] = (byte) (((x + y + i * 8) & 0xFF) ^ (random.nextInt(32)));
+                }
+                buffer.put(row);
+            }
+            buffer.rewind();
+            frames[i] = frame;
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,69 @@
+package com.recsync.camera;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+
+/**
+ * 视频文件回放采集器：只取视频帧，到结尾后从头循环
+ *
+ * getTimestamp() 跨循环单调递增（每轮加上文件时长），时间戳修正不会看到设备时钟回退。
+ * 文件帧率与请求帧率不同时只记录警告，节拍仍按请求帧率。
+ */
+class FileReplayFrameGrabber extends FFmpegFrameGrabber {
+    private static final Logger logger = LoggerFactory.getLogger(FileReplayFrameGrabber.class);
+
+    private final Path videoFile;
+    private long loopOffsetUs = 0;     // 之前各轮累计的时长
+    private long lastTimestampUs = 0;  // 本轮最后一帧的时间戳
+    private int loops = 0;
+
+    FileReplayFrameGrabber(Path videoFile) {
+        super(videoFile.toFile());
+        this.videoFile = videoFile;
+    }
+
+    @Override
+    public void start() throws Exception {
+        double requestedFps = getFrameRate();
+        super.start();
+        loopOffsetUs = 0;
+        lastTimestampUs = 0;
+        loops = 0;
+        double fileFps = getVideoFrameRate();
+        if (requestedFps > 0 && fileFps > 0 && Math.abs(fileFps - requestedFps) > 0.5) {
+            logger.warn("回放文件帧率 {} 与采集帧率 {} 不同，按采集帧率出帧: {}",
+                    String.format("%.2f", fileFps), requestedFps, videoFile.getFileName());
+        }
+    }
+
+    @Override
+    public Frame grab() throws Exception {
+        Frame frame = grabImage();
+        if (frame == null) {
+            // 到达结尾：从头开始，时间戳接在上一轮之后
+            double fileFps = getVideoFrameRate();
+            long periodUs = fileFps > 0 ? Math.round(1_000_000 / fileFps) : 0;
+            loopOffsetUs += lastTimestampUs + periodUs;
+            lastTimestampUs = 0;
+            loops++;
+            if (loops == 1) {
+                logger.info("回放到达结尾，从头循环: {}", videoFile.getFileName());
+            }
+            setTimestamp(0);
+            frame = grabImage();
+        }
+        if (frame != null) {
+            lastTimestampUs = super.getTimestamp();
+        }
+        return frame;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return loopOffsetUs + super.getTimestamp();
+    }
+}
@@ -0,0 +1,125 @@
+package com.recsync.camera;
+
+import com.recsync.core.transfer.FrameGapReport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * 录制缺帧检测：按写入帧的同步时间戳间隔与期望帧间隔比较
+ *
+ * 间隔超过 GAP_THRESHOLD_PERIODS 个期望帧间隔视为缺口，缺失帧数 = round(间隔 / 期望帧间隔) - 1。
+ * 检测在编码线程写入时进行，因此设备跳帧和采集/编码队列丢帧都会被发现；
+ * 预录缓冲中的历史帧同样参与检测。
+ *
+ * onFrame/recordInserted 只在编码线程（持有 recorderLock）中调用，计数可由其他线程读取。
+ */
+final class FrameGapDetector {
+    static final double GAP_THRESHOLD_PERIODS = 1.5;
+    private static final int MAX_RECORDED_GAPS = 10_000;  // 报告中保留的缺口数上限，超出只计数
+    private static final int RECENT_POSITIONS = 5;        // 遥测中上报的最近缺口位置数
+
+    private final long periodNs;
+    private final List<FrameGapReport.Gap> gaps = new ArrayList<>();
+    private final Deque<Long> recentOffsetsMs = new ArrayDeque<>();  // 受 this 保护
+
+    private long firstTimestampNs = -1;
+    private long lastTimestampNs = -1;
+    private volatile long droppedFrames = 0;
+    private volatile long insertedFrames = 0;
+    private volatile int gapCount = 0;
+
+    /**
+     * @param periodNs 期望帧间隔（纳秒），通常为录制开始时估计的实际帧周期
+     */
+    FrameGapDetector(long periodNs) {
+        this.periodNs = Math.max(1, periodNs);
+    }
+
+    long getPeriodNs() {
+        return periodNs;
+    }
+
+    /**
+     * 即将写入一帧（真实帧，不含补帧）
+     *
+     * @param frameIndex 该帧将要占用的视频帧序号
+     * @param timestampNs 同步时间戳
+     * @return 该帧之前的缺失帧数，没有缺口时为0
+     */
+    int onFrame(long frameIndex, long timestampNs) {
+        long previous = lastTimestampNs;
+        lastTimestampNs = timestampNs;
+        if (previous < 0) {
+            firstTimestampNs = timestampNs;
+            return 0;
+        }
+        long intervalNs = timestampNs - previous;
+        if (intervalNs <= periodNs * GAP_THRESHOLD_PERIODS) {
+            return 0;
+        }
+        int missing = (int) Math.max(1, Math.round((double) intervalNs / periodNs) - 1);
+        long offsetMs = (previous - firstTimestampNs) / 1_000_000;
+        droppedFrames += missing;
+        gapCount++;
+        if (gaps.size() < MAX_RECORDED_GAPS) {
+            gaps.add(new FrameGapReport.Gap(frameIndex, previous, timestampNs, missing, 0, offsetMs));
+        }
+        synchronized (this) {
+            recentOffsetsMs.addLast(offsetMs);
+            if (recentOffsetsMs.size() > RECENT_POSITIONS) {
+                recentOffsetsMs.removeFirst();
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * 记录最近一处缺口实际补入的帧数
+     */
+    void recordInserted(int count) {
+        if (count <= 0 || gaps.isEmpty()) {
+            return;
+        }
+        insertedFrames += count;
+        int last = gaps.size() - 1;
+        FrameGapReport.Gap gap = gaps.get(last);
+        gaps.set(last, new FrameGapReport.Gap(gap.frameIndex(), gap.previousTimestampNs(), gap.timestampNs(),
+                gap.missingFrames(), count, gap.offsetMs()));
+    }
+
+    long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    long getInsertedFrames() {
+        return insertedFrames;
+    }
+
+    int getGapCount() {
+        return gapCount;
+    }
+
+    /**
+     * 最近几处缺口距录制开始的位置（秒，';' 分隔，遥测值中不能含 ','），没有缺口时为空串
+     */
+    synchronized String getRecentPositions() {
+        StringJoiner joiner = new StringJoiner(";");
+        for (long offsetMs : recentOffsetsMs) {
+            joiner.add(String.format(Locale.ROOT, "%.1f", offsetMs / 1000.0));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * 生成缺帧报告（录制结束后、编码线程不再写入时调用）
+     */
+    FrameGapReport toReport(String videoName, GapPolicy policy, long totalFrames) {
+        return new FrameGapReport(videoName, policy.name(), periodNs, totalFrames,
+                droppedFrames, insertedFrames, gaps);
+    }
+}
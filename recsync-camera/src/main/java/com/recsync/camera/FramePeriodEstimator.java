@@ -0,0 +1,212 @@
+package com.recsync.camera;
+
+import java.util.Arrays;
+
+/**
+ * 实际帧周期估计：对最近 window 帧的时间戳做稳健直线回归 time = a + 周期 × 帧序号
+ *
+ * 摄像头的实际帧率与标称帧率常有千分之一量级的偏差（29.97 vs 30），并且以同步时钟衡量时
+ * 还叠加了设备晶振相对Leader时钟的漂移；帧间隔抖动、偶发的迟到帧和丢帧使简单的
+ * "帧数 / 时间" 或最小二乘都不可靠。这里使用 Theil–Sen 回归（样本对斜率的中位数），按多个尺度逐级细化：
+ * 相隔 lag 帧的样本对，帧数 = round(时间差 / 上一级周期)，斜率 = 时间差 / 帧数，取中位数作为本级周期；
+ * lag 从1（相邻间隔）按 LAG_STEP 倍增到半个窗口，每一级的周期误差都足够小，保证下一级帧数取整正确。
+ * 每个样本对的帧数由自身时间差决定，迟到帧、丢帧只影响涉及它的少数样本对（离群），
+ * 不会像累积帧序号那样让之后所有样本错位。
+ *
+ * 最新帧时刻：把每个样本按估计周期投影到最新一帧所在的网格位置，取中位数（以圆周平均为中心，避免回绕）。
+ *
+ * 估计的是节拍本身的周期，节拍被有意平移（相位对齐）后应调用 reset()。
+ * onFrame 只由采集线程调用；estimate 可在任意线程调用（按需计算，不在采集线程中排序）：
+ * 在 onFrame 的锁内只拷贝样本，排序和回归在锁外进行，估计期间不阻塞采集线程。
+ */
+final class FramePeriodEstimator {
+
+    static final int MIN_SAMPLES = 20;
+
+    /**
+     * 一次估计的结果
+     *
+     * @param periodNs 实际帧周期（纳秒）
+     * @param lastFrameNs 回归线在最新一帧处的取值（同步时钟，纳秒），即去抖后的最新帧时刻
+     * @param jitterMs 回归残差的稳健标准差（1.4826 × MAD，毫秒），反映节拍稳定性
+     * @param samples 参与回归的帧数
+     */
+    record Estimate(double periodNs, long lastFrameNs, double jitterMs, int samples) {
+
+        double fps() {
+            return 1e9 / periodNs;
+        }
+
+        /**
+         * 实际帧率相对标称帧率的偏差（百万分之一，正值表示比标称快）
+         */
+        double driftPpm(double nominalFps) {
+            return (fps() / nominalFps - 1) * 1e6;
+        }
+    }
+
+    private static final int LAG_STEP = 4;
+
+    private final long[] timestamps;  // 受 this 保护
+    private int count = 0;
+    private int pos = 0;
+
+    // estimate 的工作数组，受 estimateLock 保护（并发调用 estimate 时互斥，但不占用 onFrame 的锁）
+    private final Object estimateLock = new Object();
+    private final double[] time;
+    private final double[] scratch;
+
+    /**
+     * @param window 参与回归的最近帧数
+     */
+    FramePeriodEstimator(int window) {
+        this.timestamps = new long[window];
+        this.time = new double[window];
+        this.scratch = new double[window];
+    }
+
+    /**
+     * 记录一帧的时间戳（采集线程）
+     */
+    synchronized void onFrame(long timestampNs) {
+        timestamps[pos] = timestampNs;
+        pos = (pos + 1) % timestamps.length;
+        if (count < timestamps.length) {
+            count++;
+        }
+    }
+
+    synchronized void reset() {
+        count = 0;
+        pos = 0;
+    }
+
+    synchronized int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * 按当前窗口估计帧周期
+     * @return 样本不足 MIN_SAMPLES 时返回null
+     */
+    Estimate estimate() {
+        synchronized (estimateLock) {
+            return estimateLocked();
+        }
+    }
+
+    private Estimate estimateLocked() {
+        int n;
+        long lastNs;
+        synchronized (this) {
+            n = count;
+            if (n < MIN_SAMPLES) {
+                return null;
+            }
+            // 按时间顺序展开环形缓冲，时间相对最新一帧（避免double精度损失）
+            int oldest = n < timestamps.length ? 0 : pos;
+            lastNs = timestamps[(oldest + n - 1) % timestamps.length];
+            for (int i = 0; i < n; i++) {
+                time[i] = timestamps[(oldest + i) % timestamps.length] - lastNs;
+            }
+        }
+
+        // 第一级：相邻间隔的中位数（每个间隔按1帧计）；之后逐级加大间隔细化
+        double periodNs = lagSlope(n, 1, 0);
+        for (int lag = LAG_STEP; periodNs > 0; lag *= LAG_STEP) {
+            int span = Math.min(lag, n / 2);
+            periodNs = lagSlope(n, span, periodNs);
+            if (span == n / 2) {
+                break;
+            }
+        }
+        if (!(periodNs > 0)) {
+            return null;
+        }
+
+        // 各样本投影到最新一帧的网格位置（相对最新一帧的偏移）：
+        // 先用圆周平均定出大致位置（最新一帧本身迟到时偏移会在 ±周期/2 处回绕），再以它为中心取中位数
+        double sumCos = 0;
+        double sumSin = 0;
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * time[i] / periodNs;
+            sumCos += Math.cos(angle);
+            sumSin += Math.sin(angle);
+        }
+        double center = Math.atan2(sumSin, sumCos) / (2 * Math.PI) * periodNs;
+        for (int i = 0; i < n; i++) {
+            double offset = time[i] - center;
+            scratch[i] = offset - periodNs * Math.round(offset / periodNs);
+        }
+        Arrays.sort(scratch, 0, n);
+        double lastFrameOffset = center + median(scratch, n);
+        for (int i = 0; i < n; i++) {
+            scratch[i] = Math.abs(scratch[i] - lastFrameOffset);
+        }
+        Arrays.sort(scratch, 0, n);
+        double jitterMs = 1.4826 * scratch[n / 2] / 1e6;
+        return new Estimate(periodNs, lastNs + Math.round(lastFrameOffset), jitterMs, n);
+    }
+
+    /**
+     * 相隔 lag 个样本的样本对斜率中位数
+     * @param coarsePeriodNs 用于推算样本对之间帧数的周期，≤0 表示每个样本按1帧计
+     * @return 周期（纳秒），没有有效样本对时返回NaN
+     */
+    private double lagSlope(int n, int lag, double coarsePeriodNs) {
+        int pairs = 0;
+        for (int i = 0; i + lag < n; i++) {
+            double dt = time[i + lag] - time[i];
+            long frames = coarsePeriodNs > 0 ? Math.round(dt / coarsePeriodNs) : lag;
+            if (frames > 0) {
+                scratch[pairs++] = dt / frames;
+            }
+        }
+        if (pairs == 0) {
+            return Double.NaN;
+        }
+        Arrays.sort(scratch, 0, pairs);
+        return median(scratch, pairs);
+    }
+
+    /**
+     * 配对 Theil–Sen 斜率（已知帧序号时使用，见 CaptureTimestampRefiner）：
+     * 样本 i 与 i + ⌈n/2⌉ 组成的样本对斜率的中位数
+     * 样本可以是环形缓冲的存储顺序（配对的两个样本相隔至少 ⌊n/2⌋ 帧即可），不分配内存
+     *
+     * @param scratch 长度至少 n/2 的临时数组
+     * @return 斜率；样本不足两个时返回NaN
+     */
+    static double theilSenSlope(double[] x, double[] y, int n, double[] scratch) {
+        int half = (n + 1) / 2;
+        int pairs = 0;
+        for (int i = 0; i + half < n; i++) {
+            double dx = x[i + half] - x[i];
+            if (dx != 0) {
+                scratch[pairs++] = (y[i + half] - y[i]) / dx;
+            }
+        }
+        if (pairs == 0) {
+            return Double.NaN;
+        }
+        Arrays.sort(scratch, 0, pairs);
+        return median(scratch, pairs);
+    }
+
+    /**
+     * 给定斜率下的稳健截距：各样本 (y - 斜率 × x) 的中位数
+     *
+     * @param scratch 长度至少 n 的临时数组
+     */
+    static double theilSenIntercept(double[] x, double[] y, int n, double slope, double[] scratch) {
+        for (int i = 0; i < n; i++) {
+            scratch[i] = y[i] - slope * x[i];
+        }
+        Arrays.sort(scratch, 0, n);
+        return median(scratch, n);
+    }
+
+    private static double median(double[] sorted, int n) {
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+    }
+}
@@ -0,0 +1,152 @@
+package com.recsync.camera;
+
+import org.bytedeco.javacv.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 采集帧池（引用计数）
+ *
+ * 采集器每次 grab() 都复用内部Frame，帧要跨线程存活就必须复制一份。
+ * 这里把复制目标预先分配成堆外 Frame 循环复用：采集线程 acquire() 复制一次，
+ * 编码队列、预览槽位、预录缓冲各自 retain()，用完 release()，引用归零时回到池中。
+ * 稳定运行后采集路径不产生新的堆分配和堆外分配。
+ *
+ * 池按需增长，上限 maxFrames（编码队列 + 预录 + 预览/在途余量），
+ * 达到上限时 acquire() 返回null，由调用方计为丢帧，内存占用因此有界。
+ */
+final class FramePool {
+    private static final Logger logger = LoggerFactory.getLogger(FramePool.class);
+
+    private final int maxFrames;
+    private final ArrayBlockingQueue<JavaCVCameraController.TimestampedFrame> free;
+    private final AtomicInteger allocated = new AtomicInteger(0);
+    private final AtomicLong exhausted = new AtomicLong(0);
+    private volatile int generation = 0;   // 分辨率变化或关闭后递增，旧代的帧归还时直接释放
+    private volatile boolean closed = false;
+
+    // 当前帧格式（仅采集线程访问）
+    private int width = -1;
+    private int height;
+    private int depth;
+    private int channels;
+    private int stride;
+
+    FramePool(int maxFrames) {
+        this.maxFrames = Math.max(2, maxFrames);
+        this.free = new ArrayBlockingQueue<>(this.maxFrames);
+    }
+
+    /**
+     * 取一帧并复制采集器的图像数据（采集线程调用），返回的帧引用计数为1
+     *
+     * @return 池已耗尽时返回null
+     */
+    JavaCVCameraController.TimestampedFrame acquire(Frame source, long timestampNs) {
+        if (closed || source == null || source.image == null || !(source.image[0] instanceof ByteBuffer)) {
+            return null;
+        }
+        ensureFormat(source);
+
+        JavaCVCameraController.TimestampedFrame pooled = free.poll();
+        while (pooled != null && pooled.poolGeneration != generation) {
+            // 与格式变化并发归还的旧帧
+            pooled.frame.close();
+            allocated.decrementAndGet();
+            pooled = free.poll();
+        }
+        if (pooled == null) {
+            if (allocated.get() >= maxFrames) {
+                long count = exhausted.incrementAndGet();
+                if (count == 1 || count % 100 == 0) {
+                    logger.warn("⚠️ 帧池已耗尽（{} 帧），丢帧: 累计 {} 帧", maxFrames, count);
+                }
+                return null;
+            }
+            allocated.incrementAndGet();
+            pooled = new JavaCVCameraController.TimestampedFrame(this, generation,
+                    new Frame(width, height, depth, channels, stride));
+        }
+
+        copyImage(source, pooled.frame);
+        pooled.reuse(timestampNs);
+        return pooled;
+    }
+
+    /**
+     * 引用归零的帧回到池中（任意线程调用）
+     */
+    void recycle(JavaCVCameraController.TimestampedFrame frame) {
+        if (closed || frame.poolGeneration != generation || !free.offer(frame)) {
+            frame.frame.close();
+            allocated.decrementAndGet();
+        }
+    }
+
+    private void ensureFormat(Frame source) {
+        if (source.imageWidth == width && source.imageHeight == height && source.imageDepth == depth
+                && source.imageChannels == channels && source.imageStride == stride) {
+            return;
+        }
+        if (width >= 0) {
+            logger.info("采集格式变化，重建帧池: {}x{} → {}x{}", width, height,
+                    source.imageWidth, source.imageHeight);
+        }
+        width = source.imageWidth;
+        height = source.imageHeight;
+        depth = source.imageDepth;
+        channels = source.imageChannels;
+        stride = source.imageStride;
+        generation++;
+        drainFree();
+    }
+
+    /**
+     * 复制图像数据（绝对位置批量复制，不创建临时对象，也不改动采集器缓冲区的position）
+     */
+    static void copyImage(Frame source, Frame target) {
+        ByteBuffer src = (ByteBuffer) source.image[0];
+        ByteBuffer dst = (ByteBuffer) target.image[0];
+        int length = Math.min(src.capacity(), dst.capacity());
+        dst.put(0, src, 0, length);
+        dst.rewind();
+    }
+
+    int getMaxFrames() {
+        return maxFrames;
+    }
+
+    int getAllocatedFrames() {
+        return allocated.get();
+    }
+
+    int getInUseFrames() {
+        return Math.max(0, allocated.get() - free.size());
+    }
+
+    long getExhaustedCount() {
+        return exhausted.get();
+    }
+
+    /**
+     * 释放空闲帧；仍被引用的帧在归还时释放
+     */
+    void close() {
+        closed = true;
+        generation++;
+        drainFree();
+    }
+
+    private void drainFree() {
+        JavaCVCameraController.TimestampedFrame frame;
+        while ((frame = free.poll()) != null) {
+            frame.frame.close();
+            allocated.decrementAndGet();
+        }
+    }
+}
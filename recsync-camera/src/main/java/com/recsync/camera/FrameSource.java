@@ -0,0 +1,113 @@
+package com.recsync.camera;
+
+import org.bytedeco.javacv.FrameGrabber;
+import org.bytedeco.javacv.OpenCVFrameGrabber;
+
+import java.nio.file.Path;
+
+/**
+ * 采集帧来源：摄像头、合成测试画面或视频文件回放
+ *
+ * 控制器只通过 {@link FrameGrabber} 的 grab()/getTimestamp()/stop()/start() 使用采集器，
+ * 因此没有摄像头的机器上也能跑完整的采集→编码→封装流水线（基准测试、回归测试）。
+ * MJPEG直通只适用于v4l2摄像头，由 {@link JavaCVCameraController#startCamera(int)} 单独处理。
+ */
+public interface FrameSource {
+
+    /**
+     * 以给定采集参数创建并启动采集器
+     * 采集器须支持 stop() → set* → start() 原地切换参数（reconfigure）
+     */
+    FrameGrabber open(int width, int height, double fps) throws Exception;
+
+    /**
+     * 是否按帧率实时出帧
+     * false 表示尽快出帧（采集循环不节拍，不修正时间戳），用于测试流水线的最大吞吐
+     */
+    default boolean isRealTime() {
+        return true;
+    }
+
+    /**
+     * 日志中显示的来源描述
+     */
+    String describe();
+
+    /**
+     * 摄像头（OpenCV采集）
+     */
+    static FrameSource camera(int cameraIndex) {
+        return new FrameSource() {
+            @Override
+            public FrameGrabber open(int width, int height, double fps) throws Exception {
+                FrameGrabber grabber = new OpenCVFrameGrabber(cameraIndex);
+                grabber.setImageWidth(width);
+                grabber.setImageHeight(height);
+                grabber.setFrameRate(fps);
+                grabber.start();
+                return grabber;
+            }
+
+            @Override
+            public String describe() {
+                return "摄像头 " + cameraIndex;
+            }
+        };
+    }
+
+    /**
+     * 合成测试画面：运动纹理 + 左上角嵌入帧序号和生成时间的二进制编码块
+     * @param realTime true 按帧率出帧；false 尽快出帧
+     */
+    static FrameSource testPattern(boolean realTime) {
+        return new FrameSource() {
+            @Override
+            public FrameGrabber open(int width, int height, double fps) throws Exception {
+                TestPatternFrameGrabber grabber = new TestPatternFrameGrabber();
+                grabber.setImageWidth(width);
+                grabber.setImageHeight(height);
+                grabber.setFrameRate(fps);
+                grabber.start();
+                return grabber;
+            }
+
+            @Override
+            public boolean isRealTime() {
+                return realTime;
+            }
+
+            @Override
+            public String describe() {
+                return "测试画面" + (realTime ? "" : "（最大速度）");
+            }
+        };
+    }
+
+    /**
+     * 视频文件回放（到结尾后从头循环），输出缩放到采集分辨率
+     * @param realTime true 按帧率出帧；false 尽快出帧
+     */
+    static FrameSource file(Path videoFile, boolean realTime) {
+        return new FrameSource() {
+            @Override
+            public FrameGrabber open(int width, int height, double fps) throws Exception {
+                FileReplayFrameGrabber grabber = new FileReplayFrameGrabber(videoFile);
+                grabber.setImageWidth(width);
+                grabber.setImageHeight(height);
+                grabber.setFrameRate(fps);
+                grabber.start();
+                return grabber;
+            }
+
+            @Override
+            public boolean isRealTime() {
+                return realTime;
+            }
+
+            @Override
+            public String describe() {
+                return "文件回放 " + videoFile.getFileName() + (realTime ? "" : "（最大速度）");
+            }
+        };
+    }
+}
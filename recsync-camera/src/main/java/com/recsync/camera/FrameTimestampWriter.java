@@ -0,0 +1,190 @@
+package com.recsync.camera;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 逐帧同步时间戳旁路文件
+ *
+ * 与视频同名、扩展名不同的两个文件：
+ * - {名称}.fts：二进制（小端），8字节文件头 'RSTS' + 版本号(int)，
+ *   之后每帧28字节：帧序号(int) + 同步时间戳ns(long) + 与上一帧的采集间隔ns(long)
+ *   + 采集残差ns(long，版本2新增：grab()返回时刻 - 修正后的时间戳)
+ * - {名称}.csv：可选的文本导出，列为 frame_index,sync_timestamp_ns,interval_ns,relative_ms,capture_residual_us
+ *
+ * 编码线程只把记录写入预分配的直接缓冲区；缓冲区写满后交给后台线程落盘并换用另一块，
+ * 编码线程不做文件IO。close() 会等待全部数据写完（并生成CSV）后返回。
+ */
+public class FrameTimestampWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(FrameTimestampWriter.class);
+
+    public static final String BINARY_EXTENSION = ".fts";
+    public static final String CSV_EXTENSION = ".csv";
+
+    private static final int MAGIC = 0x53545352;  // 'RSTS'（小端）
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 28;
+    private static final int RECORDS_PER_BUFFER = 1024;
+    private static final int BUFFER_COUNT = 2;
+
+    // 所有录制共用一个落盘线程，提交顺序即写入顺序
+    private static final ExecutorService FLUSHER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Timestamp-Sidecar-Writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Path binaryPath;
+    private final Path csvPath;
+    private final FileChannel channel;
+    private final BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private ByteBuffer current;
+    private long lastTimestampNs = 0;
+    private long frameCount = 0;
+    private volatile IOException flushError;
+
+    /**
+     * @param videoPath 视频文件路径（旁路文件与其同目录同名）
+     * @param writeCsv 关闭时是否额外导出CSV
+     */
+    public FrameTimestampWriter(Path videoPath, boolean writeCsv) throws IOException {
+        String fileName = videoPath.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+        this.binaryPath = videoPath.resolveSibling(stem + BINARY_EXTENSION);
+        this.csvPath = writeCsv ? videoPath.resolveSibling(stem + CSV_EXTENSION) : null;
+
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            freeBuffers.add(ByteBuffer.allocateDirect(RECORDS_PER_BUFFER * RECORD_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN));
+        }
+
+        this.channel = FileChannel.open(binaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        this.current = freeBuffers.poll();
+    }
+
+    /**
+     * 追加一帧（编码线程调用）
+     *
+     * @param frameIndex 在视频中的帧序号
+     * @param timestampNs 同步时钟时间戳
+     * @param captureResidualNs 采集残差（未修正时为0）
+     */
+    public void append(int frameIndex, long timestampNs, long captureResidualNs) throws InterruptedException {
+        long intervalNs = lastTimestampNs == 0 ? 0 : timestampNs - lastTimestampNs;
+        lastTimestampNs = timestampNs;
+
+        current.putInt(frameIndex).putLong(timestampNs).putLong(intervalNs).putLong(captureResidualNs);
+        frameCount++;
+        if (!current.hasRemaining()) {
+            submitFlush(current);
+            current = freeBuffers.take();
+        }
+    }
+
+    private void submitFlush(ByteBuffer buffer) {
+        buffer.flip();
+        FLUSHER.submit(() -> {
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                flushError = e;
+                logger.error("写入时间戳文件失败: {}", binaryPath, e);
+            } finally {
+                buffer.clear();
+                freeBuffers.offer(buffer);
+            }
+        });
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public Path getBinaryPath() {
+        return binaryPath;
+    }
+
+    /**
+     * 写完剩余数据、关闭文件并导出CSV（阻塞直到完成）
+     */
+    @Override
+    public void close() throws IOException {
+        if (current != null && current.position() > 0) {
+            submitFlush(current);
+        }
+        current = null;
+        Future<?> done = FLUSHER.submit(() -> {
+            try {
+                channel.force(false);
+                channel.close();
+                if (csvPath != null) {
+                    exportCsv();
+                }
+            } catch (IOException e) {
+                flushError = e;
+                logger.error("关闭时间戳文件失败: {}", binaryPath, e);
+            }
+        });
+
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待时间戳文件写入被中断", e);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        if (flushError != null) {
+            throw flushError;
+        }
+        logger.info("🕒 帧时间戳已保存: {} ({} 帧)", binaryPath.getFileName(), frameCount);
+    }
+
+    private void exportCsv() throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(binaryPath)).order(ByteOrder.LITTLE_ENDIAN);
+        data.position(HEADER_BYTES);
+        long firstTs = -1;
+        try (BufferedWriter writer = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8)) {
+            writer.write("frame_index,sync_timestamp_ns,interval_ns,relative_ms,capture_residual_us");
+            writer.newLine();
+            while (data.remaining() >= RECORD_BYTES) {
+                int index = data.getInt();
+                long ts = data.getLong();
+                long interval = data.getLong();
+                long residual = data.getLong();
+                if (firstTs < 0) {
+                    firstTs = ts;
+                }
+                writer.write(index + "," + ts + "," + interval + ","
+                        + String.format("%.3f", (ts - firstTs) / 1_000_000.0) + ","
+                        + String.format("%.1f", residual / 1_000.0));
+                writer.newLine();
+            }
+        }
+    }
+}
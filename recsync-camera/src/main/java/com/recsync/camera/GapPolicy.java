@@ -0,0 +1,30 @@
+package com.recsync.camera;
+
+/**
+ * 缺帧处理策略：录制中检测到帧间隔缺口时如何写入视频
+ *
+ * 无论哪种策略，缺口都会计入遥测并写入缺帧报告（.gaps）。
+ */
+public enum GapPolicy {
+    /** 留空：不补帧。同步时钟PTS（可变帧率）下缺口在时间轴上保留，恒定帧率下后续帧前移 */
+    LEAVE_GAP("留空"),
+    /** 重复上一帧补齐缺失的帧位，保持恒定帧率下帧序号与时间对应 */
+    DUPLICATE("重复上一帧"),
+    /** 插入黑色标记帧，标注时一眼可见；直通模式无法生成标记帧，按留空处理 */
+    MARKER("插入标记帧");
+
+    private final String displayName;
+
+    GapPolicy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,1901 @@
+package com.recsync.camera;
+
+import com.recsync.core.sync.ClientTelemetry;
+import com.recsync.core.sync.EncoderProfile;
+import com.recsync.core.sync.SyncConstants;
+import com.recsync.core.transfer.FrameGapReport;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avformat.AVStream;
+import org.bytedeco.ffmpeg.avutil.AVRational;
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * 软录制模式相机控制器
+ *
+ * 工作原理：
+ * 1. 相机始终运行，持续采集视频帧
+ * 2. 每帧附加同步时钟时间戳
+ * 3. 收到触发时间后，从第一个时间戳 >= 触发时间的帧开始写入
+ * 4. 避免录制器冷启动带来的延迟和不确定性
+ *
+ * 流水线（各阶段独立线程，互不阻塞）：
+ * 采集线程 —— 只负责 grab() 和打时间戳
+ *   ├─ SPSC无锁环形队列 → 编码线程（触发判断 + recorder.record()）
+ *   └─ 最新帧槽位（有损，只保留最新一帧）→ 预览
+ * 编码器卡顿只会让队列变深（满了计丢帧），不会推迟下一次 grab()，时间戳不受影响。
+ *
+ * MJPEG直通模式（Linux v4l2，相机原生输出MJPEG时）：
+ * 采集线程用 grabPacket() 取压缩包，编码线程直接 recordPacket() 封装进MP4，不解码也不重新编码；
+ * 只有预览按 PASSTHROUGH_PREVIEW_FPS 低帧率解码。相机不支持时自动回退到解码+H.264编码模式。
+ */
+public class JavaCVCameraController {
+    private static final Logger logger = LoggerFactory.getLogger(JavaCVCameraController.class);
+
+    private static final int ENCODE_QUEUE_CAPACITY = 64;          // 编码队列容量（帧）
+    private static final long ENCODER_IDLE_PARK_NS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long STOP_DRAIN_TIMEOUT_MS = 2000;       // 停止录制时等待队列排空的上限
+    private static final long THREAD_JOIN_TIMEOUT_MS = 5000;      // 等待采集/编码线程退出的上限（grab() 可能阻塞数秒）
+    private static final double PASSTHROUGH_PREVIEW_FPS = 10;     // 直通模式下预览解码帧率
+    private static final String PASSTHROUGH_ENCODER_NAME = "mjpeg-copy";
+    private static final int FRAME_POOL_SPARE = 5;                // 帧池余量：预览槽位、预览线程、在途帧、补帧保留的上一帧
+    private static final int PHASE_ALIGN_MAX_ATTEMPTS = 5;        // 相位对齐最多调整次数
+    private static final long PHASE_RESTART_LEAD_NS = TimeUnit.MILLISECONDS.toNanos(20); // 重启视频流的最小提前量
+    private static final double PERIOD_ESTIMATE_SECONDS = 10;     // 实际帧周期估计的回归窗口
+
+    private FrameGrabber grabber;
+    private volatile boolean sourceRealTime = true;    // false 表示采集源尽快出帧（不节拍、不修正时间戳）
+    private FFmpegFrameRecorder recorder;
+    private volatile boolean isRunning = false;
+    private volatile boolean mjpegPassthrough = false;  // 请求MJPEG直通（startCamera时生效）
+    private volatile MjpegPreviewDecoder previewDecoder; // 非null表示直通模式已启用
+    private long lastPacketPts = -1;                     // 当前文件上一个包的PTS（输入时间基）
+
+    // 采集参数（reconfigure 可在空闲时原地修改）
+    private volatile int frameWidth;
+    private volatile int frameHeight;
+    private volatile double frameRate;
+    private volatile boolean captureSuspended = false;  // reconfigure 期间让采集线程退出
+    private volatile String captureCpus;                 // 采集线程CPU亲和性（taskset -c 格式），null表示不绑定
+    private volatile String encoderCpus;                 // 编码线程CPU亲和性
+    private volatile String threadSuffix = "";           // 多路相机时区分各路线程名
+
+    // 软录制状态
+    private volatile RecordingState recordingState = RecordingState.IDLE;
+    private volatile long triggerTimeNs = 0;        // 触发时间（本地同步时钟）
+    private volatile String pendingOutputPath;       // 待写入的文件路径
+    private volatile boolean writeTimestampCsv = true;  // 是否同时导出CSV时间戳
+    private FrameTimestampWriter timestampWriter;    // 逐帧时间戳旁路文件
+    private volatile boolean syncClockPts = true;    // 按同步时钟时间戳设置PTS（可变帧率）
+    private long ptsOriginNs = 0;                    // 本次录制PTS的零点：触发时间（硬录制为开始时刻），持有 recorderLock
+
+    // 缺帧检测与处理
+    private volatile GapPolicy gapPolicy = GapPolicy.LEAVE_GAP;
+    private volatile FrameGapDetector gapDetector;   // 当前（或上一次）录制的缺帧检测
+    private TimestampedFrame lastWrittenFrame;       // 重复补帧用的上一帧（持有 recorderLock）
+    private AVPacket lastWrittenPacket;              // 直通模式下上一帧压缩包的引用副本（持有 recorderLock）
+    private Frame markerFrame;                       // 黑色标记帧（按需创建，持有 recorderLock）
+    private boolean markerUnsupportedLogged = false;
+    private long lastTimestampWritten = 0;           // 最近写入帧的时间戳（含补帧，持有 recorderLock）
+
+    // 编码配置：Leader下发的配置名（auto 表示按本机自测结果选择），录制开始时解析为具体配置
+    private volatile String requestedEncoderProfile = EncoderProfile.AUTO;
+    private volatile EncoderProfile activeEncoderProfile = EncoderProfile.FALLBACK;
+    private volatile long recordingStartTimeNs = 0;  // 实际开始录制的时间戳
+    private volatile long frameCount = 0;            // 已录制帧数
+    private volatile long stopTimeNs = 0;            // 停止录制的时间戳（此前采集的帧仍会写入）
+
+    // 采集/编码/预览流水线
+    private final SpscRingBuffer<TimestampedFrame> encodeQueue = new SpscRingBuffer<>(ENCODE_QUEUE_CAPACITY);
+    private final AtomicReference<TimestampedFrame> latestPreviewFrame = new AtomicReference<>();
+    private final Object recorderLock = new Object();  // 保护 recorder 及录制状态切换
+    private Thread captureThread;
+    private Thread encoderThread;
+    private volatile Thread previewWaiter;             // 正在等待预览帧的线程
+    private volatile CapturePacer pacer;
+    private volatile CaptureTimestampRefiner timestampRefiner;
+    private volatile boolean refineTimestamps = true;  // 是否修正采集时间戳（否则使用 grab() 返回时刻）
+    private volatile FramePeriodEstimator periodEstimator;  // 实际帧周期（相对同步时钟）
+
+    // 预录缓冲（触发时间可以是当前或过去的时刻）
+    private volatile double preRollSeconds = SyncConstants.PRE_ROLL_SECONDS;
+    private volatile PreRollBuffer preRollBuffer;
+
+    // 相位对齐
+    private final PhaseAligner phaseAligner = new PhaseAligner();
+    private volatile PhaseAligner.State phaseState = PhaseAligner.State.IDLE;
+    private CompletableFuture<PhaseAligner.Result> phaseAlignment;  // 正在进行的对齐（持有 this 锁）
+    private volatile boolean phaseRestarting = false;      // 对齐正在重启视频流（在 recorderLock 之外等待和重新打开设备）
+    private volatile boolean phaseRestartAborted = false;  // 开始录制或停止相机：立即重新打开设备并中止对齐
+    private volatile Thread phaseRestartThread;
+
+    // 帧池与分配计量
+    private volatile FramePool framePool;
+    private final AllocationMeter captureAllocation = new AllocationMeter();
+
+    // 流水线计数器
+    private final AtomicLong capturedFrames = new AtomicLong(0);
+    private final AtomicLong encodedFrames = new AtomicLong(0);
+    private final AtomicLong encodeDroppedFrames = new AtomicLong(0);
+    private final AtomicLong previewDeliveredFrames = new AtomicLong(0);
+    private final AtomicLong previewDroppedFrames = new AtomicLong(0);
+    private volatile int maxEncodeQueueDepth = 0;
+    private volatile long encodeTimeSumNs = 0;          // 本次录制写入帧的编码耗时合计（编码线程写）
+    private volatile long maxEncodeTimeNs = 0;
+
+    // 同步时钟提供者（用于获取对齐后的时间戳）
+    private LongSupplier syncClockSupplier = System::nanoTime;  // 默认使用本地时钟
+
+    // 分段录制（边录边传）
+    private volatile int segmentDurationSec = 0;     // 分段时长（秒），0表示不分段
+    private volatile SegmentListener segmentListener;
+    private SegmentedRecorder output;                // 当前录制输出（分段切换与后台收尾）
+    private volatile CompletableFuture<Void> pendingFinalization = CompletableFuture.completedFuture(null);
+
+    // 预热录制器：准备录制只取用已打开的录制器，不在触发路径上初始化编码器
+    private volatile WarmRecorderPool warmPool;
+    private boolean lastOpenWarm = false;            // 最近一次打开的录制器是否来自预热池（持有 recorderLock）
+    private volatile long lastArmLatencyNs = -1;     // 最近一次准备录制耗时
+    private volatile long maxArmLatencyNs = 0;
+    private volatile boolean lastArmWarm = false;
+
+    /**
+     * 分段完成监听器（每个分段文件关闭后回调，可用于后台上传）
+     */
+    public interface SegmentListener {
+        void onSegmentCompleted(Path segmentPath, String baseName, int index, boolean last);
+    }
+
+    /**
+     * 录制状态
+     */
+    public enum RecordingState {
+        IDLE,           // 空闲，仅预览
+        WAITING,        // 等待触发时间
+        RECORDING,      // 正在录制
+        STOPPING        // 正在停止
+    }
+
+    /**
+     * 带时间戳的帧
+     */
+    public static class TimestampedFrame {
+        public final Frame frame;
+        public final AVPacket packet;   // 直通模式下的压缩包（此时frame为null）
+        public long timestampNs;        // 同步时钟时间戳（池化帧在发布前由采集线程写入）
+        public long captureResidualNs;  // 观测时间 - 修正后时间戳（该帧额外的返回延迟）
+
+        private final FramePool pool;   // 非null表示来自帧池
+        final int poolGeneration;
+        private final Runnable onRelease;  // 非null表示帧内存由他处持有（如预览解码输出），引用归零时通知
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        public TimestampedFrame(Frame frame, long timestampNs) {
+            this(frame, timestampNs, null);
+        }
+
+        TimestampedFrame(Frame frame, long timestampNs, Runnable onRelease) {
+            this.frame = frame;
+            this.packet = null;
+            this.timestampNs = timestampNs;
+            this.pool = null;
+            this.poolGeneration = 0;
+            this.onRelease = onRelease;
+        }
+
+        TimestampedFrame(AVPacket packet, long timestampNs) {
+            this.frame = null;
+            this.packet = packet;
+            this.timestampNs = timestampNs;
+            this.pool = null;
+            this.poolGeneration = 0;
+            this.onRelease = null;
+        }
+
+        TimestampedFrame(FramePool pool, int generation, Frame frame) {
+            this.frame = frame;
+            this.packet = null;
+            this.pool = pool;
+            this.poolGeneration = generation;
+            this.onRelease = null;
+        }
+
+        void reuse(long timestampNs) {
+            this.timestampNs = timestampNs;
+            this.captureResidualNs = 0;
+            refCount.set(1);
+        }
+
+        /**
+         * 增加一个引用（每个持有该帧的消费者各持有一个）
+         */
+        TimestampedFrame retain() {
+            refCount.incrementAndGet();
+            return this;
+        }
+
+        /**
+         * 释放一个引用；归零时帧回到帧池，压缩包释放原生内存，预览解码帧交还解码器
+         * pollPreviewFrame()/awaitPreviewFrame() 返回的帧用完后须调用
+         */
+        public void release() {
+            if (refCount.decrementAndGet() != 0) {
+                return;
+            }
+            if (pool != null) {
+                pool.recycle(this);
+            } else if (packet != null) {
+                avcodec.av_packet_free(packet);
+            } else if (onRelease != null) {
+                onRelease.run();
+            }
+        }
+    }
+
+    /**
+     * 流水线运行指标快照
+     *
+     * @param capturedFrames 采集帧数
+     * @param encodeQueueDepth 当前编码队列深度
+     * @param maxEncodeQueueDepth 录制以来编码队列最大深度
+     * @param encodeQueueCapacity 编码队列容量
+     * @param encodedFrames 已送入编码器的帧数
+     * @param encodeDroppedFrames 编码队列满导致的丢帧数（影响录制）
+     * @param previewDeliveredFrames 预览已取走的帧数
+     * @param previewDroppedFrames 预览未及时取走被覆盖的帧数（仅影响预览）
+     * @param poolAllocatedFrames 帧池已分配的帧数
+     * @param poolInUseFrames 帧池中正被引用的帧数
+     * @param poolExhaustedFrames 帧池耗尽导致的丢帧数
+     * @param captureAllocBytesPerFrame 采集线程平均每帧堆分配字节数（不支持时为-1）
+     * @param meanEncodeMs 本次录制每帧平均编码/封装耗时（毫秒，含补帧和分段切换）
+     * @param maxEncodeMs 本次录制单帧最大编码/封装耗时（毫秒）
+     */
+    public record PipelineStats(
+            long capturedFrames,
+            int encodeQueueDepth,
+            int maxEncodeQueueDepth,
+            int encodeQueueCapacity,
+            long encodedFrames,
+            long encodeDroppedFrames,
+            long previewDeliveredFrames,
+            long previewDroppedFrames,
+            int poolAllocatedFrames,
+            int poolInUseFrames,
+            long poolExhaustedFrames,
+            double captureAllocBytesPerFrame,
+            double meanEncodeMs,
+            double maxEncodeMs
+    ) {}
+
+    public JavaCVCameraController(int width, int height, double fps) {
+        this.frameWidth = width;
+        this.frameHeight = height;
+        this.frameRate = fps;
+    }
+
+    /**
+     * 设置同步时钟提供者
+     * @param clockSupplier 返回当前同步时钟时间（纳秒）的函数
+     */
+    public void setSyncClockSupplier(LongSupplier clockSupplier) {
+        this.syncClockSupplier = clockSupplier;
+    }
+
+    /**
+     * 设置分段录制参数
+     * @param durationSec 每个分段的时长（秒），0表示录制为单个文件
+     * @param listener 分段完成回调，可为null
+     */
+    public void setSegmentation(int durationSec, SegmentListener listener) {
+        this.segmentDurationSec = Math.max(0, durationSec);
+        this.segmentListener = listener;
+    }
+
+    /**
+     * 设置预录时长（在 startCamera 之前调用生效），0表示关闭预录
+     * 内存占用约为 时长 × 帧率 × 单帧大小（堆外）
+     */
+    public void setPreRollSeconds(double seconds) {
+        this.preRollSeconds = Math.max(0, seconds);
+    }
+
+    /**
+     * 预录缓冲当前覆盖的时长（毫秒），未启用时为0
+     */
+    public long getPreRollCoverageMs() {
+        PreRollBuffer buffer = preRollBuffer;
+        return buffer != null ? buffer.getCoverageMs() : 0;
+    }
+
+    /**
+     * 设置是否尝试MJPEG直通录制（在 startCamera 之前调用生效）
+     * 直通模式不做解码/重新编码，编码配置与预录缓冲不生效
+     */
+    public void setMjpegPassthrough(boolean enabled) {
+        this.mjpegPassthrough = enabled;
+    }
+
+    /**
+     * 设置采集线程和编码线程的CPU亲和性（在 startCamera 之前调用生效，仅Linux）
+     * @param captureCpus 采集线程CPU列表（taskset -c 格式，例如 "2" 或 "2,3"），null表示不绑定
+     * @param encoderCpus 编码线程CPU列表，null表示不绑定
+     */
+    public void setThreadAffinity(String captureCpus, String encoderCpus) {
+        this.captureCpus = captureCpus;
+        this.encoderCpus = encoderCpus;
+    }
+
+    /**
+     * 设置视角名（多路相机时用于区分线程名），在 startCamera 之前调用
+     */
+    public void setViewName(String viewName) {
+        this.threadSuffix = viewName != null && !viewName.isEmpty() ? "-" + viewName : "";
+    }
+
+    /**
+     * 当前是否处于MJPEG直通模式
+     */
+    public boolean isPassthroughActive() {
+        return previewDecoder != null;
+    }
+
+    /**
+     * 获取当前同步时钟时间
+     */
+    public long getSyncTimeNs() {
+        return syncClockSupplier.getAsLong();
+    }
+
+    /**
+     * 检测所有可用的摄像头（不使用缓存；客户端启动时请直接使用 CameraDiscovery）
+     */
+    public static List<Integer> getAvailableCameras() {
+        List<Integer> cameras = new ArrayList<>();
+        for (CameraDiscovery.CameraInfo camera : new CameraDiscovery(null).discover(Set.of())) {
+            cameras.add(camera.index());
+        }
+        return cameras;
+    }
+
+    public void startCamera(int cameraIndex) throws Exception {
+        if (mjpegPassthrough && startPassthroughGrabber(cameraIndex)) {
+            sourceRealTime = true;
+            startPipelineThreads("摄像头 " + cameraIndex);
+        } else {
+            startSource(FrameSource.camera(cameraIndex));
+        }
+    }
+
+    /**
+     * 从任意采集源启动（测试画面、文件回放等），流水线与摄像头完全相同
+     * 直通设置对非摄像头源无效
+     */
+    public void startSource(FrameSource source) throws Exception {
+        grabber = source.open(frameWidth, frameHeight, frameRate);
+        sourceRealTime = source.isRealTime();
+        startPipelineThreads(source.describe());
+    }
+
+    private void startPipelineThreads(String sourceName) {
+        isRunning = true;
+        encoderThread = new Thread(this::encodeLoop, "Camera-Encoder-Thread" + threadSuffix);
+        encoderThread.setDaemon(true);
+        encoderThread.start();
+
+        startCapturePipeline();
+
+        logger.info("✅ 相机已启动: {} {}x{} @ {}fps{}", sourceName, frameWidth, frameHeight, frameRate,
+                previewDecoder != null ? " (MJPEG直通)" : "");
+    }
+
+    /**
+     * 按当前采集参数创建节拍器、时间戳修正、预录缓冲和帧池，并启动采集线程
+     */
+    private void startCapturePipeline() {
+        phaseAligner.reset();
+        pacer = new CapturePacer(frameRate, sourceRealTime);
+        timestampRefiner = new CaptureTimestampRefiner(frameRate);
+        periodEstimator = new FramePeriodEstimator(Math.max(FramePeriodEstimator.MIN_SAMPLES,
+                (int) Math.ceil(PERIOD_ESTIMATE_SECONDS * frameRate)));
+        if (previewDecoder == null) {
+            // 自测结束后再预热（auto 配置取决于自测结果，且预热不与自测争抢CPU）
+            EncoderBenchmark.ensureBenchmarked(frameWidth, frameHeight, frameRate)
+                    .thenRun(this::rewarmRecorders);
+            if (preRollSeconds > 0) {
+                preRollBuffer = new PreRollBuffer((int) Math.ceil(preRollSeconds * frameRate));
+            }
+        } else if (preRollSeconds > 0) {
+            logger.info("MJPEG直通模式暂不支持预录缓冲，Leader将按提前量触发");
+        }
+        int preRollFrames = preRollBuffer != null ? preRollBuffer.getCapacity() : 0;
+        framePool = new FramePool(ENCODE_QUEUE_CAPACITY + preRollFrames + FRAME_POOL_SPARE);
+
+        captureThread = new Thread(previewDecoder != null ? this::capturePacketLoop : this::captureLoop,
+                "Camera-Capture-Thread" + threadSuffix);
+        captureThread.setDaemon(true);
+        captureThread.setPriority(Thread.MAX_PRIORITY);
+        captureThread.start();
+    }
+
+    /**
+     * 停止采集线程并释放与采集格式相关的缓冲（预览槽位、预录缓冲、帧池）
+     *
+     * @throws IllegalStateException 采集线程未在 THREAD_JOIN_TIMEOUT_MS 内退出（通常阻塞在 grab() 中）：
+     *                               不释放任何缓冲，采集线程继续按原参数运行，调用方不得再停止或重启采集器
+     */
+    private void stopCapturePipeline() {
+        captureSuspended = true;
+        boolean stopped = awaitExit(captureThread);
+        captureSuspended = false;
+        if (!stopped) {
+            throw new IllegalStateException("采集线程未在" + THREAD_JOIN_TIMEOUT_MS + "ms内退出，保留当前采集");
+        }
+        TimestampedFrame lastPreview = latestPreviewFrame.getAndSet(null);
+        if (lastPreview != null) {
+            lastPreview.release();
+        }
+        if (preRollBuffer != null) {
+            preRollBuffer.release();
+            preRollBuffer = null;
+        }
+        if (framePool != null) {
+            framePool.close();
+            framePool = null;
+        }
+    }
+
+    /**
+     * 原地切换采集参数（分辨率/帧率）：只重启采集器，控制器、编码线程、预览循环和预热池都保留
+     *
+     * 比停止相机再新建控制器快得多（没有固定等待，也不需要重新检测相机），但重新打开设备仍需要一段时间，
+     * 因此应在录制之间（例如Leader修改参数时）调用，不要放在触发路径上。
+     * 新参数下的编码自测和录制器预热在后台进行。
+     *
+     * @return false 表示参数未变化，无需切换
+     * @throws IllegalStateException 正在录制或等待触发；或采集线程无法停止（仍按原参数采集）
+     * @throws Exception 采集器无法以新参数启动（已恢复原参数，调用方可改为完整重启相机）；
+     *                   原参数也无法启动时相机已标记为停止，恢复失败的异常附加为 suppressed
+     */
+    public boolean reconfigure(int width, int height, double fps) throws Exception {
+        synchronized (recorderLock) {
+            if (recordingState != RecordingState.IDLE) {
+                throw new IllegalStateException("录制中无法切换采集参数");
+            }
+            if (width == frameWidth && height == frameHeight && fps == frameRate) {
+                return false;
+            }
+            awaitPhaseRestartLocked();
+            if (!isRunning) {
+                frameWidth = width;
+                frameHeight = height;
+                frameRate = fps;
+                return true;
+            }
+
+            long beginNs = System.nanoTime();
+            int oldWidth = frameWidth;
+            int oldHeight = frameHeight;
+            double oldRate = frameRate;
+            stopCapturePipeline();
+
+            frameWidth = width;
+            frameHeight = height;
+            frameRate = fps;
+            try {
+                restartGrabber();
+            } catch (Exception e) {
+                logger.warn("采集器无法切换到 {}x{} @ {}fps，恢复原参数: {}", width, height, fps, e.getMessage());
+                frameWidth = oldWidth;
+                frameHeight = oldHeight;
+                frameRate = oldRate;
+                recoverGrabber(e);
+                startCapturePipeline();
+                throw e;
+            }
+            startCapturePipeline();
+            phaseState = PhaseAligner.State.IDLE;  // 视频流已重启，之前的对齐结果失效
+            logger.info("🔧 采集参数已切换: {}x{} @ {}fps → {}x{} @ {}fps (耗时{}ms)",
+                    oldWidth, oldHeight, oldRate, width, height, fps, (System.nanoTime() - beginNs) / 1_000_000);
+            return true;
+        }
+    }
+
+    /**
+     * 以当前参数重启同一个采集器（直通模式下同时重建预览解码器）
+     */
+    private void restartGrabber() throws Exception {
+        grabber.stop();
+        startGrabber();
+    }
+
+    /**
+     * 采集器启动失败后以当前参数重试一次；仍失败时把相机标记为已停止（不再报告就绪），抛出原始异常
+     */
+    private void recoverGrabber(Exception failure) throws Exception {
+        try {
+            restartGrabber();
+        } catch (Exception retry) {
+            failure.addSuppressed(retry);
+            isRunning = false;
+            logger.error("❌ 采集器无法恢复，相机已停止: {}", failure.getMessage());
+            throw failure;
+        }
+    }
+
+    /**
+     * 等待相位对齐重启视频流结束（调用方持有 recorderLock）
+     */
+    private void awaitPhaseRestartLocked() throws InterruptedException {
+        while (phaseRestarting) {
+            recorderLock.wait();
+        }
+    }
+
+    /**
+     * 以当前参数启动已停止的采集器（直通模式下同时重建预览解码器）
+     */
+    private void startGrabber() throws Exception {
+        grabber.setImageWidth(frameWidth);
+        grabber.setImageHeight(frameHeight);
+        grabber.setFrameRate(frameRate);
+        grabber.start();
+
+        if (previewDecoder != null) {
+            FFmpegFrameGrabber packetGrabber = (FFmpegFrameGrabber) grabber;
+            if (packetGrabber.getVideoCodec() != avcodec.AV_CODEC_ID_MJPEG) {
+                throw new IllegalStateException("相机在新参数下未输出MJPEG");
+            }
+            previewDecoder.release();
+            AVStream stream = packetGrabber.getFormatContext().streams(packetGrabber.getVideoStream());
+            previewDecoder = new MjpegPreviewDecoder(stream.codecpar(), PASSTHROUGH_PREVIEW_FPS);
+        }
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * 尝试以MJPEG格式打开v4l2设备（仅Linux）
+     * @return false 表示不支持，调用方回退到解码模式
+     */
+    private boolean startPassthroughGrabber(int cameraIndex) {
+        String device = "/dev/video" + cameraIndex;
+        if (!System.getProperty("os.name", "").toLowerCase().contains("linux")
+                || !Files.exists(Paths.get(device))) {
+            logger.info("MJPEG直通仅支持Linux v4l2设备，使用解码模式");
+            return false;
+        }
+
+        FFmpegFrameGrabber packetGrabber = new FFmpegFrameGrabber(device);
+        try {
+            packetGrabber.setFormat("video4linux2");
+            packetGrabber.setOption("input_format", "mjpeg");
+            packetGrabber.setImageWidth(frameWidth);
+            packetGrabber.setImageHeight(frameHeight);
+            packetGrabber.setFrameRate(frameRate);
+            packetGrabber.start();
+
+            if (packetGrabber.getVideoCodec() != avcodec.AV_CODEC_ID_MJPEG) {
+                logger.info("相机 {} 未输出MJPEG，使用解码模式", device);
+                packetGrabber.release();
+                return false;
+            }
+            AVStream stream = packetGrabber.getFormatContext().streams(packetGrabber.getVideoStream());
+            previewDecoder = new MjpegPreviewDecoder(stream.codecpar(), PASSTHROUGH_PREVIEW_FPS);
+            grabber = packetGrabber;
+            return true;
+        } catch (Exception e) {
+            logger.warn("MJPEG直通启动失败，使用解码模式: {}", e.getMessage());
+            try { packetGrabber.release(); } catch (Exception ignored) {}
+            return false;
+        }
+    }
+
+    /**
+     * 采集线程：只做 grab() + 打时间戳，然后分发给编码队列和预览槽位
+     * 循环本身不休眠，由设备阻塞节拍（非阻塞源由 CapturePacer 按截止时间调度）
+     */
+    private void captureLoop() {
+        ThreadAffinity.applyToCurrentThread(captureCpus);
+        captureAllocation.reset();  // 采集线程可能已被重启替换
+        CapturePacer capturePacer = pacer;
+        CaptureTimestampRefiner refiner = timestampRefiner;
+        FramePeriodEstimator estimator = periodEstimator;
+        FramePool pool = framePool;
+        boolean realTime = sourceRealTime;
+        boolean refine = refineTimestamps && realTime;
+        while (isRunning && !captureSuspended) {
+            try {
+                capturePacer.beforeGrab();
+                Frame grabbed = grabber.grab();
+                if (grabbed == null || grabbed.image == null) {
+                    continue;
+                }
+                long localNs = System.nanoTime();
+                long observedNs = getSyncTimeNs();
+                capturePacer.afterGrab(localNs);
+                long timestamp = refine ? refiner.refine(observedNs, grabber.getTimestamp()) : observedNs;
+
+                // 采集器会复用内部Frame，分发前复制到帧池中的一帧（编码、预览、预录只读共享）
+                TimestampedFrame tsFrame = pool.acquire(grabbed, timestamp);
+                if (tsFrame == null) {
+                    continue;
+                }
+                tsFrame.captureResidualNs = observedNs - timestamp;
+                capturedFrames.incrementAndGet();
+                estimator.onFrame(timestamp);
+                phaseAligner.onFrame(timestamp);
+
+                PreRollBuffer preRoll = preRollBuffer;
+                if (preRoll != null) {
+                    preRoll.offer(tsFrame);
+                }
+
+                if (isRecordingActive()) {
+                    if (realTime) {
+                        enqueueForEncoding(tsFrame.retain());
+                    } else {
+                        enqueueWithBackpressure(tsFrame.retain());
+                    }
+                }
+
+                TimestampedFrame replaced = latestPreviewFrame.getAndSet(tsFrame.retain());
+                if (replaced != null) {
+                    replaced.release();
+                    previewDroppedFrames.incrementAndGet();
+                }
+                wakePreviewWaiter();
+
+                tsFrame.release();  // 采集线程自己的引用
+                captureAllocation.onFrame();
+            } catch (Exception e) {
+                if (isRunning) {
+                    logger.error("采集帧失败", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 直通模式采集线程：grabPacket() 取压缩包 + 打时间戳，不解码
+     * 只有录制中才复制压缩包送编码线程；预览按低帧率取样
+     */
+    private void capturePacketLoop() {
+        ThreadAffinity.applyToCurrentThread(captureCpus);
+        captureAllocation.reset();  // 采集线程可能已被重启替换
+        FFmpegFrameGrabber packetGrabber = (FFmpegFrameGrabber) grabber;
+        CapturePacer capturePacer = pacer;
+        CaptureTimestampRefiner refiner = timestampRefiner;
+        FramePeriodEstimator estimator = periodEstimator;
+        AVRational streamTimeBase = packetGrabber.getFormatContext()
+                .streams(packetGrabber.getVideoStream()).time_base();
+        AVRational microseconds = avutil.av_make_q(1, 1_000_000);
+        MjpegPreviewDecoder decoder = previewDecoder;
+        while (isRunning && !captureSuspended) {
+            try {
+                capturePacer.beforeGrab();
+                AVPacket grabbed = packetGrabber.grabPacket();
+                if (grabbed == null || grabbed.size() <= 0) {
+                    continue;
+                }
+                long localNs = System.nanoTime();
+                long observedNs = getSyncTimeNs();
+                capturePacer.afterGrab(localNs);
+                // v4l2 包的PTS即驱动填写的缓冲区时间戳
+                long deviceUs = grabbed.pts() != avutil.AV_NOPTS_VALUE
+                        ? avutil.av_rescale_q(grabbed.pts(), streamTimeBase, microseconds) : 0;
+                long timestamp = refineTimestamps ? refiner.refine(observedNs, deviceUs) : observedNs;
+                capturedFrames.incrementAndGet();
+                estimator.onFrame(timestamp);
+                phaseAligner.onFrame(timestamp);
+
+                if (isRecordingActive()) {
+                    // 采集器会复用内部AVPacket，送编码前复制一份（引用计数，不复制JPEG数据）
+                    AVPacket copy = avcodec.av_packet_clone(grabbed);
+                    if (copy != null) {
+                        TimestampedFrame tsFrame = new TimestampedFrame(copy, timestamp);
+                        tsFrame.captureResidualNs = observedNs - timestamp;
+                        enqueueForEncoding(tsFrame);
+                    }
+                }
+
+                if (decoder.offer(grabbed, timestamp, localNs)) {
+                    wakePreviewWaiter();
+                }
+                captureAllocation.onFrame();
+            } catch (Exception e) {
+                if (isRunning) {
+                    logger.error("采集压缩帧失败", e);
+                }
+            }
+        }
+    }
+
+    private void enqueueForEncoding(TimestampedFrame tsFrame) {
+        if (encodeQueue.offer(tsFrame)) {
+            int depth = encodeQueue.size();
+            if (depth > maxEncodeQueueDepth) {
+                maxEncodeQueueDepth = depth;
+            }
+            LockSupport.unpark(encoderThread);
+        } else {
+            tsFrame.release();
+            long dropped = encodeDroppedFrames.incrementAndGet();
+            if (dropped == 1 || dropped % 100 == 0) {
+                logger.warn("⚠️ 编码队列已满，丢帧: 累计 {} 帧", dropped);
+            }
+        }
+    }
+
+    /**
+     * 非实时源（最大速度回放）：队列满时等待编码线程腾出空间而不是丢帧，吞吐由编码器决定
+     */
+    private void enqueueWithBackpressure(TimestampedFrame tsFrame) {
+        while (!encodeQueue.offer(tsFrame)) {
+            if (!isRunning || captureSuspended || !isRecordingActive()) {
+                tsFrame.release();
+                return;
+            }
+            LockSupport.unpark(encoderThread);
+            LockSupport.parkNanos(ENCODER_IDLE_PARK_NS / 10);
+        }
+        int depth = encodeQueue.size();
+        if (depth > maxEncodeQueueDepth) {
+            maxEncodeQueueDepth = depth;
+        }
+        LockSupport.unpark(encoderThread);
+    }
+
+    private void wakePreviewWaiter() {
+        Thread waiter = previewWaiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * 编码线程：依次取出采集帧，决定是否写入录制文件
+     */
+    private void encodeLoop() {
+        ThreadAffinity.applyToCurrentThread(encoderCpus);
+        while (isRunning || !encodeQueue.isEmpty()) {
+            TimestampedFrame tsFrame = encodeQueue.poll();
+            if (tsFrame == null) {
+                LockSupport.parkNanos(ENCODER_IDLE_PARK_NS);
+                continue;
+            }
+            try {
+                synchronized (recorderLock) {
+                    long beginNs = System.nanoTime();
+                    if (processFrame(tsFrame)) {
+                        long elapsedNs = System.nanoTime() - beginNs;
+                        encodeTimeSumNs += elapsedNs;
+                        if (elapsedNs > maxEncodeTimeNs) {
+                            maxEncodeTimeNs = elapsedNs;
+                        }
+                        encodedFrames.incrementAndGet();
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("编码帧失败", e);
+            } finally {
+                tsFrame.release();
+            }
+        }
+    }
+
+    /**
+     * 取出最新的预览帧（有损：未及时取走的帧会被新帧覆盖）
+     * 调用方用完后须调用 {@link TimestampedFrame#release()} 归还帧池
+     *
+     * @return 自上次调用以来没有新帧时返回null
+     */
+    public TimestampedFrame pollPreviewFrame() {
+        MjpegPreviewDecoder decoder = previewDecoder;
+        TimestampedFrame frame = decoder != null ? decoder.poll() : latestPreviewFrame.getAndSet(null);
+        if (frame != null) {
+            previewDeliveredFrames.incrementAndGet();
+        }
+        return frame;
+    }
+
+    /**
+     * 等待下一帧预览帧（新帧到达即返回，不做固定休眠），用完后须调用 release()
+     *
+     * @param timeoutMs 最长等待时间
+     * @return 超时返回null
+     */
+    public TimestampedFrame awaitPreviewFrame(long timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        previewWaiter = Thread.currentThread();
+        try {
+            while (isRunning) {
+                TimestampedFrame frame = pollPreviewFrame();
+                if (frame != null) {
+                    return frame;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                LockSupport.parkNanos(remaining);
+            }
+            return null;
+        } finally {
+            previewWaiter = null;
+        }
+    }
+
+    /**
+     * 实测采集帧率
+     */
+    public double getAchievedFps() {
+        CapturePacer p = pacer;
+        return p != null ? p.getAchievedFps() : 0;
+    }
+
+    /**
+     * 采集抖动（帧间隔标准差，毫秒）
+     */
+    public double getCaptureJitterMs() {
+        CapturePacer p = pacer;
+        return p != null ? p.getJitterMs() : 0;
+    }
+
+    /**
+     * 实际帧周期估计（稳健回归，相对同步时钟）
+     * @return 样本不足或采集源不节拍（最大速度回放）时返回null
+     */
+    FramePeriodEstimator.Estimate getPeriodEstimate() {
+        FramePeriodEstimator estimator = periodEstimator;
+        CapturePacer p = pacer;
+        if (!isRunning || estimator == null || p == null || p.getMode() == CapturePacer.Mode.FREE_RUN) {
+            return null;
+        }
+        return estimator.estimate();
+    }
+
+    /**
+     * 估计的实际帧率，无法估计时为NaN
+     */
+    public double getEstimatedFps() {
+        FramePeriodEstimator.Estimate estimate = getPeriodEstimate();
+        return estimate != null ? estimate.fps() : Double.NaN;
+    }
+
+    /**
+     * 实际帧率相对标称帧率的偏差（ppm，正值表示比标称快），无法估计时为NaN
+     */
+    public double getFpsDriftPpm() {
+        FramePeriodEstimator.Estimate estimate = getPeriodEstimate();
+        return estimate != null ? estimate.driftPpm(frameRate) : Double.NaN;
+    }
+
+    /**
+     * 采集遥测数据（上报Leader）
+     */
+    public Map<String, String> getTelemetryValues() {
+        Map<String, String> values = new LinkedHashMap<>();
+        CapturePacer p = pacer;
+        if (p != null) {
+            values.put(ClientTelemetry.KEY_FPS, String.format("%.2f", p.getAchievedFps()));
+            values.put(ClientTelemetry.KEY_JITTER_MS, String.format("%.2f", p.getJitterMs()));
+            values.put(ClientTelemetry.KEY_PACING, p.getMode().name());
+        }
+        values.put(ClientTelemetry.KEY_ENCODER, isPassthroughActive() ? PASSTHROUGH_ENCODER_NAME
+                : resolveEncoderProfile().name());
+        values.put(ClientTelemetry.KEY_FORMAT, ClientTelemetry.formatKey(frameWidth, frameHeight, frameRate));
+        values.put(ClientTelemetry.KEY_PREROLL_MS, Long.toString(getPreRollCoverageMs()));
+        if (lastArmLatencyNs >= 0) {
+            values.put(ClientTelemetry.KEY_ARM_MS, String.format("%.2f", getLastArmLatencyMs()));
+            values.put(ClientTelemetry.KEY_ARM_MAX_MS, String.format("%.2f", getMaxArmLatencyMs()));
+        }
+        WarmRecorderPool pool = warmPool;
+        if (pool != null) {
+            values.put(ClientTelemetry.KEY_WARM_RECORDERS, Integer.toString(pool.getReadyCount()));
+        }
+        CaptureTimestampRefiner refiner = timestampRefiner;
+        if (refiner != null && refineTimestamps) {
+            values.put(ClientTelemetry.KEY_TIMESTAMP_SOURCE, refiner.getSource().name());
+            values.put(ClientTelemetry.KEY_TIMESTAMP_RESIDUAL_MS, String.format("%.2f", refiner.getResidualStdMs()));
+        }
+        FramePeriodEstimator.Estimate period = getPeriodEstimate();
+        if (period != null) {
+            values.put(ClientTelemetry.KEY_ESTIMATED_FPS, String.format("%.3f", period.fps()));
+            values.put(ClientTelemetry.KEY_FPS_DRIFT_PPM, String.format("%.0f", period.driftPpm(frameRate)));
+            values.put(ClientTelemetry.KEY_PERIOD_JITTER_MS, String.format("%.2f", period.jitterMs()));
+        }
+        double phaseErrorMs = getPhaseErrorMs();
+        if (!Double.isNaN(phaseErrorMs)) {
+            values.put(ClientTelemetry.KEY_PHASE_ERROR_MS, String.format("%.2f", phaseErrorMs));
+        }
+        if (phaseState != PhaseAligner.State.IDLE) {
+            values.put(ClientTelemetry.KEY_PHASE_STATE, phaseState.name());
+        }
+        FrameGapDetector detector = gapDetector;
+        if (detector != null) {
+            values.put(ClientTelemetry.KEY_RECORDING_DROPPED, Long.toString(detector.getDroppedFrames()));
+            values.put(ClientTelemetry.KEY_RECORDING_GAPS, Integer.toString(detector.getGapCount()));
+            String positions = detector.getRecentPositions();
+            if (!positions.isEmpty()) {
+                values.put(ClientTelemetry.KEY_GAP_POSITIONS, positions);
+            }
+        }
+        PipelineStats stats = getPipelineStats();
+        values.put(ClientTelemetry.KEY_CAPTURED, Long.toString(stats.capturedFrames()));
+        values.put(ClientTelemetry.KEY_ENCODE_DROPPED, Long.toString(stats.encodeDroppedFrames()));
+        values.put(ClientTelemetry.KEY_ENCODE_QUEUE_MAX, Integer.toString(stats.maxEncodeQueueDepth()));
+        values.put(ClientTelemetry.KEY_POOL_FRAMES, Integer.toString(stats.poolAllocatedFrames()));
+        if (stats.captureAllocBytesPerFrame() >= 0) {
+            values.put(ClientTelemetry.KEY_CAPTURE_ALLOC, String.format("%.0f", stats.captureAllocBytesPerFrame()));
+        }
+        return values;
+    }
+
+    /**
+     * 当前帧相位相对公共网格（同步时钟对标称周期取模）的误差
+     * @return 毫秒，[-周期/2, 周期/2)；样本不足或采集源不节拍时为NaN
+     */
+    public double getPhaseErrorMs() {
+        CapturePacer p = pacer;
+        if (!isRunning || p == null || p.getMode() == CapturePacer.Mode.FREE_RUN) {
+            return Double.NaN;
+        }
+        long periodNs = PhaseAligner.gridPeriodNs(frameRate);
+        double phaseNs = phaseAligner.measurePhaseNs(periodNs);
+        return Double.isNaN(phaseNs) ? Double.NaN : PhaseAligner.wrapError(phaseNs, periodNs) / 1e6;
+    }
+
+    public PhaseAligner.State getPhaseState() {
+        return phaseState;
+    }
+
+    /**
+     * 相位对齐：把帧相位调整到同步时钟上的公共网格（所有设备目标相位相同），在后台线程进行
+     *
+     * 截止时间调度的采集源直接推迟截止时间；设备节拍的摄像头在计算好的时刻重启视频流，
+     * 按上一次观测到的启动延迟修正下一次启动时刻，直到误差在容差内或达到最多调整次数。
+     * 只在空闲时调整：对齐过程中开始录制会中止对齐。已有对齐在进行时返回同一个结果。
+     *
+     * @param toleranceMs 目标相位误差（毫秒）
+     */
+    public synchronized CompletableFuture<PhaseAligner.Result> alignPhase(double toleranceMs) {
+        if (phaseAlignment != null && !phaseAlignment.isDone()) {
+            return phaseAlignment;
+        }
+        CompletableFuture<PhaseAligner.Result> future = new CompletableFuture<>();
+        phaseAlignment = future;
+        phaseState = PhaseAligner.State.ALIGNING;
+        Thread aligner = new Thread(() -> {
+            PhaseAligner.Result result;
+            try {
+                result = runPhaseAlignment(toleranceMs);
+            } catch (Exception e) {
+                logger.error("相位对齐失败", e);
+                result = new PhaseAligner.Result(PhaseAligner.State.FAILED, Double.NaN, 0, "异常");
+            }
+            phaseState = result.state();
+            logger.info("🔄 相位对齐{}: {}, 误差 {}ms, 调整{}次 ({})", threadSuffix, result.state(),
+                    String.format("%.2f", result.errorMs()), result.attempts(), result.method());
+            future.complete(result);
+        }, "Phase-Align" + threadSuffix);
+        aligner.setDaemon(true);
+        aligner.start();
+        return future;
+    }
+
+    private PhaseAligner.Result runPhaseAlignment(double toleranceMs) throws Exception {
+        long periodNs = PhaseAligner.gridPeriodNs(frameRate);
+        double toleranceNs = toleranceMs * 1e6;
+        CapturePacer p = pacer;
+        if (!isRunning || p == null || p.getMode() == CapturePacer.Mode.FREE_RUN) {
+            return new PhaseAligner.Result(PhaseAligner.State.UNSUPPORTED, Double.NaN, 0, "采集源不节拍");
+        }
+
+        double errorNs = awaitPhaseErrorNs(periodNs);
+        if (Double.isNaN(errorNs)) {
+            return new PhaseAligner.Result(PhaseAligner.State.FAILED, Double.NaN, 0, "无法测量相位");
+        }
+        if (Math.abs(errorNs) <= toleranceNs) {
+            return new PhaseAligner.Result(PhaseAligner.State.ALIGNED, errorNs / 1e6, 0, "无需调整");
+        }
+
+        boolean deadline = p.getMode() == CapturePacer.Mode.DEADLINE;
+        String method = deadline ? "截止时间" : "重启视频流";
+        logger.info("🔄 相位误差 {}ms，开始对齐（{}）", String.format("%.2f", errorNs / 1e6), method);
+        double startLatencyPhaseNs = 0;  // 启动→首帧延迟对周期取模（重启视频流时逐次修正）
+        for (int attempt = 1; attempt <= PHASE_ALIGN_MAX_ATTEMPTS; attempt++) {
+            long startAtNs = 0;
+            if (deadline) {
+                // 推迟截止时间，使之后的帧落在网格上（推迟量取 [0, 周期)）
+                pacer.shiftPhase(Math.floorMod(-Math.round(errorNs), periodNs));
+                CaptureTimestampRefiner refiner = timestampRefiner;
+                if (refiner != null) {
+                    refiner.requestReset();
+                }
+                FramePeriodEstimator estimator = periodEstimator;
+                if (estimator != null) {
+                    estimator.reset();
+                }
+                phaseAligner.reset();
+            } else {
+                startAtNs = restartCaptureWithPhase(-startLatencyPhaseNs, periodNs);
+                if (startAtNs < 0) {
+                    return new PhaseAligner.Result(PhaseAligner.State.FAILED, errorNs / 1e6, attempt - 1,
+                            "录制开始或重启未按时完成，中止对齐");
+                }
+            }
+
+            errorNs = awaitPhaseErrorNs(periodNs);
+            if (Double.isNaN(errorNs)) {
+                return new PhaseAligner.Result(PhaseAligner.State.FAILED, Double.NaN, attempt, method);
+            }
+            if (!deadline) {
+                // 观测相位 = (启动时刻 + 启动延迟) mod 周期
+                startLatencyPhaseNs = Math.floorMod(Math.round(errorNs) - startAtNs, periodNs);
+            }
+            logger.debug("相位对齐第{}次: 误差 {}ms", attempt, String.format("%.2f", errorNs / 1e6));
+            if (Math.abs(errorNs) <= toleranceNs) {
+                return new PhaseAligner.Result(PhaseAligner.State.ALIGNED, errorNs / 1e6, attempt, method);
+            }
+        }
+        return new PhaseAligner.Result(PhaseAligner.State.FAILED, errorNs / 1e6, PHASE_ALIGN_MAX_ATTEMPTS, method);
+    }
+
+    /**
+     * 等待足够的新样本后测量相位误差（纳秒）
+     * @return 超时（约 MIN_SAMPLES + SETTLE_FRAMES 帧的3倍时长）或相机已停止时返回NaN
+     */
+    private double awaitPhaseErrorNs(long periodNs) throws InterruptedException {
+        long timeoutNs = Math.max(TimeUnit.SECONDS.toNanos(3),
+                periodNs * (PhaseAligner.MIN_SAMPLES + PhaseAligner.SETTLE_FRAMES) * 3);
+        long deadline = System.nanoTime() + timeoutNs;
+        while (isRunning && System.nanoTime() < deadline) {
+            double phaseNs = phaseAligner.measurePhaseNs(periodNs);
+            if (!Double.isNaN(phaseNs) && phaseAligner.getSampleCount() >= PhaseAligner.MIN_SAMPLES) {
+                return PhaseAligner.wrapError(phaseNs, periodNs);
+            }
+            Thread.sleep(Math.max(1, periodNs / 1_000_000));
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * 停止视频流，在下一个相位为 startPhaseNs 的时刻（同步时钟）重新启动
+     *
+     * 等待启动时刻和重新打开设备时不持有 recorderLock（phaseRestarting 为 true），开始录制不会被阻塞：
+     * prepareRecording 置 phaseRestartAborted 后这里不再等待，立即重新打开设备并中止对齐。
+     * 采集器启动失败时重试一次，仍失败则把相机标记为已停止。
+     *
+     * @return 实际选定的启动时刻；正在录制、相机已停止、对齐被中止或重试后才启动时返回-1
+     * @throws IllegalStateException 采集线程无法停止：不停止采集器，本次对齐失败
+     * @throws Exception 采集器重试后仍无法启动（相机已标记为停止）
+     */
+    private long restartCaptureWithPhase(double startPhaseNs, long periodNs) throws Exception {
+        synchronized (recorderLock) {
+            if (recordingState != RecordingState.IDLE || !isRunning) {
+                return -1;
+            }
+            stopCapturePipeline();
+            phaseRestartAborted = false;
+            phaseRestartThread = Thread.currentThread();
+            phaseRestarting = true;
+        }
+        long startAtNs = -1;
+        try {
+            try {
+                grabber.stop();
+                startAtNs = PhaseAligner.nextInstantWithPhase(getSyncTimeNs() + PHASE_RESTART_LEAD_NS,
+                        startPhaseNs, periodNs);
+                long waitNs;
+                while (!phaseRestartAborted && (waitNs = startAtNs - getSyncTimeNs()) > 0) {
+                    LockSupport.parkNanos(waitNs);
+                }
+                if (isRunning) {
+                    startGrabber();
+                }
+            } catch (Exception e) {
+                logger.warn("相位对齐重启视频流失败，重试: {}", e.getMessage());
+                startAtNs = -1;
+                recoverGrabber(e);
+            }
+        } finally {
+            synchronized (recorderLock) {
+                phaseRestarting = false;
+                phaseRestartThread = null;
+                if (isRunning) {
+                    startCapturePipeline();
+                }
+                recorderLock.notifyAll();
+            }
+        }
+        return phaseRestartAborted ? -1 : startAtNs;
+    }
+
+    /**
+     * 获取流水线运行指标
+     */
+    public PipelineStats getPipelineStats() {
+        FramePool pool = framePool;
+        long encoded = encodedFrames.get();
+        return new PipelineStats(
+                capturedFrames.get(),
+                encodeQueue.size(),
+                maxEncodeQueueDepth,
+                encodeQueue.capacity(),
+                encodedFrames.get(),
+                encodeDroppedFrames.get(),
+                previewDeliveredFrames.get(),
+                previewDroppedFrames.get(),
+                pool != null ? pool.getAllocatedFrames() : 0,
+                pool != null ? pool.getInUseFrames() : 0,
+                pool != null ? pool.getExhaustedCount() : 0,
+                captureAllocation.getBytesPerFrame(),
+                encoded > 0 ? encodeTimeSumNs / 1e6 / encoded : 0,
+                maxEncodeTimeNs / 1e6
+        );
+    }
+
+    /**
+     * 软录制模式：设置触发时间，准备开始录制
+     *
+     * @param outputPath 输出文件路径
+     * @param triggerTimeNs 触发时间（本地同步时钟，纳秒）
+     */
+    public void prepareRecording(String outputPath, long triggerTimeNs) throws Exception {
+        long armBeginNs = System.nanoTime();
+        synchronized (recorderLock) {
+            if (recordingState != RecordingState.IDLE) {
+                logger.warn("无法准备录制：当前状态为 {}", recordingState);
+                return;
+            }
+            if (phaseRestarting) {
+                // 相位对齐正在重启视频流：让它立即重新打开设备并中止对齐；直通录制器引用采集器的输入流，需等设备打开
+                phaseRestartAborted = true;
+                LockSupport.unpark(phaseRestartThread);
+                if (isPassthroughActive()) {
+                    awaitPhaseRestartLocked();
+                }
+            }
+
+            this.pendingOutputPath = outputPath;
+            this.triggerTimeNs = triggerTimeNs;
+            this.ptsOriginNs = triggerTimeNs;
+            this.frameCount = 0;
+            resetRecordingStats();
+            startGapDetection();
+            activeEncoderProfile = resolveEncoderProfile();
+
+            // 预先初始化录制器（但不开始写入）
+            recorder = openOutput(outputPath);
+            if (isPassthroughActive()) {
+                logger.info("编码配置: MJPEG直通（不重新编码）");
+            } else {
+                logger.info("编码配置: {} (请求: {})", activeEncoderProfile.name(), requestedEncoderProfile);
+            }
+            timestampWriter = new FrameTimestampWriter(Paths.get(outputPath), writeTimestampCsv);
+
+            recordingState = RecordingState.WAITING;
+            recordArmLatency(System.nanoTime() - armBeginNs);
+        }
+
+        long waitTimeMs = (triggerTimeNs - getSyncTimeNs()) / 1_000_000;
+        if (waitTimeMs >= 0) {
+            logger.info("🎬 软录制准备就绪: 等待触发 ({}ms后), 输出: {}", waitTimeMs, outputPath);
+        } else {
+            logger.info("🎬 软录制准备就绪: 触发时间已过去 {}ms，将从预录缓冲开始写入 (覆盖 {}ms), 输出: {}",
+                    -waitTimeMs, getPreRollCoverageMs(), outputPath);
+        }
+    }
+
+    /**
+     * 处理一帧（在编码线程中调用，持有 recorderLock）
+     * 根据当前状态决定是否写入该帧
+     *
+     * @param tsFrame 带时间戳的帧
+     * @return true 如果帧被写入录制文件
+     */
+    private boolean processFrame(TimestampedFrame tsFrame) throws Exception {
+        if (tsFrame == null || (tsFrame.frame == null && tsFrame.packet == null)) {
+            return false;
+        }
+
+        switch (recordingState) {
+            case WAITING:
+                // 检查是否到达触发时间
+                if (tsFrame.timestampNs >= triggerTimeNs) {
+                    // 触发时间早于这一帧：先从预录缓冲写入 [触发时间, 这一帧) 之间的历史帧
+                    int preRollFrames = recordPreRoll(tsFrame.timestampNs);
+                    if (preRollFrames == 0) {
+                        recordingStartTimeNs = tsFrame.timestampNs;
+                    }
+                    recordingState = RecordingState.RECORDING;
+
+                    long delayMs = (recordingStartTimeNs - triggerTimeNs) / 1_000_000;
+                    logger.info("✅ 软录制触发: 首帧时间戳={}, 触发延迟={}ms, 预录帧={}",
+                            recordingStartTimeNs, delayMs, preRollFrames);
+
+                    // 写入第一帧实时帧
+                    writeFrame(tsFrame);
+                    return true;
+                }
+                break;
+
+            case RECORDING:
+                // 正常录制
+                writeFrame(tsFrame);
+                return true;
+
+            case STOPPING:
+                // 停止前已采集、仍在队列中的帧照常写入
+                if (recorder != null && tsFrame.timestampNs <= stopTimeNs
+                        && tsFrame.timestampNs >= recordingStartTimeNs && recordingStartTimeNs > 0) {
+                    writeFrame(tsFrame);
+                    return true;
+                }
+                break;
+
+            case IDLE:
+            default:
+                // 不录制
+                break;
+        }
+
+        return false;
+    }
+
+    /**
+     * 写入预录缓冲中时间戳位于 [triggerTimeNs, liveFrameTimestampNs) 的帧
+     * @return 写入的帧数；写入时同时设置录制起始时间戳
+     */
+    private int recordPreRoll(long liveFrameTimestampNs) throws Exception {
+        PreRollBuffer preRoll = preRollBuffer;
+        if (preRoll == null || triggerTimeNs >= liveFrameTimestampNs) {
+            return 0;
+        }
+
+        List<TimestampedFrame> history = preRoll.freeze(triggerTimeNs, liveFrameTimestampNs);
+        try {
+            if (history.isEmpty()) {
+                return 0;
+            }
+            recordingStartTimeNs = history.get(0).timestampNs;
+            for (TimestampedFrame frame : history) {
+                writeFrame(frame);
+            }
+            return history.size();
+        } finally {
+            preRoll.unfreeze();
+        }
+    }
+
+    /**
+     * 硬录制模式：立即开始录制（兼容旧接口）
+     */
+    public void startRecording(String outputPath) throws Exception {
+        long armBeginNs = System.nanoTime();
+        synchronized (recorderLock) {
+            if (recordingState != RecordingState.IDLE) {
+                logger.warn("无法开始录制：当前状态为 {}", recordingState);
+                return;
+            }
+
+            activeEncoderProfile = resolveEncoderProfile();
+            recorder = openOutput(outputPath);
+            timestampWriter = new FrameTimestampWriter(Paths.get(outputPath), writeTimestampCsv);
+
+            resetRecordingStats();
+            startGapDetection();
+            recordingStartTimeNs = getSyncTimeNs();
+            ptsOriginNs = recordingStartTimeNs;
+            frameCount = 0;
+            recordingState = RecordingState.RECORDING;
+            recordArmLatency(System.nanoTime() - armBeginNs);
+        }
+        logger.info("🎬 硬录制开始: {}", outputPath);
+    }
+
+    /**
+     * 写入一帧到录制文件，并记录其同步时间戳（持有 recorderLock）
+     * 与上一帧之间有缺口时先按缺帧策略补帧
+     */
+    private void writeFrame(TimestampedFrame tsFrame) throws Exception {
+        FrameGapDetector detector = gapDetector;
+        if (detector != null) {
+            long previousTimestampNs = frameCount > 0 ? lastTimestampWritten : -1;
+            int missing = detector.onFrame(frameCount, tsFrame.timestampNs);
+            if (missing > 0) {
+                int inserted = fillGap(tsFrame, previousTimestampNs, missing);
+                detector.recordInserted(inserted);
+                int gaps = detector.getGapCount();
+                if (gaps == 1 || gaps % 100 == 0) {
+                    logger.warn("⚠️ 检测到缺帧: 帧#{} 前缺失{}帧 (间隔{}ms), 补帧{}; 本次录制累计 {}处/{}帧",
+                            frameCount, missing, (tsFrame.timestampNs - previousTimestampNs) / 1_000_000, inserted,
+                            gaps, detector.getDroppedFrames());
+                }
+            }
+        }
+
+        // 重复补帧需要保留上一帧：直通包写入后会被封装器清空，先取一个引用副本
+        boolean keepForFill = gapPolicy == GapPolicy.DUPLICATE;
+        AVPacket packetCopy = keepForFill && tsFrame.packet != null ? avcodec.av_packet_clone(tsFrame.packet) : null;
+        writeToOutput(tsFrame.frame, tsFrame.packet, tsFrame.timestampNs, tsFrame.captureResidualNs);
+        if (keepForFill) {
+            releaseLastWrittenFrame();
+            if (packetCopy != null) {
+                lastWrittenPacket = packetCopy;
+            } else {
+                lastWrittenFrame = tsFrame.retain();
+            }
+        }
+    }
+
+    /**
+     * 写入一帧（真实帧或补帧）：分段切换、编码/封装、时间戳旁路
+     */
+    private void writeToOutput(Frame frame, AVPacket packet, long timestampNs, long captureResidualNs)
+            throws Exception {
+        // 分段录制：到达分段时长后切换到新文件（旧文件在后台收尾）
+        if (output.shouldRoll(timestampNs)) {
+            recorder = output.roll(timestampNs);
+        }
+        output.beginFrame(timestampNs);
+        if (packet != null) {
+            writePacket(packet, timestampNs);
+        } else {
+            encodeFrame(frame, timestampNs);
+        }
+        output.endFrame();
+        if (timestampWriter != null) {
+            timestampWriter.append((int) frameCount, timestampNs, captureResidualNs);
+        }
+        lastTimestampWritten = timestampNs;
+        frameCount++;
+    }
+
+    /**
+     * 按缺帧策略补齐缺口，补帧时间戳在缺口两端之间等分
+     * @return 实际补入的帧数
+     */
+    private int fillGap(TimestampedFrame next, long previousTimestampNs, int missing) throws Exception {
+        GapPolicy policy = gapPolicy;
+        if (policy == GapPolicy.LEAVE_GAP || previousTimestampNs < 0) {
+            return 0;
+        }
+        if (policy == GapPolicy.MARKER && next.packet != null) {
+            if (!markerUnsupportedLogged) {
+                logger.warn("直通模式无法生成标记帧，缺口按留空处理");
+                markerUnsupportedLogged = true;
+            }
+            return 0;
+        }
+        if (policy == GapPolicy.DUPLICATE && lastWrittenFrame == null && lastWrittenPacket == null) {
+            return 0;
+        }
+
+        long spanNs = next.timestampNs - previousTimestampNs;
+        for (int k = 1; k <= missing; k++) {
+            long timestampNs = previousTimestampNs + spanNs * k / (missing + 1);
+            if (policy == GapPolicy.MARKER) {
+                writeToOutput(markerFrameLike(next.frame), null, timestampNs, 0);
+            } else if (lastWrittenPacket != null) {
+                AVPacket copy = avcodec.av_packet_clone(lastWrittenPacket);
+                try {
+                    writeToOutput(null, copy, timestampNs, 0);
+                } finally {
+                    avcodec.av_packet_free(copy);
+                }
+            } else {
+                writeToOutput(lastWrittenFrame.frame, null, timestampNs, 0);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * 与给定帧同格式的黑色帧（格式不变时复用）
+     */
+    private Frame markerFrameLike(Frame frame) {
+        Frame marker = markerFrame;
+        if (marker == null || marker.imageWidth != frame.imageWidth || marker.imageHeight != frame.imageHeight
+                || marker.imageDepth != frame.imageDepth || marker.imageChannels != frame.imageChannels) {
+            marker = new Frame(frame.imageWidth, frame.imageHeight, frame.imageDepth, frame.imageChannels);
+            if (marker.image[0] instanceof ByteBuffer buffer) {
+                buffer.clear();
+                buffer.put(new byte[buffer.remaining()]);
+                buffer.clear();
+            }
+            markerFrame = marker;
+        }
+        return marker;
+    }
+
+    /**
+     * 释放重复补帧保留的上一帧（持有 recorderLock）
+     */
+    private void releaseLastWrittenFrame() {
+        if (lastWrittenFrame != null) {
+            lastWrittenFrame.release();
+            lastWrittenFrame = null;
+        }
+        if (lastWrittenPacket != null) {
+            avcodec.av_packet_free(lastWrittenPacket);
+            lastWrittenPacket = null;
+        }
+    }
+
+    /**
+     * 开始新一次录制的缺帧检测（持有 recorderLock）
+     */
+    private void startGapDetection() {
+        releaseLastWrittenFrame();
+        markerUnsupportedLogged = false;
+        gapDetector = new FrameGapDetector(expectedPeriodNs());
+    }
+
+    /**
+     * 缺帧检测的期望帧间隔：实际帧周期估计（相机实际帧率与标称不同时，例如请求30fps只能出15fps，
+     * 按标称周期会把每一帧都判为缺口），估计不可用或明显不合理时用标称周期
+     */
+    private long expectedPeriodNs() {
+        double nominalNs = 1_000_000_000.0 / Math.max(1, frameRate);
+        FramePeriodEstimator.Estimate estimate = getPeriodEstimate();
+        if (estimate != null && estimate.periodNs() > nominalNs * 0.5 && estimate.periodNs() < nominalNs * 4) {
+            return Math.round(estimate.periodNs());
+        }
+        return Math.round(nominalNs);
+    }
+
+    /**
+     * 同步时钟PTS（微秒）：该帧同步时间戳 - 本次录制的触发时间
+     * 零点是各设备共同的触发时间而不是各自的首帧，整个录制（所有分段）共用，
+     * 因此各视角的PTS处于同一时间轴，后续分段的PTS从分段在录制中的位置继续（不从0重新开始）
+     */
+    private long syncClockPtsUs(long timestampNs) {
+        return Math.max(0, timestampNs - ptsOriginNs) / 1_000;
+    }
+
+    private void encodeFrame(Frame frame, long timestampNs) throws Exception {
+        if (syncClockPts) {
+            // 丢帧处留出空隙，文件时长与真实时间一致
+            // 精度受限于容器时间基（1/帧率）：只在比上一帧的PTS晚时前移，保证单调递增
+            long ptsUs = syncClockPtsUs(timestampNs);
+            if (ptsUs > recorder.getTimestamp()) {
+                recorder.setTimestamp(ptsUs);
+            }
+        }
+        recorder.record(frame);
+    }
+
+    /**
+     * 直通模式：按同步时钟（或恒定帧率）改写压缩包的PTS/DTS后原样封装
+     * MJPEG只有帧内编码，PTS与DTS相同
+     */
+    private void writePacket(AVPacket packet, long timestampNs) throws Exception {
+        long ptsUs = syncClockPts
+                ? syncClockPtsUs(timestampNs)
+                : Math.round(frameCount * 1_000_000.0 / frameRate);
+        AVStream stream = ((FFmpegFrameGrabber) grabber).getFormatContext().streams(packet.stream_index());
+        long pts = avutil.av_rescale_q(ptsUs, avutil.av_make_q(1, 1_000_000), stream.time_base());
+        if (pts <= lastPacketPts) {
+            pts = lastPacketPts + 1;
+        }
+        lastPacketPts = pts;
+        packet.pts(pts);
+        packet.dts(pts);
+        recorder.recordPacket(packet);
+    }
+
+    /**
+     * 设置PTS模式
+     * @param enabled true：按同步时钟时间戳设置每帧PTS（可变帧率，所有视角共享同一时间轴）；
+     *                false：按固定帧率顺序编号（恒定帧率）
+     */
+    public void setSyncClockPts(boolean enabled) {
+        this.syncClockPts = enabled;
+    }
+
+    /**
+     * 设置缺帧处理策略（下一帧起生效）
+     */
+    public void setGapPolicy(GapPolicy policy) {
+        this.gapPolicy = policy != null ? policy : GapPolicy.LEAVE_GAP;
+    }
+
+    public GapPolicy getGapPolicy() {
+        return gapPolicy;
+    }
+
+    /**
+     * 当前（或上一次）录制检测到的缺失帧数，尚未录制过时为0
+     */
+    public long getRecordingDroppedFrames() {
+        FrameGapDetector detector = gapDetector;
+        return detector != null ? detector.getDroppedFrames() : 0;
+    }
+
+    /**
+     * 当前（或上一次）录制检测到的缺口数
+     */
+    public int getRecordingGapCount() {
+        FrameGapDetector detector = gapDetector;
+        return detector != null ? detector.getGapCount() : 0;
+    }
+
+    /**
+     * 设置是否修正采集时间戳（在 startCamera 之前或运行中均可调用）
+     * @param enabled true：设备时间戳映射或等间隔拟合后的曝光时刻估计；false：grab() 返回时刻
+     */
+    public void setTimestampRefinement(boolean enabled) {
+        this.refineTimestamps = enabled;
+    }
+
+    /**
+     * 设置是否在录制结束时导出CSV时间戳（二进制 .fts 始终写入）
+     */
+    public void setWriteTimestampCsv(boolean writeCsv) {
+        this.writeTimestampCsv = writeCsv;
+    }
+
+    /**
+     * 录制一帧（兼容旧接口）
+     */
+    public void recordFrame(Frame frame) throws Exception {
+        synchronized (recorderLock) {
+            if (recordingState == RecordingState.RECORDING && recorder != null && frame != null) {
+                writeFrame(new TimestampedFrame(frame, getSyncTimeNs()));
+            }
+        }
+    }
+
+    /**
+     * 停止录制
+     * 停止时刻之前采集的帧会先由编码线程写完（最多等待 STOP_DRAIN_TIMEOUT_MS），
+     * 最后一个文件的收尾（stop/release、时间戳文件、分段清单）在后台进行，本方法返回时即可准备下一次录制；
+     * 需要完整文件时调用 {@link #awaitFinalization(long)}
+     */
+    public void stopRecording() throws Exception {
+        long stopCallNs = System.nanoTime();
+        // 检查并切换到 STOPPING 须在锁内完成：编码线程在锁内处理帧时可能把 WAITING 改为 RECORDING，
+        // 锁外写入的 STOPPING 会被覆盖，导致停止失效
+        synchronized (recorderLock) {
+            if (recorder == null || recordingState == RecordingState.IDLE
+                    || recordingState == RecordingState.STOPPING) {
+                return;
+            }
+            stopTimeNs = getSyncTimeNs();
+            recordingState = RecordingState.STOPPING;
+        }
+        awaitEncodeQueueDrained();
+
+        synchronized (recorderLock) {
+            if (recorder == null) {
+                return;
+            }
+
+            long durationMs = (stopTimeNs - recordingStartTimeNs) / 1_000_000;
+
+            // 时间戳旁路文件关闭后写入缺帧报告（随视频作为旁路文件上传）
+            FrameTimestampWriter sidecar = timestampWriter;
+            FrameGapDetector detector = gapDetector;
+            Path videoPath = output.getOutputPath();
+            FrameGapReport gapReport = detector.toReport(videoPath.getFileName().toString(), gapPolicy, frameCount);
+            pendingFinalization = output.finish(stopTimeNs, () -> {
+                try {
+                    if (sidecar != null) {
+                        sidecar.close();
+                    }
+                } finally {
+                    gapReport.write(FrameGapReport.pathFor(videoPath));
+                }
+            });
+            output = null;
+            recorder = null;
+            timestampWriter = null;
+            releaseLastWrittenFrame();
+
+            PipelineStats stats = getPipelineStats();
+            logger.info("⏹️ 录制完成: 帧数={}, 时长={}ms, 编码队列最大深度={}/{}, 编码丢帧={}, 编码耗时 平均{}ms/最大{}ms, 帧池={}帧(耗尽丢帧{}), 采集分配={}B/帧",
+                    frameCount, durationMs, stats.maxEncodeQueueDepth(), stats.encodeQueueCapacity(),
+                    stats.encodeDroppedFrames(), String.format("%.2f", stats.meanEncodeMs()),
+                    String.format("%.2f", stats.maxEncodeMs()), stats.poolAllocatedFrames(),
+                    stats.poolExhaustedFrames(), String.format("%.0f", stats.captureAllocBytesPerFrame()));
+            if (detector.getDroppedFrames() > 0) {
+                logger.warn("⚠️ 本次录制缺帧: {}处缺口共{}帧, 补帧{} (策略: {})", detector.getGapCount(),
+                        detector.getDroppedFrames(), detector.getInsertedFrames(), gapPolicy.getDisplayName());
+            }
+            logger.info("⏱️ 停止耗时: {}ms（文件收尾在后台进行）", (System.nanoTime() - stopCallNs) / 1_000_000);
+
+            recordingState = RecordingState.IDLE;
+            triggerTimeNs = 0;
+            recordingStartTimeNs = 0;
+            pendingOutputPath = null;
+        }
+        rewarmRecorders();
+    }
+
+    /**
+     * 等待上一次录制的文件收尾完成
+     * @return false 表示超时
+     */
+    public boolean awaitFinalization(long timeoutMs) {
+        try {
+            pendingFinalization.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            logger.warn("等待录制文件收尾超时 ({}ms)", timeoutMs);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.error("录制文件收尾失败", e.getCause());
+            return true;
+        }
+    }
+
+    private void awaitEncodeQueueDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + STOP_DRAIN_TIMEOUT_MS;
+        while (!encodeQueue.isEmpty() && encoderThread != null && encoderThread.isAlive()) {
+            if (System.currentTimeMillis() > deadline) {
+                logger.warn("等待编码队列排空超时，剩余 {} 帧将被丢弃", encodeQueue.size());
+                break;
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private void resetRecordingStats() {
+        encodedFrames.set(0);
+        encodeDroppedFrames.set(0);
+        maxEncodeQueueDepth = 0;
+        encodeTimeSumNs = 0;
+        maxEncodeTimeNs = 0;
+        stopTimeNs = 0;
+    }
+
+    /**
+     * 打开一个录制器：优先取用参数匹配的预热录制器，没有时当场创建
+     */
+    private SegmentedRecorder.OpenedRecorder createRecorder(String outputPath) throws Exception {
+        lastPacketPts = -1;
+        lastOpenWarm = false;
+        if (isPassthroughActive()) {
+            return new SegmentedRecorder.OpenedRecorder(
+                    RecorderFactory.createPassthrough(outputPath, (FFmpegFrameGrabber) grabber), null);
+        }
+        WarmRecorderPool pool = warmPool;
+        if (pool != null) {
+            SegmentedRecorder.OpenedRecorder warm = pool.take(warmSpec(activeEncoderProfile));
+            if (warm != null) {
+                lastOpenWarm = true;
+                return warm;
+            }
+        }
+        return new SegmentedRecorder.OpenedRecorder(
+                RecorderFactory.create(outputPath, frameWidth, frameHeight, frameRate, activeEncoderProfile), null);
+    }
+
+    private WarmRecorderPool.Spec warmSpec(EncoderProfile profile) {
+        return new WarmRecorderPool.Spec(frameWidth, frameHeight, frameRate, profile);
+    }
+
+    /**
+     * 启用预热录制器（在 startCamera 之前调用）
+     * 预热录制器先写入该目录下的临时文件，收尾后改名，因此目录应与录制文件所在目录相同
+     */
+    public void enableWarmRecorders(Path directory) {
+        if (warmPool == null) {
+            warmPool = new WarmRecorderPool(directory, WarmRecorderPool.DEFAULT_CAPACITY);
+        }
+    }
+
+    /**
+     * 按当前参数补齐预热录制器（参数或编码配置变化时旧的会被替换）
+     */
+    private void rewarmRecorders() {
+        WarmRecorderPool pool = warmPool;
+        if (pool != null && isRunning && !isPassthroughActive()) {
+            pool.warm(warmSpec(resolveEncoderProfile()));
+        }
+    }
+
+    /**
+     * 删除上次异常退出遗留的预热临时文件（应用启动时调用一次）
+     */
+    public static void deleteStaleWarmRecorderFiles(Path directory) {
+        WarmRecorderPool.deleteStaleTempFiles(directory);
+    }
+
+    private void recordArmLatency(long latencyNs) {
+        lastArmLatencyNs = latencyNs;
+        maxArmLatencyNs = Math.max(maxArmLatencyNs, latencyNs);
+        lastArmWarm = lastOpenWarm;
+        logger.info("⏱️ 录制准备耗时: {}ms ({})", String.format("%.2f", latencyNs / 1e6),
+                lastOpenWarm ? "预热录制器" : isPassthroughActive() ? "直通" : "当场创建录制器");
+    }
+
+    /**
+     * 最近一次准备录制（创建输出、取用录制器、切换状态）的耗时，尚未准备过时返回 -1
+     */
+    public double getLastArmLatencyMs() {
+        long latency = lastArmLatencyNs;
+        return latency >= 0 ? latency / 1e6 : -1;
+    }
+
+    public double getMaxArmLatencyMs() {
+        return maxArmLatencyNs / 1e6;
+    }
+
+    public boolean isLastArmWarm() {
+        return lastArmWarm;
+    }
+
+    /**
+     * 设置编码配置名（Leader在START载荷中下发），下次录制生效
+     * @param profileName 配置名，auto 或未知名称时按本机自测结果选择
+     */
+    public void setEncoderProfile(String profileName) {
+        String requested = profileName != null ? profileName : EncoderProfile.AUTO;
+        boolean changed = !requested.equals(requestedEncoderProfile);
+        this.requestedEncoderProfile = requested;
+        if (changed) {
+            rewarmRecorders();
+        }
+    }
+
+    /**
+     * 解析实际使用的编码配置：指定的配置名优先，auto 使用自测结果，自测未完成时使用保守配置
+     */
+    private EncoderProfile resolveEncoderProfile() {
+        EncoderProfile profile = EncoderProfile.byName(requestedEncoderProfile);
+        if (profile != null) {
+            return profile;
+        }
+        if (!EncoderProfile.AUTO.equalsIgnoreCase(requestedEncoderProfile)) {
+            logger.warn("未知的编码配置: {}，按 auto 处理", requestedEncoderProfile);
+        }
+        EncoderProfile benchmarked = EncoderBenchmark.getResult(frameWidth, frameHeight, frameRate);
+        return benchmarked != null ? benchmarked : EncoderProfile.FALLBACK;
+    }
+
+    public EncoderProfile getActiveEncoderProfile() {
+        return activeEncoderProfile;
+    }
+
+    /**
+     * 创建本次录制的输出并打开第一个文件
+     */
+    private FFmpegFrameRecorder openOutput(String outputPath) throws Exception {
+        output = new SegmentedRecorder(outputPath, segmentDurationSec, this::createRecorder, segmentListener);
+        return output.start();
+    }
+
+    public void stopCamera() throws Exception {
+        // 如果正在录制，先停止录制（编码线程仍在运行，队列中的帧会写完）
+        if (recordingState != RecordingState.IDLE) {
+            stopRecording();
+        }
+        // 直通录制器引用采集器的输入流，采集器释放前等文件收尾完成
+        awaitFinalization(STOP_DRAIN_TIMEOUT_MS * 5);
+
+        isRunning = false;
+        synchronized (recorderLock) {
+            if (phaseRestarting) {
+                // 相位对齐正在重启视频流：不再等待启动时刻，等它结束后再释放采集器
+                phaseRestartAborted = true;
+                LockSupport.unpark(phaseRestartThread);
+                awaitPhaseRestartLocked();
+            }
+        }
+        // 线程仍在 grab()/编码中时不能释放帧池和采集器：放弃清理并报错（资源随进程回收）
+        if (!awaitExit(captureThread)) {
+            throw new IllegalStateException("采集线程未在" + THREAD_JOIN_TIMEOUT_MS + "ms内退出，未释放采集器");
+        }
+        if (encoderThread != null) {
+            LockSupport.unpark(encoderThread);
+        }
+        if (!awaitExit(encoderThread)) {
+            throw new IllegalStateException("编码线程未在" + THREAD_JOIN_TIMEOUT_MS + "ms内退出，未释放采集器");
+        }
+        stopCapturePipeline();
+
+        if (previewDecoder != null) {
+            previewDecoder.release();
+            previewDecoder = null;
+        }
+        if (warmPool != null) {
+            warmPool.close();
+            warmPool = null;
+        }
+
+        if (grabber != null) {
+            grabber.stop();
+            grabber.release();
+            logger.info("❌ 相机已停止");
+        }
+    }
+
+    /**
+     * 等待线程退出
+     * @return false 表示超时（或等待被中断）时线程仍在运行
+     */
+    private static boolean awaitExit(Thread thread) {
+        if (thread == null) {
+            return true;
+        }
+        try {
+            thread.join(THREAD_JOIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.error("❌ {} 未在{}ms内退出", thread.getName(), THREAD_JOIN_TIMEOUT_MS);
+            return false;
+        }
+        return true;
+    }
+
+    public boolean isRecording() {
+        return recordingState == RecordingState.RECORDING;
+    }
+
+    public boolean isWaitingTrigger() {
+        return recordingState == RecordingState.WAITING;
+    }
+
+    /**
+     * 检查是否处于任何活跃录制状态（等待触发或正在录制）
+     * 用于防止在软录制模式下重复开始录制或切换摄像头
+     */
+    public boolean isRecordingActive() {
+        return recordingState == RecordingState.WAITING || recordingState == RecordingState.RECORDING;
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    public RecordingState getRecordingState() {
+        return recordingState;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getTriggerTimeNs() {
+        return triggerTimeNs;
+    }
+}
@@ -0,0 +1,171 @@
+package com.recsync.camera;
+
+import org.bytedeco.ffmpeg.avcodec.AVCodec;
+import org.bytedeco.ffmpeg.avcodec.AVCodecContext;
+import org.bytedeco.ffmpeg.avcodec.AVCodecParameters;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avutil.AVDictionary;
+import org.bytedeco.ffmpeg.avutil.AVFrame;
+import org.bytedeco.ffmpeg.swscale.SwsContext;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.javacv.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.bytedeco.ffmpeg.global.avcodec.*;
+import static org.bytedeco.ffmpeg.global.avutil.*;
+import static org.bytedeco.ffmpeg.global.swscale.*;
+
+/**
+ * MJPEG直通模式下的低帧率预览解码器
+ *
+ * 采集线程按预览帧率挑出压缩包交给 offer()（只复制包引用，不解码）；
+ * 预览线程在 poll() 中用 FFmpeg 的 MJPEG 解码器解码并转换为 BGR。
+ * 很多 UVC 相机输出的 JPEG 省略了 Huffman 表，因此不用 OpenCV imdecode。
+ * 输出缓冲按引用计数释放：release()（重新配置或停止相机时）可能发生在预览线程渲染期间，
+ * 缓冲要等预览线程释放取走的帧后才关闭。
+ */
+final class MjpegPreviewDecoder {
+
+    private record PendingPacket(AVPacket packet, long timestampNs) {}
+
+    /**
+     * 解码输出缓冲：解码器自身和每个已交给预览线程的帧各持有一个引用，全部释放后才关闭
+     */
+    private static final class OutputBuffer {
+        final Frame frame;
+        final PointerPointer<BytePointer> data;
+        final IntPointer stride;
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        OutputBuffer(int width, int height) {
+            frame = new Frame(width, height, Frame.DEPTH_UBYTE, 3);
+            data = new PointerPointer<>(new BytePointer((ByteBuffer) frame.image[0]));
+            stride = new IntPointer(frame.imageStride);
+        }
+
+        OutputBuffer retain() {
+            refCount.incrementAndGet();
+            return this;
+        }
+
+        void release() {
+            if (refCount.decrementAndGet() == 0) {
+                data.close();
+                stride.close();
+                frame.close();
+            }
+        }
+    }
+
+    private final long minIntervalNs;
+    private final AtomicReference<PendingPacket> pending = new AtomicReference<>();
+    private long lastOfferNs = 0;  // 仅采集线程访问
+
+    // 以下仅预览线程访问
+    private final AVCodecContext codecContext;
+    private final AVFrame decoded;
+    private SwsContext swsContext;
+    private OutputBuffer output;
+    private boolean released = false;
+
+    MjpegPreviewDecoder(AVCodecParameters parameters, double previewFps) {
+        this.minIntervalNs = (long) (1_000_000_000L / Math.max(1, previewFps));
+
+        AVCodec codec = avcodec_find_decoder(AV_CODEC_ID_MJPEG);
+        if (codec == null) {
+            throw new IllegalStateException("FFmpeg 未提供 MJPEG 解码器");
+        }
+        codecContext = avcodec_alloc_context3(codec);
+        avcodec_parameters_to_context(codecContext, parameters);
+        if (avcodec_open2(codecContext, codec, (AVDictionary) null) < 0) {
+            avcodec_free_context(codecContext);
+            throw new IllegalStateException("无法打开 MJPEG 解码器");
+        }
+        decoded = av_frame_alloc();
+    }
+
+    /**
+     * 提交一个压缩包用于预览（采集线程调用，按预览帧率限流）
+     * @return true 如果该包被采用
+     */
+    boolean offer(AVPacket packet, long timestampNs, long localNs) {
+        if (lastOfferNs != 0 && localNs - lastOfferNs < minIntervalNs) {
+            return false;
+        }
+        AVPacket copy = av_packet_clone(packet);
+        if (copy == null) {
+            return false;
+        }
+        lastOfferNs = localNs;
+        PendingPacket previous = pending.getAndSet(new PendingPacket(copy, timestampNs));
+        if (previous != null) {
+            av_packet_free(previous.packet());
+        }
+        return true;
+    }
+
+    /**
+     * 解码最新提交的包（预览线程调用）
+     * 返回的帧在下一次调用前有效，用完后须调用 release()（解码器释放后缓冲仍保留到此时）
+     *
+     * @return 没有新包或解码失败时返回null
+     */
+    synchronized JavaCVCameraController.TimestampedFrame poll() {
+        PendingPacket next = pending.getAndSet(null);
+        if (next == null || released) {
+            return null;
+        }
+        try {
+            if (avcodec_send_packet(codecContext, next.packet()) < 0
+                    || avcodec_receive_frame(codecContext, decoded) < 0) {
+                return null;
+            }
+        } finally {
+            av_packet_free(next.packet());
+        }
+
+        int width = decoded.width();
+        int height = decoded.height();
+        ensureOutput(width, height);
+        swsContext = sws_getCachedContext(swsContext, width, height, decoded.format(),
+                width, height, AV_PIX_FMT_BGR24, SWS_FAST_BILINEAR, null, null, (DoublePointer) null);
+        sws_scale(swsContext, decoded.data(), decoded.linesize(), 0, height, output.data, output.stride);
+        av_frame_unref(decoded);
+        OutputBuffer buffer = output.retain();
+        return new JavaCVCameraController.TimestampedFrame(buffer.frame, next.timestampNs(), buffer::release);
+    }
+
+    private void ensureOutput(int width, int height) {
+        if (output != null && output.frame.imageWidth == width && output.frame.imageHeight == height) {
+            return;
+        }
+        if (output != null) {
+            output.release();
+        }
+        output = new OutputBuffer(width, height);
+    }
+
+    synchronized void release() {
+        released = true;
+        PendingPacket last = pending.getAndSet(null);
+        if (last != null) {
+            av_packet_free(last.packet());
+        }
+        av_frame_free(decoded);
+        avcodec_free_context(codecContext);
+        if (swsContext != null) {
+            sws_freeContext(swsContext);
+            swsContext = null;
+        }
+        if (output != null) {
+            output.release();  // 预览线程仍持有取走的帧时，由它释放时关闭
+            output = null;
+        }
+    }
+}
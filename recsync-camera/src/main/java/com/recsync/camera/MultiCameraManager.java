@@ -0,0 +1,295 @@
+package com.recsync.camera;
+
+import com.recsync.core.sync.ClientTelemetry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * 多路相机管理：一个客户端进程驱动多个摄像头（视角）
+ *
+ * 每个视角是一条独立的采集/编码流水线（各自的 JavaCVCameraController），
+ * 共用同一个同步时钟和到Leader的RPC连接，不必为每个摄像头各起一个进程（各自SNTP同步、JavaFX、心跳）。
+ * 视角在Leader上以 {设备名}-{视角ID} 出现（遥测带 view_of 指向所属设备），录制文件名中的设备名也替换为视角名。
+ *
+ * 主摄像头由客户端会话（ClientSession）直接管理，这里管理其余视角；
+ * 配置文件中视角ID为 main 的行只给主摄像头指定CPU亲和性。
+ *
+ * 配置文件格式（每行一个视角，# 开头为注释）：
+ * <pre>
+ * # 视角ID  摄像头序号  [capture=CPU列表]  [encoder=CPU列表]
+ * main    0  capture=0  encoder=1
+ * side    2  capture=2  encoder=3
+ * </pre>
+ */
+public final class MultiCameraManager {
+    private static final Logger logger = LoggerFactory.getLogger(MultiCameraManager.class);
+
+    public static final String MAIN_VIEW_ID = "main";
+    // 视角ID会出现在文件名中（{subject}_{movement}_{episode}_{device}.mp4），不能包含 '_'
+    private static final Pattern VIEW_ID = Pattern.compile("[A-Za-z0-9]+");
+
+    /**
+     * 视角配置
+     *
+     * @param viewId 视角ID（字母数字）
+     * @param cameraIndex 摄像头序号
+     * @param captureCpus 采集线程CPU列表，null表示不绑定
+     * @param encoderCpus 编码线程CPU列表，null表示不绑定
+     */
+    public record ViewConfig(String viewId, int cameraIndex, String captureCpus, String encoderCpus) {}
+
+    /**
+     * 运行中的视角
+     */
+    public record CameraView(ViewConfig config, JavaCVCameraController controller) {
+        public String viewId() {
+            return config.viewId();
+        }
+    }
+
+    private final LongSupplier syncClock;
+    private final List<CameraView> views = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param syncClock 共用的同步时钟
+     */
+    public MultiCameraManager(LongSupplier syncClock) {
+        this.syncClock = syncClock;
+    }
+
+    /**
+     * 视角在Leader上显示的名称
+     */
+    public static String viewName(String deviceName, String viewId) {
+        return deviceName + "-" + viewId;
+    }
+
+    /**
+     * 读取视角配置，文件不存在时返回空列表
+     */
+    public static List<ViewConfig> loadConfig(Path file) {
+        if (file == null || !Files.exists(file)) {
+            return Collections.emptyList();
+        }
+        List<ViewConfig> configs = new ArrayList<>();
+        try {
+            for (String raw : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String line = raw.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                ViewConfig config = parseLine(line);
+                if (config == null) {
+                    logger.warn("忽略无效的视角配置: {}", line);
+                } else if (configs.stream().anyMatch(c -> c.viewId().equals(config.viewId())
+                        || c.cameraIndex() == config.cameraIndex())) {
+                    logger.warn("忽略重复的视角或摄像头: {}", line);
+                } else {
+                    configs.add(config);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("读取视角配置失败: {}", file, e);
+        }
+        return configs;
+    }
+
+    private static ViewConfig parseLine(String line) {
+        String[] parts = line.split("\\s+");
+        if (parts.length < 2 || !VIEW_ID.matcher(parts[0]).matches()) {
+            return null;
+        }
+        int cameraIndex;
+        try {
+            cameraIndex = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String captureCpus = null;
+        String encoderCpus = null;
+        for (int i = 2; i < parts.length; i++) {
+            String[] kv = parts[i].split("=", 2);
+            if (kv.length != 2 || !ThreadAffinity.isValid(kv[1])) {
+                return null;
+            }
+            switch (kv[0]) {
+                case "capture" -> captureCpus = kv[1];
+                case "encoder" -> encoderCpus = kv[1];
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return new ViewConfig(parts[0], cameraIndex, captureCpus, encoderCpus);
+    }
+
+    /**
+     * 启动附加视角（跳过 main 和与主摄像头相同的序号），单个视角启动失败不影响其他视角
+     *
+     * @param configs 视角配置
+     * @param primaryCameraIndex 主摄像头序号
+     * @param configurer 启动前对每个控制器的额外设置（预热目录、直通开关等），可为null
+     */
+    public void start(List<ViewConfig> configs, int primaryCameraIndex, int width, int height, double fps,
+                      Consumer<JavaCVCameraController> configurer) {
+        List<Thread> starters = new ArrayList<>();
+        for (ViewConfig config : configs) {
+            if (MAIN_VIEW_ID.equals(config.viewId()) || config.cameraIndex() == primaryCameraIndex) {
+                continue;
+            }
+            // 各路并行打开（打开设备是最耗时的步骤）
+            Thread starter = new Thread(() -> startView(config, width, height, fps, configurer),
+                    "Camera-Start-" + config.viewId());
+            starter.setDaemon(true);
+            starter.start();
+            starters.add(starter);
+        }
+        for (Thread starter : starters) {
+            try {
+                starter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (!views.isEmpty()) {
+            logger.info("📷 多路相机: 已启动 {} 个附加视角", views.size());
+        }
+    }
+
+    private void startView(ViewConfig config, int width, int height, double fps,
+                           Consumer<JavaCVCameraController> configurer) {
+        JavaCVCameraController controller = new JavaCVCameraController(width, height, fps);
+        controller.setSyncClockSupplier(syncClock);
+        controller.setViewName(config.viewId());
+        controller.setThreadAffinity(config.captureCpus(), config.encoderCpus());
+        if (configurer != null) {
+            configurer.accept(controller);
+        }
+        try {
+            controller.startCamera(config.cameraIndex());
+            views.add(new CameraView(config, controller));
+            logger.info("✅ 视角 {} 已启动: 摄像头 {}", config.viewId(), config.cameraIndex());
+        } catch (Exception e) {
+            logger.error("视角 {} (摄像头 {}) 启动失败", config.viewId(), config.cameraIndex(), e);
+        }
+    }
+
+    public List<CameraView> getViews() {
+        return Collections.unmodifiableList(views);
+    }
+
+    public boolean isEmpty() {
+        return views.isEmpty();
+    }
+
+    /**
+     * 对所有视角执行同一操作，某一路失败只记录日志，不影响其他视角
+     */
+    private void forEachView(String action, ViewAction op) {
+        for (CameraView view : views) {
+            try {
+                op.apply(view);
+            } catch (Exception e) {
+                logger.error("视角 {} {}失败", view.viewId(), action, e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ViewAction {
+        void apply(CameraView view) throws Exception;
+    }
+
+    public void setEncoderProfile(String profileName) {
+        forEachView("设置编码配置", v -> v.controller().setEncoderProfile(profileName));
+    }
+
+    public void setGapPolicy(GapPolicy policy) {
+        forEachView("设置缺帧策略", v -> v.controller().setGapPolicy(policy));
+    }
+
+    /**
+     * @param listenerFactory 为每个视角创建分段监听器，可返回null
+     */
+    public void setSegmentation(int durationSec,
+                                Function<CameraView, JavaCVCameraController.SegmentListener> listenerFactory) {
+        forEachView("设置分段", v -> v.controller().setSegmentation(durationSec, listenerFactory.apply(v)));
+    }
+
+    public void reconfigure(int width, int height, double fps) {
+        forEachView("切换采集参数", v -> v.controller().reconfigure(width, height, fps));
+    }
+
+    /**
+     * 所有视角按同一触发时间准备录制
+     * @param pathForView 视角ID → 输出文件路径
+     */
+    public void prepareRecording(Function<String, String> pathForView, long triggerTimeNs) {
+        forEachView("准备录制", v -> v.controller().prepareRecording(pathForView.apply(v.viewId()), triggerTimeNs));
+    }
+
+    public void startRecording(Function<String, String> pathForView) {
+        forEachView("开始录制", v -> v.controller().startRecording(pathForView.apply(v.viewId())));
+    }
+
+    public void stopRecording() {
+        forEachView("停止录制", v -> {
+            if (v.controller().isRecordingActive()) {
+                v.controller().stopRecording();
+            }
+        });
+    }
+
+    public void awaitFinalization(long timeoutMs) {
+        forEachView("等待文件收尾", v -> v.controller().awaitFinalization(timeoutMs));
+    }
+
+    /**
+     * 所有视角同时相位对齐（各路独立调整，结果随遥测上报）
+     */
+    public List<CompletableFuture<PhaseAligner.Result>> alignPhase(double toleranceMs) {
+        List<CompletableFuture<PhaseAligner.Result>> results = new ArrayList<>();
+        forEachView("相位对齐", v -> results.add(v.controller().alignPhase(toleranceMs)));
+        return results;
+    }
+
+    /**
+     * 各视角的遥测（名称为 {设备名}-{视角ID}，view_of 指向所属设备）
+     */
+    public List<ClientTelemetry> getTelemetry(String deviceName) {
+        List<ClientTelemetry> telemetry = new ArrayList<>();
+        for (CameraView view : views) {
+            if (!view.controller().isRunning()) {
+                continue;
+            }
+            Map<String, String> values = view.controller().getTelemetryValues();
+            values.put(ClientTelemetry.KEY_VIEW_OF, deviceName);
+            telemetry.add(new ClientTelemetry(viewName(deviceName, view.viewId()), values));
+        }
+        return telemetry;
+    }
+
+    /**
+     * 停止并移除所有附加视角
+     */
+    public void stopAll() {
+        forEachView("停止相机", v -> v.controller().stopCamera());
+        views.clear();
+    }
+}
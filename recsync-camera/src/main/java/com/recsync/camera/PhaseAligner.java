@@ -0,0 +1,112 @@
+package com.recsync.camera;
+
+/**
+ * 帧相位测量与对齐计算
+ *
+ * 相位 = 帧时间戳（同步时钟，即Leader时域）对参考周期取模。所有设备以同一目标相位（0）对齐后，
+ * 各机位同一时刻的帧曝光时间相差不超过容差，而不是最多相差一个周期（30fps时33ms）。
+ * 参考周期取标称帧率的整数纳秒周期（{@link #gridPeriodNs(double)}），各设备的相位网格完全一致。
+ *
+ * 测量：对最近 WINDOW 帧修正后的时间戳做稳健回归（{@link FramePeriodEstimator}），
+ * 取回归线在最新一帧处的取值对参考周期取模。实际周期与参考周期不同时相位会持续漂移，
+ * 回归线外推到最新一帧得到的是当前相位，而不是窗口内的平均相位。
+ * 对齐动作（复位测量后跳过 SETTLE_FRAMES 帧，等时间戳修正重新收敛）后只统计新样本。
+ *
+ * 调整方式由控制器按采集节拍选择：
+ * 截止时间调度（非阻塞源）直接推迟截止时间；设备节拍的摄像头曝光由传感器自身时钟决定，
+ * 推迟或丢弃 grab() 只改变延迟、不改变曝光相位，只能在计算好的时刻重启视频流，
+ * 并用上一次重启观测到的 "启动→首帧" 延迟修正下一次的启动时刻。
+ *
+ * onFrame 只由采集线程调用；测量方法可在任意线程调用。
+ */
+public final class PhaseAligner {
+
+    /**
+     * 对齐状态（上报Leader）
+     */
+    public enum State {
+        IDLE,           // 未执行过对齐
+        ALIGNING,       // 正在对齐
+        ALIGNED,        // 相位误差在容差内
+        FAILED,         // 多次调整仍超出容差，或被录制打断
+        UNSUPPORTED     // 采集源没有固定帧节拍（最大速度回放），或时钟未同步
+    }
+
+    /**
+     * 一次对齐的结果
+     *
+     * @param state 最终状态
+     * @param errorMs 最终相位误差（毫秒，[-周期/2, 周期/2)），无法测量时为NaN
+     * @param attempts 调整次数
+     * @param method 调整方式（"截止时间" / "重启视频流" / "无需调整"）
+     */
+    public record Result(State state, double errorMs, int attempts, String method) {}
+
+    private static final int WINDOW = 60;
+    static final int MIN_SAMPLES = FramePeriodEstimator.MIN_SAMPLES;
+    static final int SETTLE_FRAMES = 10;
+
+    private final FramePeriodEstimator estimator = new FramePeriodEstimator(WINDOW);
+    private int skip = 0;  // 受 this 保护
+
+    /**
+     * 记录一帧修正后的时间戳（采集线程）
+     */
+    synchronized void onFrame(long timestampNs) {
+        if (skip > 0) {
+            skip--;
+            return;
+        }
+        estimator.onFrame(timestampNs);
+    }
+
+    /**
+     * 丢弃已有样本（调整相位之后调用），并跳过接下来的 SETTLE_FRAMES 帧
+     */
+    synchronized void reset() {
+        skip = SETTLE_FRAMES;
+        estimator.reset();
+    }
+
+    int getSampleCount() {
+        return estimator.getSampleCount();
+    }
+
+    /**
+     * 相位网格的参考周期：标称帧率对应的整数纳秒周期（所有设备按同一标称帧率计算，结果相同）
+     */
+    static long gridPeriodNs(double nominalFps) {
+        return Math.round(1_000_000_000.0 / Math.max(1, nominalFps));
+    }
+
+    /**
+     * 当前相位：回归线在最新一帧处的取值对参考周期取模
+     * @return [0, 周期) 内的相位（纳秒）；样本不足 MIN_SAMPLES 时返回NaN
+     */
+    double measurePhaseNs(long periodNs) {
+        FramePeriodEstimator.Estimate estimate = periodNs > 0 ? estimator.estimate() : null;
+        return estimate != null ? Math.floorMod(estimate.lastFrameNs(), periodNs) : Double.NaN;
+    }
+
+    /**
+     * 相对目标相位0的误差，回绕到 [-周期/2, 周期/2)
+     */
+    static double wrapError(double phaseNs, long periodNs) {
+        double error = phaseNs % periodNs;
+        if (error >= periodNs / 2.0) {
+            error -= periodNs;
+        } else if (error < -periodNs / 2.0) {
+            error += periodNs;
+        }
+        return error;
+    }
+
+    /**
+     * 不早于 notBeforeNs、且对周期取模等于 phaseNs 的最早时刻
+     */
+    static long nextInstantWithPhase(long notBeforeNs, double phaseNs, long periodNs) {
+        long target = Math.floorMod(Math.round(phaseNs), periodNs);
+        long current = Math.floorMod(notBeforeNs, periodNs);
+        return notBeforeNs + Math.floorMod(target - current, periodNs);
+    }
+}
@@ -0,0 +1,214 @@
+package com.recsync.camera;
+
+import com.recsync.core.sync.EncoderProfile;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 采集→编码→封装流水线基准测试（无需摄像头）
+ *
+ * 按编码配置依次用同一采集源跑完整的控制器流水线（帧池、编码队列、缺帧检测、分段录制器），统计：
+ * 端到端帧率（写入帧数 / 录制时长）、每帧编码耗时、丢帧率。
+ * 测试画面源还会把录制文件解码一遍，按嵌入的帧序号统计文件中实际缺失的帧。
+ *
+ * 用法：./gradlew :recsync-camera:pipelineBenchmark --args="--seconds 10 --max-speed"
+ */
+public final class PipelineBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineBenchmark.class);
+
+    private static final long WARMUP_MS = 1000;            // 录制前让采集节拍和帧池稳定
+    private static final long FINALIZATION_TIMEOUT_MS = 30_000;
+
+    /**
+     * 单个编码配置的测试结果
+     *
+     * @param profile 编码配置名
+     * @param captureFps 录制期间实测采集帧率
+     * @param endToEndFps 写入帧数 / 录制时长
+     * @param meanEncodeMs 每帧平均编码/封装耗时
+     * @param maxEncodeMs 单帧最大编码/封装耗时
+     * @param writtenFrames 写入文件的帧数
+     * @param droppedFrames 流水线丢帧（编码队列满 + 帧间隔检测到的缺帧）
+     * @param missingInFile 录制文件中按帧序号缺失的帧数（仅测试画面源，否则为-1）
+     */
+    public record Result(String profile, double captureFps, double endToEndFps, double meanEncodeMs,
+                         double maxEncodeMs, long writtenFrames, long droppedFrames, long missingInFile) {
+
+        /**
+         * 丢帧率：流水线丢帧与文件缺帧取较大者，除以应有帧数
+         */
+        public double dropRate() {
+            long lost = Math.max(droppedFrames, missingInFile);
+            long expected = writtenFrames + lost;
+            return expected > 0 ? (double) lost / expected : 0;
+        }
+    }
+
+    private PipelineBenchmark() {}
+
+    /**
+     * 依次测试各编码配置
+     *
+     * @param source 采集源（每个配置重新打开）
+     * @param verifyFrameNumbers 采集源为测试画面时解码录制文件，按嵌入的帧序号统计缺帧
+     * @param seconds 每个配置的录制时长
+     * @param workDir 临时录制文件目录（测完即删）
+     */
+    public static List<Result> run(FrameSource source, boolean verifyFrameNumbers, int width, int height, double fps,
+                                   List<EncoderProfile> profiles, double seconds, Path workDir) throws Exception {
+        logger.info("⚙️ 流水线基准测试: {} {}x{} @ {}fps, 每个配置 {}秒", source.describe(), width, height, fps, seconds);
+        // 控制器启动时会在后台做编码器自测，先跑完，避免与测试争抢CPU
+        EncoderBenchmark.ensureBenchmarked(width, height, fps).join();
+
+        List<Result> results = new ArrayList<>();
+        for (EncoderProfile profile : profiles) {
+            results.add(runProfile(source, verifyFrameNumbers, width, height, fps, profile, seconds, workDir));
+        }
+
+        logger.info("⚙️ 流水线基准测试结果 ({}):", source.describe());
+        logger.info("   {} | 采集fps | 端到端fps | 编码ms(平均/最大) | 写入帧 | 丢帧 | 文件缺帧 | 丢帧率",
+                String.format("%-10s", "配置"));
+        for (Result r : results) {
+            logger.info("   {} | {} | {} | {}/{} | {} | {} | {} | {}%",
+                    String.format("%-10s", r.profile()),
+                    String.format("%7.2f", r.captureFps()),
+                    String.format("%9.2f", r.endToEndFps()),
+                    String.format("%.2f", r.meanEncodeMs()),
+                    String.format("%.2f", r.maxEncodeMs()),
+                    r.writtenFrames(), r.droppedFrames(),
+                    r.missingInFile() >= 0 ? Long.toString(r.missingInFile()) : "-",
+                    String.format("%.2f", r.dropRate() * 100));
+        }
+        return results;
+    }
+
+    private static Result runProfile(FrameSource source, boolean verifyFrameNumbers, int width, int height,
+                                     double fps, EncoderProfile profile, double seconds, Path workDir)
+            throws Exception {
+        JavaCVCameraController controller = new JavaCVCameraController(width, height, fps);
+        controller.setPreRollSeconds(0);
+        controller.setWriteTimestampCsv(false);
+        // 最大速度回放时同步时钟不代表真实时间，改为按恒定帧率编号
+        controller.setSyncClockPts(source.isRealTime());
+        controller.setEncoderProfile(profile.name());
+        Path output = workDir.resolve("bench_" + profile.name() + ".mp4");
+        try {
+            controller.startSource(source);
+            Thread.sleep(WARMUP_MS);
+
+            long beginNs = System.nanoTime();
+            controller.startRecording(output.toString());
+            Thread.sleep((long) (seconds * 1000));
+            double captureFps = controller.getAchievedFps();
+            controller.stopRecording();
+            double elapsedSec = (System.nanoTime() - beginNs) / 1e9;
+            controller.awaitFinalization(FINALIZATION_TIMEOUT_MS);
+
+            JavaCVCameraController.PipelineStats stats = controller.getPipelineStats();
+            long written = controller.getFrameCount();
+            long dropped = stats.encodeDroppedFrames() + controller.getRecordingDroppedFrames();
+            long missing = verifyFrameNumbers ? countMissingPatternFrames(output) : -1;
+            Result result = new Result(profile.name(), captureFps, written / elapsedSec,
+                    stats.meanEncodeMs(), stats.maxEncodeMs(), written, dropped, missing);
+            logger.info("   {}: 端到端 {} fps, 编码 {}ms/帧, 丢帧率 {}%", profile.name(),
+                    String.format("%.2f", result.endToEndFps()), String.format("%.2f", result.meanEncodeMs()),
+                    String.format("%.2f", result.dropRate() * 100));
+            return result;
+        } finally {
+            controller.stopCamera();
+        }
+    }
+
+    /**
+     * 解码录制文件，按测试画面嵌入的帧序号统计缺失帧（首尾之间未出现的序号）
+     */
+    static long countMissingPatternFrames(Path videoFile) {
+        try (FFmpegFrameGrabber reader = new FFmpegFrameGrabber(videoFile.toFile())) {
+            reader.start();
+            BitSet seen = new BitSet();
+            long first = -1;
+            long last = -1;
+            Frame frame;
+            while ((frame = reader.grabImage()) != null) {
+                long number = TestPatternFrameGrabber.readFrameNumber(frame);
+                if (number < 0) {
+                    return -1;
+                }
+                if (first < 0) {
+                    first = number;
+                }
+                if (number >= first && number - first < Integer.MAX_VALUE) {
+                    seen.set((int) (number - first));
+                    last = Math.max(last, number);
+                }
+            }
+            reader.stop();
+            return first < 0 ? -1 : (last - first + 1) - seen.cardinality();
+        } catch (Exception e) {
+            logger.warn("无法解码录制文件统计缺帧: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * 参数：--file PATH（默认测试画面）--max-speed --width N --height N --fps N --seconds N --profiles a,b
+     */
+    public static void main(String[] args) throws Exception {
+        int width = 1280;
+        int height = 720;
+        double fps = 30;
+        double seconds = 5;
+        boolean realTime = true;
+        Path file = null;
+        List<EncoderProfile> profiles = EncoderProfile.all();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--file" -> file = Paths.get(args[++i]);
+                case "--max-speed" -> realTime = false;
+                case "--width" -> width = Integer.parseInt(args[++i]);
+                case "--height" -> height = Integer.parseInt(args[++i]);
+                case "--fps" -> fps = Double.parseDouble(args[++i]);
+                case "--seconds" -> seconds = Double.parseDouble(args[++i]);
+                case "--profiles" -> {
+                    profiles = new ArrayList<>();
+                    for (String name : args[++i].split(",")) {
+                        EncoderProfile profile = EncoderProfile.byName(name.trim());
+                        if (profile == null) {
+                            throw new IllegalArgumentException("未知编码配置: " + name);
+                        }
+                        profiles.add(profile);
+                    }
+                }
+                default -> throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+
+        FrameSource source = file != null ? FrameSource.file(file, realTime) : FrameSource.testPattern(realTime);
+        Path workDir = Files.createTempDirectory("recsync-pipeline-bench-");
+        try {
+            run(source, file == null, width, height, fps, profiles, seconds, workDir);
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
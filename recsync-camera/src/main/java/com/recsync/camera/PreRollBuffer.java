@@ -0,0 +1,103 @@
+package com.recsync.camera;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预录环形缓冲区：保存最近 N 帧（带同步时间戳）
+ *
+ * 只保存帧池中帧的引用（retain），被新帧覆盖的槽位 release() 归还帧池，
+ * 采集线程每帧不复制数据，也不产生新的分配。
+ * 触发时间早于当前时刻（立即触发/补触发）时，编码线程冻结缓冲区，
+ * 先写入 [触发时间, 第一帧实时帧) 之间的历史帧，再接着写实时帧，冻结期间采集线程跳过写入。
+ */
+public class PreRollBuffer {
+
+    private final int capacity;
+    private final JavaCVCameraController.TimestampedFrame[] slots;
+    private int writePos = 0;
+    private int count = 0;
+    private boolean frozen = false;
+
+    /**
+     * @param capacity 最多保存的帧数（预录时长 × 帧率）
+     */
+    public PreRollBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.slots = new JavaCVCameraController.TimestampedFrame[this.capacity];
+    }
+
+    /**
+     * 写入一帧（采集线程调用）。冻结期间直接跳过。
+     */
+    public synchronized void offer(JavaCVCameraController.TimestampedFrame frame) {
+        if (frozen || frame == null || frame.frame == null) {
+            return;
+        }
+
+        JavaCVCameraController.TimestampedFrame previous = slots[writePos];
+        slots[writePos] = frame.retain();
+        if (previous != null) {
+            previous.release();
+        }
+
+        writePos = (writePos + 1) % capacity;
+        if (count < capacity) {
+            count++;
+        }
+    }
+
+    /**
+     * 冻结缓冲区并返回时间戳在 [fromNs, toNs) 内的帧（按时间顺序）
+     * 返回的帧仍由缓冲区持有引用，调用 {@link #unfreeze()} 之前有效
+     */
+    public synchronized List<JavaCVCameraController.TimestampedFrame> freeze(long fromNs, long toNs) {
+        frozen = true;
+        List<JavaCVCameraController.TimestampedFrame> frames = new ArrayList<>();
+        int start = (writePos - count + capacity) % capacity;
+        for (int i = 0; i < count; i++) {
+            JavaCVCameraController.TimestampedFrame frame = slots[(start + i) % capacity];
+            if (frame.timestampNs >= fromNs && frame.timestampNs < toNs) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * 解除冻结，恢复写入
+     */
+    public synchronized void unfreeze() {
+        frozen = false;
+    }
+
+    /**
+     * 当前覆盖的时长（最早帧到最新帧，毫秒）
+     */
+    public synchronized long getCoverageMs() {
+        if (count < 2) {
+            return 0;
+        }
+        int newest = (writePos - 1 + capacity) % capacity;
+        int oldest = (writePos - count + capacity) % capacity;
+        return (slots[newest].timestampNs - slots[oldest].timestampNs) / 1_000_000;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 归还所有帧
+     */
+    public synchronized void release() {
+        for (int i = 0; i < capacity; i++) {
+            if (slots[i] != null) {
+                slots[i].release();
+                slots[i] = null;
+            }
+        }
+        count = 0;
+        writePos = 0;
+    }
+}
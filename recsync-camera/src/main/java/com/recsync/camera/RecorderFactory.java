@@ -0,0 +1,65 @@
+package com.recsync.camera;
+
+import com.recsync.core.sync.EncoderProfile;
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+
+/**
+ * 按编码配置创建并启动 H.264/MP4 录制器（或MJPEG直通录制器）
+ */
+final class RecorderFactory {
+
+    private RecorderFactory() {}
+
+    static FFmpegFrameRecorder create(String outputPath, int width, int height, double frameRate,
+                                      EncoderProfile profile) throws Exception {
+        FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(outputPath, width, height);
+        recorder.setVideoCodec(avcodec.AV_CODEC_ID_H264);
+        recorder.setFormat("mp4");
+        recorder.setFrameRate(frameRate);
+
+        if (profile.preset() != null) {
+            recorder.setVideoOption("preset", profile.preset());
+        }
+        if (profile.tune() != null) {
+            recorder.setVideoOption("tune", profile.tune());
+        }
+        if (profile.usesCrf()) {
+            recorder.setVideoQuality(profile.crf());
+        }
+        if (profile.bitrate() > 0) {
+            recorder.setVideoBitrate(profile.bitrate());
+        }
+        if (profile.threads() > 0) {
+            recorder.setVideoOption("threads", Integer.toString(profile.threads()));
+        }
+        if (profile.gopSeconds() > 0) {
+            recorder.setGopSize((int) Math.max(1, Math.round(profile.gopSeconds() * frameRate)));
+        }
+        if (profile.pixelFormat() != null) {
+            int pixelFormat = avutil.av_get_pix_fmt(profile.pixelFormat());
+            if (pixelFormat != avutil.AV_PIX_FMT_NONE) {
+                recorder.setPixelFormat(pixelFormat);
+            }
+        }
+
+        recorder.start();
+        return recorder;
+    }
+
+    /**
+     * 创建直通录制器：不重新编码，原样封装采集器输出的压缩包（recordPacket）
+     * 流参数从采集器的输入流复制，容器仍为MP4（MJPEG-in-MP4），文件名与编码模式一致
+     */
+    static FFmpegFrameRecorder createPassthrough(String outputPath, FFmpegFrameGrabber grabber) throws Exception {
+        FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(outputPath,
+                grabber.getImageWidth(), grabber.getImageHeight());
+        recorder.setFormat("mp4");
+        recorder.setVideoCodec(grabber.getVideoCodec());
+        recorder.setFrameRate(grabber.getFrameRate());
+        recorder.start(grabber.getFormatContext());
+        return recorder;
+    }
+}
@@ -0,0 +1,263 @@
+package com.recsync.camera;
+
+import com.recsync.core.transfer.FileTransferProtocol;
+import com.recsync.core.transfer.SegmentManifest;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 分段录制输出
+ *
+ * 按固定时长把一次录制切分为多个文件（name.part000.mp4, name.part001.mp4, ...），
+ * 每个新分段都由新的录制器打开，第一帧即关键帧，各分段可独立播放。
+ * 切换分段和停止录制时，旧录制器交给后台收尾线程执行 stop()/release()（刷新编码器、写 moov），
+ * 编码线程和 STOP 调用方都不等待；收尾按提交顺序执行，完成后更新分段清单并回调监听器。
+ * 中途崩溃最多丢失当前分段，已关闭的分段由清单串联。
+ * 没有写入任何帧的分段（例如停止时刻恰好在分段边界、或录制期间没有帧）在收尾时删除，不进入清单，
+ * 最后一个分段为空时把上一个分段作为"最后分段"通知监听器。
+ *
+ * 分段时长为0时只写一个文件（不生成清单），但收尾同样在后台进行。
+ * 录制器可以先写入临时文件（预热录制器），收尾完成后再改名为分段文件名。
+ * 只在持有 recorderLock 的编码/控制线程中调用。
+ */
+final class SegmentedRecorder {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedRecorder.class);
+
+    // 所有录制共用一个收尾线程：分段按顺序关闭，"最后一个分段"的回调一定在前面的分段之后
+    private static final ExecutorService FINALIZER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Recording-Finalizer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 已启动的录制器
+     *
+     * @param recorder 录制器
+     * @param tempPath 实际写入的临时文件，收尾后改名为目标路径；直接写目标路径时为null
+     */
+    record OpenedRecorder(FFmpegFrameRecorder recorder, Path tempPath) {}
+
+    /**
+     * 为目标路径打开一个已启动的录制器
+     */
+    interface RecorderOpener {
+        OpenedRecorder open(String path) throws Exception;
+    }
+
+    private final RecorderOpener opener;
+    private final int segmentDurationSec;
+    private final JavaCVCameraController.SegmentListener listener;
+    private final Path outputPath;
+    private final String baseName;          // 分段模式下的完整录制文件名，否则为null
+    private final SegmentManifest manifest; // 分段模式下的清单，否则为null
+    private final Path manifestPath;
+
+    private FFmpegFrameRecorder current;
+    private Path currentTempPath;
+    private String currentPath;
+    private int segmentIndex = 0;
+    private long segmentStartNs = -1;       // 当前分段首帧时间戳，尚未写入帧时为-1
+    private long segmentFrames = 0;         // 当前分段已写入帧数
+
+    // 最近一个非空分段（仅在收尾线程中访问）
+    private Path lastKeptSegment;
+    private int lastKeptIndex = -1;
+
+    /**
+     * @param outputPath 完整录制文件路径
+     * @param segmentDurationSec 分段时长（秒），0表示单文件
+     * @param listener 分段完成回调（仅分段模式），可为null
+     */
+    SegmentedRecorder(String outputPath, int segmentDurationSec, RecorderOpener opener,
+                      JavaCVCameraController.SegmentListener listener) {
+        this.opener = opener;
+        this.segmentDurationSec = Math.max(0, segmentDurationSec);
+        this.listener = listener;
+        this.outputPath = Paths.get(outputPath);
+        if (this.segmentDurationSec > 0) {
+            this.baseName = this.outputPath.getFileName().toString();
+            this.manifest = new SegmentManifest(baseName);
+            this.manifestPath = SegmentManifest.pathFor(this.outputPath);
+        } else {
+            this.baseName = null;
+            this.manifest = null;
+            this.manifestPath = null;
+        }
+    }
+
+    /**
+     * 打开第一个文件
+     */
+    FFmpegFrameRecorder start() throws Exception {
+        currentPath = pathOf(0);
+        openCurrent();
+        if (isSegmented()) {
+            logger.info("🎞️ 分段录制: 每{}秒一个分段, 基础文件名: {}", segmentDurationSec, baseName);
+        }
+        return current;
+    }
+
+    FFmpegFrameRecorder current() {
+        return current;
+    }
+
+    /**
+     * 完整录制文件路径（分段模式下为各分段共用的基础文件名）
+     */
+    Path getOutputPath() {
+        return outputPath;
+    }
+
+    boolean isSegmented() {
+        return baseName != null;
+    }
+
+    /**
+     * 写入一帧之前调用：记录分段首帧时间戳（用于判断分段切换和清单）
+     */
+    void beginFrame(long timestampNs) {
+        if (segmentStartNs < 0) {
+            segmentStartNs = timestampNs;
+        }
+    }
+
+    /**
+     * 写入一帧之后调用
+     */
+    void endFrame() {
+        segmentFrames++;
+    }
+
+    /**
+     * 时间戳为 timestampNs 的帧是否应写入新分段
+     */
+    boolean shouldRoll(long timestampNs) {
+        return isSegmented() && segmentStartNs >= 0
+                && timestampNs - segmentStartNs >= segmentDurationSec * 1_000_000_000L;
+    }
+
+    /**
+     * 切换到下一个分段：当前录制器交给后台收尾，立即打开新文件
+     * @param timestampNs 新分段首帧时间戳（即上一分段的结束时间）
+     */
+    FFmpegFrameRecorder roll(long timestampNs) throws Exception {
+        submitFinalize(current, currentTempPath, currentPath, segmentIndex, segmentStartNs, timestampNs,
+                segmentFrames, false, null);
+
+        segmentIndex++;
+        segmentStartNs = -1;
+        segmentFrames = 0;
+        currentPath = pathOf(segmentIndex);
+        openCurrent();
+        logger.info("🎞️ 切换到分段 #{}: {}", segmentIndex, currentPath);
+        return current;
+    }
+
+    /**
+     * 结束录制：最后一个文件交给后台收尾，立即返回
+     *
+     * @param stopTimeNs 停止时刻（最后一个分段的结束时间）
+     * @param afterClose 最后一个文件关闭后再关闭的资源（例如时间戳旁路文件），可为null
+     * @return 全部收尾（含清单与回调）完成时结束
+     */
+    CompletableFuture<Void> finish(long stopTimeNs, AutoCloseable afterClose) {
+        FFmpegFrameRecorder last = current;
+        current = null;
+        return submitFinalize(last, currentTempPath, currentPath, segmentIndex, segmentStartNs, stopTimeNs,
+                segmentFrames, true, afterClose);
+    }
+
+    private void openCurrent() throws Exception {
+        OpenedRecorder opened = opener.open(currentPath);
+        current = opened.recorder();
+        currentTempPath = opened.tempPath();
+    }
+
+    private CompletableFuture<Void> submitFinalize(FFmpegFrameRecorder recorder, Path tempPath, String path,
+                                                   int index, long startNs, long endNs, long frames,
+                                                   boolean last, AutoCloseable afterClose) {
+        return CompletableFuture.runAsync(() -> {
+            long begin = System.nanoTime();
+            try {
+                recorder.stop();
+                recorder.release();
+            } catch (Exception e) {
+                logger.error("关闭录制文件失败: {}", path, e);
+            }
+            if (tempPath != null) {
+                try {
+                    WarmRecorderPool.commit(tempPath, Paths.get(path));
+                } catch (Exception e) {
+                    logger.error("录制文件改名失败: {} → {}", tempPath, path, e);
+                }
+            }
+            if (afterClose != null) {
+                try {
+                    afterClose.close();
+                } catch (Exception e) {
+                    logger.error("关闭录制附属文件失败", e);
+                }
+            }
+            logger.debug("录制文件已收尾: {} ({}帧, 耗时{}ms)", path, frames, (System.nanoTime() - begin) / 1_000_000);
+
+            if (!isSegmented()) {
+                return;
+            }
+            Path segmentPath = Paths.get(path);
+            Path notifyPath = segmentPath;
+            int notifyIndex = index;
+            if (frames > 0) {
+                manifest.addSegment(new SegmentManifest.Segment(index, segmentPath.getFileName().toString(),
+                        startNs, endNs, frames));
+                lastKeptSegment = segmentPath;
+                lastKeptIndex = index;
+            } else {
+                try {
+                    Files.deleteIfExists(segmentPath);
+                } catch (IOException e) {
+                    logger.warn("删除空分段失败: {}", segmentPath, e);
+                }
+                logger.info("🎞️ 丢弃空分段 #{}: {}", index, segmentPath.getFileName());
+                if (!last || lastKeptSegment == null) {
+                    notifyPath = null;
+                } else {
+                    // 上一个分段已按"非最后"上传过，重新通知为最后分段（Leader端按内容去重，不会重复传输）
+                    notifyPath = lastKeptSegment;
+                    notifyIndex = lastKeptIndex;
+                }
+            }
+            if (last) {
+                manifest.markComplete();
+            }
+            try {
+                manifest.write(manifestPath);
+            } catch (Exception e) {
+                logger.error("写入分段清单失败: {}", manifestPath, e);
+            }
+            if (listener != null && notifyPath != null) {
+                try {
+                    listener.onSegmentCompleted(notifyPath, baseName, notifyIndex, last);
+                } catch (Exception e) {
+                    logger.error("分段完成回调失败", e);
+                }
+            }
+        }, FINALIZER);
+    }
+
+    private String pathOf(int index) {
+        if (!isSegmented()) {
+            return outputPath.toString();
+        }
+        return outputPath.resolveSibling(FileTransferProtocol.segmentFileName(baseName, index)).toString();
+    }
+}
@@ -0,0 +1,68 @@
+package com.recsync.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 单生产者/单消费者无锁环形队列
+ *
+ * 采集线程（唯一生产者）写入，编码线程（唯一消费者）读取，
+ * 双方都不加锁、不阻塞；队列满时 offer 立即返回false，由调用方计为丢帧。
+ */
+public class SpscRingBuffer<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(0);  // 下一个读取位置（仅消费者写）
+    private final AtomicLong tail = new AtomicLong(0);  // 下一个写入位置（仅生产者写）
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    public SpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 写入一个元素（仅生产者线程调用）
+     * @return false 表示队列已满
+     */
+    public boolean offer(T item) {
+        long t = tail.get();
+        if (t - head.get() >= slots.length()) {
+            return false;
+        }
+        slots.lazySet((int) (t & mask), item);
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * 取出一个元素（仅消费者线程调用）
+     * @return 队列为空时返回null
+     */
+    public T poll() {
+        long h = head.get();
+        if (h >= tail.get()) {
+            return null;
+        }
+        int index = (int) (h & mask);
+        T item = slots.get(index);
+        slots.lazySet(index, null);
+        head.lazySet(h + 1);
+        return item;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,153 @@
+package com.recsync.camera;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.FrameGrabber;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 合成测试画面采集器（BGR24）
+ *
+ * 背景为带噪声的渐变纹理，每帧向下滚动几行模拟运动（纯色画面对编码器过于简单）。
+ * 左上角嵌入两行黑白编码块（每块边长为画面宽度/64，限制在2~16像素；白=1，高位在前）：
+ * 第一行为32位帧序号，第二行为64位生成时间（微秒，自 start() 起），
+ * 经有损编码后仍可用 {@link #readFrameNumber(Frame)} / {@link #readTimestampUs(Frame)} 读回，
+ * 用于从录制文件中统计实际丢帧。
+ *
+ * grab() 不阻塞（非阻塞源），实时出帧由采集节拍器负责。
+ */
+public class TestPatternFrameGrabber extends FrameGrabber {
+    private static final int DEFAULT_WIDTH = 640;
+    private static final int DEFAULT_HEIGHT = 480;
+    private static final int COUNTER_BITS = 32;
+    private static final int TIMESTAMP_BITS = 64;
+    private static final int SCROLL_ROWS_PER_FRAME = 4;
+
+    private Frame frame;
+    private byte[] background;   // 两倍高度，按偏移取一屏即为滚动效果
+    private byte[] white;
+    private byte[] black;
+    private int cell;
+    private long frameNumber;
+    private long startNs;
+
+    @Override
+    public void start() {
+        int width = imageWidth > 0 ? imageWidth : DEFAULT_WIDTH;
+        int height = imageHeight > 0 ? imageHeight : DEFAULT_HEIGHT;
+        frame = new Frame(width, height, Frame.DEPTH_UBYTE, 3);
+        int stride = frame.imageStride;
+        cell = cellSize(width);
+
+        Random random = new Random(42);
+        background = new byte[stride * height * 2];
+        for (int y = 0; y < height * 2; y++) {
+            int rowOffset = y * stride;
+            for (int x = 0; x < width * 3; x++) {
+                background[rowOffset + x] = (byte) (((x / 3 + y) & 0xFF) ^ random.nextInt(32));
+            }
+        }
+        white = new byte[cell * 3];
+        Arrays.fill(white, (byte) 0xFF);
+        black = new byte[cell * 3];
+
+        frameNumber = 0;
+        startNs = System.nanoTime();
+    }
+
+    @Override
+    public void stop() {
+        if (frame != null) {
+            frame.close();
+            frame = null;
+        }
+        background = null;
+    }
+
+    @Override
+    public void trigger() {
+    }
+
+    @Override
+    public void release() {
+        stop();
+    }
+
+    /**
+     * 生成下一帧（复用同一个Frame，调用方须在下一次grab前复制）
+     */
+    @Override
+    public Frame grab() {
+        if (frame == null) {
+            return null;
+        }
+        int stride = frame.imageStride;
+        int screenBytes = stride * frame.imageHeight;
+        int offset = (int) ((frameNumber * SCROLL_ROWS_PER_FRAME) % frame.imageHeight) * stride;
+        ByteBuffer buffer = (ByteBuffer) frame.image[0];
+        buffer.clear();
+        buffer.put(background, offset, screenBytes);
+
+        long timestampUs = (System.nanoTime() - startNs) / 1_000;
+        writeBits(buffer, stride, 0, frameNumber, COUNTER_BITS);
+        writeBits(buffer, stride, cell, timestampUs, TIMESTAMP_BITS);
+        buffer.clear();
+
+        timestamp = timestampUs;
+        frame.timestamp = timestampUs;
+        frameNumber++;
+        frameNumber &= 0xFFFFFFFFL;
+        return frame;
+    }
+
+    private void writeBits(ByteBuffer buffer, int stride, int top, long value, int bits) {
+        int perRow = frame.imageWidth / cell;
+        for (int i = 0; i < bits && i < perRow; i++) {
+            byte[] block = ((value >>> (bits - 1 - i)) & 1) != 0 ? white : black;
+            for (int y = top; y < top + cell && y < frame.imageHeight; y++) {
+                buffer.position(y * stride + i * cell * 3);
+                buffer.put(block);
+            }
+        }
+    }
+
+    /**
+     * 从画面读回帧序号（BGR24，分辨率须与生成时相同）
+     * @return 画面太小无法容纳编码块时返回-1
+     */
+    public static long readFrameNumber(Frame frame) {
+        return readBits(frame, 0, COUNTER_BITS);
+    }
+
+    /**
+     * 从画面读回生成时间（微秒）
+     */
+    public static long readTimestampUs(Frame frame) {
+        return readBits(frame, cellSize(frame.imageWidth), TIMESTAMP_BITS);
+    }
+
+    private static long readBits(Frame frame, int top, int bits) {
+        int cell = cellSize(frame.imageWidth);
+        if (frame.image == null || frame.imageWidth / cell < bits || top + cell > frame.imageHeight) {
+            return -1;
+        }
+        ByteBuffer buffer = (ByteBuffer) frame.image[0];
+        int y = top + cell / 2;
+        long value = 0;
+        for (int i = 0; i < bits; i++) {
+            int x = i * cell + cell / 2;
+            int luma = buffer.get(y * frame.imageStride + x * frame.imageChannels) & 0xFF;
+            value = (value << 1) | (luma >= 128 ? 1 : 0);
+        }
+        return value;
+    }
+
+    /**
+     * 编码块边长：一行容纳64块，最小2像素，最大16像素
+     */
+    private static int cellSize(int width) {
+        return Math.max(2, Math.min(16, width / TIMESTAMP_BITS));
+    }
+}
@@ -0,0 +1,74 @@
+package com.recsync.camera;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 线程CPU亲和性（仅Linux，尽力而为）
+ *
+ * Java 没有设置线程亲和性的API，这里在目标线程内部通过 /proc/thread-self 取得自己的内核线程ID，
+ * 再调用 taskset -p -c 绑定。多路相机共用一台小主机时，把各路的采集/编码线程分到不同的核上，
+ * 可以避免某一路的编码抢占另一路的采集。失败（非Linux、没有taskset）时只记录日志。
+ */
+final class ThreadAffinity {
+    private static final Logger logger = LoggerFactory.getLogger(ThreadAffinity.class);
+
+    private static final Pattern CPU_LIST = Pattern.compile("\\d+(-\\d+)?(,\\d+(-\\d+)?)*");
+    private static final Path THREAD_SELF = Paths.get("/proc/thread-self");
+
+    private ThreadAffinity() {}
+
+    /**
+     * CPU列表格式是否合法（taskset -c 格式，例如 "2" "2,3" "0-3"）
+     */
+    static boolean isValid(String cpuList) {
+        return cpuList != null && CPU_LIST.matcher(cpuList).matches();
+    }
+
+    /**
+     * 把当前线程绑定到指定CPU（必须在目标线程中调用）
+     *
+     * @param cpuList taskset -c 格式的CPU列表，null或空表示不绑定
+     */
+    static void applyToCurrentThread(String cpuList) {
+        if (cpuList == null || cpuList.isEmpty()) {
+            return;
+        }
+        if (!isValid(cpuList)) {
+            logger.warn("无效的CPU列表: {}", cpuList);
+            return;
+        }
+        String threadName = Thread.currentThread().getName();
+        try {
+            if (!Files.exists(THREAD_SELF)) {
+                logger.info("当前系统不支持线程亲和性设置，忽略 {} → CPU {}", threadName, cpuList);
+                return;
+            }
+            // /proc/thread-self → {pid}/task/{tid}
+            String link = Files.readSymbolicLink(THREAD_SELF).toString();
+            String tid = link.substring(link.lastIndexOf('/') + 1);
+            Process process = new ProcessBuilder("taskset", "-p", "-c", cpuList, tid)
+                    .redirectErrorStream(true)
+                    .start();
+            if (!process.waitFor(2, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                logger.warn("设置线程亲和性超时: {}", threadName);
+            } else if (process.exitValue() != 0) {
+                String output = new String(process.getInputStream().readAllBytes()).trim();
+                logger.warn("设置线程亲和性失败: {} → CPU {}: {}", threadName, cpuList, output);
+            } else {
+                logger.info("🧵 线程 {} (tid {}) 已绑定到 CPU {}", threadName, tid, cpuList);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("设置线程亲和性失败: {} → CPU {}: {}", threadName, cpuList, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.recsync.camera;
+
+import com.recsync.core.sync.EncoderProfile;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预热录制器池
+ *
+ * 创建并 start() 一个 H.264 录制器需要初始化编码器、打开输出文件、写文件头，耗时几十毫秒且因机器而异。
+ * 这里在后台线程按当前录制参数预先打开录制器（写入录制目录下的临时文件 .warm-N.tmp），
+ * 准备录制或切换分段时直接取用，文件收尾后再改名为正式文件名（同目录原子改名）。
+ * 池中保留 capacity 个（默认2个：本次录制 + 下一次录制/下一个分段），取走后在后台补齐。
+ *
+ * 参数（分辨率、帧率、编码配置）变化时旧的预热录制器作废并按新参数重建。
+ * MJPEG直通录制器依赖采集器的输入流，不预热。
+ */
+final class WarmRecorderPool {
+    private static final Logger logger = LoggerFactory.getLogger(WarmRecorderPool.class);
+
+    static final int DEFAULT_CAPACITY = 2;
+    private static final String TEMP_PREFIX = ".warm-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final AtomicLong SEQUENCE = new AtomicLong(0);  // 进程内唯一，多个池可共用一个目录
+
+    /**
+     * 预热参数：参数相同的录制器可以互换
+     */
+    record Spec(int width, int height, double frameRate, EncoderProfile profile) {}
+
+    private final Path directory;
+    private final int capacity;
+    private final Deque<SegmentedRecorder.OpenedRecorder> ready = new ArrayDeque<>();  // 受 this 保护
+    private final ExecutorService warmer;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    private Spec spec;                 // 当前预热参数，受 this 保护
+    private int opening = 0;           // 正在后台打开的数量，受 this 保护
+    private boolean closed = false;    // 受 this 保护
+
+    /**
+     * @param directory 临时文件目录，必须与录制文件同一文件系统（通常就是录制目录）
+     */
+    WarmRecorderPool(Path directory, int capacity) {
+        this.directory = directory;
+        this.capacity = Math.max(1, capacity);
+        this.warmer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Recorder-Warmer");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 设置预热参数并在后台补齐；参数变化时丢弃旧的预热录制器
+     */
+    void warm(Spec newSpec) {
+        Deque<SegmentedRecorder.OpenedRecorder> stale = new ArrayDeque<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (!newSpec.equals(spec)) {
+                stale.addAll(ready);
+                ready.clear();
+                spec = newSpec;
+            }
+            scheduleRefill();
+        }
+        if (!stale.isEmpty()) {
+            logger.info("录制参数变化，丢弃 {} 个预热录制器", stale.size());
+            stale.forEach(w -> warmer.execute(() -> discard(w)));
+        }
+    }
+
+    /**
+     * 取一个与参数匹配的预热录制器（不阻塞），没有时返回null
+     * 取走后在后台补齐
+     */
+    SegmentedRecorder.OpenedRecorder take(Spec wanted) {
+        synchronized (this) {
+            if (closed || !wanted.equals(spec) || ready.isEmpty()) {
+                misses.incrementAndGet();
+                if (!closed && !wanted.equals(spec)) {
+                    warm(wanted);
+                }
+                return null;
+            }
+            SegmentedRecorder.OpenedRecorder warmRecorder = ready.poll();
+            hits.incrementAndGet();
+            scheduleRefill();
+            return warmRecorder;
+        }
+    }
+
+    synchronized int getReadyCount() {
+        return ready.size();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 把收尾完成的临时文件改名为正式文件名
+     */
+    static void commit(Path tempPath, Path targetPath) throws IOException {
+        try {
+            Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 关闭池并释放所有预热录制器（删除临时文件）
+     */
+    void close() {
+        Deque<SegmentedRecorder.OpenedRecorder> remaining;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            remaining = new ArrayDeque<>(ready);
+            ready.clear();
+        }
+        remaining.forEach(w -> warmer.execute(() -> discard(w)));
+        warmer.shutdown();
+    }
+
+    // 受 this 保护
+    private void scheduleRefill() {
+        int missing = capacity - ready.size() - opening;
+        for (int i = 0; i < missing; i++) {
+            opening++;
+            Spec target = spec;
+            warmer.execute(() -> open(target));
+        }
+    }
+
+    private void open(Spec target) {
+        SegmentedRecorder.OpenedRecorder warmRecorder = null;
+        try {
+            Path tempPath = directory.resolve(TEMP_PREFIX + SEQUENCE.incrementAndGet() + TEMP_SUFFIX);
+            long begin = System.nanoTime();
+            FFmpegFrameRecorder recorder = RecorderFactory.create(tempPath.toString(),
+                    target.width(), target.height(), target.frameRate(), target.profile());
+            warmRecorder = new SegmentedRecorder.OpenedRecorder(recorder, tempPath);
+            logger.debug("预热录制器就绪: {} ({}ms)", tempPath.getFileName(), (System.nanoTime() - begin) / 1_000_000);
+        } catch (Exception e) {
+            logger.warn("预热录制器失败: {}", e.getMessage());
+        }
+
+        boolean keep;
+        synchronized (this) {
+            opening--;
+            keep = warmRecorder != null && !closed && target.equals(spec);
+            if (keep) {
+                ready.add(warmRecorder);
+            }
+        }
+        if (!keep && warmRecorder != null) {
+            discard(warmRecorder);
+        }
+    }
+
+    private static void discard(SegmentedRecorder.OpenedRecorder warmRecorder) {
+        try {
+            warmRecorder.recorder().stop();
+            warmRecorder.recorder().release();
+        } catch (Exception e) {
+            logger.debug("释放预热录制器失败", e);
+        }
+        try {
+            Files.deleteIfExists(warmRecorder.tempPath());
+        } catch (IOException e) {
+            logger.debug("删除预热临时文件失败: {}", warmRecorder.tempPath(), e);
+        }
+    }
+
+    /**
+     * 删除上次异常退出遗留的临时文件（应用启动时、尚无录制器打开前调用）
+     */
+    static void deleteStaleTempFiles(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, TEMP_PREFIX + "*" + TEMP_SUFFIX)) {
+            for (Path stale : stream) {
+                Files.deleteIfExists(stale);
+            }
+        } catch (IOException e) {
+            logger.debug("清理预热临时文件失败", e);
+        }
+    }
+}
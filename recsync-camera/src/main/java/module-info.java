@@ -0,0 +1,15 @@
+module com.recsync.camera {
+    requires transitive com.recsync.core;
+    requires org.slf4j;
+    requires jdk.management;
+    requires transitive org.bytedeco.javacv;
+    requires org.bytedeco.javacpp;
+    requires org.bytedeco.opencv;
+    requires org.bytedeco.ffmpeg;
+    requires org.bytedeco.openblas;
+
+    exports com.recsync.camera;
+
+    // 允许JavaCPP访问必要的包以加载原生库
+    opens com.recsync.camera;
+}
\ No newline at end of file
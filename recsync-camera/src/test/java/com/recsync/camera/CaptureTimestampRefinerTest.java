@@ -0,0 +1,99 @@
+package com.recsync.camera;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureTimestampRefinerTest {
+
+    private static final long PERIOD_NS = 33_366_700L;      // 29.97 fps
+    private static final long MIN_DELAY_NS = 2_000_000L;    // grab() 返回的固定最小延迟
+    private static final long JITTER_NS = 3_000_000L;
+    private static final long START_NS = 5_000_000_000L;
+
+    private long exposure(int frame) {
+        return START_NS + frame * PERIOD_NS;
+    }
+
+    private long observed(int frame, Random random) {
+        long delay = MIN_DELAY_NS + (long) (random.nextDouble() * JITTER_NS);
+        // 偶发的迟到帧
+        if (isLate(frame)) {
+            delay += 15_000_000L;
+        }
+        return exposure(frame) + delay;
+    }
+
+    private static boolean isLate(int frame) {
+        return frame % 37 == 0;
+    }
+
+    @Test
+    public void fittedModeTracksTheLowerEnvelope() {
+        CaptureTimestampRefiner refiner = new CaptureTimestampRefiner(30);
+        Random random = new Random(1);
+        long last = Long.MIN_VALUE;
+        for (int frame = 0; frame < 400; frame++) {
+            // 丢帧：跳过一些帧序号
+            if (frame % 50 == 25) {
+                continue;
+            }
+            long refined = refiner.refine(observed(frame, random), 0);
+            assertTrue("时间戳须严格递增", refined > last);
+            last = refined;
+            // 迟到帧本身（最多迟到半个周期以上）无法与丢帧区分，只要求它之后的帧不受影响
+            if (frame >= 150 && !isLate(frame)) {
+                assertEquals(CaptureTimestampRefiner.Source.FITTED, refiner.getSource());
+                assertEquals(exposure(frame) + MIN_DELAY_NS, refined, 1_000_000);
+            }
+        }
+        assertEquals(PERIOD_NS / 1e6, refiner.getEstimatedPeriodMs(), 0.01);
+    }
+
+    @Test
+    public void deviceTimestampsAreMappedToTheSyncClock() {
+        CaptureTimestampRefiner refiner = new CaptureTimestampRefiner(30);
+        Random random = new Random(2);
+        long deviceEpochNs = 123_456_789_000L;
+        for (int frame = 0; frame < 200; frame++) {
+            long deviceUs = (deviceEpochNs + frame * PERIOD_NS) / 1_000;
+            long refined = refiner.refine(observed(frame, random), deviceUs);
+            if (frame >= 60) {
+                assertEquals(CaptureTimestampRefiner.Source.DEVICE, refiner.getSource());
+                assertEquals(exposure(frame) + MIN_DELAY_NS, refined, 500_000);
+                assertTrue(refiner.getLastResidualNs() >= 0);
+            }
+        }
+    }
+
+    @Test
+    public void fallsBackToFittingWhenDeviceTimestampsStop() {
+        CaptureTimestampRefiner refiner = new CaptureTimestampRefiner(30);
+        Random random = new Random(3);
+        int frame = 0;
+        for (; frame < 60; frame++) {
+            refiner.refine(observed(frame, random), exposure(frame) / 1_000);
+        }
+        assertEquals(CaptureTimestampRefiner.Source.DEVICE, refiner.getSource());
+        for (; frame < 120; frame++) {
+            refiner.refine(observed(frame, random), 0);
+        }
+        assertEquals(CaptureTimestampRefiner.Source.FITTED, refiner.getSource());
+    }
+
+    @Test
+    public void resetsAfterALongStall() {
+        CaptureTimestampRefiner refiner = new CaptureTimestampRefiner(30);
+        Random random = new Random(4);
+        for (int frame = 0; frame < 60; frame++) {
+            refiner.refine(observed(frame, random), 0);
+        }
+        // 相机卡住2秒后恢复：窗口重新开始，前几帧直接使用观测时间
+        long resumed = observed(60, random) + 2_000_000_000L;
+        assertEquals(resumed, refiner.refine(resumed, 0));
+        assertEquals(CaptureTimestampRefiner.Source.RAW, refiner.getSource());
+    }
+}
@@ -0,0 +1,81 @@
+package com.recsync.camera;
+
+import com.recsync.core.transfer.FrameGapReport;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FrameGapDetectorTest {
+
+    private static final long PERIOD_NS = 33_333_333L;
+    private static final long START_NS = 1_000_000_000L;
+
+    @Test
+    public void regularFramesAndJitterAreNotGaps() {
+        FrameGapDetector detector = new FrameGapDetector(PERIOD_NS);
+        long t = START_NS;
+        for (int i = 0; i < 100; i++) {
+            // ±20% 抖动：相邻间隔最大1.4个周期，低于1.5个周期的阈值
+            long jitter = (i % 2 == 0 ? 1 : -1) * PERIOD_NS * 2 / 10;
+            assertEquals(0, detector.onFrame(i, t + (i == 0 ? 0 : jitter)));
+            t += PERIOD_NS;
+        }
+        assertEquals(0, detector.getGapCount());
+        assertEquals(0, detector.getDroppedFrames());
+        assertEquals("", detector.getRecentPositions());
+    }
+
+    @Test
+    public void countsMissingFramesFromTheInterval() {
+        FrameGapDetector detector = new FrameGapDetector(PERIOD_NS);
+        assertEquals(0, detector.onFrame(0, START_NS));
+        assertEquals(0, detector.onFrame(1, START_NS + PERIOD_NS));
+        // 缺3帧：间隔为4个周期
+        assertEquals(3, detector.onFrame(2, START_NS + 5 * PERIOD_NS));
+        // 刚超过阈值（1.6个周期）按至少1帧计
+        assertEquals(1, detector.onFrame(3, START_NS + 5 * PERIOD_NS + PERIOD_NS * 16 / 10));
+
+        assertEquals(2, detector.getGapCount());
+        assertEquals(4, detector.getDroppedFrames());
+    }
+
+    @Test
+    public void reportKeepsGapPositionsAndInsertedFrames() {
+        FrameGapDetector detector = new FrameGapDetector(PERIOD_NS);
+        detector.onFrame(0, START_NS);
+        long gapStart = START_NS + 2_000_000_000L;
+        detector.onFrame(1, gapStart);
+        assertEquals(2, detector.onFrame(2, gapStart + 3 * PERIOD_NS));
+        detector.recordInserted(2);
+
+        assertEquals(2, detector.getInsertedFrames());
+        FrameGapReport report = detector.toReport("front.mp4", GapPolicy.DUPLICATE, 5);
+        List<FrameGapReport.Gap> gaps = report.getGaps();
+        // 第一处缺口：开始后2秒的长停顿
+        assertEquals(2, gaps.size());
+        assertEquals(59, gaps.get(0).missingFrames());
+        assertEquals(0, gaps.get(0).insertedFrames());
+        FrameGapReport.Gap second = gaps.get(1);
+        assertEquals(2, second.frameIndex());
+        assertEquals(2, second.missingFrames());
+        assertEquals(2, second.insertedFrames());
+        assertEquals(2000, second.offsetMs());
+        assertEquals(61, report.getDroppedFrames());
+        assertEquals("0.0;2.0", detector.getRecentPositions());
+    }
+
+    @Test
+    public void recentPositionsKeepOnlyTheLastFive() {
+        FrameGapDetector detector = new FrameGapDetector(PERIOD_NS);
+        long t = START_NS;
+        detector.onFrame(0, t);
+        for (int i = 1; i <= 7; i++) {
+            t += 1_000_000_000L;
+            detector.onFrame(i, t);
+        }
+        assertEquals(7, detector.getGapCount());
+        assertEquals("2.0;3.0;4.0;5.0;6.0", detector.getRecentPositions());
+    }
+}
@@ -0,0 +1,154 @@
+package com.recsync.camera;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FramePeriodEstimatorTest {
+
+    private static final long START_NS = 10_000_000_000L;
+    private static final long PERIOD_NS = 33_366_700L;     // 29.97fps
+    private static final long JITTER_NS = 2_000_000L;
+    private static final double PERIOD_TOLERANCE_NS = 10_000;  // 0.01ms
+    private static final long LAST_FRAME_TOLERANCE_NS = 1_000_000L;
+
+    /**
+     * 第 frame 帧的时间戳：起点 + frame × 周期，叠加 ±JITTER_NS 的对称抖动
+     */
+    private static long timestamp(int frame, Random random) {
+        long jitter = (long) ((random.nextDouble() * 2 - 1) * JITTER_NS);
+        return START_NS + frame * PERIOD_NS + jitter;
+    }
+
+    private static long exposure(int frame) {
+        return START_NS + frame * PERIOD_NS;
+    }
+
+    @Test
+    public void estimatesJitteryNtscRate() {
+        FramePeriodEstimator estimator = new FramePeriodEstimator(600);
+        Random random = new Random(1);
+        int frames = 900;
+        for (int frame = 0; frame < frames; frame++) {
+            estimator.onFrame(timestamp(frame, random));
+        }
+
+        FramePeriodEstimator.Estimate estimate = estimator.estimate();
+        assertNotNull(estimate);
+        assertEquals(600, estimate.samples());
+        assertEquals(PERIOD_NS, estimate.periodNs(), PERIOD_TOLERANCE_NS);
+        assertEquals(29.97, estimate.fps(), 0.01);
+        assertEquals(-1000, estimate.driftPpm(30), 300);
+        assertEquals(exposure(frames - 1), estimate.lastFrameNs(), LAST_FRAME_TOLERANCE_NS);
+        // 均匀分布 ±2ms：MAD = 1ms，稳健标准差约 1.48ms
+        assertEquals(1.48, estimate.jitterMs(), 0.5);
+    }
+
+    @Test
+    public void lateFramesThatCatchUpDoNotShiftTheEstimate() {
+        FramePeriodEstimator estimator = new FramePeriodEstimator(600);
+        Random random = new Random(2);
+        int frames = 400;
+        for (int frame = 0; frame < frames; frame++) {
+            long timestampNs = timestamp(frame, random);
+            // 每15帧有一帧迟到超过半个周期，下一帧按时到达（追上）
+            if (frame % 15 == 7) {
+                timestampNs += 25_000_000L;
+            }
+            estimator.onFrame(timestampNs);
+        }
+
+        FramePeriodEstimator.Estimate estimate = estimator.estimate();
+        assertNotNull(estimate);
+        assertEquals(PERIOD_NS, estimate.periodNs(), PERIOD_TOLERANCE_NS);
+        assertEquals(exposure(frames - 1), estimate.lastFrameNs(), LAST_FRAME_TOLERANCE_NS);
+    }
+
+    @Test
+    public void droppedFramesDoNotShiftTheEstimate() {
+        FramePeriodEstimator estimator = new FramePeriodEstimator(600);
+        Random random = new Random(3);
+        int frames = 450;
+        for (int frame = 0; frame < frames; frame++) {
+            // 每10帧丢一帧，另有连续丢5帧
+            if (frame % 10 == 3 || (frame >= 150 && frame < 155)) {
+                continue;
+            }
+            estimator.onFrame(timestamp(frame, random));
+        }
+
+        FramePeriodEstimator.Estimate estimate = estimator.estimate();
+        assertNotNull(estimate);
+        assertEquals(PERIOD_NS, estimate.periodNs(), PERIOD_TOLERANCE_NS);
+        assertEquals(exposure(frames - 1), estimate.lastFrameNs(), LAST_FRAME_TOLERANCE_NS);
+    }
+
+    @Test
+    public void startupBurstDoesNotShiftTheEstimate() {
+        FramePeriodEstimator estimator = new FramePeriodEstimator(600);
+        Random random = new Random(4);
+        // 启动时驱动缓冲里的8帧几乎同时返回（间隔1ms），之后按节拍到达
+        int burst = 8;
+        for (int i = 0; i < burst; i++) {
+            estimator.onFrame(START_NS - 50_000_000L + i * 1_000_000L);
+        }
+        int frames = 300;
+        for (int frame = 0; frame < frames; frame++) {
+            estimator.onFrame(timestamp(frame, random));
+        }
+
+        FramePeriodEstimator.Estimate estimate = estimator.estimate();
+        assertNotNull(estimate);
+        assertEquals(burst + frames, estimate.samples());
+        assertEquals(PERIOD_NS, estimate.periodNs(), PERIOD_TOLERANCE_NS);
+        assertEquals(exposure(frames - 1), estimate.lastFrameNs(), LAST_FRAME_TOLERANCE_NS);
+    }
+
+    @Test
+    public void needsMinimumSamplesAndResetClearsWindow() {
+        FramePeriodEstimator estimator = new FramePeriodEstimator(60);
+        Random random = new Random(5);
+        int frame = 0;
+        for (; frame < FramePeriodEstimator.MIN_SAMPLES - 1; frame++) {
+            estimator.onFrame(timestamp(frame, random));
+        }
+        assertNull(estimator.estimate());
+        estimator.onFrame(timestamp(frame++, random));
+        assertNotNull(estimator.estimate());
+
+        estimator.reset();
+        assertEquals(0, estimator.getSampleCount());
+        assertNull(estimator.estimate());
+    }
+
+    @Test
+    public void estimatesWhileFramesKeepArriving() throws InterruptedException {
+        FramePeriodEstimator estimator = new FramePeriodEstimator(600);
+        Random random = new Random(6);
+        int frame = 0;
+        for (; frame < 600; frame++) {
+            estimator.onFrame(timestamp(frame, random));
+        }
+        // 另一线程反复估计时，采集线程继续写入；每次估计都应基于一致的样本快照
+        int[] bad = new int[1];
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 50; i++) {
+                FramePeriodEstimator.Estimate estimate = estimator.estimate();
+                if (estimate == null || Math.abs(estimate.periodNs() - PERIOD_NS) > PERIOD_TOLERANCE_NS) {
+                    bad[0]++;
+                }
+            }
+        });
+        reader.start();
+        for (; frame < 3000; frame++) {
+            estimator.onFrame(timestamp(frame, random));
+        }
+        reader.join();
+        assertTrue("估计结果应始终有效", bad[0] == 0);
+    }
+}
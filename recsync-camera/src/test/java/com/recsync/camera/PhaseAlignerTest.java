@@ -0,0 +1,101 @@
+package com.recsync.camera;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PhaseAlignerTest {
+
+    private static final long GRID_NS = PhaseAligner.gridPeriodNs(30);
+    private static final long START_NS = 10_000_000_000L;
+    private static final long JITTER_NS = 1_000_000L;
+
+    /**
+     * 第 frame 帧的时间戳：起点 + 相位 + frame × 实际周期，叠加 ±JITTER_NS 的对称抖动
+     */
+    private static long timestamp(int frame, long phaseNs, long periodNs, Random random) {
+        long jitter = (long) ((random.nextDouble() * 2 - 1) * JITTER_NS);
+        return START_NS + phaseNs + frame * periodNs + jitter;
+    }
+
+    @Test
+    public void gridPeriodIsTheRoundedNominalPeriod() {
+        assertEquals(33_333_333L, PhaseAligner.gridPeriodNs(30));
+        assertEquals(33_366_700L, PhaseAligner.gridPeriodNs(29.97));
+        assertEquals(1_000_000_000L, PhaseAligner.gridPeriodNs(0));
+    }
+
+    @Test
+    public void wrapErrorMapsIntoHalfOpenInterval() {
+        long period = 33_333_334L;
+        assertEquals(0, PhaseAligner.wrapError(0, period), 0);
+        assertEquals(5_000_000, PhaseAligner.wrapError(5_000_000, period), 0);
+        assertEquals(-1_000_000, PhaseAligner.wrapError(period - 1_000_000, period), 0);
+        // 半个周期处属于负半区：[-周期/2, 周期/2)
+        assertEquals(-period / 2.0, PhaseAligner.wrapError(period / 2.0, period), 0);
+        assertEquals(period / 2.0 - 1, PhaseAligner.wrapError(period / 2.0 - 1, period), 0);
+        assertEquals(period / 2.0 - 1, PhaseAligner.wrapError(-period / 2.0 - 1, period), 0);
+        assertEquals(5, PhaseAligner.wrapError(2 * period + 5, period), 0);
+    }
+
+    @Test
+    public void nextInstantHasTheRequestedPhase() {
+        long period = GRID_NS;
+        long notBefore = START_NS + 12_345_678L;
+        for (double phase : new double[] {0, 1_000_000, period - 1, -2_000_000, 3.6 * period}) {
+            long instant = PhaseAligner.nextInstantWithPhase(notBefore, phase, period);
+            assertTrue(instant >= notBefore);
+            assertTrue(instant - notBefore < period);
+            assertEquals(Math.floorMod(Math.round(phase), period), Math.floorMod(instant, period));
+        }
+        // 已在目标相位上时不再等待
+        long aligned = START_NS - Math.floorMod(START_NS, period) + 7_000_000L;
+        assertEquals(aligned, PhaseAligner.nextInstantWithPhase(aligned, 7_000_000, period));
+    }
+
+    @Test
+    public void measuresPhaseAtTheLatestFrame() {
+        PhaseAligner aligner = new PhaseAligner();
+        Random random = new Random(3);
+        long phaseNs = 12_000_000L;
+        // 实际 29.97fps，相对 30fps 网格每帧漂移约33µs：应测得最新一帧处的相位而不是窗口平均
+        long periodNs = 33_366_700L;
+        int frames = 200;
+        for (int frame = 0; frame < frames; frame++) {
+            aligner.onFrame(timestamp(frame, phaseNs, periodNs, random));
+        }
+        long lastExposure = START_NS + phaseNs + (frames - 1) * periodNs;
+        assertEquals(Math.floorMod(lastExposure, GRID_NS), aligner.measurePhaseNs(GRID_NS), 300_000);
+    }
+
+    @Test
+    public void resetSkipsSettleFramesAndMeasuresOnlyNewSamples() {
+        PhaseAligner aligner = new PhaseAligner();
+        Random random = new Random(4);
+        assertTrue(Double.isNaN(aligner.measurePhaseNs(GRID_NS)));
+
+        int frame = 0;
+        for (; frame < 100; frame++) {
+            aligner.onFrame(timestamp(frame, 5_000_000L, GRID_NS, random));
+        }
+        assertEquals(5_000_000, aligner.measurePhaseNs(GRID_NS), 300_000);
+
+        // 相位推迟10ms：复位后跳过 SETTLE_FRAMES 帧（时间戳修正尚未收敛，这里故意给出无关的时间）
+        aligner.reset();
+        for (int i = 0; i < PhaseAligner.SETTLE_FRAMES; i++, frame++) {
+            aligner.onFrame(timestamp(frame, 27_000_000L, GRID_NS, random));
+        }
+        assertEquals(0, aligner.getSampleCount());
+        for (int i = 0; i < PhaseAligner.MIN_SAMPLES - 1; i++, frame++) {
+            aligner.onFrame(timestamp(frame, 15_000_000L, GRID_NS, random));
+        }
+        assertTrue("样本不足时无法测量", Double.isNaN(aligner.measurePhaseNs(GRID_NS)));
+        for (; frame < 250; frame++) {
+            aligner.onFrame(timestamp(frame, 15_000_000L, GRID_NS, random));
+        }
+        assertEquals(15_000_000, aligner.measurePhaseNs(GRID_NS), 300_000);
+    }
+}
@@ -0,0 +1,82 @@
+package com.recsync.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SpscRingBufferTest {
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(2, new SpscRingBuffer<Integer>(1).capacity());
+        assertEquals(4, new SpscRingBuffer<Integer>(3).capacity());
+        assertEquals(4, new SpscRingBuffer<Integer>(4).capacity());
+        assertEquals(128, new SpscRingBuffer<Integer>(100).capacity());
+    }
+
+    @Test
+    public void offerFailsWhenFullAndPollKeepsOrder() {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(99));
+        assertEquals(4, buffer.size());
+
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void wrapsAroundManyTimes() {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(8);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(buffer.offer(i));
+            assertTrue(buffer.offer(i + 1_000_000));
+            assertEquals(Integer.valueOf(i), buffer.poll());
+            assertEquals(Integer.valueOf(i + 1_000_000), buffer.poll());
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void producerAndConsumerThreadsSeeEveryItemInOrder() throws InterruptedException {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(16);
+        int total = 100_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total && !Thread.currentThread().isInterrupted(); ) {
+                if (buffer.offer(i)) {
+                    i++;
+                } else {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.setDaemon(true);
+        producer.start();
+
+        int expected = 0;
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (expected < total && System.nanoTime() < deadline) {
+            Integer item = buffer.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(expected, item.intValue());
+            expected++;
+        }
+        producer.interrupt();
+        producer.join(1000);
+        assertEquals(total, expected);
+        assertTrue(buffer.isEmpty());
+    }
+}
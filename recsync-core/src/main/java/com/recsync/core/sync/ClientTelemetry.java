@@ -0,0 +1,105 @@
+package com.recsync.core.sync;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 客户端遥测数据（采集帧率、抖动等），通过 METHOD_CLIENT_TELEMETRY 上报
+ *
+ * payload格式: deviceName|key1=value1,key2=value2,...
+ * 键值中不能包含 '|' ',' '='，未识别的键由Leader原样保留，便于逐步扩展。
+ */
+public record ClientTelemetry(String deviceName, Map<String, String> values) {
+
+    // 常用键
+    public static final String KEY_FPS = "fps";                    // 实测采集帧率
+    public static final String KEY_JITTER_MS = "jitter_ms";        // 帧间隔标准差（毫秒）
+    public static final String KEY_PACING = "pacing";              // 采集节拍模式
+    public static final String KEY_CAPTURED = "captured";          // 累计采集帧数
+    public static final String KEY_ENCODE_DROPPED = "enc_drop";    // 编码队列丢帧数
+    public static final String KEY_ENCODE_QUEUE_MAX = "enc_q_max"; // 编码队列最大深度
+    public static final String KEY_FORMAT = "format";              // 采集格式，例如 1280x720@30
+    public static final String KEY_PREROLL_MS = "preroll_ms";      // 预录缓冲覆盖时长（毫秒）
+    public static final String KEY_ENCODER = "encoder";            // 当前（auto时为自测选定）编码配置
+    public static final String KEY_POOL_FRAMES = "pool";           // 帧池已分配帧数
+    public static final String KEY_CAPTURE_ALLOC = "alloc_b";      // 采集线程平均每帧堆分配（字节）
+    public static final String KEY_TIMESTAMP_SOURCE = "ts_src";    // 采集时间戳来源（DEVICE/FITTED/RAW）
+    public static final String KEY_TIMESTAMP_RESIDUAL_MS = "ts_resid_ms"; // 采集时间戳残差标准差（毫秒）
+    public static final String KEY_ARM_MS = "arm_ms";              // 最近一次准备录制耗时（毫秒）
+    public static final String KEY_ARM_MAX_MS = "arm_max_ms";      // 准备录制最大耗时（毫秒）
+    public static final String KEY_WARM_RECORDERS = "warm";        // 就绪的预热录制器数量
+    public static final String KEY_VIEW_OF = "view_of";            // 多路相机：该视角所属的设备名
+    public static final String KEY_RECORDING_DROPPED = "rec_drop"; // 当前（或上一次）录制检测到的缺失帧数
+    public static final String KEY_RECORDING_GAPS = "rec_gaps";    // 当前（或上一次）录制的缺口数
+    public static final String KEY_GAP_POSITIONS = "gap_pos";      // 最近几处缺口距录制开始的秒数（';' 分隔）
+    public static final String KEY_PHASE_ERROR_MS = "phase_ms";    // 帧相位相对公共网格的误差（毫秒）
+    public static final String KEY_PHASE_STATE = "phase";          // 最近一次相位对齐状态（ALIGNING/ALIGNED/FAILED/UNSUPPORTED）
+    public static final String KEY_ESTIMATED_FPS = "est_fps";      // 稳健回归估计的实际帧率（相对同步时钟）
+    public static final String KEY_FPS_DRIFT_PPM = "drift_ppm";    // 实际帧率相对标称帧率的偏差（ppm）
+    public static final String KEY_PERIOD_JITTER_MS = "period_jitter_ms"; // 帧时刻相对回归线的稳健标准差（毫秒）
+
+    public ClientTelemetry {
+        values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+    }
+
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 采集格式标识，例如 1280x720@30
+     */
+    public static String formatKey(int width, int height, double fps) {
+        return String.format("%dx%d@%d", width, height, Math.round(fps));
+    }
+
+    public String toPayload() {
+        StringBuilder sb = new StringBuilder(deviceName).append('|');
+        boolean first = true;
+        for (Map.Entry<String, String> e : values.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            sb.append(e.getKey()).append('=').append(e.getValue());
+            first = false;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析遥测payload，格式错误时返回null
+     */
+    public static ClientTelemetry parse(String payload) {
+        if (payload == null) {
+            return null;
+        }
+        int sep = payload.indexOf('|');
+        if (sep <= 0) {
+            return null;
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        String body = payload.substring(sep + 1);
+        if (!body.isEmpty()) {
+            for (String pair : body.split(",")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    values.put(pair.substring(0, eq), pair.substring(eq + 1));
+                }
+            }
+        }
+        return new ClientTelemetry(payload.substring(0, sep), values);
+    }
+}
@@ -0,0 +1,83 @@
+package com.recsync.core.sync;
+
+import java.util.List;
+
+/**
+ * 命名编码配置（H.264 / libx264）
+ *
+ * Leader 在 START 载荷中下发配置名，客户端据此创建录制器。
+ * 特殊名称 {@link #AUTO}：由客户端按本机自测结果选择能稳定达到目标分辨率/帧率的最高质量配置。
+ *
+ * @param name 配置名
+ * @param preset x264 preset（null 表示使用编码器默认）
+ * @param tune x264 tune（null 表示不设置）
+ * @param crf 恒定质量参数，-1 表示使用码率控制
+ * @param bitrate 目标码率（bps），0 表示不设置
+ * @param threads 编码线程数，0 表示自动
+ * @param gopSeconds 关键帧间隔（秒），0 表示编码器默认
+ * @param pixelFormat 像素格式（FFmpeg名称，例如 yuv420p）
+ * @param description 界面显示的说明
+ */
+public record EncoderProfile(
+        String name,
+        String preset,
+        String tune,
+        int crf,
+        int bitrate,
+        int threads,
+        double gopSeconds,
+        String pixelFormat,
+        String description
+) {
+    public static final String AUTO = "auto";
+
+    public static final EncoderProfile QUALITY =
+            new EncoderProfile("quality", "medium", null, 18, 0, 0, 2, "yuv420p", "高质量（CPU占用高）");
+    public static final EncoderProfile BALANCED =
+            new EncoderProfile("balanced", "veryfast", null, 20, 0, 0, 2, "yuv420p", "均衡");
+    public static final EncoderProfile FAST =
+            new EncoderProfile("fast", "superfast", null, 23, 0, 0, 2, "yuv420p", "快速");
+    public static final EncoderProfile REALTIME =
+            new EncoderProfile("realtime", "ultrafast", "zerolatency", 23, 0, 0, 1, "yuv420p", "实时（低端设备）");
+    // 早期版本的固定参数：8Mbps + CRF 0（接近无损，CPU占用很高）
+    public static final EncoderProfile LEGACY =
+            new EncoderProfile("legacy", null, null, 0, 8_000_000, 0, 0, "yuv420p", "旧版固定参数（接近无损）");
+
+    /**
+     * 自动选择时的候选顺序（质量从高到低）
+     */
+    public static final List<EncoderProfile> AUTO_CANDIDATES = List.of(QUALITY, BALANCED, FAST, REALTIME);
+
+    /**
+     * 自测失败或尚无结果时使用的配置
+     */
+    public static final EncoderProfile FALLBACK = REALTIME;
+
+    public static List<EncoderProfile> all() {
+        return List.of(QUALITY, BALANCED, FAST, REALTIME, LEGACY);
+    }
+
+    /**
+     * 按名称查找配置，未知名称返回null（AUTO 也返回null，需由客户端解析）
+     */
+    public static EncoderProfile byName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (EncoderProfile profile : all()) {
+            if (profile.name.equalsIgnoreCase(name.trim())) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    public boolean usesCrf() {
+        return crf >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
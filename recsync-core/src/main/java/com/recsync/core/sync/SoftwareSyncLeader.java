@@ -16,6 +16,7 @@ public class SoftwareSyncLeader extends SoftwareSyncBase {
     private static final Logger logger = LoggerFactory.getLogger(SoftwareSyncLeader.class);
 
     private final Map<InetAddress, ClientInfo> clients = new ConcurrentHashMap<>();
+    private final Map<InetAddress, Long> lastSampleTimeNs = new ConcurrentHashMap<>();  // 最近一次带t1（SNTP采样）的心跳
     private final ScheduledExecutorService staleClientChecker;
     private final SimpleNetworkTimeProtocol sntp;
 
@@ -111,6 +112,7 @@ public class SoftwareSyncLeader extends SoftwareSyncBase {
                     );
 
                     clients.put(fromAddress, info);
+                    lastSampleTimeNs.put(fromAddress, System.nanoTime());
 
                     if (isNewClient) {
                         logger.info("✅ *** 新客户端已连接 ***: {} ({}) - 当前客户端数: {}/{}",
@@ -154,6 +156,7 @@ public class SoftwareSyncLeader extends SoftwareSyncBase {
 
                     ClientInfo info = new ClientInfo(clientName, fromAddress, System.nanoTime(), synced, 0);
                     clients.put(fromAddress, info);
+                    lastSampleTimeNs.remove(fromAddress);  // 旧协议心跳不做SNTP采样
                     if (isNewClient) {
                         logger.info("✅ 新客户端已连接(旧协议): {} ({})", clientName, fromAddress.getHostAddress());
                     }
@@ -244,6 +247,7 @@ public class SoftwareSyncLeader extends SoftwareSyncBase {
                 boolean isStale = (now - entry.getValue().lastHeartbeatTimeNs()) > SyncConstants.STALE_TIME_NS;
                 if (isStale) {
                     logger.info("移除过期客户端: {}", entry.getValue().name());
+                    lastSampleTimeNs.remove(entry.getKey());
                 }
                 return isStale;
             });
@@ -280,6 +284,25 @@ public class SoftwareSyncLeader extends SoftwareSyncBase {
         return new HashMap<>(clients);
     }
 
+    /**
+     * 是否有客户端尚未完成时钟同步且正在SNTP采样
+     * 只统计最近一个过期周期内发送过带t1心跳的客户端：旧协议客户端和已失联的客户端不会参与采样，
+     * 它们的同步状态可能永远不会变为true
+     */
+    public boolean hasUnsyncedClients() {
+        long now = System.nanoTime();
+        for (ClientInfo info : clients.values()) {
+            if (info.isCurrentlySynced()) {
+                continue;
+            }
+            Long sampledAt = lastSampleTimeNs.get(info.address());
+            if (sampledAt != null && now - sampledAt <= SyncConstants.STALE_TIME_NS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void stop() {
         if (staleClientChecker != null) {
             staleClientChecker.shutdown();
@@ -48,6 +48,8 @@ public class SyncConstants {
     public static final int METHOD_STOP_RECORDING = 200_004;
     public static final int METHOD_UPDATE_CLIENT_NAME = 200_005;  // 更新客户端名称
     public static final int METHOD_CLIENT_STATUS = 200_006;       // 客户端状态上报
+    public static final int METHOD_CLIENT_TELEMETRY = 200_007;    // 客户端采集遥测（帧率、抖动等）
+    public static final int METHOD_CONFIGURE_CAPTURE = 200_008;   // 预先下发采集参数（width|height|fps|encoderProfile）
 
     // Client Status Codes
     public static final int CLIENT_STATUS_CAMERA_NOT_READY = 0;   // 摄像头未就绪
@@ -64,6 +66,27 @@ public class SyncConstants {
     public static final String DEFAULT_ARCHIVE_DIR = "DatasetOfLess\\videos";
     public static final String DEFAULT_RECORDING_DIR = "RecSync";
 
+    // File receive server
+    public static final int MAX_CONCURRENT_UPLOADS = 4;     // 同时接收的最大上传数
+    public static final int MAX_QUEUED_UPLOADS = 3 * MAX_CLIENTS;  // 排队等待的最大连接数
+    public static final int FILE_TRANSFER_BACKLOG = 64;     // TCP监听队列长度
+    public static final long UPLOAD_GLOBAL_LIMIT_BPS = 0;                     // 空闲时全局上传上限（0=不限）
+    public static final long UPLOAD_PER_CLIENT_LIMIT_BPS = 0;                 // 每客户端上传上限（0=不限）
+    public static final long UPLOAD_RECORDING_LIMIT_BPS = 2L * 1024 * 1024;   // 录制中全局上传上限
+    public static final long PROGRESS_UPDATE_INTERVAL_MS = 100;  // 传输进度刷新间隔（批量回调UI）
+
+    // Streaming upload（边录边传）
+    public static final int STREAMING_SEGMENT_SECONDS = 5;  // 边录边传分段时长
+    public static final int RECORDING_SEGMENT_SECONDS = 30; // 本地分段录制（可选）的分段时长；默认本地录制为单个文件
+
+    // Pre-roll（预录，允许立即触发）
+    public static final double PRE_ROLL_SECONDS = 1.0;     // 客户端预录缓冲时长
+    public static final long PRE_ROLL_REQUIRED_MS = 500;   // 所有客户端预录覆盖达到该值时，Leader以"当前时刻"触发
+    public static final long TRIGGER_LEAD_TIME_NS = 200_000_000L;  // 无预录时的触发提前量（200ms）
+
+    // Phase alignment（帧相位对齐）
+    public static final double PHASE_ALIGN_TOLERANCE_MS = 1.0;  // 默认目标相位误差（METHOD_DO_PHASE_ALIGN 的payload可覆盖）
+
     // Video parameters
     public static final int DEFAULT_VIDEO_WIDTH = 1280;
     public static final int DEFAULT_VIDEO_HEIGHT = 720;
@@ -0,0 +1,221 @@
+package com.recsync.core.transfer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 归档文件内容索引（MD5 -> 相对路径集合），持久化在归档目录下
+ *
+ * 用于重复上传去重：客户端在上传请求中携带MD5，
+ * 若归档中已有相同内容则无需再传输数据。
+ * 同一内容可能有多份副本（重测复制、去重时本地复制），每个哈希记录所有副本，
+ * 删除其中一份不影响用其他副本去重。
+ * 索引文件为追加写入的文本（每行：md5 \t 大小 \t 相对路径），启动时加载并压缩。
+ */
+public class ArchiveHashIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveHashIndex.class);
+
+    public static final String INDEX_FILE_NAME = ".recsync-index";
+
+    private final Path archiveRoot;
+    private final Path indexFile;
+    private final Map<String, Entry> byPath = new HashMap<>();
+    private final Map<String, Set<String>> pathsByHash = new HashMap<>();
+
+    private record Entry(String md5, long size) {}
+
+    public ArchiveHashIndex(Path archiveRoot) {
+        this.archiveRoot = archiveRoot.toAbsolutePath().normalize();
+        this.indexFile = this.archiveRoot.resolve(INDEX_FILE_NAME);
+    }
+
+    /**
+     * 加载索引，丢弃已不存在或大小不符的条目，并重写为压缩后的索引文件
+     */
+    public synchronized void load() throws IOException {
+        byPath.clear();
+        pathsByHash.clear();
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+
+        List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            String[] parts = line.split("\t", 3);
+            if (parts.length < 3) {
+                continue;
+            }
+            try {
+                put(parts[0], Long.parseLong(parts[1]), parts[2]);
+            } catch (NumberFormatException e) {
+                logger.debug("忽略无效索引行: {}", line);
+            }
+        }
+        for (String relative : List.copyOf(byPath.keySet())) {
+            if (!isValid(relative, byPath.get(relative))) {
+                remove(relative);
+            }
+        }
+
+        rewrite();
+        logger.info("📇 归档索引已加载: {} 条 (读取 {} 行)", byPath.size(), lines.size());
+    }
+
+    /**
+     * 查找与给定内容相同的已归档文件
+     *
+     * @return 文件绝对路径；不存在（或文件已被改动/删除）时返回null
+     */
+    public synchronized Path find(String md5, long size) {
+        Set<String> paths = pathsByHash.get(md5.toLowerCase());
+        if (paths == null) {
+            return null;
+        }
+        Path found = null;
+        for (Iterator<String> it = paths.iterator(); it.hasNext() && found == null; ) {
+            String relative = it.next();
+            Entry entry = byPath.get(relative);
+            if (entry.size() != size) {
+                continue;
+            }
+            if (isValid(relative, entry)) {
+                found = archiveRoot.resolve(relative);
+            } else {
+                it.remove();
+                byPath.remove(relative);
+            }
+        }
+        if (paths.isEmpty()) {
+            pathsByHash.remove(md5.toLowerCase());
+        }
+        return found;
+    }
+
+    /**
+     * 判断目标文件是否已经是给定内容
+     * 目标存在但不在索引中（例如旧版本归档）且大小相同时，在本地计算一次MD5并补录索引
+     */
+    public boolean matches(Path file, String md5, long size) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) != size) {
+            return false;
+        }
+        String relative = relativize(file);
+        String knownHash;
+        synchronized (this) {
+            Entry entry = byPath.get(relative);
+            knownHash = entry != null ? entry.md5() : null;
+        }
+        if (knownHash == null) {
+            knownHash = computeMD5(file);
+            record(file, knownHash);
+        }
+        return knownHash.equalsIgnoreCase(md5);
+    }
+
+    /**
+     * 记录一个已归档文件（接收完成或本地复制后调用）
+     */
+    public synchronized void record(Path file, String md5) throws IOException {
+        String relative = relativize(file);
+        long size = Files.size(file);
+        put(md5.toLowerCase(), size, relative);
+        try (BufferedWriter writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(md5.toLowerCase() + "\t" + size + "\t" + relative);
+            writer.newLine();
+        }
+    }
+
+    /**
+     * 从归档中删除（或覆盖）文件前调用，移除其索引条目
+     */
+    public synchronized void forget(Path file) {
+        remove(relativize(file));
+    }
+
+    /**
+     * 已索引的文件数（同一内容的多份副本分别计数）
+     */
+    public synchronized int size() {
+        return byPath.size();
+    }
+
+    private void put(String md5, long size, String relativePath) {
+        // 同一路径被新内容覆盖时，先移除旧内容的条目
+        remove(relativePath);
+        byPath.put(relativePath, new Entry(md5, size));
+        pathsByHash.computeIfAbsent(md5, k -> new LinkedHashSet<>()).add(relativePath);
+    }
+
+    private void remove(String relativePath) {
+        Entry old = byPath.remove(relativePath);
+        if (old != null) {
+            Set<String> paths = pathsByHash.get(old.md5());
+            if (paths != null) {
+                paths.remove(relativePath);
+                if (paths.isEmpty()) {
+                    pathsByHash.remove(old.md5());
+                }
+            }
+        }
+    }
+
+    private boolean isValid(String relativePath, Entry entry) {
+        try {
+            Path file = archiveRoot.resolve(relativePath);
+            return Files.isRegularFile(file) && Files.size(file) == entry.size();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void rewrite() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Entry> e : byPath.entrySet()) {
+            sb.append(e.getValue().md5()).append('\t').append(e.getValue().size()).append('\t')
+                    .append(e.getKey()).append('\n');
+        }
+        Path tmpFile = indexFile.resolveSibling(INDEX_FILE_NAME + ".tmp");
+        Files.writeString(tmpFile, sb.toString(), StandardCharsets.UTF_8);
+        Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private String relativize(Path file) {
+        return archiveRoot.relativize(file.toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+
+    private static String computeMD5(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                md5.update(buffer, 0, n);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md5.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+}
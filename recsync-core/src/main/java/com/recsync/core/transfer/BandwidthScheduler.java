@@ -0,0 +1,190 @@
+package com.recsync.core.transfer;
+
+import com.recsync.core.sync.SyncConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Leader端上传带宽调度器
+ *
+ * 基于令牌桶对文件接收限速（全局 + 每客户端）。上传协议是逐块ACK的，
+ * 服务端推迟读取/确认下一块即可让客户端放慢发送，从而为心跳和SNTP同步流量让出Wi-Fi队列：
+ * 1. 空闲时：按配置的全局/每客户端上限（默认不限速）
+ * 2. Leader录制中：全局限速到较低速率
+ * 3. 有客户端正在同步采样：暂停接收。暂停从首次观察到采样起计时，累计超过 MAX_PAUSE_NS 后
+ *    不再暂停（按空闲或录制中的上限），直到采样结束后才重新计时，
+ *    某个客户端长期无法同步时不会让上传无限期变慢
+ */
+public class BandwidthScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(BandwidthScheduler.class);
+
+    static final long MAX_PAUSE_NS = TimeUnit.SECONDS.toNanos(30);
+    private static final long PAUSE_POLL_MS = 100;
+    private static final long SYNC_CHECK_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * 当前调度模式
+     */
+    public enum Mode {
+        FULL_SPEED,   // 空闲，按常规上限
+        THROTTLED,    // 录制中，降速
+        PAUSED        // 同步采样中，暂停
+    }
+
+    private volatile long globalLimitBytesPerSec = SyncConstants.UPLOAD_GLOBAL_LIMIT_BPS;
+    private volatile long perClientLimitBytesPerSec = SyncConstants.UPLOAD_PER_CLIENT_LIMIT_BPS;
+    private volatile long recordingLimitBytesPerSec = SyncConstants.UPLOAD_RECORDING_LIMIT_BPS;
+
+    private volatile boolean recording = false;
+    private volatile BooleanSupplier syncSamplingSupplier = () -> false;
+    private volatile boolean syncSampling = false;
+    private volatile long syncCheckedAtNs = 0;
+    private volatile Mode lastMode = Mode.FULL_SPEED;
+    private long pauseStartedNs = -1;      // 本轮采样暂停开始时刻，-1 表示未暂停（受 this 保护）
+    private boolean pauseExpired = false;   // 本轮采样的暂停已用完（受 this 保护）
+    private final LongSupplier nanoClock;
+
+    private final TokenBucket globalBucket = new TokenBucket();
+    private final ConcurrentHashMap<String, TokenBucket> clientBuckets = new ConcurrentHashMap<>();
+
+    public BandwidthScheduler() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock 暂停计时使用的时钟（测试中替换）
+     */
+    BandwidthScheduler(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * 在接收/确认一块数据前调用，按当前模式阻塞相应时间
+     *
+     * @param clientKey 客户端标识（IP地址）
+     * @param bytes 本块字节数
+     */
+    public void acquire(String clientKey, int bytes) throws InterruptedException {
+        waitWhilePaused();
+
+        long globalLimit = recording ? recordingLimitBytesPerSec : globalLimitBytesPerSec;
+        if (globalLimit > 0) {
+            sleepNanos(globalBucket.reserve(bytes, globalLimit));
+        }
+
+        long perClientLimit = perClientLimitBytesPerSec;
+        if (perClientLimit > 0) {
+            TokenBucket bucket = clientBuckets.computeIfAbsent(clientKey, k -> new TokenBucket());
+            sleepNanos(bucket.reserve(bytes, perClientLimit));
+        }
+    }
+
+    private void waitWhilePaused() throws InterruptedException {
+        while (getMode() == Mode.PAUSED) {
+            Thread.sleep(PAUSE_POLL_MS);
+        }
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    /**
+     * 获取当前模式（同步采样状态最多每100ms查询一次）
+     */
+    public synchronized Mode getMode() {
+        long now = nanoClock.getAsLong();
+        if (now - syncCheckedAtNs > SYNC_CHECK_INTERVAL_NS) {
+            syncCheckedAtNs = now;
+            try {
+                syncSampling = syncSamplingSupplier.getAsBoolean();
+            } catch (Exception e) {
+                syncSampling = false;
+            }
+        }
+
+        boolean paused = false;
+        if (!syncSampling) {
+            // 采样结束：下一轮采样重新计时
+            pauseStartedNs = -1;
+            pauseExpired = false;
+        } else if (!pauseExpired) {
+            if (pauseStartedNs < 0) {
+                pauseStartedNs = now;
+            }
+            if (now - pauseStartedNs > MAX_PAUSE_NS) {
+                pauseExpired = true;
+                logger.warn("上传暂停超过{}秒，恢复接收（直到同步采样结束后再重新计时）",
+                        TimeUnit.NANOSECONDS.toSeconds(MAX_PAUSE_NS));
+            } else {
+                paused = true;
+            }
+        }
+
+        Mode mode = paused ? Mode.PAUSED : (recording ? Mode.THROTTLED : Mode.FULL_SPEED);
+        if (mode != lastMode) {
+            logger.info("📶 上传带宽模式: {} -> {}", lastMode, mode);
+            lastMode = mode;
+        }
+        return mode;
+    }
+
+    /**
+     * 设置Leader录制状态（录制中降速）
+     */
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * 设置"是否有客户端正在同步采样"的查询函数（采样中暂停接收）
+     */
+    public void setSyncSamplingSupplier(BooleanSupplier supplier) {
+        this.syncSamplingSupplier = supplier != null ? supplier : () -> false;
+        this.syncCheckedAtNs = 0;
+    }
+
+    /**
+     * 设置限速参数（字节/秒，0表示不限速）
+     *
+     * @param globalLimit 空闲时全局上限
+     * @param perClientLimit 每客户端上限
+     * @param recordingLimit 录制中全局上限
+     */
+    public void setLimits(long globalLimit, long perClientLimit, long recordingLimit) {
+        this.globalLimitBytesPerSec = globalLimit;
+        this.perClientLimitBytesPerSec = perClientLimit;
+        this.recordingLimitBytesPerSec = recordingLimit;
+        logger.info("上传限速已设置: 全局={}B/s, 每客户端={}B/s, 录制中={}B/s",
+                globalLimit, perClientLimit, recordingLimit);
+    }
+
+    /**
+     * 简单令牌桶：预约令牌，不足时返回需要等待的纳秒数（在锁外睡眠）
+     */
+    private static class TokenBucket {
+        private double tokens = 0;
+        private long lastRefillNs = System.nanoTime();
+
+        synchronized long reserve(int bytes, long rateBytesPerSec) {
+            long now = System.nanoTime();
+            // 桶容量：100ms的流量，至少容纳一个数据块
+            double capacity = Math.max(rateBytesPerSec / 10.0, SyncConstants.FILE_CHUNK_SIZE);
+            tokens = Math.min(capacity, tokens + (now - lastRefillNs) * rateBytesPerSec / 1e9);
+            lastRefillNs = now;
+
+            tokens -= bytes;
+            if (tokens >= 0) {
+                return 0;
+            }
+            return (long) (-tokens * 1e9 / rateBytesPerSec);
+        }
+    }
+}
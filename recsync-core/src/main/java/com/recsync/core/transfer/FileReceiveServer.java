@@ -6,57 +6,160 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 public class FileReceiveServer {
     private static final Logger logger = LoggerFactory.getLogger(FileReceiveServer.class);
     private static final int PORT = SyncConstants.FILE_TRANSFER_PORT;
+    private static final String SEGMENTS_DIR_SUFFIX = ".segments";
+    // 上传连接读超时：工作线程数固定，停滞或半开的连接不能永久占用；须大于带宽调度的最长暂停（暂停期间客户端等待确认）
+    private static final int UPLOAD_READ_TIMEOUT_MS =
+            (int) TimeUnit.NANOSECONDS.toMillis(BandwidthScheduler.MAX_PAUSE_NS * 2);
 
     private final String archiveDir;
-    private ServerSocket serverSocket;
-    private ExecutorService threadPool;
+    private final int maxConcurrentUploads;
+    private final int maxQueuedUploads;
+    private ServerSocketChannel serverChannel;
+    private Thread acceptThread;
+    private ThreadPoolExecutor uploadExecutor;
+    private ThreadPoolExecutor rejectExecutor;       // 回复 UPLOAD_REJECTED（不占用接收线程和上传工作线程）
     private volatile boolean running = false;
     private FileReceiveListener listener;
+    private final BandwidthScheduler bandwidthScheduler = new BandwidthScheduler();
+    private ArchiveHashIndex hashIndex;
+    private final TransferProgressAggregator progressAggregator =
+            new TransferProgressAggregator(this::notifyProgress);
+
+    // 运行指标
+    private final AtomicInteger activeUploads = new AtomicInteger(0);
+    private final AtomicLong acceptedConnections = new AtomicLong(0);
+    private final AtomicLong rejectedConnections = new AtomicLong(0);
+    private final AtomicLong completedUploads = new AtomicLong(0);
+    private final AtomicLong failedUploads = new AtomicLong(0);
+    private final AtomicLong totalBytesReceived = new AtomicLong(0);
+    private final AtomicLong dedupedUploads = new AtomicLong(0);
+
+    /**
+     * 接收服务运行指标快照
+     */
+    public record Metrics(
+            int activeUploads,
+            int queuedUploads,
+            int maxConcurrentUploads,
+            long acceptedConnections,
+            long rejectedConnections,
+            long completedUploads,
+            long failedUploads,
+            long bytesReceived,
+            long dedupedUploads
+    ) {}
 
     public interface FileReceiveListener {
         void onFileReceiveStarted(String fileName, String deviceName);
-        void onFileReceiveProgress(String fileName, long bytesReceived, long totalBytes);
+        /**
+         * 所有活跃接收的进度快照，按固定频率批量回调（非每个数据块）
+         */
+        void onFileReceiveProgress(List<TransferProgressAggregator.Snapshot> transfers);
         void onFileReceiveCompleted(String fileName, String savedPath);
         void onFileReceiveFailed(String fileName, String error);
     }
 
     public FileReceiveServer(String archiveDir) {
+        this(archiveDir, SyncConstants.MAX_CONCURRENT_UPLOADS, SyncConstants.MAX_QUEUED_UPLOADS);
+    }
+
+    /**
+     * @param archiveDir 归档目录
+     * @param maxConcurrentUploads 同时接收的最大上传数（即工作线程数）
+     * @param maxQueuedUploads 超出并发数后允许排队等待的连接数，再多则拒绝
+     */
+    public FileReceiveServer(String archiveDir, int maxConcurrentUploads, int maxQueuedUploads) {
         this.archiveDir = archiveDir;
+        this.maxConcurrentUploads = maxConcurrentUploads;
+        this.maxQueuedUploads = maxQueuedUploads;
     }
 
     public void start(FileReceiveListener listener) throws IOException {
         this.listener = listener;
-        this.serverSocket = new ServerSocket(PORT);
-        this.threadPool = Executors.newCachedThreadPool();
-        this.running = true;
 
         Files.createDirectories(Paths.get(archiveDir));
 
+        this.hashIndex = new ArchiveHashIndex(Paths.get(archiveDir));
+        try {
+            hashIndex.load();
+        } catch (IOException e) {
+            logger.warn("加载归档索引失败，将重新建立: {}", e.getMessage());
+        }
+
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(PORT), SyncConstants.FILE_TRANSFER_BACKLOG);
+
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        this.uploadExecutor = new ThreadPoolExecutor(
+                maxConcurrentUploads, maxConcurrentUploads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueuedUploads),
+                r -> {
+                    Thread t = new Thread(r, "File-Receive-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        // 拒绝回复单独一个线程：等待慢客户端发出请求不会阻塞接收线程；积压过多时直接断开
+        this.rejectExecutor = new ThreadPoolExecutor(
+                1, 1,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueuedUploads),
+                r -> {
+                    Thread t = new Thread(r, "File-Reject");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.running = true;
+
+        acceptThread = new Thread(this::acceptConnections, "File-Accept-Thread");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
         logger.info("✅ 文件接收服务已启动");
         logger.info("   端口: {}", PORT);
         logger.info("   归档目录: {}", archiveDir);
-
-        threadPool.submit(this::acceptConnections);
+        logger.info("   最大并发上传: {}, 最大排队: {}, 监听队列: {}",
+                maxConcurrentUploads, maxQueuedUploads, SyncConstants.FILE_TRANSFER_BACKLOG);
     }
 
     private void acceptConnections() {
         while (running) {
             try {
-                Socket clientSocket = serverSocket.accept();
-                logger.info("📥 收到上传连接: {}", clientSocket.getInetAddress());
-                threadPool.submit(() -> handleClient(clientSocket));
+                Socket clientSocket = serverChannel.accept().socket();
+                acceptedConnections.incrementAndGet();
+                logger.info("📥 收到上传连接: {} (活跃: {}, 排队: {})", clientSocket.getInetAddress(),
+                        activeUploads.get(), uploadExecutor.getQueue().size());
+                try {
+                    uploadExecutor.execute(() -> handleClient(clientSocket));
+                } catch (RejectedExecutionException e) {
+                    rejectConnection(clientSocket);
+                }
             } catch (IOException e) {
                 if (running) {
                     logger.error("接受连接失败", e);
@@ -65,7 +168,47 @@ public class FileReceiveServer {
         }
     }
 
+    /**
+     * 排队已满时拒绝连接：在拒绝线程中读取请求后回复 UPLOAD_REJECTED，客户端可稍后重试
+     * 接收线程只设置读超时并转交，不读取任何数据；拒绝线程也积压时直接断开
+     */
+    private void rejectConnection(Socket socket) {
+        rejectedConnections.incrementAndGet();
+        logger.warn("⚠️ 上传排队已满，拒绝连接: {}", socket.getInetAddress());
+        try {
+            socket.setSoTimeout(SyncConstants.SOCKET_WAIT_TIME_MS);
+            rejectExecutor.execute(() -> answerRejected(socket));
+        } catch (IOException | RejectedExecutionException e) {
+            closeQuietly(socket);
+        }
+    }
+
+    private void answerRejected(Socket socket) {
+        try (socket;
+             ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
+            in.readObject();
+            sendResponse(out, MessageType.UPLOAD_REJECTED, "服务器繁忙，请稍后重试");
+        } catch (Exception e) {
+            logger.debug("拒绝连接时出错: {}", e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("关闭Socket失败: {}", e.getMessage());
+        }
+    }
+
     private void handleClient(Socket socket) {
+        activeUploads.incrementAndGet();
+        try {
+            socket.setSoTimeout(UPLOAD_READ_TIMEOUT_MS);
+        } catch (IOException e) {
+            logger.debug("设置读超时失败: {}", e.getMessage());
+        }
         try (ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
              ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
 
@@ -82,8 +225,9 @@ public class FileReceiveServer {
                 listener.onFileReceiveStarted(request.fileName, request.deviceName);
             }
 
-            // 解析文件名并创建分层目录结构
-            FileNameInfo fileInfo = parseFileName(request.fileName);
+            // 解析文件名并创建分层目录结构（分段上传按完整录制文件名解析）
+            FileNameInfo fileInfo = parseFileName(
+                    request.isSegment() ? request.segmentBaseName : request.fileName);
             Path targetDir;
             String simplifiedFileName;
 
@@ -92,37 +236,63 @@ public class FileReceiveServer {
                 targetDir = Paths.get(archiveDir,
                                      fileInfo.subjectId,
                                      fileInfo.movementId + "_" + fileInfo.episodeId);
-                // 简化文件名：{设备名}.mp4
-                simplifiedFileName = fileInfo.deviceName + ".mp4";
+                // 简化文件名：{设备名}.mp4（旁路文件保留原扩展名，例如 {设备名}.csv）
+                simplifiedFileName = fileInfo.deviceName + extensionOf(request.fileName);
             } else {
                 // 无法解析，使用旧逻辑（按设备名分类）
                 targetDir = Paths.get(archiveDir, sanitizeDeviceName(request.deviceName));
-                simplifiedFileName = request.fileName;
+                simplifiedFileName = request.isSegment() ? request.segmentBaseName : request.fileName;
             }
 
-            Files.createDirectories(targetDir);
+            Path segmentsDir = null;
+            if (request.isSegment()) {
+                // 分段存放到 {设备名}.segments/part{序号}.mp4，由索引文件串联
+                segmentsDir = targetDir.resolve(stripExtension(simplifiedFileName) + SEGMENTS_DIR_SUFFIX);
+                targetDir = segmentsDir;
+                simplifiedFileName = String.format("part%03d.mp4", request.segmentIndex);
+            }
             Path targetFile = targetDir.resolve(simplifiedFileName);
 
+            if (segmentsDir != null) {
+                Files.createDirectories(segmentsDir);
+                if (request.segmentIndex == 0) {
+                    // 新一轮录制（含重测覆盖）：先清理上一次遗留的分段，
+                    // 否则分段0去重命中时，上一次更长录制的分段仍会留在目录和索引中
+                    clearSegments(segmentsDir, targetFile);
+                }
+            }
+
+            // 去重：目标已是相同内容则直接确认，不再传输
+            if (tryDeduplicate(request, targetFile, segmentsDir, out)) {
+                return;
+            }
+
+            Files.createDirectories(targetDir);
+
             // 覆盖模式：如果文件存在，先删除
             if (Files.exists(targetFile)) {
+                hashIndex.forget(targetFile);
                 Files.delete(targetFile);
                 logger.info("覆盖模式：已删除旧文件 {}", targetFile);
             }
 
             sendResponse(out, MessageType.UPLOAD_ACCEPTED, "准备接收");
 
-            long bytesReceived = receiveFile(targetFile, request, in, out);
+            // 接收过程中同步计算MD5，无需写完后再读一遍文件
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            String clientKey = socket.getInetAddress().getHostAddress();
+            long bytesReceived = receiveFile(targetFile, request, clientKey, in, out, md5);
 
             if (bytesReceived == request.fileSize) {
-                String receivedMD5 = calculateMD5(targetFile);
+                String receivedMD5 = bytesToHex(md5.digest());
                 if (receivedMD5.equalsIgnoreCase(request.fileMD5)) {
+                    completedUploads.incrementAndGet();
+                    recordArchived(targetFile, receivedMD5);
                     sendResponse(out, MessageType.VERIFY_SUCCESS, "文件接收完成，校验通过");
                     logger.info("✅ 文件接收成功: {}", targetFile);
-
-                    if (listener != null) {
-                        listener.onFileReceiveCompleted(request.fileName, targetFile.toString());
-                    }
+                    notifyCompleted(request, targetFile, segmentsDir);
                 } else {
+                    failedUploads.incrementAndGet();
                     Files.deleteIfExists(targetFile);
                     String errorMsg = String.format("MD5校验失败: 期望=%s, 实际=%s",
                             request.fileMD5, receivedMD5);
@@ -134,12 +304,20 @@ public class FileReceiveServer {
                 }
             }
 
+        } catch (SocketTimeoutException e) {
+            failedUploads.incrementAndGet();
+            logger.warn("⏱️ 上传连接{}ms无数据，断开: {}", UPLOAD_READ_TIMEOUT_MS, socket.getInetAddress());
+            if (listener != null) {
+                listener.onFileReceiveFailed("未知", "连接超时");
+            }
         } catch (Exception e) {
+            failedUploads.incrementAndGet();
             logger.error("处理客户端连接失败", e);
             if (listener != null) {
                 listener.onFileReceiveFailed("未知", e.getMessage());
             }
         } finally {
+            activeUploads.decrementAndGet();
             try {
                 socket.close();
             } catch (IOException e) {
@@ -148,27 +326,93 @@ public class FileReceiveServer {
         }
     }
 
-    private long receiveFile(Path targetFile, UploadRequest request,
-                             ObjectInputStream in, ObjectOutputStream out) throws Exception {
+    /**
+     * 按客户端提供的MD5去重：
+     * 1. 目标文件已是相同内容：直接回复 ALREADY_ARCHIVED
+     * 2. 归档中其他位置有相同内容：在Leader本地复制到目标位置后回复 ALREADY_ARCHIVED
+     *
+     * @return true 表示已处理（无需接收数据）
+     */
+    private boolean tryDeduplicate(UploadRequest request, Path targetFile, Path segmentsDir,
+                                   ObjectOutputStream out) throws IOException {
+        if (request.fileMD5 == null || request.fileMD5.isEmpty()) {
+            return false;
+        }
+
+        String action;
+        if (hashIndex.matches(targetFile, request.fileMD5, request.fileSize)) {
+            action = "目标已存在相同内容";
+        } else {
+            Path existing = hashIndex.find(request.fileMD5, request.fileSize);
+            if (existing == null) {
+                return false;
+            }
+            Files.createDirectories(targetFile.getParent());
+            hashIndex.forget(targetFile);
+            Path tmpFile = targetFile.resolveSibling(targetFile.getFileName() + ".tmp");
+            Files.copy(existing, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+            recordArchived(targetFile, request.fileMD5);
+            action = "从 " + existing + " 本地复制";
+        }
+
+        dedupedUploads.incrementAndGet();
+        completedUploads.incrementAndGet();
+        sendResponse(out, MessageType.ALREADY_ARCHIVED, "归档中已有相同文件");
+        logger.info("♻️ 重复上传已跳过 ({}): {}", action, targetFile);
+        notifyCompleted(request, targetFile, segmentsDir);
+        return true;
+    }
+
+    private void recordArchived(Path file, String md5) {
+        try {
+            hashIndex.record(file, md5);
+        } catch (IOException e) {
+            logger.warn("更新归档索引失败: {}", e.getMessage());
+        }
+    }
+
+    private void notifyCompleted(UploadRequest request, Path targetFile, Path segmentsDir)
+            throws IOException {
+        String savedPath = targetFile.toString();
+        if (segmentsDir != null) {
+            Path indexFile = writeSegmentIndex(segmentsDir);
+            if (request.segmentFinal) {
+                logger.info("🎞️ 全部分段已接收: {} -> {}", request.segmentBaseName, indexFile);
+                savedPath = indexFile.toString();
+            }
+        }
+
+        if (listener != null) {
+            listener.onFileReceiveCompleted(request.fileName, savedPath);
+        }
+    }
+
+    private long receiveFile(Path targetFile, UploadRequest request, String clientKey,
+                             ObjectInputStream in, ObjectOutputStream out,
+                             MessageDigest md5) throws Exception {
         long bytesReceived = 0;
 
-        try (FileOutputStream fos = new FileOutputStream(targetFile.toFile())) {
+        TransferProgressAggregator.Transfer transfer =
+                progressAggregator.begin(request.fileName, request.deviceName, request.fileSize);
+        try (FileChannel channel = FileChannel.open(targetFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
             while (bytesReceived < request.fileSize) {
                 Object obj = in.readObject();
 
                 if (obj instanceof FileChunk) {
                     FileChunk chunk = (FileChunk) obj;
-                    fos.write(chunk.data, 0, chunk.dataLength);
+                    md5.update(chunk.data, 0, chunk.dataLength);
+                    writeChunk(channel, chunk.data, chunk.dataLength);
                     bytesReceived += chunk.dataLength;
+                    totalBytesReceived.addAndGet(chunk.dataLength);
+
+                    // 带宽调度：推迟确认即可让客户端放慢发送
+                    bandwidthScheduler.acquire(clientKey, chunk.dataLength);
 
                     sendResponse(out, MessageType.CHUNK_ACK,
                             String.format("已接收块 %d", chunk.chunkIndex));
-
-                    if (listener != null) {
-                        listener.onFileReceiveProgress(request.fileName,
-                                bytesReceived,
-                                request.fileSize);
-                    }
+                    transfer.add(chunk.dataLength);
 
                     if (chunk.chunkIndex % 50 == 0) {
                         double progress = (bytesReceived * 100.0) / request.fileSize;
@@ -177,23 +421,78 @@ public class FileReceiveServer {
                     }
                 }
             }
+        } finally {
+            transfer.end();
         }
 
         return bytesReceived;
     }
 
-    private String calculateMD5(Path filePath) throws Exception {
-        MessageDigest md5 = MessageDigest.getInstance("MD5");
+    private void notifyProgress(List<TransferProgressAggregator.Snapshot> transfers) {
+        if (listener != null) {
+            listener.onFileReceiveProgress(transfers);
+        }
+    }
+
+    /**
+     * 数据块已经是反序列化得到的堆数组，直接包装写入（不再经过额外的缓冲区复制）
+     */
+    private void writeChunk(FileChannel channel, byte[] data, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
 
-        try (FileInputStream fis = new FileInputStream(filePath.toFile())) {
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                md5.update(buffer, 0, bytesRead);
+    /**
+     * 重写分段索引文件（ffconcat格式），每收到一个分段更新一次
+     * 索引与分段目录同级：{设备名}.ffconcat，可直接用于
+     * ffmpeg -f concat -safe 0 -i front.ffconcat -c copy front.mp4
+     */
+    private Path writeSegmentIndex(Path segmentsDir) throws IOException {
+        String dirName = segmentsDir.getFileName().toString();
+        String stem = dirName.substring(0, dirName.length() - SEGMENTS_DIR_SUFFIX.length());
+        Path indexFile = segmentsDir.resolveSibling(stem + ".ffconcat");
+
+        StringBuilder sb = new StringBuilder("ffconcat version 1.0\n");
+        try (Stream<Path> parts = Files.list(segmentsDir)) {
+            parts.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith("part") && name.endsWith(".mp4"))
+                    .sorted()
+                    .forEach(name -> sb.append("file '").append(dirName).append('/')
+                            .append(name).append("'\n"));
+        }
+
+        Path tmpFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Files.writeString(tmpFile, sb.toString());
+        Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        return indexFile;
+    }
+
+    /**
+     * 删除分段目录中除 keep 以外的文件（keep 为本次分段0的目标，留给去重判断；不匹配时接收前会被覆盖）
+     */
+    private void clearSegments(Path segmentsDir, Path keep) throws IOException {
+        try (Stream<Path> parts = Files.list(segmentsDir)) {
+            for (Path part : (Iterable<Path>) parts::iterator) {
+                if (part.equals(keep)) {
+                    continue;
+                }
+                hashIndex.forget(part);
+                Files.deleteIfExists(part);
             }
         }
+        logger.info("覆盖模式：已清理旧分段 {}", segmentsDir);
+    }
+
+    private static String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot) : ".mp4";
+    }
 
-        return bytesToHex(md5.digest());
+    private static String stripExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
     }
 
     private void sendResponse(ObjectOutputStream out, MessageType type, String message)
@@ -218,11 +517,14 @@ public class FileReceiveServer {
     public void stop() {
         running = false;
         try {
-            if (serverSocket != null) {
-                serverSocket.close();
+            if (serverChannel != null) {
+                serverChannel.close();
             }
-            if (threadPool != null) {
-                threadPool.shutdown();
+            if (uploadExecutor != null) {
+                uploadExecutor.shutdown();
+            }
+            if (rejectExecutor != null) {
+                rejectExecutor.shutdownNow();
             }
         } catch (IOException e) {
             logger.error("关闭服务失败", e);
@@ -234,6 +536,31 @@ public class FileReceiveServer {
         return archiveDir;
     }
 
+    /**
+     * 获取带宽调度器（用于设置限速和录制/同步状态）
+     */
+    public BandwidthScheduler getBandwidthScheduler() {
+        return bandwidthScheduler;
+    }
+
+    /**
+     * 获取运行指标（活跃/排队上传数、拒绝数等）
+     */
+    public Metrics getMetrics() {
+        int queued = uploadExecutor != null ? uploadExecutor.getQueue().size() : 0;
+        return new Metrics(
+                activeUploads.get(),
+                queued,
+                maxConcurrentUploads,
+                acceptedConnections.get(),
+                rejectedConnections.get(),
+                completedUploads.get(),
+                failedUploads.get(),
+                totalBytesReceived.get(),
+                dedupedUploads.get()
+        );
+    }
+
     /**
      * 解析文件名，提取分层信息
      * 文件名格式：{测试者ID}_{动作ID}_{回合ID}_{设备名}.mp4
@@ -1,9 +1,14 @@
 package com.recsync.core.transfer;
 
 import java.io.Serializable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class FileTransferProtocol {
 
+    // 分段文件名格式：{基础名}.part{序号}{扩展名}，例如 s01_m01_e1_front.part003.mp4
+    private static final Pattern SEGMENT_FILE_NAME = Pattern.compile("(.+)\\.part(\\d{3,})(\\.[^.]+)$");
+
     public enum MessageType {
         UPLOAD_REQUEST,
         UPLOAD_ACCEPTED,
@@ -13,7 +18,8 @@ public class FileTransferProtocol {
         UPLOAD_COMPLETE,
         VERIFY_SUCCESS,
         VERIFY_FAILED,
-        ERROR
+        ERROR,
+        ALREADY_ARCHIVED   // 归档中已有相同内容（按MD5），无需传输
     }
 
     public static class UploadRequest implements Serializable {
@@ -25,6 +31,11 @@ public class FileTransferProtocol {
         public String deviceName;
         public long timestamp;
 
+        // 分段上传（边录边传）信息，非分段文件时 segmentIndex = -1
+        public String segmentBaseName;   // 完整录制文件名，例如 s01_m01_e1_front.mp4
+        public int segmentIndex = -1;    // 分段序号（从0开始）
+        public boolean segmentFinal;     // 是否为最后一个分段
+
         public UploadRequest(String fileName, long fileSize, String md5, String device) {
             this.fileName = fileName;
             this.fileSize = fileSize;
@@ -33,8 +44,25 @@ public class FileTransferProtocol {
             this.timestamp = System.currentTimeMillis();
         }
 
+        public UploadRequest(String fileName, long fileSize, String md5, String device,
+                             String segmentBaseName, int segmentIndex, boolean segmentFinal) {
+            this(fileName, fileSize, md5, device);
+            this.segmentBaseName = segmentBaseName;
+            this.segmentIndex = segmentIndex;
+            this.segmentFinal = segmentFinal;
+        }
+
+        public boolean isSegment() {
+            return segmentIndex >= 0 && segmentBaseName != null;
+        }
+
         @Override
         public String toString() {
+            if (isSegment()) {
+                return String.format("UploadRequest[%s, %.2fMB, device=%s, segment=%s#%d%s]",
+                        fileName, fileSize / 1024.0 / 1024.0, deviceName,
+                        segmentBaseName, segmentIndex, segmentFinal ? " (final)" : "");
+            }
             return String.format("UploadRequest[%s, %.2fMB, device=%s]",
                     fileName, fileSize / 1024.0 / 1024.0, deviceName);
         }
@@ -72,4 +100,31 @@ public class FileTransferProtocol {
             this.data = data;
         }
     }
+
+    /**
+     * 根据完整录制文件名生成分段文件名
+     * 例如：s01_m01_e1_front.mp4 + 3 -> s01_m01_e1_front.part003.mp4
+     */
+    public static String segmentFileName(String baseName, int index) {
+        int dot = baseName.lastIndexOf('.');
+        String stem = dot > 0 ? baseName.substring(0, dot) : baseName;
+        String ext = dot > 0 ? baseName.substring(dot) : "";
+        return String.format("%s.part%03d%s", stem, index, ext);
+    }
+
+    /**
+     * 从分段文件名还原完整录制文件名，非分段文件返回null
+     */
+    public static String segmentBaseName(String fileName) {
+        Matcher m = SEGMENT_FILE_NAME.matcher(fileName);
+        return m.matches() ? m.group(1) + m.group(3) : null;
+    }
+
+    /**
+     * 从分段文件名解析分段序号，非分段文件返回-1
+     */
+    public static int segmentIndex(String fileName) {
+        Matcher m = SEGMENT_FILE_NAME.matcher(fileName);
+        return m.matches() ? Integer.parseInt(m.group(2)) : -1;
+    }
 }
@@ -10,18 +10,28 @@ import java.net.Socket;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
+import java.util.List;
 
 public class FileUploadClient {
     private static final Logger logger = LoggerFactory.getLogger(FileUploadClient.class);
 
+    // 随视频一起上传的旁路文件（逐帧同步时间戳：二进制 + CSV导出；分段清单；缺帧报告）
+    private static final String[] SIDECAR_EXTENSIONS = {".fts", ".csv", SegmentManifest.EXTENSION,
+            FrameGapReport.EXTENSION};
+
     private final String leaderIP;
     private final int leaderPort;
     private final String deviceName;
     private UploadProgressListener progressListener;
+    private final TransferProgressAggregator progressAggregator =
+            new TransferProgressAggregator(this::notifyProgress);
 
     public interface UploadProgressListener {
         void onUploadStarted(String fileName);
-        void onUploadProgress(long bytesUploaded, long totalBytes, double percentage);
+        /**
+         * 所有进行中上传的进度快照，按固定频率批量回调（非每个数据块）
+         */
+        void onUploadProgress(List<TransferProgressAggregator.Snapshot> transfers);
         void onUploadCompleted(String fileName);
         void onUploadFailed(String fileName, String error);
     }
@@ -37,6 +47,54 @@ public class FileUploadClient {
     }
 
     public boolean uploadFile(Path filePath) {
+        // 分段文件（本地分段录制，或边录边传中断后手动上传）仍按分段协议上传，由Leader归入同一索引
+        // 是否为最后一个分段以本地清单为准（录制正常结束才有）
+        String fileName = filePath.getFileName().toString();
+        String segmentBase = FileTransferProtocol.segmentBaseName(fileName);
+        if (segmentBase != null) {
+            int index = FileTransferProtocol.segmentIndex(fileName);
+            SegmentManifest manifest = SegmentManifest.read(
+                    SegmentManifest.pathFor(filePath.resolveSibling(segmentBase)));
+            boolean last = manifest != null && manifest.lastSegmentIndex() == index;
+            return uploadSegment(filePath, segmentBase, index, last);
+        }
+        uploadSidecars(filePath);
+        return upload(filePath, null, -1, false);
+    }
+
+    /**
+     * 上传录制分段（边录边传模式）
+     *
+     * @param filePath 分段文件路径
+     * @param baseName 完整录制文件名（Leader据此解析归档目录）
+     * @param index 分段序号
+     * @param last 是否为最后一个分段
+     */
+    public boolean uploadSegment(Path filePath, String baseName, int index, boolean last) {
+        if (last) {
+            // 旁路文件对应整段录制，随最后一个分段上传
+            uploadSidecars(filePath.resolveSibling(baseName));
+        }
+        return upload(filePath, baseName, index, last);
+    }
+
+    /**
+     * 上传视频对应的旁路文件（存在才上传）
+     * 每个旁路文件上传成功后单独删除；失败的保留在本地，不影响视频本身的上传
+     */
+    private void uploadSidecars(Path videoPath) {
+        String fileName = videoPath.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+        for (String extension : SIDECAR_EXTENSIONS) {
+            Path sidecar = videoPath.resolveSibling(stem + extension);
+            if (Files.exists(sidecar) && !upload(sidecar, null, -1, false)) {
+                logger.warn("旁路文件上传失败，保留本地文件: {}", sidecar);
+            }
+        }
+    }
+
+    private boolean upload(Path filePath, String segmentBaseName, int segmentIndex, boolean segmentFinal) {
         File file = filePath.toFile();
         if (!file.exists()) {
             notifyError(file.getName(), "文件不存在");
@@ -55,7 +113,10 @@ public class FileUploadClient {
                     file.getName(),
                     file.length(),
                     md5,
-                    deviceName
+                    deviceName,
+                    segmentBaseName,
+                    segmentIndex,
+                    segmentFinal
             );
 
             logger.debug("发送上传请求: {}", request);
@@ -63,6 +124,14 @@ public class FileUploadClient {
             out.flush();
 
             Response response = (Response) in.readObject();
+            if (response.type == MessageType.ALREADY_ARCHIVED) {
+                // Leader已有相同内容（按MD5去重），无需传输，直接视为上传成功
+                logger.info("♻️ Leader已归档相同文件，跳过传输: {}", file.getName());
+                notifyStarted(file.getName());
+                notifyCompleted(file.getName());
+                deleteLocalFiles(filePath);
+                return true;
+            }
             if (response.type != MessageType.UPLOAD_ACCEPTED) {
                 notifyError(file.getName(), "上传被拒绝: " + response.message);
                 return false;
@@ -101,6 +170,8 @@ public class FileUploadClient {
         long bytesUploaded = 0;
         int chunkIndex = 0;
         byte[] buffer = new byte[SyncConstants.FILE_CHUNK_SIZE];
+        TransferProgressAggregator.Transfer progress =
+                progressAggregator.begin(file.getName(), leaderIP, file.length());
 
         try (FileInputStream fis = new FileInputStream(file)) {
             int bytesRead;
@@ -121,15 +192,14 @@ public class FileUploadClient {
                 }
 
                 bytesUploaded += bytesRead;
-
-                double percentage = (bytesUploaded * 100.0) / file.length();
-                notifyProgress(bytesUploaded, file.length(), percentage);
+                progress.add(bytesRead);
 
                 if (chunkIndex % 50 == 0) {
-                    logger.debug("   上传进度: {:.1f}% ({}/{} bytes)",
-                            percentage, bytesUploaded, file.length());
+                    logger.debug("   上传进度: {}/{} bytes", bytesUploaded, file.length());
                 }
             }
+        } finally {
+            progress.end();
         }
 
         logger.info("📦 文件发送完成，等待校验...");
@@ -137,15 +207,9 @@ public class FileUploadClient {
     }
 
     private void deleteLocalFiles(Path filePath) throws IOException {
+        // 旁路文件（.fts/.csv/.gaps 等）由各自的上传成功后删除，这里只删除已上传的文件本身
         Files.delete(filePath);
         logger.info("🗑️  本地文件已删除: {}", filePath);
-
-        String csvFileName = filePath.getFileName().toString().replace(".mp4", ".csv");
-        Path csvPath = filePath.getParent().resolve(csvFileName);
-        if (Files.exists(csvPath)) {
-            Files.delete(csvPath);
-            logger.info("🗑️  CSV文件已删除: {}", csvPath);
-        }
     }
 
     private String calculateMD5(Path filePath) throws Exception {
@@ -173,9 +237,9 @@ public class FileUploadClient {
         }
     }
 
-    private void notifyProgress(long uploaded, long total, double percentage) {
+    private void notifyProgress(List<TransferProgressAggregator.Snapshot> transfers) {
         if (progressListener != null) {
-            progressListener.onUploadProgress(uploaded, total, percentage);
+            progressListener.onUploadProgress(transfers);
         }
     }
 
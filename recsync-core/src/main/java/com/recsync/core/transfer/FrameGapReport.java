@@ -0,0 +1,114 @@
+package com.recsync.core.transfer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * 录制缺帧报告：一次录制中按帧间隔检测到的缺帧（设备跳帧、采集/编码队列丢帧）
+ *
+ * 文件名为 {录制文件名去扩展名}.gaps，录制收尾时写入，作为旁路文件随视频上传到Leader的回合目录。
+ * 即使没有缺帧也会写入（dropped 0），标注前即可据此筛出有问题的回合。
+ * 文本格式（制表符分隔）：
+ * <pre>
+ * # recsync-gaps v1
+ * video    {录制文件名}
+ * policy   {缺帧处理策略}
+ * period_ns {期望帧间隔}
+ * frames   {视频总帧数，含补帧}
+ * dropped  {缺失帧数}
+ * inserted {补帧数}
+ * gap {视频帧序号} {缺口前一帧时间戳ns} {缺口后一帧时间戳ns} {缺失帧数} {补帧数} {距录制开始ms}
+ * </pre>
+ * gap 行的视频帧序号是缺口开始处的帧序号：补帧占用 [序号, 序号+补帧数)，缺口后的真实帧紧随其后。
+ */
+public final class FrameGapReport {
+
+    public static final String EXTENSION = ".gaps";
+    private static final String HEADER = "# recsync-gaps v1";
+
+    /**
+     * 一处缺口
+     *
+     * @param frameIndex 缺口开始处的视频帧序号
+     * @param previousTimestampNs 缺口前一帧的同步时间戳
+     * @param timestampNs 缺口后一帧的同步时间戳
+     * @param missingFrames 按期望帧间隔估计的缺失帧数
+     * @param insertedFrames 实际补入的帧数（留空策略为0）
+     * @param offsetMs 缺口距录制首帧的时间（毫秒）
+     */
+    public record Gap(long frameIndex, long previousTimestampNs, long timestampNs,
+                      int missingFrames, int insertedFrames, long offsetMs) {}
+
+    private final String videoName;
+    private final String policy;
+    private final long periodNs;
+    private final long totalFrames;
+    private final long droppedFrames;
+    private final long insertedFrames;
+    private final List<Gap> gaps;
+
+    public FrameGapReport(String videoName, String policy, long periodNs, long totalFrames,
+                          long droppedFrames, long insertedFrames, List<Gap> gaps) {
+        this.videoName = videoName;
+        this.policy = policy;
+        this.periodNs = periodNs;
+        this.totalFrames = totalFrames;
+        this.droppedFrames = droppedFrames;
+        this.insertedFrames = insertedFrames;
+        this.gaps = List.copyOf(gaps);
+    }
+
+    /**
+     * 报告文件路径
+     * @param videoPath 完整录制文件路径（不必存在）
+     */
+    public static Path pathFor(Path videoPath) {
+        String fileName = videoPath.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return videoPath.resolveSibling(stem + EXTENSION);
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public List<Gap> getGaps() {
+        return gaps;
+    }
+
+    /**
+     * 写入报告（临时文件 + 原子替换）
+     */
+    public void write(Path reportPath) throws IOException {
+        Path temp = reportPath.resolveSibling(reportPath.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write("video\t" + videoName);
+            writer.newLine();
+            writer.write("policy\t" + policy);
+            writer.newLine();
+            writer.write("period_ns\t" + periodNs);
+            writer.newLine();
+            writer.write("frames\t" + totalFrames);
+            writer.newLine();
+            writer.write("dropped\t" + droppedFrames);
+            writer.newLine();
+            writer.write("inserted\t" + insertedFrames);
+            writer.newLine();
+            for (Gap g : gaps) {
+                writer.write(String.format("gap\t%d\t%d\t%d\t%d\t%d\t%d",
+                        g.frameIndex(), g.previousTimestampNs(), g.timestampNs(),
+                        g.missingFrames(), g.insertedFrames(), g.offsetMs()));
+                writer.newLine();
+            }
+        }
+        Files.move(temp, reportPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
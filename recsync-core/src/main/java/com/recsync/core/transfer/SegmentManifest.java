@@ -0,0 +1,150 @@
+package com.recsync.core.transfer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分段录制清单：把同一次录制的各个分段文件串联起来
+ *
+ * 文件名为 {完整录制文件名去扩展名}.manifest，与分段文件同目录，随最后一个分段作为旁路文件上传。
+ * 每个分段关闭后整体重写（先写临时文件再替换），录制中途崩溃时清单仍指向所有已完整关闭的分段。
+ * 文本格式（制表符分隔）：
+ * <pre>
+ * # recsync-segments v1
+ * base    {完整录制文件名}
+ * segment {序号} {分段文件名} {首帧时间戳ns} {结束时间戳ns} {帧数}
+ * complete {分段数}          ← 仅在录制正常结束后出现
+ * </pre>
+ */
+public final class SegmentManifest {
+
+    public static final String EXTENSION = ".manifest";
+    private static final String HEADER = "# recsync-segments v1";
+
+    /**
+     * 一个已关闭的分段
+     *
+     * @param index 分段序号
+     * @param fileName 分段文件名
+     * @param startTimeNs 首帧同步时间戳
+     * @param endTimeNs 结束时间戳（下一分段首帧或停止时刻）
+     * @param frameCount 帧数
+     */
+    public record Segment(int index, String fileName, long startTimeNs, long endTimeNs, long frameCount) {}
+
+    private final String baseName;
+    private final List<Segment> segments = new ArrayList<>();
+    private boolean complete = false;
+
+    public SegmentManifest(String baseName) {
+        this.baseName = baseName;
+    }
+
+    /**
+     * 清单文件路径
+     * @param videoPath 完整录制文件路径（不必存在）
+     */
+    public static Path pathFor(Path videoPath) {
+        String fileName = videoPath.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return videoPath.resolveSibling(stem + EXTENSION);
+    }
+
+    public synchronized void addSegment(Segment segment) {
+        segments.add(segment);
+    }
+
+    public synchronized void markComplete() {
+        complete = true;
+    }
+
+    public String getBaseName() {
+        return baseName;
+    }
+
+    public synchronized List<Segment> getSegments() {
+        return Collections.unmodifiableList(new ArrayList<>(segments));
+    }
+
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * 已正常结束的录制中序号最大的分段，其余情况返回 -1
+     */
+    public synchronized int lastSegmentIndex() {
+        if (!complete || segments.isEmpty()) {
+            return -1;
+        }
+        return segments.get(segments.size() - 1).index();
+    }
+
+    /**
+     * 写入清单（临时文件 + 原子替换）
+     */
+    public synchronized void write(Path manifestPath) throws IOException {
+        Path temp = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write("base\t" + baseName);
+            writer.newLine();
+            for (Segment s : segments) {
+                writer.write(String.format("segment\t%d\t%s\t%d\t%d\t%d",
+                        s.index(), s.fileName(), s.startTimeNs(), s.endTimeNs(), s.frameCount()));
+                writer.newLine();
+            }
+            if (complete) {
+                writer.write("complete\t" + segments.size());
+                writer.newLine();
+            }
+        }
+        Files.move(temp, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取清单，文件不存在或格式错误时返回null
+     */
+    public static SegmentManifest read(Path manifestPath) {
+        if (!Files.exists(manifestPath)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(manifestPath, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+                return null;
+            }
+            SegmentManifest manifest = null;
+            for (String line : lines.subList(1, lines.size())) {
+                String[] parts = line.split("\t");
+                switch (parts[0]) {
+                    case "base" -> manifest = new SegmentManifest(parts[1]);
+                    case "segment" -> {
+                        if (manifest != null && parts.length >= 6) {
+                            manifest.addSegment(new Segment(Integer.parseInt(parts[1]), parts[2],
+                                    Long.parseLong(parts[3]), Long.parseLong(parts[4]), Long.parseLong(parts[5])));
+                        }
+                    }
+                    case "complete" -> {
+                        if (manifest != null) {
+                            manifest.markComplete();
+                        }
+                    }
+                    default -> { }
+                }
+            }
+            return manifest;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
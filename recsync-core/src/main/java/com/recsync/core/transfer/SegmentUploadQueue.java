@@ -0,0 +1,85 @@
+package com.recsync.core.transfer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 边录边传：后台按顺序上传录制分段
+ *
+ * 录制过程中每完成一个分段就提交到队列，由单独线程依次上传到Leader，
+ * 停止录制时只剩最后一个短分段需要传输。
+ * 分段严格按提交顺序上传（失败时先重试当前分段），保证Leader端索引顺序正确。
+ */
+public class SegmentUploadQueue {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentUploadQueue.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final FileUploadClient uploadClient;
+    private final ExecutorService executor;
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+
+    public SegmentUploadQueue(FileUploadClient uploadClient) {
+        this.uploadClient = uploadClient;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Segment-Upload-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 提交一个已完成的分段
+     *
+     * @param segmentPath 分段文件路径
+     * @param baseName 完整录制文件名
+     * @param index 分段序号
+     * @param last 是否为最后一个分段
+     */
+    public void submit(Path segmentPath, String baseName, int index, boolean last) {
+        pendingCount.incrementAndGet();
+        executor.submit(() -> {
+            try {
+                uploadWithRetry(segmentPath, baseName, index, last);
+            } finally {
+                pendingCount.decrementAndGet();
+            }
+        });
+        logger.debug("分段已加入上传队列: {} (#{}, 待上传: {})", segmentPath.getFileName(), index, pendingCount.get());
+    }
+
+    private void uploadWithRetry(Path segmentPath, String baseName, int index, boolean last) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (uploadClient.uploadSegment(segmentPath, baseName, index, last)) {
+                logger.info("📤 分段上传完成: {} #{}{}", baseName, index, last ? " (最后分段)" : "");
+                return;
+            }
+
+            logger.warn("分段上传失败 ({}/{}): {}", attempt, MAX_ATTEMPTS, segmentPath.getFileName());
+            try {
+                Thread.sleep(RETRY_DELAY_MS * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        logger.error("❌ 分段上传多次失败，保留本地文件以便手动上传: {}", segmentPath);
+    }
+
+    /**
+     * 获取尚未上传完成的分段数
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
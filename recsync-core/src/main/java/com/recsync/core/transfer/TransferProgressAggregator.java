@@ -0,0 +1,163 @@
+package com.recsync.core.transfer;
+
+import com.recsync.core.sync.SyncConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 传输进度聚合器
+ *
+ * 传输线程每个数据块只更新一个计数器（无锁、无回调），
+ * 采样线程按固定频率（默认10Hz）读取所有活跃传输，一次性批量回调快照。
+ * 这样无论块大小和并发数如何，UI线程每个周期最多只收到一次更新。
+ * 没有活跃传输时采样任务自动停止，线程空闲后退出。
+ */
+public class TransferProgressAggregator {
+    private static final Logger logger = LoggerFactory.getLogger(TransferProgressAggregator.class);
+
+    /**
+     * 单个传输的进度快照
+     */
+    public record Snapshot(
+            String fileName,
+            String peer,
+            long bytesTransferred,
+            long totalBytes,
+            double bytesPerSecond
+    ) {
+        public double fraction() {
+            return totalBytes > 0 ? (double) bytesTransferred / totalBytes : 0;
+        }
+    }
+
+    /**
+     * 传输句柄，由传输线程持有并更新
+     */
+    public final class Transfer {
+        private final String fileName;
+        private final String peer;
+        private final long totalBytes;
+        private final AtomicLong bytesTransferred = new AtomicLong(0);
+        private long lastSampledBytes = 0;
+        private long lastSampledNs = System.nanoTime();
+        private double bytesPerSecond = 0;
+
+        private Transfer(String fileName, String peer, long totalBytes) {
+            this.fileName = fileName;
+            this.peer = peer;
+            this.totalBytes = totalBytes;
+        }
+
+        /**
+         * 累加已传输字节数（每个数据块调用）
+         */
+        public void add(long bytes) {
+            bytesTransferred.addAndGet(bytes);
+        }
+
+        /**
+         * 传输结束（成功或失败），之后不再出现在快照中
+         */
+        public void end() {
+            TransferProgressAggregator.this.end(this);
+        }
+
+        private Snapshot sample(long nowNs) {
+            long bytes = bytesTransferred.get();
+            long elapsedNs = nowNs - lastSampledNs;
+            if (elapsedNs > 0) {
+                bytesPerSecond = (bytes - lastSampledBytes) * 1e9 / elapsedNs;
+            }
+            lastSampledBytes = bytes;
+            lastSampledNs = nowNs;
+            return new Snapshot(fileName, peer, bytes, totalBytes, bytesPerSecond);
+        }
+    }
+
+    private static final ScheduledThreadPoolExecutor SAMPLER = createSampler();
+
+    private final Consumer<List<Snapshot>> listener;
+    private final long intervalMs;
+    private final Set<Transfer> active = new LinkedHashSet<>();
+    private ScheduledFuture<?> samplingTask;
+
+    public TransferProgressAggregator(Consumer<List<Snapshot>> listener) {
+        this(listener, SyncConstants.PROGRESS_UPDATE_INTERVAL_MS);
+    }
+
+    public TransferProgressAggregator(Consumer<List<Snapshot>> listener, long intervalMs) {
+        this.listener = listener;
+        this.intervalMs = intervalMs;
+    }
+
+    private static ScheduledThreadPoolExecutor createSampler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "Transfer-Progress-Sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setKeepAliveTime(5, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * 开始跟踪一个传输
+     *
+     * @param fileName 文件名
+     * @param peer 对端（设备名或地址）
+     * @param totalBytes 总字节数
+     */
+    public synchronized Transfer begin(String fileName, String peer, long totalBytes) {
+        Transfer transfer = new Transfer(fileName, peer, totalBytes);
+        active.add(transfer);
+        if (samplingTask == null) {
+            samplingTask = SAMPLER.scheduleAtFixedRate(this::sample, intervalMs, intervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+        return transfer;
+    }
+
+    /**
+     * 与采样互斥：end() 返回后不会再有包含该传输的快照回调，
+     * 调用方随后发出的"完成"通知不会被旧快照覆盖
+     */
+    private synchronized void end(Transfer transfer) {
+        if (active.remove(transfer) && active.isEmpty() && samplingTask != null) {
+            samplingTask.cancel(false);
+            samplingTask = null;
+        }
+    }
+
+    private synchronized void sample() {
+        if (active.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        List<Snapshot> snapshots = new ArrayList<>(active.size());
+        for (Transfer transfer : active) {
+            snapshots.add(transfer.sample(now));
+        }
+        try {
+            listener.accept(Collections.unmodifiableList(snapshots));
+        } catch (Exception e) {
+            logger.error("进度回调失败", e);
+        }
+    }
+
+    public synchronized int getActiveCount() {
+        return active.size();
+    }
+}
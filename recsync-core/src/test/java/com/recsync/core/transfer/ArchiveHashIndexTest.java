@@ -0,0 +1,106 @@
+package com.recsync.core.transfer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveHashIndexTest {
+
+    // "hello" 的MD5
+    private static final String HELLO_MD5 = "5d41402abc4b2a76b9719d911017c592";
+    private static final long HELLO_SIZE = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private ArchiveHashIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath();
+        index = new ArchiveHashIndex(root);
+        index.load();
+    }
+
+    private Path write(String relative, String content) throws IOException {
+        Path file = root.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    public void forgettingOneCopyKeepsTheOthers() throws IOException {
+        Path first = write("take1/dev-a.mp4", "hello");
+        Path second = write("take2/dev-a.mp4", "hello");
+        index.record(first, HELLO_MD5);
+        index.record(second, HELLO_MD5);
+        assertEquals(2, index.size());
+
+        index.forget(first);
+        Files.delete(first);
+        assertEquals(second, index.find(HELLO_MD5, HELLO_SIZE));
+
+        index.forget(second);
+        assertNull(index.find(HELLO_MD5, HELLO_SIZE));
+    }
+
+    @Test
+    public void findSkipsCopiesThatChangedOnDisk() throws IOException {
+        Path first = write("take1/dev-a.mp4", "hello");
+        Path second = write("take2/dev-a.mp4", "hello");
+        index.record(first, HELLO_MD5);
+        index.record(second, HELLO_MD5);
+
+        Files.writeString(first, "changed content", StandardCharsets.UTF_8);
+        assertEquals(second, index.find(HELLO_MD5, HELLO_SIZE));
+        assertNull(index.find(HELLO_MD5, HELLO_SIZE + 1));
+    }
+
+    @Test
+    public void overwritingAPathMovesItToTheNewHash() throws IOException {
+        Path file = write("take1/dev-a.mp4", "hello");
+        index.record(file, HELLO_MD5);
+
+        Files.writeString(file, "world", StandardCharsets.UTF_8);
+        index.record(file, "7d793037a0760186574b0282f2f435e7");
+
+        assertNull(index.find(HELLO_MD5, HELLO_SIZE));
+        assertEquals(file, index.find("7d793037a0760186574b0282f2f435e7", 5));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void reloadKeepsAllValidCopies() throws IOException {
+        Path first = write("take1/dev-a.mp4", "hello");
+        Path second = write("take2/dev-a.mp4", "hello");
+        index.record(first, HELLO_MD5);
+        index.record(second, HELLO_MD5);
+        Files.delete(first);
+
+        ArchiveHashIndex reloaded = new ArchiveHashIndex(root);
+        reloaded.load();
+        assertEquals(1, reloaded.size());
+        assertEquals(second, reloaded.find(HELLO_MD5, HELLO_SIZE));
+    }
+
+    @Test
+    public void matchesIndexesUnknownFiles() throws IOException {
+        Path file = write("legacy/dev-a.mp4", "hello");
+        assertTrue(index.matches(file, HELLO_MD5, HELLO_SIZE));
+        assertFalse(index.matches(file, "7d793037a0760186574b0282f2f435e7", HELLO_SIZE));
+        assertEquals(file, index.find(HELLO_MD5, HELLO_SIZE));
+    }
+}
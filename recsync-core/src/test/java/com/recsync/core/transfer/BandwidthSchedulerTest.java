@@ -0,0 +1,93 @@
+package com.recsync.core.transfer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BandwidthSchedulerTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final AtomicBoolean sampling = new AtomicBoolean(false);
+    private BandwidthScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new BandwidthScheduler(clock::get);
+        scheduler.setLimits(0, 0, 0);
+        scheduler.setSyncSamplingSupplier(sampling::get);
+    }
+
+    private void advanceSeconds(long seconds) {
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    public void pausesWhileClientsAreSampling() {
+        assertEquals(BandwidthScheduler.Mode.FULL_SPEED, scheduler.getMode());
+
+        sampling.set(true);
+        advanceSeconds(1);
+        assertEquals(BandwidthScheduler.Mode.PAUSED, scheduler.getMode());
+
+        sampling.set(false);
+        advanceSeconds(1);
+        assertEquals(BandwidthScheduler.Mode.FULL_SPEED, scheduler.getMode());
+    }
+
+    @Test
+    public void pauseCapIsSharedAcrossCallsAndStaysExpired() throws InterruptedException {
+        sampling.set(true);
+        advanceSeconds(1);
+        assertEquals(BandwidthScheduler.Mode.PAUSED, scheduler.getMode());
+
+        advanceSeconds(20);
+        assertEquals(BandwidthScheduler.Mode.PAUSED, scheduler.getMode());
+
+        // 累计超过30秒：不再暂停，之后的每一块都不再等待
+        advanceSeconds(11);
+        assertEquals(BandwidthScheduler.Mode.FULL_SPEED, scheduler.getMode());
+        advanceSeconds(60);
+        assertEquals(BandwidthScheduler.Mode.FULL_SPEED, scheduler.getMode());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            scheduler.acquire("10.0.0.2", 64 * 1024);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void pauseClockRestartsAfterSamplingEnds() {
+        sampling.set(true);
+        advanceSeconds(1);
+        scheduler.getMode();
+        advanceSeconds(31);
+        assertEquals(BandwidthScheduler.Mode.FULL_SPEED, scheduler.getMode());
+
+        sampling.set(false);
+        advanceSeconds(1);
+        assertEquals(BandwidthScheduler.Mode.FULL_SPEED, scheduler.getMode());
+
+        sampling.set(true);
+        advanceSeconds(1);
+        assertEquals(BandwidthScheduler.Mode.PAUSED, scheduler.getMode());
+    }
+
+    @Test
+    public void recordingThrottlesWhenNotPaused() {
+        scheduler.setRecording(true);
+        assertEquals(BandwidthScheduler.Mode.THROTTLED, scheduler.getMode());
+
+        sampling.set(true);
+        advanceSeconds(1);
+        assertEquals(BandwidthScheduler.Mode.PAUSED, scheduler.getMode());
+        advanceSeconds(31);
+        assertEquals(BandwidthScheduler.Mode.THROTTLED, scheduler.getMode());
+    }
+}
@@ -0,0 +1,79 @@
+package com.recsync.core.transfer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pathForReplacesTheExtension() {
+        assertEquals(Paths.get("/rec/front.manifest"), SegmentManifest.pathFor(Paths.get("/rec/front.mp4")));
+        assertEquals(Paths.get("/rec/front.cam1.manifest"), SegmentManifest.pathFor(Paths.get("/rec/front.cam1.mp4")));
+        assertEquals(Paths.get("/rec/front.manifest"), SegmentManifest.pathFor(Paths.get("/rec/front")));
+    }
+
+    @Test
+    public void writeAndReadRoundTrip() throws IOException {
+        SegmentManifest manifest = new SegmentManifest("front.mp4");
+        manifest.addSegment(new SegmentManifest.Segment(0, "front.part000.mp4", 1_000L, 31_000L, 900));
+        manifest.addSegment(new SegmentManifest.Segment(1, "front.part001.mp4", 31_000L, 40_000L, 270));
+        manifest.markComplete();
+        Path path = folder.getRoot().toPath().resolve("front.manifest");
+        manifest.write(path);
+
+        SegmentManifest read = SegmentManifest.read(path);
+        assertNotNull(read);
+        assertEquals("front.mp4", read.getBaseName());
+        assertTrue(read.isComplete());
+        List<SegmentManifest.Segment> segments = read.getSegments();
+        assertEquals(manifest.getSegments(), segments);
+        assertEquals(1, read.lastSegmentIndex());
+        assertFalse(Files.exists(path.resolveSibling("front.manifest.tmp")));
+    }
+
+    @Test
+    public void incompleteManifestHasNoLastSegment() throws IOException {
+        SegmentManifest manifest = new SegmentManifest("front.mp4");
+        assertEquals(-1, manifest.lastSegmentIndex());
+        manifest.addSegment(new SegmentManifest.Segment(0, "front.part000.mp4", 0L, 5_000L, 150));
+        assertEquals(-1, manifest.lastSegmentIndex());
+
+        Path path = folder.getRoot().toPath().resolve("front.manifest");
+        manifest.write(path);
+        SegmentManifest read = SegmentManifest.read(path);
+        assertNotNull(read);
+        assertFalse(read.isComplete());
+        assertEquals(1, read.getSegments().size());
+        assertEquals(-1, read.lastSegmentIndex());
+    }
+
+    @Test
+    public void readRejectsMissingOrForeignFiles() throws IOException {
+        Path missing = folder.getRoot().toPath().resolve("missing.manifest");
+        assertNull(SegmentManifest.read(missing));
+
+        Path foreign = folder.newFile("foreign.manifest").toPath();
+        Files.writeString(foreign, "not a manifest\nbase\tx.mp4\n");
+        assertNull(SegmentManifest.read(foreign));
+
+        Path corrupt = folder.newFile("corrupt.manifest").toPath();
+        Files.writeString(corrupt, "# recsync-segments v1\nbase\tx.mp4\nsegment\tNaN\tx.part000.mp4\t0\t1\t2\n");
+        assertNull(SegmentManifest.read(corrupt));
+    }
+}